@@ -0,0 +1,397 @@
+// Vehicle Rental System - Columnar Analytics
+import java.sql.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// ANALYTICS ENGINE
+// Finance reports (revenue by owner/make/location/week, utilization, top earners) run against an
+// in-memory columnar snapshot instead of GROUP BYs on the OLTP tables. A snapshot copies Vehicles,
+// Rentals and completed rental Transactions once, inside a single consistent-read transaction,
+// into primitive arrays: dates as epoch-day ints, amounts as cents in longs, makes and locations
+// dictionary-encoded. Queries are tight loops over those arrays, split across the fork-join pool.
+class AnalyticsEngine {
+    private static final int LEAF_ROWS = 1 << 18;
+    private static final int EPOCH_TO_DAYS = 719528;      // TO_DAYS('1970-01-01')
+
+    enum Dimension { OWNER, MAKE, LOCATION, WEEK }
+
+    // Immutable once built; queries only read it
+    static class Snapshot {
+        // Vehicles, dense index i; vehicle id -> i via vehicleIndex
+        int vehicleCount;
+        int[] vehicleId, ownerCode, makeCode, locationCode;
+        final IntIntHashMap vehicleIndex = new IntIntHashMap(1024);
+        final StringDictionary makes = new StringDictionary();
+        final StringDictionary locations = new StringDictionary();
+        int[] ownerIds = new int[64];                     // owner code -> UserID
+        int ownerCount;
+
+        // Rentals, in RentalID order (rentalId is sorted, so transactions join by binary search)
+        int rentalCount;
+        int[] rentalId, rentalVehicle, startDay, endDay;
+        byte[] status;
+        long[] amountCents, commissionCents;
+        boolean[] paid;                                   // rental transaction COMPLETED
+
+        int activeStatus, completedStatus;
+        long loadedAt, loadMillis;
+    }
+
+    static class GroupResult {
+        final String[] labels; final long[] rentals; final long[] grossCents; final long[] commissionCents;
+
+        GroupResult(String[] labels, long[] rentals, long[] grossCents, long[] commissionCents) {
+            this.labels = labels; this.rentals = rentals; this.grossCents = grossCents; this.commissionCents = commissionCents;
+        }
+    }
+
+    private static volatile Snapshot snapshot;
+
+    // ========== SNAPSHOT ==========
+    public static Snapshot refresh() throws SQLException {
+        long start = System.currentTimeMillis();
+        Snapshot s = new Snapshot();
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("SET SESSION TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+            stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+            try {
+                s.activeStatus = rentalStatusId(stmt, "ACTIVE");
+                s.completedStatus = rentalStatusId(stmt, "COMPLETED");
+                loadVehicles(conn, s);
+                loadRentals(conn, s);
+                loadTransactions(conn, s);
+            } finally {
+                stmt.execute("COMMIT");
+            }
+        }
+        s.loadedAt = System.currentTimeMillis();
+        s.loadMillis = s.loadedAt - start;
+        snapshot = s;
+        return s;
+    }
+
+    public static Snapshot current() throws SQLException {
+        Snapshot s = snapshot;
+        return s != null ? s : refresh();
+    }
+
+    private static int rentalStatusId(Statement stmt, String name) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT StatusID FROM RentalStatuses WHERE StatusName = '" + name + "'")) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    private static PreparedStatement streaming(Connection conn, String sql) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(Integer.MIN_VALUE);
+        return ps;
+    }
+
+    private static void loadVehicles(Connection conn, Snapshot s) throws SQLException {
+        String sql = "SELECT v.VehicleID, v.OwnerID, m.MakeName, v.Location FROM Vehicles v " +
+                     "JOIN VehicleMakes m ON v.MakeID = m.MakeID ORDER BY v.VehicleID";
+        int cap = 1024;
+        s.vehicleId = new int[cap]; s.ownerCode = new int[cap]; s.makeCode = new int[cap]; s.locationCode = new int[cap];
+        IntIntHashMap ownerIndex = new IntIntHashMap(256);
+        try (PreparedStatement ps = streaming(conn, sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int i = s.vehicleCount++;
+                if (i == cap) {
+                    cap *= 2;
+                    s.vehicleId = Arrays.copyOf(s.vehicleId, cap); s.ownerCode = Arrays.copyOf(s.ownerCode, cap);
+                    s.makeCode = Arrays.copyOf(s.makeCode, cap); s.locationCode = Arrays.copyOf(s.locationCode, cap);
+                }
+                s.vehicleId[i] = rs.getInt(1);
+                s.vehicleIndex.put(s.vehicleId[i], i);
+
+                int owner = rs.getInt(2);
+                int code = ownerIndex.get(owner, -1);
+                if (code < 0) {
+                    code = s.ownerCount++;
+                    if (code == s.ownerIds.length) s.ownerIds = Arrays.copyOf(s.ownerIds, code * 2);
+                    s.ownerIds[code] = owner;
+                    ownerIndex.put(owner, code);
+                }
+                s.ownerCode[i] = code;
+                s.makeCode[i] = s.makes.encode(rs.getString(3));
+                s.locationCode[i] = s.locations.encode(rs.getString(4));
+            }
+        }
+    }
+
+    private static void loadRentals(Connection conn, Snapshot s) throws SQLException {
+        // Dates and cents are converted by the server so no Date/BigDecimal objects are created per row
+        String sql = "SELECT RentalID, VehicleID, TO_DAYS(RentalDate), TO_DAYS(ReturnDate), " +
+                     "CAST(ROUND(TotalAmount * 100) AS SIGNED), StatusID FROM Rentals ORDER BY RentalID";
+        int cap = 1 << 16;
+        s.rentalId = new int[cap]; s.rentalVehicle = new int[cap]; s.startDay = new int[cap]; s.endDay = new int[cap];
+        s.status = new byte[cap]; s.amountCents = new long[cap];
+        try (PreparedStatement ps = streaming(conn, sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int v = s.vehicleIndex.get(rs.getInt(2), -1);
+                if (v < 0) continue;
+                int i = s.rentalCount++;
+                if (i == cap) {
+                    cap += cap >> 1;
+                    s.rentalId = Arrays.copyOf(s.rentalId, cap); s.rentalVehicle = Arrays.copyOf(s.rentalVehicle, cap);
+                    s.startDay = Arrays.copyOf(s.startDay, cap); s.endDay = Arrays.copyOf(s.endDay, cap);
+                    s.status = Arrays.copyOf(s.status, cap); s.amountCents = Arrays.copyOf(s.amountCents, cap);
+                }
+                s.rentalId[i] = rs.getInt(1);
+                s.rentalVehicle[i] = v;
+                s.startDay[i] = rs.getInt(3) - EPOCH_TO_DAYS;
+                s.endDay[i] = rs.getInt(4) - EPOCH_TO_DAYS;
+                s.amountCents[i] = rs.getLong(5);
+                s.status[i] = (byte) rs.getInt(6);
+            }
+        }
+        s.commissionCents = new long[s.rentalCount];
+        s.paid = new boolean[s.rentalCount];
+    }
+
+    private static void loadTransactions(Connection conn, Snapshot s) throws SQLException {
+        String sql = "SELECT t.RentalID, CAST(ROUND(t.AdminCommission * 100) AS SIGNED) FROM Transactions t " +
+                     "JOIN TransactionTypes tt ON t.TypeID = tt.TypeID " +
+                     "WHERE t.RentalID IS NOT NULL AND t.Status = 'COMPLETED' " +
+                     "AND tt.TypeName IN ('USER_RENTAL', 'COMPANY_RENTAL')";
+        try (PreparedStatement ps = streaming(conn, sql); ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int i = Arrays.binarySearch(s.rentalId, 0, s.rentalCount, rs.getInt(1));
+                if (i < 0) continue;
+                s.paid[i] = true;
+                s.commissionCents[i] += rs.getLong(2);
+            }
+        }
+    }
+
+    // ========== AGGREGATION ==========
+    // Paid rentals starting in [fromDay, toDay), grouped by the dimension: count, gross, commission
+    public static GroupResult revenueBy(Dimension dim, LocalDate from, LocalDate to) throws SQLException {
+        Snapshot s = current();
+        int fromDay = (int) from.toEpochDay(), toDay = (int) to.toEpochDay();
+        int[] groupOfVehicle = null;
+        int groups;
+        int firstWeek = Math.floorDiv(fromDay + 3, 7);   // weeks start on Monday; epoch day 0 was a Thursday
+        switch (dim) {
+            case OWNER: groupOfVehicle = s.ownerCode; groups = s.ownerCount; break;
+            case MAKE: groupOfVehicle = s.makeCode; groups = s.makes.size(); break;
+            case LOCATION: groupOfVehicle = s.locationCode; groups = s.locations.size(); break;
+            default: groups = Math.floorDiv(toDay - 1 + 3, 7) - firstWeek + 1;
+        }
+
+        long[][] sums = ForkJoinPool.commonPool().invoke(
+            new GroupTask(s, groupOfVehicle, firstWeek, Math.max(groups, 0), fromDay, toDay, 0, s.rentalCount));
+
+        String[] labels = new String[groups];
+        for (int g = 0; g < groups; g++) {
+            switch (dim) {
+                case OWNER: labels[g] = "User #" + s.ownerIds[g]; break;
+                case MAKE: labels[g] = s.makes.decode(g); break;
+                case LOCATION: labels[g] = s.locations.decode(g); break;
+                default: labels[g] = "Week of " + LocalDate.ofEpochDay((long) (firstWeek + g) * 7 - 3);
+            }
+        }
+        return new GroupResult(labels, sums[0], sums[1], sums[2]);
+    }
+
+    static class GroupTask extends RecursiveTask<long[][]> {
+        private static final long serialVersionUID = 1L;
+        final Snapshot s; final int[] groupOfVehicle; final int firstWeek, groups, fromDay, toDay, lo, hi;
+
+        GroupTask(Snapshot s, int[] groupOfVehicle, int firstWeek, int groups, int fromDay, int toDay, int lo, int hi) {
+            this.s = s; this.groupOfVehicle = groupOfVehicle; this.firstWeek = firstWeek; this.groups = groups;
+            this.fromDay = fromDay; this.toDay = toDay; this.lo = lo; this.hi = hi;
+        }
+
+        @Override protected long[][] compute() {
+            if (hi - lo > LEAF_ROWS) {
+                int mid = (lo + hi) >>> 1;
+                GroupTask left = new GroupTask(s, groupOfVehicle, firstWeek, groups, fromDay, toDay, lo, mid);
+                left.fork();
+                long[][] right = new GroupTask(s, groupOfVehicle, firstWeek, groups, fromDay, toDay, mid, hi).compute();
+                long[][] sums = left.join();
+                for (int k = 0; k < 3; k++) {
+                    for (int g = 0; g < groups; g++) sums[k][g] += right[k][g];
+                }
+                return sums;
+            }
+            long[] count = new long[groups], gross = new long[groups], commission = new long[groups];
+            int[] start = s.startDay, vehicle = s.rentalVehicle;
+            long[] amount = s.amountCents, fee = s.commissionCents;
+            boolean[] paid = s.paid;
+            if (groupOfVehicle != null) {
+                for (int i = lo; i < hi; i++) {
+                    int d = start[i];
+                    if (!paid[i] || d < fromDay || d >= toDay) continue;
+                    int g = groupOfVehicle[vehicle[i]];
+                    count[g]++; gross[g] += amount[i]; commission[g] += fee[i];
+                }
+            } else {
+                int firstMonday = firstWeek * 7 - 3;      // <= fromDay, so the division below never sees negatives
+                for (int i = lo; i < hi; i++) {
+                    int d = start[i];
+                    if (!paid[i] || d < fromDay || d >= toDay) continue;
+                    int g = (d - firstMonday) / 7;
+                    count[g]++; gross[g] += amount[i]; commission[g] += fee[i];
+                }
+            }
+            return new long[][] {count, gross, commission};
+        }
+    }
+
+    // Booked (ACTIVE/COMPLETED) days per vehicle overlapping [fromDay, toDay), indexed like the snapshot
+    public static long[] bookedDays(Snapshot s, int fromDay, int toDay) {
+        return ForkJoinPool.commonPool().invoke(new UtilizationTask(s, fromDay, toDay, 0, s.rentalCount));
+    }
+
+    static class UtilizationTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+        final Snapshot s; final int fromDay, toDay, lo, hi;
+
+        UtilizationTask(Snapshot s, int fromDay, int toDay, int lo, int hi) {
+            this.s = s; this.fromDay = fromDay; this.toDay = toDay; this.lo = lo; this.hi = hi;
+        }
+
+        @Override protected long[] compute() {
+            if (hi - lo > LEAF_ROWS) {
+                int mid = (lo + hi) >>> 1;
+                UtilizationTask left = new UtilizationTask(s, fromDay, toDay, lo, mid);
+                left.fork();
+                long[] right = new UtilizationTask(s, fromDay, toDay, mid, hi).compute();
+                long[] days = left.join();
+                for (int v = 0; v < days.length; v++) days[v] += right[v];
+                return days;
+            }
+            long[] days = new long[s.vehicleCount];
+            byte active = (byte) s.activeStatus, completed = (byte) s.completedStatus;
+            for (int i = lo; i < hi; i++) {
+                byte st = s.status[i];
+                if (st != active && st != completed) continue;
+                int overlap = Math.min(s.endDay[i], toDay) - Math.max(s.startDay[i], fromDay);
+                if (overlap > 0) days[s.rentalVehicle[i]] += overlap;
+            }
+            return days;
+        }
+    }
+
+    // ========== REPORTS ==========
+    public static void printRevenue(Dimension dim, LocalDate from, LocalDate to) {
+        try {
+            long start = System.nanoTime();
+            GroupResult r = revenueBy(dim, from, to);
+            long micros = (System.nanoTime() - start) / 1000;
+            if (dim == Dimension.OWNER) labelOwners(r.labels, current());
+
+            Integer[] order = new Integer[r.labels.length];
+            for (int g = 0; g < order.length; g++) order[g] = g;
+            if (dim != Dimension.WEEK) Arrays.sort(order, (a, b) -> Long.compare(r.grossCents[b], r.grossCents[a]));
+
+            System.out.println("\n=== REVENUE BY " + dim + " (" + from + " to " + to + ") ===");
+            System.out.printf("%-32s %10s %14s %14s\n", dim, "Rentals", "Gross", "Commission");
+            long rentals = 0, gross = 0, commission = 0;
+            for (int g : order) {
+                if (r.rentals[g] == 0) continue;
+                System.out.printf("%-32s %10d %14s %14s\n", r.labels[g], r.rentals[g],
+                                  money(r.grossCents[g]), money(r.commissionCents[g]));
+                rentals += r.rentals[g]; gross += r.grossCents[g]; commission += r.commissionCents[g];
+            }
+            System.out.printf("%-32s %10d %14s %14s\n", "TOTAL", rentals, money(gross), money(commission));
+            System.out.println("Query time: " + micros / 1000.0 + " ms over " + current().rentalCount + " rentals");
+        } catch (SQLException e) {
+            System.err.println("[✗] Error building analytics snapshot: " + e.getMessage());
+        }
+    }
+
+    public static void printUtilization(LocalDate from, LocalDate to, int limit) {
+        try {
+            Snapshot s = current();
+            int fromDay = (int) from.toEpochDay(), toDay = (int) to.toEpochDay();
+            long start = System.nanoTime();
+            long[] booked = bookedDays(s, fromDay, toDay);
+            long micros = (System.nanoTime() - start) / 1000;
+            int span = Math.max(1, toDay - fromDay);
+
+            Integer[] order = new Integer[s.vehicleCount];
+            long total = 0;
+            for (int v = 0; v < order.length; v++) { order[v] = v; total += booked[v]; }
+            Arrays.sort(order, (a, b) -> Long.compare(booked[b], booked[a]));
+
+            System.out.println("\n=== VEHICLE UTILIZATION (" + from + " to " + to + ") ===");
+            System.out.printf("%-10s %-15s %-25s %10s %10s\n", "VehicleID", "Make", "Location", "Days", "Util %");
+            for (int k = 0; k < Math.min(limit, order.length); k++) {
+                int v = order[k];
+                System.out.printf("%-10d %-15s %-25s %10d %9.1f%%\n", s.vehicleId[v], s.makes.decode(s.makeCode[v]),
+                                  s.locations.decode(s.locationCode[v]), booked[v], 100.0 * booked[v] / span);
+            }
+            System.out.printf("Fleet average: %.1f%%  Query time: %s ms\n",
+                              s.vehicleCount == 0 ? 0 : 100.0 * total / ((long) span * s.vehicleCount), micros / 1000.0);
+        } catch (SQLException e) {
+            System.err.println("[✗] Error building analytics snapshot: " + e.getMessage());
+        }
+    }
+
+    // Owners ranked by earnings (gross minus admin commission) on paid rentals in the range
+    public static void printTopEarners(LocalDate from, LocalDate to, int limit) {
+        try {
+            GroupResult r = revenueBy(Dimension.OWNER, from, to);
+            labelOwners(r.labels, current());
+            Integer[] order = new Integer[r.labels.length];
+            for (int g = 0; g < order.length; g++) order[g] = g;
+            Arrays.sort(order, (a, b) -> Long.compare(r.grossCents[b] - r.commissionCents[b],
+                                                     r.grossCents[a] - r.commissionCents[a]));
+
+            System.out.println("\n=== TOP EARNERS (" + from + " to " + to + ") ===");
+            System.out.printf("%-4s %-32s %10s %14s\n", "#", "Owner", "Rentals", "Earnings");
+            int rank = 0;
+            for (int g : order) {
+                long earnings = r.grossCents[g] - r.commissionCents[g];
+                if (rank == limit || earnings <= 0) break;
+                System.out.printf("%-4d %-32s %10d %14s\n", ++rank, r.labels[g], r.rentals[g], money(earnings));
+            }
+            if (rank == 0) System.out.println("No owner earnings in this period.");
+        } catch (SQLException e) {
+            System.err.println("[✗] Error building analytics snapshot: " + e.getMessage());
+        }
+    }
+
+    // Replaces "User #id" labels with names, in one query for all owners in the snapshot
+    private static void labelOwners(String[] labels, Snapshot s) {
+        if (s.ownerCount == 0) return;
+        StringBuilder in = new StringBuilder();
+        for (int g = 0; g < s.ownerCount; g++) in.append(g == 0 ? "" : ",").append(s.ownerIds[g]);
+        Map<Integer, String> names;
+        try {
+            names = Resilience.call("labelOwners", Resilience.Policy.READ, conn -> {
+                Map<Integer, String> found = new HashMap<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT UserID, FullName FROM Users WHERE UserID IN (" + in + ")")) {
+                    while (rs.next()) found.put(rs.getInt(1), rs.getString(2));
+                }
+                return found;
+            });
+        } catch (SQLException | DataAccessException e) {
+            return;
+        }
+        for (int g = 0; g < labels.length; g++) {
+            String name = names.get(s.ownerIds[g]);
+            if (name != null) labels[g] = name + " (#" + s.ownerIds[g] + ")";
+        }
+    }
+
+    private static String money(long cents) {
+        return String.format("$%,.2f", cents / 100.0);
+    }
+
+    public static void printSnapshotInfo() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            System.out.println("No analytics snapshot loaded yet.");
+            return;
+        }
+        System.out.println("Snapshot: " + s.vehicleCount + " vehicles, " + s.rentalCount + " rentals, " +
+                           s.makes.size() + " makes, " + s.locations.size() + " locations; loaded " +
+                           new Timestamp(s.loadedAt) + " in " + s.loadMillis + " ms");
+    }
+}
@@ -0,0 +1,487 @@
+// Vehicle Rental System - Approval Engine
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+// APPROVAL ENGINE
+// Decides new rentals as soon as sp_CreateRental commits (RENTAL_CREATED on the event bus)
+// instead of leaving every one PENDING for an admin. For each rental one query gathers its
+// facts (amount, customer history from Rentals, wallet coverage, vehicle and owner track
+// record) into a double[] indexed by fact. The ApprovalRules (migration V11) are compiled into
+// flat arrays of (fact, operator, threshold) terms, so a decision is a scan over primitives
+// with no parsing or boxing. APPROVE rules call sp_ApproveRental under a key derived from the
+// rental id, so two processes, or a retry, approve a rental once. REFER rules, and rentals
+// matching no rule, stay PENDING for the admins.
+//
+// Every decision is written to ApprovalDecisions before it is acted on (INSERT IGNORE: the
+// first process to decide a rental owns it); an approval that does not go through is marked
+// FAILED. At startup, pending rentals without a decision are evaluated, and pending rentals whose
+// approval failed or never completed (APPROVED/FAILED, e.g. the process died in between) are
+// decided again, so none are missed while the engine was down.
+class ApprovalEngine {
+    private static final String[] FACTS = {
+        "amount", "days", "completed", "rejected", "open", "balance", "coverage",
+        "accountDays", "listed", "year", "rate", "ownerCompleted"
+    };
+    private static final String[] OPS = {"<", "<=", ">", ">=", "=", "!="};
+    private static final Pattern TERM = Pattern.compile("\\s*([A-Za-z]+)\\s*(<=|>=|!=|<|>|=)\\s*(-?\\d+(?:\\.\\d+)?)\\s*");
+
+    // Enabled rules in priority order, as parallel arrays; terms of rule r are start[r]..start[r+1]
+    static final class RuleSet {
+        final int[] ruleIds;
+        final boolean[] approve;
+        final String[] descriptions;
+        final int[] start;
+        final int[] fact;
+        final byte[] op;
+        final double[] threshold;
+
+        RuleSet(List<Object[]> rules) {
+            int n = rules.size(), terms = 0;
+            for (Object[] r : rules) terms += ((int[]) r[3]).length;
+            ruleIds = new int[n]; approve = new boolean[n]; descriptions = new String[n];
+            start = new int[n + 1]; fact = new int[terms]; op = new byte[terms]; threshold = new double[terms];
+            int t = 0;
+            for (int i = 0; i < n; i++) {
+                Object[] r = rules.get(i);
+                ruleIds[i] = (Integer) r[0];
+                approve[i] = (Boolean) r[1];
+                descriptions[i] = (String) r[2];
+                start[i] = t;
+                int[] f = (int[]) r[3];
+                byte[] o = (byte[]) r[4];
+                double[] v = (double[]) r[5];
+                for (int k = 0; k < f.length; k++, t++) {
+                    fact[t] = f[k]; op[t] = o[k]; threshold[t] = v[k];
+                }
+            }
+            start[n] = t;
+        }
+
+        // Index of the first matching rule, or -1
+        int decide(double[] facts) {
+            for (int r = 0; r < ruleIds.length; r++) {
+                boolean match = true;
+                for (int t = start[r]; t < start[r + 1] && match; t++) {
+                    double x = facts[fact[t]], y = threshold[t];
+                    switch (op[t]) {
+                        case 0: match = x < y; break;
+                        case 1: match = x <= y; break;
+                        case 2: match = x > y; break;
+                        case 3: match = x >= y; break;
+                        case 4: match = x == y; break;
+                        default: match = x != y;
+                    }
+                }
+                if (match) return r;
+            }
+            return -1;
+        }
+    }
+
+    private static ApprovalEngine instance;
+
+    private volatile RuleSet rules;
+    private int systemAdminId, pendingId, activeId, completedId, cancelledId, rejectedId;
+    private ExecutorService executor;
+    private EventBus.Subscription subscription;
+    private volatile long approved, referred, unmatched, failed, latencyTotalMs, latencyMaxMs;
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start() {
+        if (instance != null) return;
+        ApprovalEngine engine = new ApprovalEngine();
+        Map<Integer, Boolean> backlog;
+        try (Connection conn = DatabaseManager.openConnection()) {
+            backlog = engine.load(conn);
+        } catch (SQLException e) {
+            System.err.println("[✗] Approval engine not started: " + e.getMessage());
+            return;
+        }
+        if (engine.systemAdminId == 0) {
+            System.err.println("[✗] Approval engine not started: no active admin account to approve as.");
+            return;
+        }
+        engine.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "approval-engine");
+            t.setDaemon(true);
+            return t;
+        });
+        for (Map.Entry<Integer, Boolean> b : backlog.entrySet()) {
+            int rentalId = b.getKey();
+            boolean redecide = b.getValue();
+            engine.executor.execute(() -> engine.evaluate(rentalId, 0, redecide));
+        }
+        engine.subscription = EventBus.subscribe("approval-engine", engine::onEvents, "RENTAL");
+        instance = engine;
+        System.out.println("[✓] Approval engine ready with " + engine.rules.ruleIds.length + " rules" +
+                           (backlog.isEmpty() ? "." : ", deciding " + backlog.size() + " waiting rentals."));
+    }
+
+    public static synchronized void stop() {
+        if (instance == null) return;
+        if (instance.subscription != null) EventBus.unsubscribe(instance.subscription);
+        instance.executor.shutdown();
+        instance = null;
+    }
+
+    static boolean isRunning() {
+        return instance != null;
+    }
+
+    // Pending rentals to decide, by id: true if an earlier approval of it did not complete
+    private Map<Integer, Boolean> load(Connection conn) throws SQLException {
+        pendingId = statusId(conn, "PENDING");
+        activeId = statusId(conn, "ACTIVE");
+        completedId = statusId(conn, "COMPLETED");
+        cancelledId = statusId(conn, "CANCELLED");
+        rejectedId = statusId(conn, "REJECTED");
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MIN(u.UserID), 0) FROM Users u " +
+                                              "JOIN UserRoles ur ON u.RoleID = ur.RoleID WHERE ur.RoleName = 'ADMIN' AND u.IsActive = 1")) {
+            rs.next();
+            systemAdminId = rs.getInt(1);
+        }
+        rules = compile(conn);
+        Map<Integer, Boolean> backlog = new LinkedHashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT r.RentalID, d.RentalID IS NOT NULL FROM Rentals r LEFT JOIN ApprovalDecisions d ON d.RentalID = r.RentalID " +
+                "WHERE r.StatusID = ? AND (d.RentalID IS NULL OR d.Decision IN ('APPROVED', 'FAILED')) ORDER BY r.RentalID")) {
+            ps.setInt(1, pendingId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) backlog.put(rs.getInt(1), rs.getBoolean(2));
+        }
+        return backlog;
+    }
+
+    private static int statusId(Connection conn, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT StatusID FROM RentalStatuses WHERE StatusName = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    // ========== RULES ==========
+    private static RuleSet compile(Connection conn) throws SQLException {
+        List<Object[]> compiled = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT RuleID, Action, Conditions, Description FROM ApprovalRules " +
+                                              "WHERE IsEnabled = TRUE ORDER BY Priority, RuleID")) {
+            while (rs.next()) {
+                try {
+                    Object[] terms = parse(rs.getString(3));
+                    compiled.add(new Object[]{rs.getInt(1), rs.getString(2).equals("APPROVE"), rs.getString(4),
+                                              terms[0], terms[1], terms[2]});
+                } catch (IllegalArgumentException e) {
+                    System.err.println("[!] Approval rule #" + rs.getInt(1) + " skipped: " + e.getMessage());
+                }
+            }
+        }
+        return new RuleSet(compiled);
+    }
+
+    // "fact op number [AND ...]" -> {int[] facts, byte[] ops, double[] thresholds}
+    static Object[] parse(String conditions) {
+        String[] parts = conditions.trim().split("(?i)\\s+AND\\s+");
+        int[] facts = new int[parts.length];
+        byte[] ops = new byte[parts.length];
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            Matcher m = TERM.matcher(parts[i]);
+            if (!m.matches()) throw new IllegalArgumentException("cannot read '" + parts[i].trim() + "'");
+            facts[i] = Arrays.asList(FACTS).indexOf(m.group(1));
+            if (facts[i] < 0) throw new IllegalArgumentException("unknown fact '" + m.group(1) + "' (known: " + String.join(", ", FACTS) + ")");
+            ops[i] = (byte) Arrays.asList(OPS).indexOf(m.group(2));
+            values[i] = Double.parseDouble(m.group(3));
+        }
+        return new Object[]{facts, ops, values};
+    }
+
+    private void reload() throws SQLException {
+        rules = Resilience.call("load approval rules", Resilience.Policy.READ, ApprovalEngine::compile);
+    }
+
+    // ========== DECISIONS ==========
+    private void onEvents(List<EventBus.Event> events) {
+        for (EventBus.Event e : events) {
+            if (e.type.equals("RENTAL_CREATED") && e.intField("statusId") == pendingId) {
+                int rentalId = e.aggregateId;
+                long createdAt = e.createdAt;
+                executor.execute(() -> evaluate(rentalId, createdAt, false));
+            }
+        }
+    }
+
+    // redecide: the rental already has an APPROVED/FAILED decision whose approval did not complete
+    private void evaluate(int rentalId, long createdAt, boolean redecide) {
+        boolean approving = false;
+        try {
+            double[] facts = facts(rentalId);
+            if (facts == null) return;   // no longer pending
+            RuleSet rs = rules;
+            int r = rs.decide(facts);
+            boolean approve = r >= 0 && rs.approve[r];
+            Integer ruleId = r >= 0 ? rs.ruleIds[r] : null;
+            String decision = approve ? "APPROVED" : "REFERRED";
+            if (!(redecide ? redecide(rentalId, decision, ruleId, describe(facts))
+                           : record(rentalId, decision, ruleId, describe(facts)))) {
+                return;
+            }
+            if (!approve) {
+                if (r < 0) unmatched++; else referred++;
+                return;
+            }
+            approving = true;
+            String key = UUID.nameUUIDFromBytes(("auto-approve:" + rentalId).getBytes(StandardCharsets.UTF_8)).toString();
+            if (DataStore.approveRentalWithProcedure(rentalId, systemAdminId, key)) {
+                approved++;
+                if (createdAt > 0) {
+                    long latency = Math.max(0, System.currentTimeMillis() - createdAt);
+                    latencyTotalMs += latency;
+                    latencyMaxMs = Math.max(latencyMaxMs, latency);
+                }
+            } else {
+                failed++;
+                record(rentalId, "FAILED", ruleId, null);
+            }
+        } catch (SQLException | DataAccessException e) {
+            failed++;
+            System.err.println("[!] Approval engine could not decide rental #" + rentalId + ": " + e.getMessage());
+            if (approving) markFailed(rentalId);
+        }
+    }
+
+    // An APPROVED row whose approval threw must not read as done; the next startup retries it
+    private void markFailed(int rentalId) {
+        try {
+            record(rentalId, "FAILED", null, null);
+        } catch (SQLException | DataAccessException e) {
+            System.err.println("[!] Could not mark rental #" + rentalId + " FAILED (retried at startup): " + e.getMessage());
+        }
+    }
+
+    // Facts of a pending rental in FACTS order, or null if it is not pending
+    private double[] facts(int rentalId) throws SQLException {
+        String sql = "SELECT r.StatusID, r.TotalAmount, DATEDIFF(r.ReturnDate, r.RentalDate), " +
+            "(SELECT COUNT(*) FROM Rentals h WHERE h.UserID = r.UserID AND h.StatusID = ?), " +
+            "(SELECT COUNT(*) FROM Rentals h WHERE h.UserID = r.UserID AND h.StatusID IN (?, ?)), " +
+            "(SELECT COUNT(*) FROM Rentals h WHERE h.UserID = r.UserID AND h.StatusID IN (?, ?) AND h.RentalID <> r.RentalID), " +
+            "u.WalletBalance, DATEDIFF(NOW(), u.CreatedAt), v.IsUserListed, v.Year, v.DailyRate, " +
+            "(SELECT COUNT(*) FROM Rentals o JOIN Vehicles ov ON o.VehicleID = ov.VehicleID " +
+            " WHERE ov.OwnerID = v.OwnerID AND o.StatusID = ?) " +
+            "FROM Rentals r JOIN Users u ON u.UserID = r.UserID JOIN Vehicles v ON v.VehicleID = r.VehicleID " +
+            "WHERE r.RentalID = ?";
+        return Resilience.call("approval facts", Resilience.Policy.READ, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, completedId);
+                ps.setInt(2, cancelledId);
+                ps.setInt(3, rejectedId);
+                ps.setInt(4, pendingId);
+                ps.setInt(5, activeId);
+                ps.setInt(6, completedId);
+                ps.setInt(7, rentalId);
+                ResultSet rs = ps.executeQuery();
+                if (!rs.next() || rs.getInt(1) != pendingId) return null;
+                double amount = rs.getDouble(2), balance = rs.getDouble(7);
+                return new double[]{
+                    amount, rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getInt(6), balance,
+                    amount > 0 ? balance / amount : Double.MAX_VALUE,
+                    rs.getInt(8), rs.getBoolean(9) ? 1 : 0, rs.getInt(10), rs.getDouble(11), rs.getInt(12)
+                };
+            }
+        });
+    }
+
+    private static String describe(double[] facts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < FACTS.length; i++) {
+            double f = facts[i];
+            sb.append(i == 0 ? "" : " ").append(FACTS[i]).append('=')
+              .append(f == Math.rint(f) && Math.abs(f) < 1e12 ? Long.toString((long) f) : String.format(Locale.ROOT, "%.2f", f));
+        }
+        return sb.toString();
+    }
+
+    // Inserts the decision, or (facts == null) marks it FAILED; false if another process decided first
+    private boolean record(int rentalId, String decision, Integer ruleId, String facts) throws SQLException {
+        int rows = Resilience.call("record approval decision", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+            String sql = facts == null ? "UPDATE ApprovalDecisions SET Decision = ? WHERE RentalID = ?"
+                       : "INSERT IGNORE INTO ApprovalDecisions (Decision, RentalID, RuleID, Facts) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, decision);
+                ps.setInt(2, rentalId);
+                if (facts != null) {
+                    if (ruleId == null) ps.setNull(3, Types.INTEGER); else ps.setInt(3, ruleId);
+                    ps.setString(4, facts);
+                }
+                return ps.executeUpdate();
+            }
+        });
+        return rows > 0;
+    }
+
+    // Replaces an APPROVED/FAILED decision that never completed; false if another process got to it first
+    private boolean redecide(int rentalId, String decision, Integer ruleId, String facts) throws SQLException {
+        int rows = Resilience.call("redecide approval", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(
+                     "UPDATE ApprovalDecisions SET Decision = ?, RuleID = ?, Facts = ?, DecidedAt = CURRENT_TIMESTAMP " +
+                     "WHERE RentalID = ? AND Decision IN ('APPROVED', 'FAILED')")) {
+                ps.setString(1, decision);
+                if (ruleId == null) ps.setNull(2, Types.INTEGER); else ps.setInt(2, ruleId);
+                ps.setString(3, facts);
+                ps.setInt(4, rentalId);
+                return ps.executeUpdate();
+            }
+        });
+        return rows > 0;
+    }
+
+    // ========== ADMIN API ==========
+    // Why each of these rentals was left for a human, by rental id
+    static Map<Integer, String> reasons(List<Rental> rentals) {
+        Map<Integer, String> reasons = new HashMap<>();
+        if (instance == null || rentals.isEmpty()) return reasons;
+        StringBuilder ids = new StringBuilder();
+        for (Rental r : rentals) ids.append(ids.length() == 0 ? "" : ",").append(r.getRentalId());
+        try {
+            Resilience.call("approval reasons", Resilience.Policy.READ, conn -> {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(
+                         "SELECT d.RentalID, d.Decision, d.RuleID, ar.Description, d.Facts FROM ApprovalDecisions d " +
+                         "LEFT JOIN ApprovalRules ar ON ar.RuleID = d.RuleID WHERE d.RentalID IN (" + ids + ")")) {
+                    while (rs.next()) {
+                        String decision = rs.getString(2);
+                        String why = rs.getObject(3) == null ? "no rule matched"
+                                   : "rule #" + rs.getInt(3) + " (" + rs.getString(4) + ")";
+                        if (!decision.equals("REFERRED")) why = "auto-approval did not complete, " + why;
+                        reasons.put(rs.getInt(1), why + " | " + rs.getString(5));
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error reading approval decisions: " + e.getMessage());
+        }
+        return reasons;
+    }
+
+    static void printRules() {
+        try {
+            List<String> rows = Resilience.call("list approval rules", Resilience.Policy.READ, conn -> {
+                List<String> out = new ArrayList<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT RuleID, Priority, Action, IsEnabled, Conditions, Description " +
+                                                      "FROM ApprovalRules ORDER BY Priority, RuleID")) {
+                    while (rs.next()) {
+                        out.add(String.format("#%-3d %4d %-7s %-3s %-40s %s", rs.getInt(1), rs.getInt(2), rs.getString(3),
+                                              rs.getBoolean(4) ? "on" : "off", rs.getString(5), rs.getString(6)));
+                    }
+                }
+                return out;
+            });
+            System.out.println("\n=== APPROVAL RULES (first match wins; no match -> admin) ===");
+            System.out.println(String.format("%-4s %4s %-7s %-3s %-40s %s", "ID", "Prio", "Action", "", "Conditions", "Description"));
+            rows.forEach(System.out::println);
+            System.out.println("Facts: " + String.join(", ", FACTS));
+        } catch (SQLException e) {
+            System.err.println("[✗] Error listing approval rules: " + e.getMessage());
+        }
+    }
+
+    static boolean addRule(int priority, String action, String conditions, String description) {
+        try {
+            parse(conditions);
+        } catch (IllegalArgumentException e) {
+            System.out.println("[-] Invalid conditions: " + e.getMessage());
+            return false;
+        }
+        try {
+            Resilience.call("add approval rule", Resilience.Policy.WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO ApprovalRules (Priority, Action, Conditions, Description) VALUES (?, ?, ?, ?)")) {
+                    ps.setInt(1, priority);
+                    ps.setString(2, action);
+                    ps.setString(3, conditions.trim());
+                    ps.setString(4, description);
+                    return ps.executeUpdate();
+                }
+            });
+            if (instance != null) instance.reload();
+            DataStore.logEvent("APPROVAL_RULE", action + " rule added: " + conditions.trim(), 0);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error adding approval rule: " + e.getMessage());
+            return false;
+        }
+    }
+
+    static boolean setEnabled(int ruleId, boolean enabled) {
+        try {
+            int rows = Resilience.call("toggle approval rule", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE ApprovalRules SET IsEnabled = ? WHERE RuleID = ?")) {
+                    ps.setBoolean(1, enabled);
+                    ps.setInt(2, ruleId);
+                    return ps.executeUpdate();
+                }
+            });
+            if (rows == 0) return false;
+            if (instance != null) instance.reload();
+            DataStore.logEvent("APPROVAL_RULE", "Rule #" + ruleId + (enabled ? " enabled" : " disabled"), 0);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error updating approval rule: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Times the compiled rules over random fact vectors
+    static void benchmark(int evaluations) {
+        ApprovalEngine engine = instance;
+        if (engine == null) {
+            System.out.println("Approval engine is not running.");
+            return;
+        }
+        RuleSet rs = engine.rules;
+        Random random = new Random(42);
+        double[][] samples = new double[1024][];
+        for (int i = 0; i < samples.length; i++) {
+            double amount = 20 + random.nextInt(2000);
+            double balance = random.nextInt(3000);
+            samples[i] = new double[]{amount, 1 + random.nextInt(14), random.nextInt(10), random.nextInt(3), random.nextInt(3),
+                                      balance, balance / amount, random.nextInt(1000), random.nextInt(2), 2000 + random.nextInt(25),
+                                      20 + random.nextInt(200), random.nextInt(50)};
+        }
+        int[] hits = new int[rs.ruleIds.length + 1];
+        for (int i = 0; i < 100_000; i++) rs.decide(samples[i & 1023]);   // warm-up
+        long started = System.nanoTime();
+        for (int i = 0; i < evaluations; i++) hits[rs.decide(samples[i & 1023]) + 1]++;
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d evaluations of %d rules in %.3f s: %.1f M decisions/s%n",
+                          evaluations, rs.ruleIds.length, seconds, evaluations / seconds / 1e6);
+        System.out.print("First match: none " + hits[0]);
+        for (int r = 0; r < rs.ruleIds.length; r++) System.out.print(", #" + rs.ruleIds[r] + " " + hits[r + 1]);
+        System.out.println();
+    }
+
+    public static void printStatus() {
+        ApprovalEngine engine = instance;
+        if (engine == null) {
+            System.out.println("Approval engine is not running.");
+            return;
+        }
+        long approved = engine.approved;
+        System.out.println("\n=== APPROVAL ENGINE ===");
+        System.out.println("Rules: " + engine.rules.ruleIds.length + " enabled  Approving as user #" + engine.systemAdminId);
+        System.out.println("Approved: " + engine.approved + "  Referred by rule: " + engine.referred +
+                           "  No rule matched: " + engine.unmatched + "  Failed: " + engine.failed);
+        if (approved > 0) {
+            System.out.println("Commit-to-approval latency: avg " + engine.latencyTotalMs / approved + " ms, max " +
+                               engine.latencyMaxMs + " ms");
+        }
+        System.out.println("=======================\n");
+    }
+}
@@ -0,0 +1,701 @@
+// Vehicle Rental System - Audit Log Search
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// AUDIT INDEX
+// Searches SystemLogs by type, user, time range and words without touching MySQL. A tailer
+// reads new rows in LogID order (stopping at an id gap until it fills or GAP_TIMEOUT_MS passes,
+// like EventBus) into an in-memory buffer that is searched by scanning. Every FLUSH_DOCS rows or
+// FLUSH_SECONDS the buffer is written as an immutable segment file and memory-mapped.
+//
+// Segment layout (big-endian), docs sorted by (CreatedAt, LogID) so a time range is two binary
+// searches over the times column:
+//   header   int MAGIC, int FORMAT, int docCount, int termCount, long minLogId, long maxLogId,
+//            long minTime, long maxTime, long timesOffset, long docOffsetsOffset, long termIndexOffset
+//   store    per doc: long logId, long time, int userId (-1 = none), short typeLen, type,
+//            int messageLen, message (UTF-8), so hits are shown straight from the file
+//   times    docCount longs            doc offsets   docCount longs into the store
+//   terms    per term: short len, term (UTF-8), int docFreq, int postingsLen, postings as
+//            varint deltas of doc ordinals
+//   index    termCount longs, term offsets in unsigned byte order of the term, for binary search
+// Terms are "t:" + LogType, "u:" + UserID and "w:" + each lowercased letter/digit run of the
+// message. A query intersects the postings of its terms inside the ordinal range of its times.
+//
+// The manifest (segment names and the highest LogID they hold) is replaced atomically after
+// each flush or merge; a restart reopens the segments and tails from that LogID again, and
+// segment files the manifest does not name are leftovers of an interrupted merge. A merger
+// thread combines runs of MERGE_FACTOR neighbouring segments of the same size tier.
+class AuditIndex {
+    private static final int MAGIC = 0x41554458;             // "AUDX"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 4 * 4 + 8 * 7;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int TAIL_BATCH = 10_000;
+    private static final long TAIL_SECONDS = 2;
+    private static final long GAP_TIMEOUT_MS = 2000;
+    private static final int FLUSH_DOCS = 50_000;
+    private static final long FLUSH_SECONDS = 60;
+    private static final int MERGE_FACTOR = 4;
+    private static final int MAX_SEGMENT_DOCS = 2_000_000;
+    private static final int MAX_TOKEN = 40;
+    private static final Path DIR = Paths.get(System.getProperty("rental.audit.dir", "audit"));
+
+    private static volatile AuditIndex instance;
+
+    private final Object manifestLock = new Object();
+    private volatile View view = new View(Collections.emptyList(), Collections.emptyList());
+    private ScheduledExecutorService tailer;
+    private ExecutorService merger;
+    private Connection conn;
+    private long indexedThrough;                             // highest LogID in segments
+    private long readThrough;                                // highest LogID read (segments + buffer)
+    private long bufferSince;
+    private long gapId = -1, gapSince;
+    private int nextSegment = 1;
+    private volatile long flushes, merges, lastTailMs;
+
+    static final class Doc {
+        final long logId, time;
+        final int userId;
+        final String type, message;
+
+        Doc(long logId, long time, int userId, String type, String message) {
+            this.logId = logId;
+            this.time = time;
+            this.userId = userId;
+            this.type = type;
+            this.message = message;
+        }
+
+        List<String> terms() {
+            List<String> terms = new ArrayList<>();
+            terms.add("t:" + type);
+            if (userId >= 0) terms.add("u:" + userId);
+            for (String word : tokenize(message)) terms.add("w:" + word);
+            return terms;
+        }
+
+        @Override public String toString() {
+            String text = message.length() > 60 ? message.substring(0, 57) + "..." : message;
+            return String.format("%-8d %-20s %-19s %-22s %s", logId, new Timestamp(time).toString().substring(0, 19),
+                                 userId < 0 ? "" : "user #" + userId, type, text);
+        }
+    }
+
+    private static final class View {
+        final List<Segment> segments;
+        final List<Doc> buffer;
+
+        View(List<Segment> segments, List<Doc> buffer) {
+            this.segments = segments;
+            this.buffer = buffer;
+        }
+    }
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start() {
+        if (instance != null) return;
+        AuditIndex index = new AuditIndex();
+        try {
+            index.open();
+        } catch (IOException e) {
+            System.err.println("[✗] Audit index not started: " + e.getMessage());
+            return;
+        }
+        index.tailer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "audit-tailer");
+            t.setDaemon(true);
+            return t;
+        });
+        index.merger = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "audit-merger");
+            t.setDaemon(true);
+            return t;
+        });
+        index.tailer.scheduleWithFixedDelay(index::tail, 0, TAIL_SECONDS, TimeUnit.SECONDS);
+        index.merger.execute(index::merge);
+        instance = index;
+        System.out.println("[✓] Audit index open with " + index.view.segments.size() + " segments through log #" +
+                           index.indexedThrough + ".");
+    }
+
+    public static synchronized void stop() {
+        if (instance == null) return;
+        instance.tailer.shutdownNow();
+        instance.merger.shutdownNow();
+        try {
+            instance.tailer.awaitTermination(5, TimeUnit.SECONDS);
+            instance.merger.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (instance.conn != null) instance.conn.close();
+        } catch (SQLException ignored) {
+        }
+        instance = null;
+    }
+
+    public static void printStatus() {
+        AuditIndex index = instance;
+        System.out.println("\n=== AUDIT INDEX ===");
+        if (index == null) {
+            System.out.println("Not running.");
+        } else {
+            View v = index.view;
+            long docs = 0, bytes = 0;
+            for (Segment s : v.segments) {
+                docs += s.docCount;
+                bytes += s.buf.capacity();
+            }
+            System.out.printf("Segments: %d (%d rows, %.1f MB)  Buffered: %d  Read through log #%d%n",
+                              v.segments.size(), docs, bytes / 1e6, v.buffer.size(), index.readThrough);
+            System.out.println("Flushes: " + index.flushes + "  Merges: " + index.merges + "  Last tail: " +
+                               index.lastTailMs + " ms");
+        }
+        System.out.println("===================\n");
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(DIR);
+        Path manifest = DIR.resolve("manifest");
+        List<Segment> segments = new ArrayList<>();
+        Set<String> live = new HashSet<>();
+        if (Files.exists(manifest)) {
+            Properties p = new Properties();
+            try (InputStream in = Files.newInputStream(manifest)) {
+                p.load(in);
+            }
+            indexedThrough = Long.parseLong(p.getProperty("indexedThrough", "0"));
+            for (String name : p.getProperty("segments", "").split(",")) {
+                if (name.isEmpty()) continue;
+                segments.add(Segment.open(DIR.resolve(name)));
+                live.add(name);
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DIR, "seg-*")) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                if (name.endsWith(".idx")) nextSegment = Math.max(nextSegment, Integer.parseInt(name.substring(4, 12)) + 1);
+                if (!live.contains(name)) Files.deleteIfExists(f);
+            }
+        }
+        readThrough = indexedThrough;
+        view = new View(Collections.unmodifiableList(segments), Collections.emptyList());
+    }
+
+    private void writeManifest(List<Segment> segments) throws IOException {
+        StringBuilder names = new StringBuilder();
+        for (Segment s : segments) {
+            if (names.length() > 0) names.append(',');
+            names.append(s.file.getFileName());
+        }
+        Properties p = new Properties();
+        p.setProperty("indexedThrough", Long.toString(indexedThrough));
+        p.setProperty("segments", names.toString());
+        Path tmp = DIR.resolve("manifest.tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            p.store(out, "Audit index segments, oldest first");
+        }
+        Files.move(tmp, DIR.resolve("manifest"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ========== TAILING ==========
+    private void tail() {
+        long start = System.nanoTime();
+        try {
+            if (conn == null || !conn.isValid(2)) conn = DatabaseManager.openConnection();
+            List<Doc> batch;
+            do {
+                batch = fetch(readThrough);
+                if (!batch.isEmpty()) {
+                    List<Doc> buffer = new ArrayList<>(view.buffer);
+                    if (buffer.isEmpty()) bufferSince = System.currentTimeMillis();
+                    buffer.addAll(batch);
+                    readThrough = batch.get(batch.size() - 1).logId;
+                    synchronized (manifestLock) {
+                        view = new View(view.segments, Collections.unmodifiableList(buffer));
+                    }
+                }
+                List<Doc> buffer = view.buffer;
+                if (buffer.size() >= FLUSH_DOCS ||
+                    (!buffer.isEmpty() && System.currentTimeMillis() - bufferSince >= FLUSH_SECONDS * 1000)) {
+                    flush();
+                }
+            } while (batch.size() == TAIL_BATCH && !Thread.currentThread().isInterrupted());
+        } catch (SQLException e) {
+            System.err.println("[!] Audit tail failed, retrying: " + e.getMessage());
+            try {
+                if (conn != null) conn.close();
+            } catch (SQLException ignored) {
+            }
+            conn = null;
+        } catch (IOException e) {
+            System.err.println("[!] Audit segment not written, retrying: " + e.getMessage());
+        }
+        lastTailMs = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private List<Doc> fetch(long after) throws SQLException {
+        String sql = "SELECT LogID, LogType, LogMessage, UserID, CreatedAt FROM SystemLogs " +
+                     "WHERE LogID > ? ORDER BY LogID LIMIT ?";
+        List<Doc> docs = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, after);
+            ps.setInt(2, TAIL_BATCH);
+            try (ResultSet rs = ps.executeQuery()) {
+                long expected = after + 1;
+                while (rs.next()) {
+                    long id = rs.getLong(1);
+                    if (id != expected && after > 0 && !gapExpired(expected)) break;
+                    int userId = rs.getInt(4);
+                    docs.add(new Doc(id, rs.getTimestamp(5).getTime(), rs.wasNull() ? -1 : userId,
+                                     rs.getString(2), rs.getString(3)));
+                    expected = id + 1;
+                }
+            }
+        }
+        return docs;
+    }
+
+    private boolean gapExpired(long missingId) {
+        long now = System.currentTimeMillis();
+        if (gapId != missingId) {
+            gapId = missingId;
+            gapSince = now;
+            return false;
+        }
+        return now - gapSince >= GAP_TIMEOUT_MS;
+    }
+
+    private void flush() throws IOException {
+        List<Doc> buffer = view.buffer;
+        Segment segment = Segment.write(DIR.resolve(String.format("seg-%08d.idx", nextSegmentId())), buffer);
+        synchronized (manifestLock) {
+            List<Segment> segments = new ArrayList<>(view.segments);
+            segments.add(segment);
+            indexedThrough = buffer.get(buffer.size() - 1).logId;
+            writeManifest(segments);
+            view = new View(Collections.unmodifiableList(segments), Collections.emptyList());
+        }
+        flushes++;
+        merger.execute(this::merge);
+    }
+
+    // ========== MERGING ==========
+    private static int tier(int docs) {
+        int tier = 0;
+        for (long size = FLUSH_DOCS; docs >= size; size *= MERGE_FACTOR) tier++;
+        return tier;
+    }
+
+    // Only this thread removes segments, so the run it picked is still there at swap time; every
+    // view change happens under manifestLock so a flush and a merge cannot drop each other's work
+    private void merge() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Segment> run = null;
+            List<Segment> segments = view.segments;
+            for (int i = 0; i + MERGE_FACTOR <= segments.size() && run == null; i++) {
+                int tier = tier(segments.get(i).docCount);
+                long total = 0;
+                int j = i;
+                for (; j < i + MERGE_FACTOR && tier(segments.get(j).docCount) == tier; j++) total += segments.get(j).docCount;
+                if (j == i + MERGE_FACTOR && total <= MAX_SEGMENT_DOCS) run = new ArrayList<>(segments.subList(i, j));
+            }
+            if (run == null) return;
+            try {
+                List<Doc> docs = new ArrayList<>();
+                for (Segment s : run) {
+                    for (int ord = 0; ord < s.docCount; ord++) docs.add(s.doc(ord));
+                }
+                Segment merged = Segment.write(DIR.resolve(String.format("seg-%08d.idx", nextSegmentId())), docs);
+                synchronized (manifestLock) {
+                    List<Segment> next = new ArrayList<>(view.segments);
+                    int at = next.indexOf(run.get(0));
+                    next.removeAll(run);
+                    next.add(at, merged);
+                    writeManifest(next);
+                    view = new View(Collections.unmodifiableList(next), view.buffer);
+                }
+                // Mapped buffers stay readable for searches still holding the old view
+                for (Segment s : run) Files.deleteIfExists(s.file);
+                merges++;
+            } catch (IOException e) {
+                System.err.println("[!] Audit segment merge failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private int nextSegmentId() {
+        synchronized (manifestLock) {
+            return nextSegment++;
+        }
+    }
+
+    // ========== SEARCH ==========
+    static final class Query {
+        String type;
+        int userId = -1;
+        long from = Long.MIN_VALUE, to = Long.MAX_VALUE;      // CreatedAt in [from, to), epoch ms
+        List<String> words = new ArrayList<>();
+        int limit = 50;
+
+        List<String> terms() {
+            List<String> terms = new ArrayList<>();
+            if (type != null) terms.add("t:" + type);
+            if (userId >= 0) terms.add("u:" + userId);
+            for (String w : words) {
+                for (String token : tokenize(w)) terms.add("w:" + token);
+            }
+            return terms;
+        }
+
+        boolean matches(Doc d) {
+            if (d.time < from || d.time >= to) return false;
+            if (type != null && !type.equals(d.type)) return false;
+            if (userId >= 0 && userId != d.userId) return false;
+            if (words.isEmpty()) return true;
+            Set<String> tokens = new HashSet<>(tokenize(d.message));
+            for (String w : words) {
+                if (!tokens.containsAll(tokenize(w))) return false;
+            }
+            return true;
+        }
+    }
+
+    static final class Result {
+        final long total, micros;
+        final List<Doc> hits;
+
+        Result(long total, long micros, List<Doc> hits) {
+            this.total = total;
+            this.micros = micros;
+            this.hits = hits;
+        }
+    }
+
+    private static final Comparator<Doc> NEWEST_FIRST =
+        Comparator.comparingLong((Doc d) -> d.time).thenComparingLong(d -> d.logId).reversed();
+
+    // Newest matches first; null when the index is not running
+    public static Result search(Query q) {
+        AuditIndex index = instance;
+        return index == null ? null : search(index.view, q);
+    }
+
+    private static Result search(View view, Query q) {
+        long start = System.nanoTime();
+        List<byte[]> terms = new ArrayList<>();
+        for (String t : q.terms()) terms.add(t.getBytes(StandardCharsets.UTF_8));
+        long total = 0;
+        List<Doc> hits = new ArrayList<>();
+        for (Segment s : view.segments) {
+            if (s.maxTime < q.from || s.minTime >= q.to) continue;
+            int lo = s.lowerBound(q.from), hi = s.lowerBound(q.to);
+            if (lo >= hi) continue;
+            int[] match = null;                              // null: every ordinal in [lo, hi)
+            for (byte[] term : terms) {
+                int[] postings = s.postings(term, lo, hi);
+                match = match == null ? postings : intersect(match, postings);
+                if (match.length == 0) break;
+            }
+            int count = match == null ? hi - lo : match.length;
+            total += count;
+            // Ordinals are in time order, so the newest matches of a segment are its last ones
+            for (int i = count - 1; i >= Math.max(0, count - q.limit); i--) {
+                hits.add(s.doc(match == null ? lo + i : match[i]));
+            }
+        }
+        for (Doc d : view.buffer) {
+            if (q.matches(d)) {
+                total++;
+                hits.add(d);
+            }
+        }
+        hits.sort(NEWEST_FIRST);
+        if (hits.size() > q.limit) hits = new ArrayList<>(hits.subList(0, q.limit));
+        return new Result(total, (System.nanoTime() - start) / 1000, hits);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Lowercased runs of letters and digits; "ABC-123 rented" -> abc, 123, rented
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0) {
+                if (sb.length() <= MAX_TOKEN) tokens.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    // ========== SEGMENTS ==========
+    static final class Segment {
+        final Path file;
+        final MappedByteBuffer buf;
+        final int docCount, termCount;
+        final long minLogId, maxLogId, minTime, maxTime;
+        private final long timesOffset, docOffsetsOffset, termIndexOffset;
+
+        private Segment(Path file, MappedByteBuffer buf) throws IOException {
+            this.file = file;
+            this.buf = buf;
+            if (buf.limit() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT) {
+                throw new IOException(file.getFileName() + " is not an audit segment");
+            }
+            docCount = buf.getInt(8);
+            termCount = buf.getInt(12);
+            minLogId = buf.getLong(16);
+            maxLogId = buf.getLong(24);
+            minTime = buf.getLong(32);
+            maxTime = buf.getLong(40);
+            timesOffset = buf.getLong(48);
+            docOffsetsOffset = buf.getLong(56);
+            termIndexOffset = buf.getLong(64);
+        }
+
+        static Segment open(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                return new Segment(file, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+            }
+        }
+
+        // First ordinal whose time is >= t
+        int lowerBound(long t) {
+            int lo = 0, hi = docCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (buf.getLong((int) (timesOffset + 8L * mid)) < t) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        Doc doc(int ord) {
+            int p = (int) buf.getLong((int) (docOffsetsOffset + 8L * ord));
+            long logId = buf.getLong(p), time = buf.getLong(p + 8);
+            int userId = buf.getInt(p + 16);
+            int typeLen = buf.getShort(p + 20);
+            String type = string(p + 22, typeLen);
+            int messageLen = buf.getInt(p + 22 + typeLen);
+            return new Doc(logId, time, userId, type, string(p + 26 + typeLen, messageLen));
+        }
+
+        private String string(int at, int len) {
+            byte[] bytes = new byte[len];
+            ByteBuffer b = buf.duplicate();
+            b.position(at);
+            b.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Ordinals in [lo, hi) holding the term, ascending; empty if the term is absent
+        int[] postings(byte[] term, int lo, int hi) {
+            int at = find(term);
+            if (at < 0) return new int[0];
+            int p = at + 2 + term.length;
+            int docFreq = buf.getInt(p);
+            int end = p + 8 + buf.getInt(p + 4);
+            p += 8;
+            int[] out = new int[Math.min(docFreq, hi - lo)];
+            int n = 0, ord = 0;
+            while (p < end) {
+                int delta = 0, shift = 0, b;
+                do {
+                    b = buf.get(p++);
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                ord += delta;
+                if (ord >= hi) break;
+                if (ord >= lo) out[n++] = ord;
+            }
+            return n == out.length ? out : Arrays.copyOf(out, n);
+        }
+
+        // Offset of the term's entry, or -1
+        private int find(byte[] term) {
+            int lo = 0, hi = termCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int at = (int) buf.getLong((int) (termIndexOffset + 8L * mid));
+                int c = compare(at + 2, buf.getShort(at), term);
+                if (c < 0) lo = mid + 1;
+                else if (c > 0) hi = mid - 1;
+                else return at;
+            }
+            return -1;
+        }
+
+        private int compare(int at, int len, byte[] term) {
+            for (int i = 0; i < Math.min(len, term.length); i++) {
+                int c = (buf.get(at + i) & 0xFF) - (term[i] & 0xFF);
+                if (c != 0) return c;
+            }
+            return len - term.length;
+        }
+
+        static Segment write(Path file, List<Doc> input) throws IOException {
+            List<Doc> docs = new ArrayList<>(input);
+            docs.sort(Comparator.comparingLong((Doc d) -> d.time).thenComparingLong(d -> d.logId));
+            Map<String, int[]> postings = new HashMap<>();      // slot 0 holds the count
+            for (int ord = 0; ord < docs.size(); ord++) {
+                for (String term : new LinkedHashSet<>(docs.get(ord).terms())) {
+                    int[] list = postings.get(term);
+                    if (list == null) postings.put(term, list = new int[4]);
+                    else if (list[0] + 1 == list.length) postings.put(term, list = Arrays.copyOf(list, list.length * 2));
+                    list[++list[0]] = ord;
+                }
+            }
+            byte[][] terms = new byte[postings.size()][];
+            int t = 0;
+            for (String term : postings.keySet()) terms[t++] = term.getBytes(StandardCharsets.UTF_8);
+            Arrays.sort(terms, AuditIndex::compareBytes);
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+                Out out = new Out(ch, HEADER_BYTES);
+                long[] docOffsets = new long[docs.size()];
+                for (int ord = 0; ord < docs.size(); ord++) {
+                    Doc d = docs.get(ord);
+                    byte[] type = d.type.getBytes(StandardCharsets.UTF_8);
+                    byte[] message = d.message.getBytes(StandardCharsets.UTF_8);
+                    docOffsets[ord] = out.position();
+                    out.putLong(d.logId);
+                    out.putLong(d.time);
+                    out.putInt(d.userId);
+                    out.putShort(type.length);
+                    out.put(type);
+                    out.putInt(message.length);
+                    out.put(message);
+                }
+                long timesOffset = out.position();
+                for (Doc d : docs) out.putLong(d.time);
+                long docOffsetsOffset = out.position();
+                for (long offset : docOffsets) out.putLong(offset);
+                long[] termOffsets = new long[terms.length];
+                for (int i = 0; i < terms.length; i++) {
+                    int[] list = postings.get(new String(terms[i], StandardCharsets.UTF_8));
+                    int bytes = 0;
+                    for (int k = 1, prev = 0; k <= list[0]; prev = list[k], k++) bytes += varintLength(list[k] - prev);
+                    termOffsets[i] = out.position();
+                    out.putShort(terms[i].length);
+                    out.put(terms[i]);
+                    out.putInt(list[0]);
+                    out.putInt(bytes);
+                    for (int k = 1, prev = 0; k <= list[0]; prev = list[k], k++) out.putVarint(list[k] - prev);
+                }
+                long termIndexOffset = out.position();
+                for (long offset : termOffsets) out.putLong(offset);
+                if (out.position() > Integer.MAX_VALUE) throw new IOException("segment over 2 GB");
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(FORMAT).putInt(docs.size()).putInt(terms.length);
+                header.putLong(docs.isEmpty() ? 0 : docs.stream().mapToLong(d -> d.logId).min().getAsLong());
+                header.putLong(docs.isEmpty() ? 0 : docs.stream().mapToLong(d -> d.logId).max().getAsLong());
+                header.putLong(docs.isEmpty() ? 0 : docs.get(0).time);
+                header.putLong(docs.isEmpty() ? 0 : docs.get(docs.size() - 1).time);
+                header.putLong(timesOffset).putLong(docOffsetsOffset).putLong(termIndexOffset);
+                header.flip();
+                while (header.hasRemaining()) ch.write(header, header.position());
+                ch.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return open(file);
+        }
+    }
+
+    static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (c != 0) return c;
+        }
+        return a.length - b.length;
+    }
+
+    private static int varintLength(int v) {
+        int n = 1;
+        while ((v >>>= 7) != 0) n++;
+        return n;
+    }
+
+    // Sequential writer through one reusable buffer
+    private static final class Out {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+        private long flushed;
+
+        Out(FileChannel ch, long start) throws IOException {
+            this.ch = ch;
+            this.flushed = start;
+            ch.position(start);
+        }
+
+        long position() { return flushed + buf.position(); }
+
+        private void room(int n) throws IOException {
+            if (buf.remaining() < n) flush();
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) flushed += ch.write(buf);
+            buf.clear();
+        }
+
+        void putLong(long v) throws IOException { room(8); buf.putLong(v); }
+        void putInt(int v) throws IOException { room(4); buf.putInt(v); }
+        void putShort(int v) throws IOException { room(2); buf.putShort((short) v); }
+
+        void putVarint(int v) throws IOException {
+            room(5);
+            while ((v & ~0x7F) != 0) {
+                buf.put((byte) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            buf.put((byte) v);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            if (bytes.length > buf.capacity()) {
+                flush();
+                ByteBuffer b = ByteBuffer.wrap(bytes);
+                while (b.hasRemaining()) flushed += ch.write(b);
+                return;
+            }
+            room(bytes.length);
+            buf.put(bytes);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+// Vehicle Rental System - Auth Controller
+
+// AUTH CONTROLLER
+class AuthController {
+    private User currentUser;
+    
+    public User login(String username, String password) {
+        return login(username, password, "local");
+    }
+    
+    // source identifies the client (address) for per-client throttling
+    public User login(String username, String password, String source) {
+        LoginGuard.Verdict verdict = LoginGuard.check(username, source);
+        if (verdict == LoginGuard.Verdict.THROTTLED) {
+            System.out.println("[-] Too many login attempts. Please wait and try again.");
+            return currentUser;
+        }
+        // Names the guard has never seen are refused without a database lookup
+        User user = verdict == LoginGuard.Verdict.UNKNOWN ? null : DataStore.getUserByUsername(username);
+        if (user != null) LoginGuard.known(username);
+        if (user != null && user.getPassword().equals(password)) {
+            currentUser = user;
+            System.out.println("[✓] Welcome, " + user.getFullName() + "!");
+            System.out.println("   Role: " + user.getRole());
+            System.out.println("   Wallet Balance: $" + user.getWalletBalance());
+            DataStore.logEvent("USER_LOGIN", user.getUsername() + " logged in", user.getUserId());
+        } else {
+            System.out.println("[-] Invalid username or password!");
+            LoginGuard.failed(username);
+        }
+        return currentUser;
+    }
+    
+    public boolean register(String username, String password, String fullName, String email, String phone) {
+        // Validate input
+        if (username.isEmpty() || password.isEmpty() || fullName.isEmpty() || email.isEmpty()) {
+            System.out.println("[-] All fields are required!");
+            return false;
+        }
+        
+        // Check if username exists
+        if (DataStore.getUserByUsername(username) != null) {
+            System.out.println("[-] Username already exists!");
+            return false;
+        }
+        
+        // Create and add user
+        User newUser = new User(0, username, password, fullName, email, phone, "CUSTOMER");
+        newUser.setWalletBalance(0.0);
+        
+        if (DataStore.addUser(newUser)) {
+            LoginGuard.known(username);
+            System.out.println("[✓] Registration successful!");
+            System.out.println("[✓] User '" + username + "' added to database.");
+            return true;
+        } else {
+            System.out.println("[-] Registration failed!");
+            return false;
+        }
+    }
+    
+    public User getCurrentUser() { return currentUser; }
+    
+    public void logout() {
+        if (currentUser != null) {
+            System.out.println("[✓] Goodbye, " + currentUser.getFullName() + "!");
+            DataStore.logEvent("USER_LOGOUT", currentUser.getUsername() + " logged out", currentUser.getUserId());
+            currentUser = null;
+        }
+    }
+}
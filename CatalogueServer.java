@@ -0,0 +1,398 @@
+// Vehicle Rental System - Catalogue Server
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+// CATALOGUE SERVER
+// Serves the available-vehicle catalogue over HTTP (-Drental.http.port) from an immutable
+// snapshot: the whole list and one slice per location, each already serialized to JSON and
+// gzipped. Requests never touch the database; they pick a byte array and answer 304 when the
+// client's If-None-Match still names it.
+//
+// Any vehicle mutation bumps the catalogue version and queues a rebuild on a single builder
+// thread (VEHICLE events on the event bus in MySQL mode, DataStore writes otherwise; a periodic
+// refresh catches other processes). Bumps that arrive while a rebuild is queued share it. The
+// rebuild is incremental: a vehicle whose listing did not change keeps its serialized fragment,
+// and a location whose fragments are all unchanged keeps its representation, ETag included, so
+// clients of untouched locations keep getting 304s.
+class CatalogueServer {
+    private static final int HANDLER_THREADS = 4;
+    private static final long REFRESH_SECONDS = 60;
+    private static final long RETRY_SECONDS = 5;
+
+    // One serialized form of a catalogue slice; ETags are quoted and differ per encoding
+    static final class Representation {
+        final byte[] body, gzipped;
+        final String etag, gzipEtag;
+        final int vehicles;
+
+        Representation(long version, byte[] body, int vehicles) {
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            String tag = version + "-" + Long.toHexString(crc.getValue());
+            this.body = body;
+            this.gzipped = gzip(body);
+            this.etag = "\"" + tag + "\"";
+            this.gzipEtag = "\"" + tag + "-gz\"";
+            this.vehicles = vehicles;
+        }
+    }
+
+    static final class Snapshot {
+        final long version, builtAt;
+        final Representation all;
+        final Map<String, Representation> byLocation;
+        final List<String> lines;       // Vehicle.toString() of each listing, for the console
+
+        Snapshot(long version, Representation all, Map<String, Representation> byLocation, List<String> lines) {
+            this.version = version;
+            this.builtAt = System.currentTimeMillis();
+            this.all = all;
+            this.byLocation = byLocation;
+            this.lines = lines;
+        }
+    }
+
+    // A vehicle as last serialized; reused while its fields are unchanged
+    private static final class Listing {
+        final Vehicle vehicle;
+        final byte[] json;
+        final String line;
+
+        Listing(Vehicle vehicle) {
+            this.vehicle = vehicle;
+            this.json = toJson(vehicle).getBytes(StandardCharsets.UTF_8);
+            this.line = vehicle.toString();
+        }
+    }
+
+    private static final Representation EMPTY = new Representation(0, "[]".getBytes(StandardCharsets.UTF_8), 0);
+    private static volatile CatalogueServer instance;
+
+    private final AtomicLong version = new AtomicLong(1);
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean(false);
+    private volatile Snapshot current;
+    private HttpServer server;
+    private ScheduledExecutorService builder;
+    private ExecutorService handlers;
+    private EventBus.Subscription subscription;
+
+    // Builder thread only: the previous build, for reuse
+    private Map<Integer, Listing> listings = new HashMap<>();
+    private Map<String, List<Listing>> members = new HashMap<>();
+    private List<Listing> order = new ArrayList<>();
+
+    private final LongAdder requests = new LongAdder(), notModified = new LongAdder(), gzipServed = new LongAdder();
+    private volatile long rebuilds, serialized, reused, slicesReused, lastBuildMs;
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start(int port) {
+        if (instance != null) return;
+        CatalogueServer cs = new CatalogueServer();
+        cs.rebuild();
+        if (cs.current == null) {
+            System.err.println("[✗] Catalogue server not started: could not load vehicles.");
+            return;
+        }
+        try {
+            cs.server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            System.err.println("[✗] Catalogue server not started: " + e.getMessage());
+            return;
+        }
+        cs.handlers = Executors.newFixedThreadPool(HANDLER_THREADS, daemon("catalogue-http"));
+        cs.server.setExecutor(cs.handlers);
+        cs.server.createContext("/vehicles", cs::handle);
+        cs.builder = Executors.newSingleThreadScheduledExecutor(daemon("catalogue-builder"));
+        cs.builder.scheduleWithFixedDelay(cs::rebuild, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+        if (DataStore.getBackend() == null) {
+            cs.subscription = EventBus.subscribe("catalogue", batch -> invalidate(), "VEHICLE");
+        }
+        cs.server.start();
+        instance = cs;
+        System.out.println("[✓] Catalogue server listening on port " + port + " (" + cs.current.all.vehicles + " vehicles).");
+    }
+
+    public static synchronized void stop() {
+        if (instance == null) return;
+        instance.server.stop(0);
+        instance.handlers.shutdown();
+        instance.builder.shutdown();
+        if (instance.subscription != null) EventBus.unsubscribe(instance.subscription);
+        instance = null;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // ========== INVALIDATION ==========
+    // Called after any vehicle mutation; the rebuild runs on the builder thread
+    static void invalidate() {
+        CatalogueServer cs = instance;
+        if (cs == null) return;
+        cs.version.incrementAndGet();
+        if (cs.rebuildQueued.compareAndSet(false, true)) cs.builder.execute(cs::rebuild);
+    }
+
+    // For DataStore write paths: invalidates when the write succeeded
+    static boolean changed(boolean succeeded) {
+        if (succeeded) invalidate();
+        return succeeded;
+    }
+
+    // Pre-rendered console lines of the current snapshot, or null when the server is not running
+    static List<String> lines() {
+        CatalogueServer cs = instance;
+        return cs == null ? null : cs.current.lines;
+    }
+
+    // ========== REBUILD ==========
+    private void rebuild() {
+        // Cleared first: a bump from here on queues another rebuild
+        rebuildQueued.set(false);
+        long v = version.get();
+        long started = System.nanoTime();
+        List<Vehicle> vehicles;
+        try {
+            // The first build takes the fleet the warm start just loaded, if there is one
+            vehicles = current == null ? WarmStart.availableVehicles() : null;
+            if (vehicles == null) vehicles = DataStore.getAvailableVehicles();
+        } catch (RuntimeException e) {
+            System.err.println("[!] Catalogue rebuild failed, retrying: " + e.getMessage());
+            if (builder != null && rebuildQueued.compareAndSet(false, true)) {
+                builder.schedule(this::rebuild, RETRY_SECONDS, TimeUnit.SECONDS);
+            }
+            return;
+        }
+
+        Map<Integer, Listing> nextListings = new HashMap<>(vehicles.size() * 2);
+        Map<String, List<Listing>> nextMembers = new TreeMap<>();
+        List<Listing> ordered = new ArrayList<>(vehicles.size());
+        int fresh = 0;
+        for (Vehicle vehicle : vehicles) {
+            Listing listing = listings.get(vehicle.getVehicleId());
+            if (listing == null || !sameListing(listing.vehicle, vehicle)) {
+                listing = new Listing(vehicle);
+                fresh++;
+            }
+            nextListings.put(vehicle.getVehicleId(), listing);
+            ordered.add(listing);
+            nextMembers.computeIfAbsent(location(vehicle), k -> new ArrayList<>()).add(listing);
+        }
+
+        Snapshot previous = current;
+        boolean contentChanged = previous == null || fresh > 0 || !ordered.equals(order);
+        // A refresh that finds changes nobody announced still gets a new version
+        if (contentChanged && previous != null && v == previous.version) v = version.incrementAndGet();
+
+        Representation all = contentChanged ? new Representation(v, serialize(ordered), ordered.size()) : previous.all;
+        Map<String, Representation> byLocation = new HashMap<>();
+        int kept = 0;
+        for (Map.Entry<String, List<Listing>> e : nextMembers.entrySet()) {
+            Representation old = previous == null ? null : previous.byLocation.get(e.getKey());
+            if (old != null && e.getValue().equals(members.get(e.getKey()))) {
+                byLocation.put(e.getKey(), old);
+                kept++;
+            } else {
+                byLocation.put(e.getKey(), new Representation(v, serialize(e.getValue()), e.getValue().size()));
+            }
+        }
+        List<String> lines = new ArrayList<>(ordered.size());
+        for (Listing l : ordered) lines.add(l.line);
+
+        listings = nextListings;
+        members = nextMembers;
+        order = ordered;
+        current = new Snapshot(v, all, Collections.unmodifiableMap(byLocation), Collections.unmodifiableList(lines));
+        rebuilds++;
+        serialized += fresh;
+        reused += ordered.size() - fresh;
+        slicesReused += kept;
+        lastBuildMs = (System.nanoTime() - started) / 1_000_000;
+    }
+
+    // Listings are compared by the fields the catalogue shows (lists hold the same Listing objects
+    // when nothing changed, so List.equals is an identity check per element)
+    private static boolean sameListing(Vehicle a, Vehicle b) {
+        return a.getYear() == b.getYear() && a.getDailyRate() == b.getDailyRate() && a.isUserListed() == b.isUserListed() &&
+               Objects.equals(a.getRegistrationNo(), b.getRegistrationNo()) && Objects.equals(a.getMake(), b.getMake()) &&
+               Objects.equals(a.getModel(), b.getModel()) && Objects.equals(a.getColor(), b.getColor()) &&
+               Objects.equals(a.getStatus(), b.getStatus()) && Objects.equals(a.getLocation(), b.getLocation());
+    }
+
+    private static String location(Vehicle v) {
+        return v.getLocation() == null ? "" : v.getLocation();
+    }
+
+    private static byte[] serialize(List<Listing> slice) {
+        int size = 2;
+        for (Listing l : slice) size += l.json.length + 1;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write('[');
+        for (int i = 0; i < slice.size(); i++) {
+            if (i > 0) out.write(',');
+            byte[] json = slice.get(i).json;
+            out.write(json, 0, json.length);
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    private static String toJson(Vehicle v) {
+        return "{\"vehicleId\":" + v.getVehicleId() +
+               ",\"registrationNo\":" + quote(v.getRegistrationNo()) +
+               ",\"make\":" + quote(v.getMake()) +
+               ",\"model\":" + quote(v.getModel()) +
+               ",\"year\":" + v.getYear() +
+               ",\"color\":" + quote(v.getColor()) +
+               ",\"dailyRate\":" + String.format(Locale.ROOT, "%.2f", v.getDailyRate()) +
+               ",\"listedBy\":" + (v.isUserListed() ? "\"User\"" : "\"Company\"") +
+               ",\"location\":" + quote(v.getLocation()) + "}";
+    }
+
+    private static String quote(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    // Built once per representation, off the request path, so the best level is affordable
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gz.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // ========== HTTP ==========
+    // GET /vehicles[?location=Name]
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            requests.increment();
+            Headers headers = ex.getResponseHeaders();
+            String method = ex.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                headers.set("Allow", "GET, HEAD");
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!ex.getRequestURI().getPath().equals("/vehicles")) {
+                ex.sendResponseHeaders(404, -1);
+                return;
+            }
+            Snapshot snap = current;
+            String location = queryParam(ex.getRequestURI().getRawQuery(), "location");
+            Representation rep = location == null ? snap.all : snap.byLocation.getOrDefault(location, EMPTY);
+
+            boolean gzip = acceptsGzip(ex.getRequestHeaders().getFirst("Accept-Encoding"));
+            headers.set("ETag", gzip ? rep.gzipEtag : rep.etag);
+            headers.set("X-Catalogue-Version", Long.toString(snap.version));
+            headers.set("Cache-Control", "no-cache");
+            headers.set("Vary", "Accept-Encoding");
+            if (matches(ex.getRequestHeaders().get("If-None-Match"), rep)) {
+                notModified.increment();
+                ex.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] body = gzip ? rep.gzipped : rep.body;
+            headers.set("Content-Type", "application/json; charset=utf-8");
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+                gzipServed.increment();
+            }
+            if (method.equals("HEAD")) {
+                headers.set("Content-Length", Integer.toString(body.length));
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static String queryParam(String rawQuery, String name) {
+        if (rawQuery == null) return null;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            if (!key.equals(name)) continue;
+            try {
+                return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] fields = part.trim().split(";");
+            if (!fields[0].trim().equalsIgnoreCase("gzip")) continue;
+            for (int i = 1; i < fields.length; i++) {
+                String param = fields[i].trim().replace(" ", "");
+                if (param.equals("q=0") || param.matches("q=0\\.0*")) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Weak comparison (RFC 7232): W/ prefixes are ignored and either encoding's tag matches
+    private static boolean matches(List<String> ifNoneMatch, Representation rep) {
+        if (ifNoneMatch == null) return false;
+        for (String header : ifNoneMatch) {
+            for (String tag : header.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals(rep.etag) || tag.equals(rep.gzipEtag)) return true;
+            }
+        }
+        return false;
+    }
+
+    // ========== STATUS ==========
+    public static void printStatus() {
+        CatalogueServer cs = instance;
+        if (cs == null) {
+            System.out.println("Catalogue server is not running (start with -Drental.http.port=N).");
+            return;
+        }
+        Snapshot snap = cs.current;
+        System.out.println("\n=== CATALOGUE SERVER ===");
+        System.out.println("Port: " + cs.server.getAddress().getPort() + "  Version: " + snap.version +
+                           "  Built " + (System.currentTimeMillis() - snap.builtAt) / 1000 + "s ago in " + cs.lastBuildMs + " ms");
+        System.out.println("Vehicles: " + snap.all.vehicles + " in " + snap.byLocation.size() + " locations  " +
+                           "Size: " + snap.all.body.length + " bytes, " + snap.all.gzipped.length + " gzipped");
+        System.out.println("Rebuilds: " + cs.rebuilds + "  Listings serialized: " + cs.serialized + ", reused: " + cs.reused +
+                           "  Location slices reused: " + cs.slicesReused);
+        System.out.println("Requests: " + cs.requests.sum() + "  Not modified: " + cs.notModified.sum() +
+                           "  Gzipped: " + cs.gzipServed.sum());
+        System.out.println("========================\n");
+    }
+}
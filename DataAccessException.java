@@ -0,0 +1,14 @@
+// Vehicle Rental System - Data Access Exception
+
+// DATA ACCESS EXCEPTION
+// Thrown when the database is unavailable (retries exhausted, timed out or circuit open), so a
+// MySQL outage is reported as such instead of looking like "not found" or an empty list.
+class DataAccessException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    final Resilience.Failure failure;
+
+    DataAccessException(String message, Resilience.Failure failure, Throwable cause) {
+        super(message, cause);
+        this.failure = failure;
+    }
+}
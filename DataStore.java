@@ -0,0 +1,708 @@
+// Vehicle Rental System - Data Store
+import java.sql.*;
+import java.sql.Date;
+import java.time.*;
+import java.util.*;
+
+// DATA STORE
+class DataStore {
+    // Alternative storage engine (see StorageBackend); null means MySQL
+    private static StorageBackend backend = null;
+    
+    static void useBackend(StorageBackend storage) { backend = storage; }
+    static StorageBackend getBackend() { return backend; }
+    static boolean isEmbedded() { return backend instanceof EmbeddedStore; }
+    static boolean isSharded() { return backend instanceof ShardedStore; }
+    
+    // MySQL calls below run through Resilience.call(): transient failures are retried and,
+    // when the database stays unavailable, surface as DataAccessException
+    
+    // Helper method to get or create lookup values
+    private static int getOrCreateLookup(String table, String nameColumn, String idColumn, String value) {
+        String checkSql = "SELECT " + idColumn + " FROM " + table + " WHERE " + nameColumn + " = ?";
+        String insertSql = "INSERT INTO " + table + " (" + idColumn + ", " + nameColumn + ") VALUES (?, ?)";
+        IdAllocator.Sequence ids = table.equals("VehicleMakes") ? IdAllocator.MAKES : IdAllocator.COLORS;
+        
+        try {
+            // Re-checks before inserting, so retrying after a lost connection is safe
+            return Resilience.call("getOrCreateLookup", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
+                    checkStmt.setString(1, value);
+                    ResultSet rs = checkStmt.executeQuery();
+                    if (rs.next()) {
+                        return rs.getInt(1);
+                    }
+                }
+                
+                // Insert new value
+                int id = ids.next();
+                try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+                    insertStmt.setInt(1, id);
+                    insertStmt.setString(2, value);
+                    return insertStmt.executeUpdate() > 0 ? id : -1;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error in getOrCreateLookup for " + value + ": " + e.getMessage());
+        }
+        return -1;
+    }
+    
+    // ========== ROW MAPPERS ==========
+    // Readers select these column lists, in this order, and the mappers read them by position.
+    // Shared with ShardedStore, whose per-shard queries use the same projections.
+    static final String USER_COLUMNS =
+        "u.UserID, u.Username, u.PasswordHash, u.FullName, u.Email, u.Phone, ur.RoleName, u.WalletBalance";
+    // List screens never check passwords, so the hash is not fetched
+    static final String USER_LIST_COLUMNS =
+        "u.UserID, u.Username, NULL, u.FullName, u.Email, u.Phone, ur.RoleName, u.WalletBalance";
+    static final String VEHICLE_COLUMNS =
+        "v.VehicleID, v.RegistrationNo, vm.MakeName, v.Model, v.Year, vc.ColorName, v.DailyRate, vs.StatusName, " +
+        "v.OwnerID, v.IsUserListed, v.Location";
+    static final String RENTAL_COLUMNS =
+        "r.RentalID, r.UserID, r.VehicleID, r.RentalDate, r.ReturnDate, r.TotalAmount, rs.StatusName, ps.StatusName";
+    
+    static User readUser(ResultSet rs) throws SQLException {
+        User user = new User(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                             rs.getString(5), rs.getString(6), rs.getString(7));
+        user.setWalletBalance(rs.getDouble(8));
+        return user;
+    }
+    
+    static Vehicle readVehicle(ResultSet rs) throws SQLException {
+        return new Vehicle(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getInt(5),
+                           rs.getString(6), rs.getDouble(7), rs.getString(8), rs.getInt(9), rs.getBoolean(10),
+                           rs.getString(11));
+    }
+    
+    static Rental readRental(ResultSet rs) throws SQLException {
+        return new Rental(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getDate(4).toLocalDate(),
+                          rs.getDate(5).toLocalDate(), rs.getDouble(6), rs.getString(7), rs.getString(8));
+    }
+    
+    // USER METHODS
+    public static User getUserByUsername(String username) {
+        if (backend != null) return backend.getUserByUsername(username);
+        String sql = "SELECT " + USER_COLUMNS + " FROM Users u " +
+                    "JOIN UserRoles ur ON u.RoleID = ur.RoleID " +
+                    "WHERE u.Username = ? AND u.IsActive = 1";
+        
+        try {
+            return Resilience.call("getUserByUsername", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, username);
+                    ResultSet rs = pstmt.executeQuery();
+                    return rs.next() ? readUser(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting user: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    public static User getUserById(int userId) {
+        if (backend != null) return backend.getUserById(userId);
+        String sql = "SELECT " + USER_COLUMNS + " FROM Users u " +
+                    "JOIN UserRoles ur ON u.RoleID = ur.RoleID " +
+                    "WHERE u.UserID = ? AND u.IsActive = 1";
+        
+        try {
+            return Resilience.call("getUserById", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, userId);
+                    ResultSet rs = pstmt.executeQuery();
+                    return rs.next() ? readUser(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting user: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    public static boolean addUser(User user) {
+        if (backend != null) return backend.addUser(user);
+        // Check if username exists
+        if (getUserByUsername(user.getUsername()) != null) {
+            System.err.println("[✗] Username already exists!");
+            return false;
+        }
+        
+        // Determine RoleID
+        int roleId = 2; // Default to CUSTOMER
+        if (user.getRole().equalsIgnoreCase("ADMIN")) {
+            roleId = 1;
+        } else if (user.getRole().equalsIgnoreCase("OWNER")) {
+            roleId = 3;
+        }
+        
+        String sql = "INSERT INTO Users (UserID, Username, PasswordHash, FullName, Email, Phone, RoleID, WalletBalance) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        final int role = roleId;
+        
+        try {
+            int userId = IdAllocator.USERS.next();
+            boolean added = Resilience.call("addUser", Resilience.Policy.WRITE, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, userId);
+                    pstmt.setString(2, user.getUsername());
+                    pstmt.setString(3, user.getPassword());
+                    pstmt.setString(4, user.getFullName());
+                    pstmt.setString(5, user.getEmail());
+                    pstmt.setString(6, user.getPhone());
+                    pstmt.setInt(7, role);
+                    pstmt.setDouble(8, user.getWalletBalance());
+                    return pstmt.executeUpdate() > 0;
+                }
+            }, conn -> existsBy(conn, "SELECT 1 FROM Users WHERE Username = ?", user.getUsername()));
+            if (added) {
+                // Log the event
+                logEvent("USER_REGISTERED", "New user: " + user.getUsername(), 0);
+                return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("[✗] Error adding user: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    // Already-applied check for inserts keyed by a unique column: TRUE if the row exists, else null
+    private static Boolean existsBy(Connection conn, String sql, String key) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, key);
+            return pstmt.executeQuery().next() ? Boolean.TRUE : null;
+        }
+    }
+    
+    public static List<User> getAllUsers() {
+        if (backend != null) return backend.getAllUsers();
+        String sql = "SELECT " + USER_LIST_COLUMNS + " FROM Users u " +
+                    "JOIN UserRoles ur ON u.RoleID = ur.RoleID " +
+                    "WHERE u.IsActive = 1 ORDER BY u.UserID";
+        
+        try {
+            return Resilience.call("getAllUsers", Resilience.Policy.READ, conn -> {
+                List<User> users = new ArrayList<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        users.add(readUser(rs));
+                    }
+                }
+                return users;
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting users: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    public static boolean updateUserWallet(int userId, double amount) {
+        if (backend != null) return backend.updateUserWallet(userId, amount);
+        String lockSql = "SELECT WalletBalance FROM Users WHERE UserID = ? FOR UPDATE";
+        String sql = "UPDATE Users SET WalletBalance = ? WHERE UserID = ?";
+        
+        try {
+            // Sets an absolute balance, so it is safe to repeat: the difference is posted to the
+            // ledger in the same transaction (on its own connection), and a repeat finds no
+            // difference to post
+            boolean updated = Resilience.transaction("updateUserWallet", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement lock = conn.prepareStatement(lockSql);
+                     PreparedStatement pstmt = conn.prepareStatement(sql);
+                     PreparedStatement ledger = conn.prepareStatement(WalletLedger.POST_SQL)) {
+                    lock.setInt(1, userId);
+                    double current;
+                    try (ResultSet rs = lock.executeQuery()) {
+                        if (!rs.next()) return false;
+                        current = rs.getDouble(1);
+                    }
+                    pstmt.setDouble(1, amount);
+                    pstmt.setInt(2, userId);
+                    pstmt.executeUpdate();
+                    long delta = Math.round(amount * 100) - Math.round(current * 100);
+                    if (delta != 0) {
+                        WalletLedger.bind(ledger, userId, WalletLedger.Kind.ADJUSTMENT, delta / 100.0, null);
+                        ledger.executeUpdate();
+                    }
+                    return true;
+                }
+            });
+            if (updated) {
+                logEvent("WALLET_UPDATED", "User " + userId + " wallet: $" + amount, userId);
+                EventBus.wake();
+                return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("[✗] Error updating wallet: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    // Adds amount (negative for a payment) to the balance; returns the new balance or null
+    public static Double adjustWallet(int userId, double amount, String idemKey) {
+        IdempotencyKeys.Outcome replay = IdempotencyKeys.cached(idemKey);
+        if (replay != null) return replay.amount;
+        if (backend != null) {
+            Double balance = backend.adjustWallet(userId, amount, idemKey);
+            if (balance != null) IdempotencyKeys.remember(idemKey, new IdempotencyKeys.Outcome(userId, balance));
+            return balance;
+        }
+        String sql = "{call sp_AdjustWallet(?, ?, ?)}";
+        
+        try {
+            Object[] result = Resilience.call("sp_AdjustWallet", Resilience.Policy.KEYED_PROCEDURE, conn -> {
+                try (CallableStatement cstmt = conn.prepareCall(sql)) {
+                    cstmt.setInt(1, userId);
+                    cstmt.setDouble(2, amount);
+                    cstmt.setString(3, idemKey);
+                    
+                    ResultSet rs = cstmt.executeQuery();
+                    if (!rs.next() || !rs.getString("Status").equals("SUCCESS")) return null;
+                    return new Object[]{rs.getDouble("NewBalance"), rs.getBoolean("Replayed")};
+                }
+            });
+            if (result == null) return null;
+            double balance = (Double) result[0];
+            IdempotencyKeys.remember(idemKey, new IdempotencyKeys.Outcome(userId, balance));
+            if (!(Boolean) result[1]) {
+                logEvent("WALLET_UPDATED", "User " + userId + " wallet: $" + balance, userId);
+                EventBus.wake();
+            }
+            return balance;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error updating wallet: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    // VEHICLE METHODS
+    public static List<Vehicle> getAvailableVehicles() {
+        if (backend != null) return backend.getAvailableVehicles();
+        String sql = "SELECT " + VEHICLE_COLUMNS + " " +
+                    "FROM Vehicles v " +
+                    "JOIN VehicleMakes vm ON v.MakeID = vm.MakeID " +
+                    "JOIN VehicleColors vc ON v.ColorID = vc.ColorID " +
+                    "JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID " +
+                    "WHERE vs.StatusName = 'AVAILABLE' " +
+                    "ORDER BY v.DailyRate";
+        
+        try {
+            return Resilience.call("getAvailableVehicles", Resilience.Policy.READ, conn -> {
+                List<Vehicle> vehicles = new ArrayList<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        vehicles.add(readVehicle(rs));
+                    }
+                }
+                return vehicles;
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting vehicles: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    public static List<Vehicle> getUserListedVehicles(int ownerId) {
+        if (backend != null) return backend.getUserListedVehicles(ownerId);
+        String sql = "SELECT " + VEHICLE_COLUMNS + " " +
+                    "FROM Vehicles v " +
+                    "JOIN VehicleMakes vm ON v.MakeID = vm.MakeID " +
+                    "JOIN VehicleColors vc ON v.ColorID = vc.ColorID " +
+                    "JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID " +
+                    "WHERE v.OwnerID = ? AND v.IsUserListed = TRUE";
+        
+        try {
+            return Resilience.call("getUserListedVehicles", Resilience.Policy.READ, conn -> {
+                List<Vehicle> vehicles = new ArrayList<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, ownerId);
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        vehicles.add(readVehicle(rs));
+                    }
+                }
+                return vehicles;
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting user vehicles: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    public static Vehicle getVehicleById(int id) {
+        if (backend != null) return backend.getVehicleById(id);
+        String sql = "SELECT " + VEHICLE_COLUMNS + " " +
+                    "FROM Vehicles v " +
+                    "JOIN VehicleMakes vm ON v.MakeID = vm.MakeID " +
+                    "JOIN VehicleColors vc ON v.ColorID = vc.ColorID " +
+                    "JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID " +
+                    "WHERE v.VehicleID = ?";
+        
+        try {
+            return Resilience.call("getVehicleById", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, id);
+                    ResultSet rs = pstmt.executeQuery();
+                    return rs.next() ? readVehicle(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting vehicle: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    public static boolean updateVehicleStatus(int vehicleId, String status) {
+        if (backend != null) return CatalogueServer.changed(backend.updateVehicleStatus(vehicleId, status));
+        String sql = "UPDATE Vehicles SET StatusID = (SELECT StatusID FROM VehicleStatuses WHERE StatusName = ?) " +
+                    "WHERE VehicleID = ?";
+        
+        try {
+            boolean updated = Resilience.call("updateVehicleStatus", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, status);
+                    pstmt.setInt(2, vehicleId);
+                    return pstmt.executeUpdate() > 0;
+                }
+            });
+            if (updated) {
+                logEvent("VEHICLE_STATUS", "Vehicle " + vehicleId + " -> " + status, 0);
+                EventBus.wake();
+                return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("[✗] Error updating vehicle status: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    public static boolean addVehicle(Vehicle vehicle) {
+        if (backend != null) return CatalogueServer.changed(backend.addVehicle(vehicle));
+        // Get or create MakeID
+        int makeId = getOrCreateLookup("VehicleMakes", "MakeName", "MakeID", vehicle.getMake());
+        if (makeId == -1) return false;
+        
+        // Get or create ColorID
+        int colorId = getOrCreateLookup("VehicleColors", "ColorName", "ColorID", vehicle.getColor());
+        if (colorId == -1) return false;
+        
+        // Get StatusID for AVAILABLE
+        int statusId = 1; // Default to AVAILABLE
+        
+        String sql = "INSERT INTO Vehicles (VehicleID, RegistrationNo, MakeID, Model, Year, ColorID, " +
+                    "DailyRate, StatusID, OwnerID, IsUserListed, Location) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try {
+            int vehicleId = IdAllocator.VEHICLES.next();
+            boolean added = Resilience.call("addVehicle", Resilience.Policy.WRITE, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, vehicleId);
+                    pstmt.setString(2, vehicle.getRegistrationNo());
+                    pstmt.setInt(3, makeId);
+                    pstmt.setString(4, vehicle.getModel());
+                    pstmt.setInt(5, vehicle.getYear());
+                    pstmt.setInt(6, colorId);
+                    pstmt.setDouble(7, vehicle.getDailyRate());
+                    pstmt.setInt(8, statusId);
+                    pstmt.setInt(9, vehicle.getOwnerId());
+                    pstmt.setBoolean(10, vehicle.isUserListed());
+                    pstmt.setString(11, vehicle.getLocation());
+                    return pstmt.executeUpdate() > 0;
+                }
+            }, conn -> existsBy(conn, "SELECT 1 FROM Vehicles WHERE RegistrationNo = ?", vehicle.getRegistrationNo()));
+            if (added) {
+                logEvent("VEHICLE_ADDED", vehicle.getRegistrationNo() + " added", vehicle.getOwnerId());
+                EventBus.wake();
+                return true;
+            }
+        } catch (SQLException e) {
+            System.err.println("[✗] Error adding vehicle: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    public static boolean updateVehicleRate(int vehicleId, double newRate) {
+        if (backend != null) return CatalogueServer.changed(backend.updateVehicleRate(vehicleId, newRate));
+        String sql = "UPDATE Vehicles SET DailyRate = ? WHERE VehicleID = ?";
+        
+        try {
+            boolean updated = Resilience.call("updateVehicleRate", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setDouble(1, newRate);
+                    pstmt.setInt(2, vehicleId);
+                    return pstmt.executeUpdate() > 0;
+                }
+            });
+            if (updated) EventBus.wake();
+            return updated;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error updating vehicle rate: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    // RENTAL METHODS
+    public static List<Rental> getRentalsByUserId(int userId) {
+        if (backend != null) return backend.getRentalsByUserId(userId);
+        String sql = "SELECT " + RENTAL_COLUMNS + " " +
+                    "FROM Rentals r " +
+                    "JOIN RentalStatuses rs ON r.StatusID = rs.StatusID " +
+                    "JOIN PaymentStatuses ps ON r.PaymentStatusID = ps.StatusID " +
+                    "WHERE r.UserID = ? ORDER BY r.RentalID DESC";
+        
+        try {
+            return Resilience.call("getRentalsByUserId", Resilience.Policy.READ, conn -> {
+                List<Rental> rentals = new ArrayList<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, userId);
+                    ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        rentals.add(readRental(rs));
+                    }
+                }
+                return rentals;
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting user rentals: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    public static List<Rental> getPendingRentals() {
+        if (backend != null) return backend.getPendingRentals();
+        String sql = "SELECT " + RENTAL_COLUMNS + " " +
+                    "FROM Rentals r " +
+                    "JOIN RentalStatuses rs ON r.StatusID = rs.StatusID " +
+                    "JOIN PaymentStatuses ps ON r.PaymentStatusID = ps.StatusID " +
+                    "WHERE rs.StatusName = 'PENDING' ORDER BY r.CreatedAt";
+        
+        try {
+            return Resilience.call("getPendingRentals", Resilience.Policy.READ, conn -> {
+                List<Rental> rentals = new ArrayList<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        rentals.add(readRental(rs));
+                    }
+                }
+                return rentals;
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting pending rentals: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    public static Double createRentalWithProcedure(int userId, int vehicleId, LocalDate rentalDate, LocalDate returnDate) {
+        return createRentalWithProcedure(userId, vehicleId, rentalDate, returnDate, 0, IdempotencyKeys.newKey());
+    }
+    
+    // Returns the renter's wallet balance after booking, or null if the booking was refused.
+    // quoteId is the held PriceQuotes row to charge (0 = flat daily rate). Repeating a key
+    // returns the first result without booking or charging again.
+    public static Double createRentalWithProcedure(int userId, int vehicleId, LocalDate rentalDate, LocalDate returnDate,
+                                                   long quoteId, String idemKey) {
+        IdempotencyKeys.Outcome replay = IdempotencyKeys.cached(idemKey);
+        if (replay != null) {
+            System.out.println("[!] Duplicate request: rental #" + replay.resultId + " was already created.");
+            User user = getUserById(userId);
+            return user == null ? null : user.getWalletBalance();
+        }
+        if (backend != null) {
+            Double balance = backend.createRental(userId, vehicleId, rentalDate, returnDate, idemKey);
+            if (balance != null) {
+                IdempotencyKeys.remember(idemKey, new IdempotencyKeys.Outcome(0, 0));
+                CatalogueServer.invalidate();
+            }
+            return balance;
+        }
+        String sql = "{call sp_CreateRental(?, ?, ?, ?, ?, ?, ?, ?)}";
+        
+        try {
+            // One round-trip: the ids are chosen here, and the procedure writes the audit row and
+            // returns the new balance
+            int rentalId = IdAllocator.RENTALS.next();
+            int transactionId = IdAllocator.TRANSACTIONS.next();
+            Object[] result = Resilience.call("sp_CreateRental", Resilience.Policy.KEYED_PROCEDURE, conn -> {
+                try (CallableStatement cstmt = conn.prepareCall(sql)) {
+                    cstmt.setInt(1, userId);
+                    cstmt.setInt(2, vehicleId);
+                    cstmt.setDate(3, Date.valueOf(rentalDate));
+                    cstmt.setDate(4, Date.valueOf(returnDate));
+                    cstmt.setString(5, idemKey);
+                    cstmt.setInt(6, rentalId);
+                    cstmt.setInt(7, transactionId);
+                    if (quoteId > 0) cstmt.setLong(8, quoteId);
+                    else cstmt.setNull(8, Types.BIGINT);
+                    
+                    ResultSet rs = cstmt.executeQuery();
+                    if (!rs.next() || !rs.getString("Status").equals("SUCCESS")) return null;
+                    return new Object[]{new IdempotencyKeys.Outcome(rs.getInt("RentalID"), rs.getDouble("TotalAmount")),
+                                        rs.getBoolean("Replayed"), rs.getDouble("NewBalance")};
+                }
+            });
+            if (result == null) return null;
+            IdempotencyKeys.remember(idemKey, (IdempotencyKeys.Outcome) result[0]);
+            if (!(Boolean) result[1]) EventBus.wake();
+            return (Double) result[2];
+        } catch (SQLException e) {
+            System.err.println("[✗] Error creating rental: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    public static boolean approveRentalWithProcedure(int rentalId, int adminUserId) {
+        return approveRentalWithProcedure(rentalId, adminUserId, IdempotencyKeys.newKey());
+    }
+    
+    public static boolean approveRentalWithProcedure(int rentalId, int adminUserId, String idemKey) {
+        if (IdempotencyKeys.cached(idemKey) != null) {
+            System.out.println("[!] Duplicate request: rental #" + rentalId + " was already approved.");
+            return true;
+        }
+        if (backend != null) {
+            boolean approved = CatalogueServer.changed(backend.approveRental(rentalId, adminUserId, idemKey));
+            if (approved) IdempotencyKeys.remember(idemKey, new IdempotencyKeys.Outcome(rentalId, 0));
+            return approved;
+        }
+        String sql = "{call sp_ApproveRental(?, ?, ?)}";
+        
+        try {
+            Boolean replayed = Resilience.call("sp_ApproveRental", Resilience.Policy.KEYED_PROCEDURE, conn -> {
+                try (CallableStatement cstmt = conn.prepareCall(sql)) {
+                    cstmt.setInt(1, rentalId);
+                    cstmt.setInt(2, adminUserId);
+                    cstmt.setString(3, idemKey);
+                    
+                    ResultSet rs = cstmt.executeQuery();
+                    if (!rs.next() || !rs.getString("Status").equals("SUCCESS")) return null;
+                    return rs.getBoolean("Replayed");
+                }
+            });
+            if (replayed == null) return false;
+            IdempotencyKeys.remember(idemKey, new IdempotencyKeys.Outcome(rentalId, 0));
+            if (!replayed) {
+                logEvent("RENTAL_APPROVED", "Rental " + rentalId + " approved", adminUserId);
+                EventBus.wake();
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error approving rental: " + e.getMessage());
+        }
+        return false;
+    }
+    
+    // TRANSACTION METHODS
+    public static double getTotalAdminProfit() {
+        if (backend != null) return backend.getTotalAdminProfit();
+        String sql = "SELECT SUM(AdminCommission) as TotalProfit FROM Transactions WHERE Status = 'COMPLETED'";
+        
+        try {
+            return Resilience.call("getTotalAdminProfit", Resilience.Policy.READ, conn -> {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    return rs.next() ? rs.getDouble("TotalProfit") : 0.0;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting admin profit: " + e.getMessage());
+        }
+        return 0.0;
+    }
+    
+    // LOGGING
+    static void logEvent(String logType, String message, int userId) {
+        if (backend != null) {
+            backend.logEvent(logType, message, userId);
+            return;
+        }
+        String sql = "INSERT INTO SystemLogs (LogType, LogMessage, UserID) VALUES (?, ?, ?)";
+        
+        try {
+            // Not retried after a lost connection: a duplicate log line is worse than a missing one
+            Resilience.call("logEvent", Resilience.Policy.WRITE, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, logType);
+                    pstmt.setString(2, message);
+                    if (userId > 0) {
+                        pstmt.setInt(3, userId);
+                    } else {
+                        pstmt.setNull(3, Types.INTEGER);
+                    }
+                    return pstmt.executeUpdate();
+                }
+            });
+        } catch (SQLException | DataAccessException e) {
+            System.err.println("[✗] Failed to log event: " + e.getMessage());
+        }
+    }
+    
+    // DEBUG METHODS
+    public static void printDatabaseStats() {
+        if (backend != null) {
+            backend.printDatabaseStats();
+            return;
+        }
+        System.out.println("\n=== DATABASE STATISTICS ===");
+        String[] tables = {"Users", "Vehicles", "Rentals", "Transactions", "SystemLogs"};
+        
+        for (String table : tables) {
+            try {
+                int count = Resilience.call("printDatabaseStats", Resilience.Policy.READ, conn -> {
+                    try (Statement stmt = conn.createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT COUNT(*) as count FROM " + table)) {
+                        return rs.next() ? rs.getInt("count") : 0;
+                    }
+                });
+                System.out.println(table + ": " + count + " rows");
+            } catch (SQLException | DataAccessException e) {
+                System.out.println(table + ": Error - " + e.getMessage());
+            }
+        }
+        System.out.println("===========================\n");
+    }
+    
+    public static void viewSystemLogs() {
+        if (backend != null) {
+            backend.viewSystemLogs();
+            return;
+        }
+        String sql = "SELECT * FROM SystemLogs ORDER BY CreatedAt DESC LIMIT 20";
+        
+        try {
+            // Collected first so a retried attempt does not print the table twice
+            List<String> lines = Resilience.call("viewSystemLogs", Resilience.Policy.READ, conn -> {
+                List<String> rows = new ArrayList<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        rows.add(String.format("%-5d %-20s %-40s %-10d %-20s",
+                            rs.getInt("LogID"),
+                            rs.getString("LogType"),
+                            rs.getString("LogMessage").length() > 40 ?
+                                rs.getString("LogMessage").substring(0, 37) + "..." :
+                                rs.getString("LogMessage"),
+                            rs.getInt("UserID"),
+                            rs.getTimestamp("CreatedAt").toString().substring(0, 19)
+                        ));
+                    }
+                }
+                return rows;
+            });
+            
+            System.out.println("\n=== RECENT SYSTEM LOGS ===");
+            System.out.printf("%-5s %-20s %-40s %-10s %-20s\n",
+                "ID", "Type", "Message", "UserID", "Timestamp");
+            System.out.println("----------------------------------------------------------------------------------------");
+            for (String line : lines) {
+                System.out.println(line);
+            }
+            System.out.println("----------------------------------------------------------------------------------------\n");
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting logs: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+// Vehicle Rental System - Database Connection Manager
+import java.sql.*;
+import java.util.*;
+
+// DATABASE CONNECTION MANAGER
+class DatabaseManager {
+    // The application's own database; tools that write test data must point rental.db.url elsewhere
+    static final String APP_DATABASE = "VehicleRentalDB";
+    private static final String DB_URL = System.getProperty("rental.db.url", "jdbc:mysql://localhost:3306/" + APP_DATABASE);
+    private static final String DB_USER = "root";
+    private static final String DB_PASSWORD = "jerrome_maximof1";
+    private static Connection connection = null;
+    private static boolean schemaMigrated = false;
+    
+    // Threads given their own connection (load workers) use it in place of the shared one
+    private static final ThreadLocal<Connection> threadConnection = new ThreadLocal<>();
+    private static final Set<Connection> threadConnections = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    
+    private static final int CONNECT_TIMEOUT_SECONDS = 5;
+    
+    public static Connection getConnection() {
+        try {
+            return connect();
+        } catch (SQLException e) {
+            System.err.println("[✗] Database connection error: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    // Shared connection (or the thread's own, see bindThreadConnection), reconnecting if needed;
+    // throws instead of returning null (see Resilience)
+    static Connection connect() throws SQLException {
+        Connection own = threadConnection.get();
+        if (own == null) return connectShared();
+        if (own.isClosed()) {
+            threadConnections.remove(own);
+            own = openConnection();
+            threadConnection.set(own);
+            threadConnections.add(own);
+        }
+        return IndexAdvisor.isCapturing() ? IndexAdvisor.wrapForCapture(own) : own;
+    }
+    
+    private static synchronized Connection connectShared() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            initializeConnection();
+        }
+        return IndexAdvisor.isCapturing() ? IndexAdvisor.wrapForCapture(connection) : connection;
+    }
+    
+    // Gives the calling thread a connection of its own for every later connect()
+    static void bindThreadConnection() throws SQLException {
+        if (threadConnection.get() != null) return;
+        Connection own = openConnection();
+        threadConnection.set(own);
+        threadConnections.add(own);
+    }
+    
+    // Closes every thread's own connection (their threads must be done with them)
+    static void closeThreadConnections() {
+        for (Connection own : threadConnections) {
+            try {
+                own.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        threadConnections.clear();
+    }
+    
+    // Drops the connection after a connection-level failure so the next call reconnects
+    static void discardConnection() {
+        Connection own = threadConnection.get();
+        if (own != null) {
+            // Closed here, reopened by the thread's next connect()
+            try {
+                own.close();
+            } catch (SQLException ignored) {
+            }
+            return;
+        }
+        discardShared();
+    }
+    
+    private static synchronized void discardShared() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+        connection = null;
+    }
+
+    // Dedicated connection for long-running tools; caller must close it
+    public static Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+    }
+    
+    // Connection to another MySQL instance with the same credentials (shards)
+    public static Connection openConnection(String url) throws SQLException {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("MySQL JDBC Driver not found", e);
+        }
+        DriverManager.setLoginTimeout(CONNECT_TIMEOUT_SECONDS);
+        return DriverManager.getConnection(url, DB_USER, DB_PASSWORD);
+    }
+    
+    private static void initializeConnection() throws SQLException {
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+            DriverManager.setLoginTimeout(CONNECT_TIMEOUT_SECONDS);
+            connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+            System.out.println("[✓] MySQL Database connected successfully!");
+            
+            // Test the connection and check if tables exist
+            testDatabaseSetup();
+            
+            // Bring the schema up to date once per process; never run on a partly migrated schema
+            if (!schemaMigrated) {
+                if (!SchemaMigrator.migrate()) {
+                    System.err.println("[✗] Schema is not up to date; refusing to start.");
+                    System.err.println("[✗] Fix the failing migration (see above) and restart.");
+                    System.exit(1);
+                }
+                schemaMigrated = true;
+            }
+            
+        } catch (ClassNotFoundException e) {
+            System.err.println("[✗] MySQL JDBC Driver not found!");
+            System.err.println("[✗] Please add mysql-connector-java-8.0.xx.jar to your classpath");
+            System.exit(1);
+        } catch (SQLException e) {
+            // Once the app is running a lost server is reported to the caller, not fatal
+            if (schemaMigrated) throw e;
+            System.err.println("[✗] Database connection failed!");
+            System.err.println("[✗] Error: " + e.getMessage());
+            System.err.println("[✗] Check if:");
+            System.err.println("    1. MySQL server is running");
+            System.err.println("    2. Database at " + DB_URL + " exists");
+            System.err.println("    3. Username/password is correct");
+            System.exit(1);
+        }
+    }
+    
+    private static void testDatabaseSetup() {
+        try {
+            // Check if UserRoles table has data
+            String checkSql = "SELECT COUNT(*) as count FROM UserRoles";
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(checkSql)) {
+                if (rs.next() && rs.getInt("count") == 0) {
+                    System.out.println("[!] Database tables are empty. Initializing default data...");
+                    initializeDefaultData();
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("[!] Database tables might not exist. Make sure you ran the SQL script.");
+        }
+    }
+    
+    private static void initializeDefaultData() {
+        try (Statement stmt = connection.createStatement()) {
+            insertReferenceData(stmt);
+            
+            // Insert default admin user (password: admin123)
+            stmt.execute("INSERT IGNORE INTO Users (Username, PasswordHash, FullName, Email, Phone, RoleID, WalletBalance) VALUES " +
+                        "('admin', 'admin123', 'System Admin', 'admin@rental.com', '1234567890', 1, 1000.00)");
+            
+            System.out.println("[✓] Default data initialized successfully!");
+            
+        } catch (SQLException e) {
+            System.err.println("[✗] Error initializing default data: " + e.getMessage());
+        }
+    }
+    
+    // Lookup rows exactly as seeded by VehicleRentalDB.sql (also used by migration V3)
+    static void insertReferenceData(Statement stmt) throws SQLException {
+        // Insert default roles
+        stmt.execute("INSERT IGNORE INTO UserRoles (RoleName, Description) VALUES " +
+                    "('ADMIN', 'System Administrator'), " +
+                    "('CUSTOMER', 'Regular Customer'), " +
+                    "('OWNER', 'Vehicle Owner')");
+        
+        // Insert default statuses
+        stmt.execute("INSERT IGNORE INTO VehicleStatuses (StatusName, Description, IsAvailable) VALUES " +
+                    "('AVAILABLE', 'Available for rent', TRUE), " +
+                    "('RENTED', 'Currently rented', FALSE), " +
+                    "('MAINTENANCE', 'Under maintenance', FALSE), " +
+                    "('UNAVAILABLE', 'Temporarily unavailable', FALSE)");
+        
+        // Insert default makes
+        stmt.execute("INSERT IGNORE INTO VehicleMakes (MakeName, Country, EstablishedYear) VALUES " +
+                    "('Toyota', 'Japan', 1937), ('Honda', 'Japan', 1948), ('Ford', 'USA', 1903), " +
+                    "('BMW', 'Germany', 1916), ('Tesla', 'USA', 2003), ('Mercedes', 'Germany', 1926), " +
+                    "('Hyundai', 'South Korea', 1967)");
+        
+        // Insert default colors
+        stmt.execute("INSERT IGNORE INTO VehicleColors (ColorName, HexCode) VALUES " +
+                    "('White', '#FFFFFF'), ('Black', '#000000'), ('Blue', '#0000FF'), " +
+                    "('Silver', '#C0C0C0'), ('Red', '#FF0000'), ('Gray', '#808080')");
+        
+        // Insert rental, payment and transaction lookups
+        stmt.execute("INSERT IGNORE INTO RentalStatuses (StatusName, Description) VALUES " +
+                    "('PENDING', 'Waiting for approval'), ('ACTIVE', 'Currently active'), " +
+                    "('COMPLETED', 'Successfully completed'), ('CANCELLED', 'Cancelled by user'), " +
+                    "('REJECTED', 'Rejected by admin')");
+        stmt.execute("INSERT IGNORE INTO PaymentStatuses (StatusName, Description) VALUES " +
+                    "('PENDING', 'Payment pending'), ('PAID', 'Payment completed'), " +
+                    "('REFUNDED', 'Payment refunded'), ('FAILED', 'Payment failed')");
+        stmt.execute("INSERT IGNORE INTO TransactionTypes (TypeName, Description, CommissionRate) VALUES " +
+                    "('USER_RENTAL', 'Rental of user-listed vehicle', 20.00), " +
+                    "('COMPANY_RENTAL', 'Rental of company vehicle', 100.00), " +
+                    "('WALLET_ADD', 'Adding money to wallet', 0.00), " +
+                    "('WALLET_PAYMENT', 'Payment from wallet', 0.00), " +
+                    "('REFUND', 'Refund transaction', 0.00)");
+    }
+    
+    public static void closeConnection() {
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+                System.out.println("[✓] Database connection closed.");
+            }
+        } catch (SQLException e) {
+            System.err.println("[✗] Error closing connection: " + e.getMessage());
+        }
+    }
+    
+    public static boolean testConnection() {
+        try {
+            Connection conn = getConnection();
+            if (conn == null) return false;
+            
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT 1");
+                return true;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
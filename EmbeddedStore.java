@@ -0,0 +1,1212 @@
+// Vehicle Rental System - Embedded Storage
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+// EMBEDDED STORE
+// Local storage engine for running without MySQL (-Drental.storage=embedded). Users, Vehicles,
+// Rentals, Transactions and SystemLogs live in int-keyed open-addressing maps. Every mutation is
+// one write-ahead log record holding the after-images of the rows it changed, appended to a
+// memory-mapped wal.log under the store lock and only then applied to the maps; the caller then
+// waits for a shared fsync (group commit) before returning. When the log grows past
+// COMPACT_BYTES it is rotated to wal.old.log under the lock, together with a reference copy of
+// the maps (rows are copy-on-write, so that is a consistent view), and a background thread
+// writes the view to snapshot.bin and deletes wal.old.log. Recovery loads the snapshot and
+// replays wal.old.log, then wal.log; replaying after-images is idempotent, so a crash at any
+// point of a compaction is harmless. Rows, statuses and ids follow the MySQL schema and seeded
+// lookup ids.
+class EmbeddedStore implements StorageBackend {
+    private static final int SNAPSHOT_MAGIC = 0x52454E54;      // "RENT"
+    private static final long COMPACT_BYTES = 64L << 20;
+    private static final int MAX_LOGS = 10_000;
+
+    // Lookup ids as seeded by VehicleRentalDB.sql (index = id)
+    private static final String[] ROLES = {null, "ADMIN", "CUSTOMER", "OWNER"};
+    private static final String[] VEHICLE_STATUSES = {null, "AVAILABLE", "RENTED", "MAINTENANCE", "UNAVAILABLE"};
+    private static final String[] RENTAL_STATUSES = {null, "PENDING", "ACTIVE", "COMPLETED", "CANCELLED", "REJECTED"};
+    private static final String[] PAYMENT_STATUSES = {null, "PENDING", "PAID", "REFUNDED", "FAILED"};
+    private static final int USER_RENTAL = 1, COMPANY_RENTAL = 2;
+
+    private static final byte USER = 1, VEHICLE = 2, RENTAL = 3, TRANSACTION = 4, LOG = 5;
+
+    // ========== ROWS ==========
+    static class UserRow {
+        int id; String username, password, fullName, email, phone; int roleId; long walletCents;
+        boolean active = true; long createdAt;
+    }
+
+    static class VehicleRow {
+        int id; String registrationNo, make, model; int year; String color; long rateCents;
+        int statusId; int ownerId; boolean userListed; String location; long createdAt;
+    }
+
+    static class RentalRow {
+        int id, userId, vehicleId; int rentalDay, returnDay; long amountCents;
+        int statusId, paymentStatusId; long createdAt; int approvedBy; long approvedAt;
+    }
+
+    static class TransactionRow {
+        int id, rentalId, userId, typeId; long amountCents, commissionCents, ownerCents;
+        String status, description; long date;
+    }
+
+    static class LogRow {
+        int id; String type, message; int userId; long createdAt;
+    }
+
+    private final IntMap<UserRow> users = new IntMap<>();
+    private final IntMap<VehicleRow> vehicles = new IntMap<>();
+    private final IntMap<RentalRow> rentals = new IntMap<>();
+    private final IntMap<TransactionRow> transactions = new IntMap<>();
+    private final IntMap<LogRow> logs = new IntMap<>();
+    private final Map<String, Integer> userByName = new HashMap<>();
+    private final Set<String> emails = new HashSet<>();
+    private final Set<String> registrations = new HashSet<>();
+    private final IntMap<List<Integer>> rentalsByUser = new IntMap<>();
+    private final IntMap<List<Integer>> transactionsByRental = new IntMap<>();
+    private final TreeSet<Integer> pendingRentals = new TreeSet<>();
+    private int nextUserId = 1, nextVehicleId = 1, nextRentalId = 1, nextTransactionId = 1, nextLogId = 1;
+    private int oldestLogId = 1;
+    private long adminProfitCents;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Path dir;
+    private volatile Wal wal;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "embedded-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean compacting;   // guarded by the write lock
+    long recoveredRecords, recoveryMillis;
+
+    // ========== OPEN / RECOVERY ==========
+    public static EmbeddedStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        return new EmbeddedStore(dir);
+    }
+
+    private EmbeddedStore(Path dir) throws IOException {
+        this.dir = dir;
+        long start = System.nanoTime();
+        Path snapshot = dir.resolve("snapshot.bin");
+        if (Files.exists(snapshot)) loadSnapshot(snapshot);
+        // A compaction that did not finish left the rotated log behind; it precedes wal.log
+        Path oldLog = dir.resolve("wal.old.log");
+        boolean unfinished = Files.exists(oldLog);
+        if (unfinished) {
+            Wal old = new Wal(oldLog);
+            recoveredRecords = old.replay(this::applyRecord);
+            old.close();
+        }
+        wal = new Wal(dir.resolve("wal.log"));
+        recoveredRecords += wal.replay(this::applyRecord);
+        if (unfinished) {
+            writeSnapshot(view());
+            Files.delete(oldLog);
+        }
+        recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+
+        if (users.size() == 0) {
+            // Same default admin as DatabaseManager.initializeDefaultData
+            UserRow admin = new UserRow();
+            admin.id = nextUserId; admin.username = "admin"; admin.password = "admin123";
+            admin.fullName = "System Admin"; admin.email = "admin@rental.com"; admin.phone = "1234567890";
+            admin.roleId = 1; admin.walletCents = 100000; admin.createdAt = System.currentTimeMillis();
+            commit(new Encoder().user(admin));
+            System.out.println("[✓] Default data initialized successfully!");
+        }
+        System.out.println("[✓] Embedded store opened at " + dir.toAbsolutePath() + " (" + recoveredRecords +
+                           " log records replayed in " + recoveryMillis + " ms)");
+    }
+
+    // Applies one log record (a batch of row after-images) to the in-memory state
+    private void applyRecord(ByteBuffer buf) {
+        int images = buf.getShort() & 0xFFFF;
+        for (int k = 0; k < images; k++) {
+            byte type = buf.get();
+            switch (type) {
+                case USER: putUser(readUser(buf)); break;
+                case VEHICLE: putVehicle(readVehicle(buf)); break;
+                case RENTAL: putRental(readRental(buf)); break;
+                case TRANSACTION: putTransaction(readTransaction(buf)); break;
+                case LOG: putLog(readLog(buf)); break;
+                default: throw new IllegalStateException("Unknown row type " + type);
+            }
+        }
+    }
+
+    private void putUser(UserRow u) {
+        UserRow old = users.put(u.id, u);
+        if (old != null) {
+            userByName.remove(old.username);
+            emails.remove(old.email);
+        }
+        userByName.put(u.username, u.id);
+        emails.add(u.email);
+        nextUserId = Math.max(nextUserId, u.id + 1);
+    }
+
+    private void putVehicle(VehicleRow v) {
+        VehicleRow old = vehicles.put(v.id, v);
+        if (old != null) registrations.remove(old.registrationNo);
+        registrations.add(v.registrationNo);
+        nextVehicleId = Math.max(nextVehicleId, v.id + 1);
+    }
+
+    private void putRental(RentalRow r) {
+        if (rentals.put(r.id, r) == null) indexOf(rentalsByUser, r.userId).add(r.id);
+        if (r.statusId == 1) pendingRentals.add(r.id); else pendingRentals.remove(r.id);
+        nextRentalId = Math.max(nextRentalId, r.id + 1);
+    }
+
+    private void putTransaction(TransactionRow t) {
+        TransactionRow old = transactions.put(t.id, t);
+        if (old == null && t.rentalId > 0) indexOf(transactionsByRental, t.rentalId).add(t.id);
+        if (old != null && "COMPLETED".equals(old.status)) adminProfitCents -= old.commissionCents;
+        if ("COMPLETED".equals(t.status)) adminProfitCents += t.commissionCents;
+        nextTransactionId = Math.max(nextTransactionId, t.id + 1);
+    }
+
+    private void putLog(LogRow l) {
+        if (l.id < oldestLogId) return;
+        logs.put(l.id, l);
+        nextLogId = Math.max(nextLogId, l.id + 1);
+        // Keep only the most recent MAX_LOGS entries in memory and in snapshots
+        while (nextLogId - oldestLogId > MAX_LOGS) logs.remove(oldestLogId++);
+    }
+
+    private static List<Integer> indexOf(IntMap<List<Integer>> index, int key) {
+        List<Integer> ids = index.get(key);
+        if (ids == null) {
+            ids = new ArrayList<>(4);
+            index.put(key, ids);
+        }
+        return ids;
+    }
+
+    // ========== WRITE PATH ==========
+    // Must be called with the write lock held; the record is appended to the log and then applied,
+    // so the maps never hold a change the log does not
+    private long append(Encoder record) {
+        byte[] bytes = record.finish();
+        long lsn;
+        try {
+            lsn = wal.append(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException("Write-ahead log append failed: " + e.getMessage(), e);
+        }
+        applyRecord(ByteBuffer.wrap(bytes));
+        if (wal.size() > COMPACT_BYTES && !compacting) startCompaction();
+        return lsn;
+    }
+
+    // Appends under the write lock, then waits for the record to be durable outside it
+    private void commit(Encoder record) {
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            lsn = append(record);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+    }
+
+    // Write lock held: rotates the log and hands a view of the maps to the compactor thread. The
+    // old log is forced on close, so writers still waiting on its lsns are released; the new log
+    // continues its lsns. If an earlier compaction failed, its rotated log is kept and the new
+    // snapshot covers both.
+    private void startCompaction() {
+        Path oldLog = dir.resolve("wal.old.log");
+        try {
+            if (!Files.exists(oldLog)) {
+                Wal old = wal;
+                old.close();
+                Files.move(dir.resolve("wal.log"), oldLog, StandardCopyOption.ATOMIC_MOVE);
+                wal = new Wal(dir.resolve("wal.log"), old);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Write-ahead log rotation failed: " + e.getMessage(), e);
+        }
+        compacting = true;
+        Object[][] view = view();
+        compactor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                writeSnapshot(view);
+                Files.delete(oldLog);
+                System.out.println("[✓] Embedded store compacted in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (IOException e) {
+                System.err.println("[✗] Embedded store compaction failed: " + e.getMessage());
+            } finally {
+                lock.writeLock().lock();
+                compacting = false;
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Lock held: the rows of every table at this instant (users, vehicles, rentals, transactions, logs)
+    private Object[][] view() {
+        return new Object[][] {users.values(), vehicles.values(), rentals.values(), transactions.values(), logs.values()};
+    }
+
+    // Writes a view to a new snapshot and swaps it in atomically
+    private void writeSnapshot(Object[][] view) throws IOException {
+        Path tmp = dir.resolve("snapshot.bin.tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(SNAPSHOT_MAGIC).putInt(1).flip();
+            ch.write(header);
+            Encoder chunk = new Encoder();
+            for (Object u : view[0]) {
+                if (u != null) chunk.user((UserRow) u);
+                if (chunk.images >= 4096) flushChunk(ch, chunk);
+            }
+            for (Object v : view[1]) {
+                if (v != null) chunk.vehicle((VehicleRow) v);
+                if (chunk.images >= 4096) flushChunk(ch, chunk);
+            }
+            for (Object r : view[2]) {
+                if (r != null) chunk.rental((RentalRow) r);
+                if (chunk.images >= 4096) flushChunk(ch, chunk);
+            }
+            for (Object t : view[3]) {
+                if (t != null) chunk.transaction((TransactionRow) t);
+                if (chunk.images >= 4096) flushChunk(ch, chunk);
+            }
+            for (Object l : view[4]) {
+                if (l != null) chunk.log((LogRow) l);
+                if (chunk.images >= 4096) flushChunk(ch, chunk);
+            }
+            flushChunk(ch, chunk);
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve("snapshot.bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Snapshot chunks use the log record format: int length, then the record
+    private static void flushChunk(FileChannel ch, Encoder chunk) throws IOException {
+        if (chunk.images == 0) return;
+        byte[] bytes = chunk.finish();
+        ByteBuffer buf = ByteBuffer.allocate(4 + bytes.length);
+        buf.putInt(bytes.length).put(bytes).flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        chunk.reset();
+    }
+
+    private void loadSnapshot(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buf.getInt() != SNAPSHOT_MAGIC) throw new IOException("Not a snapshot file: " + file);
+        buf.getInt();
+        while (buf.remaining() >= 4) {
+            int len = buf.getInt();
+            ByteBuffer record = buf.slice();
+            record.limit(len);
+            applyRecord(record);
+            buf.position(buf.position() + len);
+        }
+    }
+
+    // ========== USERS ==========
+    private User toUser(UserRow u) {
+        User user = new User(u.id, u.username, u.password, u.fullName, u.email, u.phone, ROLES[u.roleId]);
+        user.setWalletBalance(u.walletCents / 100.0);
+        return user;
+    }
+
+    @Override public User getUserByUsername(String username) {
+        lock.readLock().lock();
+        try {
+            Integer id = userByName.get(username);
+            UserRow u = id == null ? null : users.get(id);
+            return u != null && u.active ? toUser(u) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public User getUserById(int userId) {
+        lock.readLock().lock();
+        try {
+            UserRow u = users.get(userId);
+            return u != null && u.active ? toUser(u) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public boolean addUser(User user) {
+        if (getUserByUsername(user.getUsername()) != null) {
+            System.err.println("[✗] Username already exists!");
+            return false;
+        }
+        int roleId = 2;
+        if (user.getRole().equalsIgnoreCase("ADMIN")) roleId = 1;
+        else if (user.getRole().equalsIgnoreCase("OWNER")) roleId = 3;
+
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            // Same constraints as the Users table
+            if (userByName.containsKey(user.getUsername()) || emails.contains(user.getEmail())) {
+                System.err.println("[✗] Error adding user: Duplicate entry for username or email");
+                return false;
+            }
+            if (user.getEmail() == null || !user.getEmail().matches(".+@.{2,}\\..{2,}")) {
+                System.err.println("[✗] Error adding user: Check constraint on Email is violated.");
+                return false;
+            }
+            UserRow u = new UserRow();
+            u.id = nextUserId; u.username = user.getUsername(); u.password = user.getPassword();
+            u.fullName = user.getFullName(); u.email = user.getEmail(); u.phone = user.getPhone();
+            u.roleId = roleId; u.walletCents = Math.round(user.getWalletBalance() * 100);
+            u.createdAt = System.currentTimeMillis();
+            lsn = append(new Encoder().user(u).log(newLog("USER_REGISTERED", "New user: " + u.username, 0)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+        return true;
+    }
+
+    @Override public List<User> getAllUsers() {
+        lock.readLock().lock();
+        try {
+            List<UserRow> rows = new ArrayList<>();
+            for (int i = 0; i < users.capacity(); i++) {
+                UserRow u = users.valueAt(i);
+                if (u != null && u.active) rows.add(u);
+            }
+            rows.sort(Comparator.comparingInt(u -> u.id));
+            List<User> result = new ArrayList<>(rows.size());
+            for (UserRow u : rows) result.add(toUser(u));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public boolean updateUserWallet(int userId, double amount) {
+        long cents = Math.round(amount * 100);
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            UserRow old = users.get(userId);
+            if (old == null) return false;
+            if (cents < 0) {
+                System.err.println("[✗] Error updating wallet: Check constraint on WalletBalance is violated.");
+                return false;
+            }
+            UserRow u = copy(old);
+            u.walletCents = cents;
+            lsn = append(new Encoder().user(u).log(newLog("WALLET_UPDATED", "User " + userId + " wallet: $" + amount, userId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+        return true;
+    }
+
+    @Override public Double adjustWallet(int userId, double amount, String idemKey) {
+        long delta = Math.round(amount * 100);
+        long lsn;
+        double balance;
+        lock.writeLock().lock();
+        try {
+            UserRow old = users.get(userId);
+            if (old == null || !old.active) {
+                System.err.println("[✗] Error updating wallet: User not found");
+                return null;
+            }
+            if (old.walletCents + delta < 0) {
+                System.err.println("[✗] Error updating wallet: Insufficient wallet balance");
+                return null;
+            }
+            UserRow u = copy(old);
+            u.walletCents += delta;
+            balance = u.walletCents / 100.0;
+            lsn = append(new Encoder().user(u).log(newLog("WALLET_UPDATED", "User " + userId + " wallet: $" + balance, userId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+        return balance;
+    }
+
+    // ========== VEHICLES ==========
+    private static Vehicle toVehicle(VehicleRow v) {
+        return new Vehicle(v.id, v.registrationNo, v.make, v.model, v.year, v.color, v.rateCents / 100.0,
+                           VEHICLE_STATUSES[v.statusId], v.ownerId, v.userListed, v.location);
+    }
+
+    @Override public List<Vehicle> getAvailableVehicles() {
+        lock.readLock().lock();
+        try {
+            List<VehicleRow> rows = new ArrayList<>();
+            for (int i = 0; i < vehicles.capacity(); i++) {
+                VehicleRow v = vehicles.valueAt(i);
+                if (v != null && v.statusId == 1) rows.add(v);
+            }
+            rows.sort(Comparator.comparingLong(v -> v.rateCents));
+            List<Vehicle> result = new ArrayList<>(rows.size());
+            for (VehicleRow v : rows) result.add(toVehicle(v));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public List<Vehicle> getUserListedVehicles(int ownerId) {
+        lock.readLock().lock();
+        try {
+            List<Vehicle> result = new ArrayList<>();
+            for (int i = 0; i < vehicles.capacity(); i++) {
+                VehicleRow v = vehicles.valueAt(i);
+                if (v != null && v.ownerId == ownerId && v.userListed) result.add(toVehicle(v));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public Vehicle getVehicleById(int id) {
+        lock.readLock().lock();
+        try {
+            VehicleRow v = vehicles.get(id);
+            return v == null ? null : toVehicle(v);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public boolean updateVehicleStatus(int vehicleId, String status) {
+        int statusId = Arrays.asList(VEHICLE_STATUSES).indexOf(status);
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            VehicleRow old = vehicles.get(vehicleId);
+            if (old == null || statusId < 1) return false;
+            VehicleRow v = copy(old);
+            v.statusId = statusId;
+            Encoder record = new Encoder().vehicle(v);
+            statusChangeLog(record, old, v);
+            lsn = append(record.log(newLog("VEHICLE_STATUS", "Vehicle " + vehicleId + " -> " + status, 0)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+        return true;
+    }
+
+    // What trg_VehicleStatusChange writes
+    private void statusChangeLog(Encoder record, VehicleRow old, VehicleRow v) {
+        if (old.statusId != v.statusId) {
+            record.log(newLog("VEHICLE_STATUS_CHANGE", "Vehicle " + old.registrationNo + " status changed", 0));
+        }
+    }
+
+    @Override public boolean addVehicle(Vehicle vehicle) {
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            if (registrations.contains(vehicle.getRegistrationNo())) {
+                System.err.println("[✗] Error adding vehicle: Duplicate entry '" + vehicle.getRegistrationNo() + "'");
+                return false;
+            }
+            if (vehicle.getDailyRate() <= 0 || vehicle.getYear() < 1900 || vehicle.getYear() > LocalDate.now().getYear() + 1) {
+                System.err.println("[✗] Error adding vehicle: Check constraint on Vehicles is violated.");
+                return false;
+            }
+            if (users.get(vehicle.getOwnerId()) == null) {
+                System.err.println("[✗] Error adding vehicle: Owner does not exist");
+                return false;
+            }
+            VehicleRow v = new VehicleRow();
+            v.id = nextVehicleId; v.registrationNo = vehicle.getRegistrationNo(); v.make = vehicle.getMake();
+            v.model = vehicle.getModel(); v.year = vehicle.getYear(); v.color = vehicle.getColor();
+            v.rateCents = Math.round(vehicle.getDailyRate() * 100); v.statusId = 1; v.ownerId = vehicle.getOwnerId();
+            v.userListed = vehicle.isUserListed(); v.location = vehicle.getLocation(); v.createdAt = System.currentTimeMillis();
+            lsn = append(new Encoder().vehicle(v)
+                         .log(newLog("VEHICLE_ADDED", v.registrationNo + " added", v.ownerId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+        return true;
+    }
+
+    @Override public boolean updateVehicleRate(int vehicleId, double newRate) {
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            VehicleRow old = vehicles.get(vehicleId);
+            if (old == null) return false;
+            if (newRate <= 0) {
+                System.err.println("[✗] Error updating vehicle rate: Check constraint on DailyRate is violated.");
+                return false;
+            }
+            VehicleRow v = copy(old);
+            v.rateCents = Math.round(newRate * 100);
+            lsn = append(new Encoder().vehicle(v));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+        return true;
+    }
+
+    // ========== RENTALS ==========
+    private static Rental toRental(RentalRow r) {
+        return new Rental(r.id, r.userId, r.vehicleId, LocalDate.ofEpochDay(r.rentalDay), LocalDate.ofEpochDay(r.returnDay),
+                          r.amountCents / 100.0, RENTAL_STATUSES[r.statusId], PAYMENT_STATUSES[r.paymentStatusId]);
+    }
+
+    @Override public List<Rental> getRentalsByUserId(int userId) {
+        lock.readLock().lock();
+        try {
+            List<Integer> ids = rentalsByUser.get(userId);
+            List<Rental> result = new ArrayList<>();
+            if (ids == null) return result;
+            for (int k = ids.size() - 1; k >= 0; k--) result.add(toRental(rentals.get(ids.get(k))));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public List<Rental> getPendingRentals() {
+        lock.readLock().lock();
+        try {
+            List<Rental> result = new ArrayList<>(pendingRentals.size());
+            for (int id : pendingRentals) result.add(toRental(rentals.get(id)));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Same checks and effects as sp_CreateRental (without PriceQuotes, which only MySQL mode issues)
+    @Override public Double createRental(int userId, int vehicleId, LocalDate rentalDate, LocalDate returnDate, String idemKey) {
+        long lsn;
+        long balance;
+        lock.writeLock().lock();
+        try {
+            VehicleRow vehicle = vehicles.get(vehicleId);
+            UserRow user = users.get(userId);
+            String error = null;
+            long days = returnDate.toEpochDay() - rentalDate.toEpochDay();
+            if (vehicle == null || vehicle.statusId != 1) error = "Vehicle not available";
+            else if (days <= 0) error = "Invalid rental period";
+            else if (user == null || user.walletCents < vehicle.rateCents * days) error = "Insufficient wallet balance";
+            if (error != null) {
+                System.err.println("[✗] Error creating rental: " + error);
+                return null;
+            }
+            long total = vehicle.rateCents * days;
+            long now = System.currentTimeMillis();
+
+            RentalRow r = new RentalRow();
+            r.id = nextRentalId; r.userId = userId; r.vehicleId = vehicleId;
+            r.rentalDay = (int) rentalDate.toEpochDay(); r.returnDay = (int) returnDate.toEpochDay();
+            r.amountCents = total; r.statusId = 1; r.paymentStatusId = 1; r.createdAt = now;
+
+            VehicleRow v = copy(vehicle);
+            v.statusId = 2;
+            UserRow u = copy(user);
+            u.walletCents -= total;
+            balance = u.walletCents;
+
+            TransactionRow t = new TransactionRow();
+            t.id = nextTransactionId; t.rentalId = r.id; t.userId = userId; t.amountCents = total;
+            if (vehicle.userListed) {
+                t.typeId = USER_RENTAL;
+                t.commissionCents = Math.round(total * 0.2);
+                t.ownerCents = Math.round(total * 0.8);
+            } else {
+                t.typeId = COMPANY_RENTAL;
+                t.commissionCents = total;
+                t.ownerCents = 0;
+            }
+            t.status = "PENDING"; t.description = "Rental for vehicle #" + vehicleId; t.date = now;
+
+            Encoder record = new Encoder().rental(r).vehicle(v).user(u).transaction(t);
+            statusChangeLog(record, vehicle, v);
+            lsn = append(record.log(newLog("RENTAL_CREATED", "User " + userId + " rented vehicle " + vehicleId, userId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+        return balance / 100.0;
+    }
+
+    // Same checks and effects as sp_ApproveRental
+    @Override public boolean approveRental(int rentalId, int adminUserId, String idemKey) {
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            RentalRow old = rentals.get(rentalId);
+            if (old == null || old.statusId != 1) {
+                System.err.println("[✗] Error approving rental: Rental is not pending approval");
+                return false;
+            }
+            RentalRow r = copy(old);
+            r.statusId = 2; r.paymentStatusId = 2; r.approvedBy = adminUserId; r.approvedAt = System.currentTimeMillis();
+            Encoder record = new Encoder().rental(r);
+
+            long ownerEarnings = 0;
+            List<Integer> txIds = transactionsByRental.get(rentalId);
+            if (txIds != null) {
+                for (int id : txIds) {
+                    TransactionRow t = copy(transactions.get(id));
+                    t.status = "COMPLETED";
+                    ownerEarnings = t.ownerCents;
+                    record.transaction(t);
+                }
+            }
+            VehicleRow vehicle = vehicles.get(old.vehicleId);
+            if (ownerEarnings > 0 && vehicle != null && users.get(vehicle.ownerId) != null) {
+                UserRow owner = copy(users.get(vehicle.ownerId));
+                owner.walletCents += ownerEarnings;
+                record.user(owner);
+            }
+            lsn = append(record.log(newLog("RENTAL_APPROVED", "Rental " + rentalId + " approved", adminUserId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+        return true;
+    }
+
+    // ========== TRANSACTIONS & LOGS ==========
+    @Override public double getTotalAdminProfit() {
+        lock.readLock().lock();
+        try {
+            return adminProfitCents / 100.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Write lock held: allocates the next log id
+    private LogRow newLog(String type, String message, int userId) {
+        LogRow l = new LogRow();
+        l.id = nextLogId++; l.type = type; l.message = message; l.userId = userId; l.createdAt = System.currentTimeMillis();
+        return l;
+    }
+
+    @Override public void logEvent(String logType, String message, int userId) {
+        long lsn;
+        lock.writeLock().lock();
+        try {
+            lsn = append(new Encoder().log(newLog(logType, message, userId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        wal.awaitDurable(lsn);
+    }
+
+    @Override public void printDatabaseStats() {
+        lock.readLock().lock();
+        try {
+            System.out.println("\n=== DATABASE STATISTICS ===");
+            System.out.println("Users: " + users.size() + " rows");
+            System.out.println("Vehicles: " + vehicles.size() + " rows");
+            System.out.println("Rentals: " + rentals.size() + " rows");
+            System.out.println("Transactions: " + transactions.size() + " rows");
+            System.out.println("SystemLogs: " + logs.size() + " rows (most recent " + MAX_LOGS + " kept)");
+            System.out.println("Write-ahead log: " + wal.size() / 1024 + " KB, " + wal.syncs + " group syncs for " +
+                               wal.appends + " records; last recovery " + recoveryMillis + " ms");
+            System.out.println("===========================\n");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public void viewSystemLogs() {
+        lock.readLock().lock();
+        try {
+            System.out.println("\n=== RECENT SYSTEM LOGS ===");
+            System.out.printf("%-5s %-20s %-40s %-10s %-20s\n", "ID", "Type", "Message", "UserID", "Timestamp");
+            System.out.println("----------------------------------------------------------------------------------------");
+            for (int id = nextLogId - 1, shown = 0; id >= oldestLogId && shown < 20; id--) {
+                LogRow l = logs.get(id);
+                if (l == null) continue;
+                shown++;
+                System.out.printf("%-5d %-20s %-40s %-10d %-20s\n", l.id, l.type,
+                                  l.message.length() > 40 ? l.message.substring(0, 37) + "..." : l.message,
+                                  l.userId, new Timestamp(l.createdAt).toString().substring(0, 19));
+            }
+            System.out.println("----------------------------------------------------------------------------------------\n");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.writeLock().lock();
+        try {
+            wal.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rows are never mutated in place: changes go through copies so readers and the log see whole rows
+    private static UserRow copy(UserRow o) {
+        UserRow u = new UserRow();
+        u.id = o.id; u.username = o.username; u.password = o.password; u.fullName = o.fullName; u.email = o.email;
+        u.phone = o.phone; u.roleId = o.roleId; u.walletCents = o.walletCents; u.active = o.active; u.createdAt = o.createdAt;
+        return u;
+    }
+
+    private static VehicleRow copy(VehicleRow o) {
+        VehicleRow v = new VehicleRow();
+        v.id = o.id; v.registrationNo = o.registrationNo; v.make = o.make; v.model = o.model; v.year = o.year;
+        v.color = o.color; v.rateCents = o.rateCents; v.statusId = o.statusId; v.ownerId = o.ownerId;
+        v.userListed = o.userListed; v.location = o.location; v.createdAt = o.createdAt;
+        return v;
+    }
+
+    private static RentalRow copy(RentalRow o) {
+        RentalRow r = new RentalRow();
+        r.id = o.id; r.userId = o.userId; r.vehicleId = o.vehicleId; r.rentalDay = o.rentalDay; r.returnDay = o.returnDay;
+        r.amountCents = o.amountCents; r.statusId = o.statusId; r.paymentStatusId = o.paymentStatusId;
+        r.createdAt = o.createdAt; r.approvedBy = o.approvedBy; r.approvedAt = o.approvedAt;
+        return r;
+    }
+
+    private static TransactionRow copy(TransactionRow o) {
+        TransactionRow t = new TransactionRow();
+        t.id = o.id; t.rentalId = o.rentalId; t.userId = o.userId; t.typeId = o.typeId; t.amountCents = o.amountCents;
+        t.commissionCents = o.commissionCents; t.ownerCents = o.ownerCents; t.status = o.status;
+        t.description = o.description; t.date = o.date;
+        return t;
+    }
+
+    // ========== RECORD ENCODING ==========
+    // A record is an unsigned short image count followed by tagged row images
+    static class Encoder {
+        private ByteBuffer buf = ByteBuffer.allocate(256);
+        static final int MAX_IMAGES = 0xFFFF;
+        int images;
+
+        Encoder() { buf.putShort((short) 0); }
+
+        void reset() { buf.clear(); buf.putShort((short) 0); images = 0; }
+
+        byte[] finish() {
+            if (images > MAX_IMAGES) throw new IllegalStateException("Record of " + images + " row images exceeds " + MAX_IMAGES);
+            buf.putShort(0, (short) images);
+            return Arrays.copyOf(buf.array(), buf.position());
+        }
+
+        private void ensure(int n) {
+            if (buf.remaining() < n) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + n));
+                buf.flip();
+                bigger.put(buf);
+                buf = bigger;
+            }
+        }
+
+        private Encoder tag(byte type) { ensure(1); buf.put(type); images++; return this; }
+        private void putInt(int v) { ensure(4); buf.putInt(v); }
+        private void putLong(long v) { ensure(8); buf.putLong(v); }
+        private void putBool(boolean v) { ensure(1); buf.put((byte) (v ? 1 : 0)); }
+        private void putString(String s) {
+            if (s == null) { putInt(-1); return; }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            putInt(b.length);
+            ensure(b.length);
+            buf.put(b);
+        }
+
+        Encoder user(UserRow u) {
+            tag(USER); putInt(u.id); putString(u.username); putString(u.password); putString(u.fullName);
+            putString(u.email); putString(u.phone); putInt(u.roleId); putLong(u.walletCents); putBool(u.active);
+            putLong(u.createdAt);
+            return this;
+        }
+
+        Encoder vehicle(VehicleRow v) {
+            tag(VEHICLE); putInt(v.id); putString(v.registrationNo); putString(v.make); putString(v.model);
+            putInt(v.year); putString(v.color); putLong(v.rateCents); putInt(v.statusId); putInt(v.ownerId);
+            putBool(v.userListed); putString(v.location); putLong(v.createdAt);
+            return this;
+        }
+
+        Encoder rental(RentalRow r) {
+            tag(RENTAL); putInt(r.id); putInt(r.userId); putInt(r.vehicleId); putInt(r.rentalDay); putInt(r.returnDay);
+            putLong(r.amountCents); putInt(r.statusId); putInt(r.paymentStatusId); putLong(r.createdAt);
+            putInt(r.approvedBy); putLong(r.approvedAt);
+            return this;
+        }
+
+        Encoder transaction(TransactionRow t) {
+            tag(TRANSACTION); putInt(t.id); putInt(t.rentalId); putInt(t.userId); putInt(t.typeId);
+            putLong(t.amountCents); putLong(t.commissionCents); putLong(t.ownerCents); putString(t.status);
+            putString(t.description); putLong(t.date);
+            return this;
+        }
+
+        Encoder log(LogRow l) {
+            tag(LOG); putInt(l.id); putString(l.type); putString(l.message); putInt(l.userId); putLong(l.createdAt);
+            return this;
+        }
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    private static UserRow readUser(ByteBuffer b) {
+        UserRow u = new UserRow();
+        u.id = b.getInt(); u.username = getString(b); u.password = getString(b); u.fullName = getString(b);
+        u.email = getString(b); u.phone = getString(b); u.roleId = b.getInt(); u.walletCents = b.getLong();
+        u.active = b.get() != 0; u.createdAt = b.getLong();
+        return u;
+    }
+
+    private static VehicleRow readVehicle(ByteBuffer b) {
+        VehicleRow v = new VehicleRow();
+        v.id = b.getInt(); v.registrationNo = getString(b); v.make = getString(b); v.model = getString(b);
+        v.year = b.getInt(); v.color = getString(b); v.rateCents = b.getLong(); v.statusId = b.getInt();
+        v.ownerId = b.getInt(); v.userListed = b.get() != 0; v.location = getString(b); v.createdAt = b.getLong();
+        return v;
+    }
+
+    private static RentalRow readRental(ByteBuffer b) {
+        RentalRow r = new RentalRow();
+        r.id = b.getInt(); r.userId = b.getInt(); r.vehicleId = b.getInt(); r.rentalDay = b.getInt();
+        r.returnDay = b.getInt(); r.amountCents = b.getLong(); r.statusId = b.getInt(); r.paymentStatusId = b.getInt();
+        r.createdAt = b.getLong(); r.approvedBy = b.getInt(); r.approvedAt = b.getLong();
+        return r;
+    }
+
+    private static TransactionRow readTransaction(ByteBuffer b) {
+        TransactionRow t = new TransactionRow();
+        t.id = b.getInt(); t.rentalId = b.getInt(); t.userId = b.getInt(); t.typeId = b.getInt();
+        t.amountCents = b.getLong(); t.commissionCents = b.getLong(); t.ownerCents = b.getLong();
+        t.status = getString(b); t.description = getString(b); t.date = b.getLong();
+        return t;
+    }
+
+    private static LogRow readLog(ByteBuffer b) {
+        LogRow l = new LogRow();
+        l.id = b.getInt(); l.type = getString(b); l.message = getString(b); l.userId = b.getInt(); l.createdAt = b.getLong();
+        return l;
+    }
+
+    // ========== WRITE-AHEAD LOG ==========
+    // The file is mapped in fixed segments so a sync only forces the segments written since the
+    // last one. It starts with a header (magic, generation); frames follow as int length,
+    // int crc32, int generation, record bytes, with the crc covering generation and record.
+    // Length 0 ends the log and -1 skips to the next segment. The generation goes up on every
+    // open: if a crash left unacknowledged frames after a torn one, they carry an older generation
+    // than the frames written over the tear, so replay stops at them.
+    // Appends write into the mapping; a daemon thread forces it for all waiting writers at once.
+    static class Wal {
+        private static final int SEGMENT_BYTES = 4 << 20;
+        private static final int HEADER_BYTES = 16;
+        private static final int WAL_MAGIC = 0x57414C31;      // "WAL1"
+
+        private final FileChannel channel;
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+        private int generation;
+        // Positions are log sequence numbers that never go back; file offset = lsn - fileStart
+        private long fileStart;
+        private long end = HEADER_BYTES;        // append position (guarded by this)
+        private volatile long durable = HEADER_BYTES;   // everything before this lsn is on disk
+        private long forceRequested;
+        private boolean closed;
+        volatile long syncs, appends;
+
+        Wal(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), SEGMENT_BYTES);
+            for (long pos = 0; pos < size; pos += SEGMENT_BYTES) mapSegment();
+            Thread flusher = new Thread(this::flushLoop, "wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+
+        // Empty log that takes over from a rotated one: same generation, lsns continue after it
+        Wal(Path file, Wal previous) throws IOException {
+            this(file);
+            long start;
+            synchronized (previous) {
+                start = previous.end;
+                generation = previous.generation;
+            }
+            syncs = previous.syncs;
+            appends = previous.appends;
+            synchronized (this) {
+                fileStart = start - HEADER_BYTES;
+                end = start;
+                durable = start;
+                forceRequested = start;
+                writeHeader();
+            }
+        }
+
+        private MappedByteBuffer mapSegment() throws IOException {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                                                   (long) segments.size() * SEGMENT_BYTES, SEGMENT_BYTES);
+            segments.add(segment);
+            return segment;
+        }
+
+        private void writeHeader() {
+            MappedByteBuffer first = segments.get(0);
+            first.putInt(0, WAL_MAGIC);
+            first.putInt(4, generation);
+            first.force();
+        }
+
+        interface RecordHandler { void apply(ByteBuffer record); }
+
+        // Applies every intact record, positions the log after the last one and starts a new generation
+        synchronized long replay(RecordHandler handler) {
+            MappedByteBuffer first = segments.get(0);
+            int lastGeneration = first.getInt(0) == WAL_MAGIC ? first.getInt(4) : 0;
+            long count = 0, pos = HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            int minGeneration = 0;
+            while (true) {
+                int seg = (int) (pos / SEGMENT_BYTES), off = (int) (pos % SEGMENT_BYTES);
+                if (seg >= segments.size() || off + 12 > SEGMENT_BYTES) break;
+                MappedByteBuffer segment = segments.get(seg);
+                int len = segment.getInt(off);
+                if (len == -1) {
+                    pos = (long) (seg + 1) * SEGMENT_BYTES;
+                    continue;
+                }
+                if (len <= 0 || off + 12 + len > SEGMENT_BYTES) break;
+                int gen = segment.getInt(off + 8);
+                if (gen < minGeneration || gen > lastGeneration) break;      // stale frame past a tear
+                ByteBuffer view = segment.duplicate();
+                view.position(off + 8);
+                byte[] frame = new byte[4 + len];
+                view.get(frame);
+                crc.reset();
+                crc.update(frame, 0, frame.length);
+                if ((int) crc.getValue() != segment.getInt(off + 4)) break;     // torn write at the tail
+                handler.apply(ByteBuffer.wrap(frame, 4, len).slice());
+                minGeneration = gen;
+                pos += 12 + len;
+                count++;
+            }
+            generation = lastGeneration + 1;
+            writeHeader();
+            end = pos;
+            durable = pos;
+            forceRequested = pos;
+            return count;
+        }
+
+        synchronized long append(byte[] record) throws IOException {
+            if (closed) throw new IOException("Write-ahead log is closed");
+            if (12 + record.length + 4 > SEGMENT_BYTES) throw new IOException("Record too large: " + record.length);
+            int off = (int) ((end - fileStart) % SEGMENT_BYTES);
+            if (off + 12 + record.length + 4 > SEGMENT_BYTES) {
+                segment(end - fileStart).putInt(off, -1);
+                end += SEGMENT_BYTES - off;
+                off = 0;
+            }
+            MappedByteBuffer segment = segment(end - fileStart);
+            CRC32 crc = new CRC32();
+            crc.update(new byte[] {(byte) (generation >>> 24), (byte) (generation >>> 16),
+                                   (byte) (generation >>> 8), (byte) generation}, 0, 4);
+            crc.update(record, 0, record.length);
+            // Body first, length last: a frame is only visible once it is complete
+            segment.putInt(off + 8, generation);
+            ByteBuffer view = segment.duplicate();
+            view.position(off + 12);
+            view.put(record);
+            segment.putInt(off + 4, (int) crc.getValue());
+            segment.putInt(off, record.length);
+            end += 12 + record.length;
+            appends++;
+            return end;
+        }
+
+        private MappedByteBuffer segment(long pos) throws IOException {
+            int seg = (int) (pos / SEGMENT_BYTES);
+            while (seg >= segments.size()) mapSegment();
+            return segments.get(seg);
+        }
+
+        synchronized long end() { return end; }
+
+        synchronized long size() { return end - fileStart; }
+
+        // Blocks until the log is forced at least up to lsn
+        void awaitDurable(long lsn) {
+            if (durable >= lsn) return;
+            synchronized (this) {
+                if (lsn > forceRequested) forceRequested = lsn;
+                notifyAll();
+                while (durable < lsn && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void flushLoop() {
+            while (true) {
+                List<MappedByteBuffer> dirty;
+                long upTo;
+                synchronized (this) {
+                    while (!closed && forceRequested <= durable) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (closed) return;
+                    // Everything appended so far rides along with this force
+                    upTo = end;
+                    int from = (int) ((durable - fileStart) / SEGMENT_BYTES);
+                    int to = (int) ((upTo - 1 - fileStart) / SEGMENT_BYTES);
+                    dirty = new ArrayList<>(segments.subList(from, Math.min(to + 1, segments.size())));
+                }
+                for (MappedByteBuffer segment : dirty) segment.force();
+                synchronized (this) {
+                    if (upTo > durable) durable = upTo;
+                    syncs++;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void close() {
+            if (closed) return;
+            for (MappedByteBuffer segment : segments) segment.force();
+            durable = end;
+            closed = true;
+            notifyAll();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // ========== INT-KEYED MAP ==========
+    // Open addressing with linear probing and backward-shift deletion; values are never null
+    static class IntMap<V> {
+        private int[] keys;
+        private Object[] values;
+        private int size, mask;
+
+        IntMap() {
+            keys = new int[64];
+            values = new Object[64];
+            mask = 63;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(int key) {
+            for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return (V) values[i];
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V put(int key, V value) {
+            if ((size + 1) * 4 > (mask + 1) * 3) resize();
+            int i = hash(key) & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    V old = (V) values[i];
+                    values[i] = value;
+                    return old;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            return null;
+        }
+
+        void remove(int key) {
+            int i = hash(key) & mask;
+            while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+            if (values[i] == null) return;
+            values[i] = null;
+            size--;
+            // Shift later entries of the probe run back so lookups do not stop early
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        int size() { return size; }
+        int capacity() { return mask + 1; }
+
+        @SuppressWarnings("unchecked")
+        V valueAt(int slot) { return (V) values[slot]; }
+
+        // Copy of the slots; with copy-on-write values this is a point-in-time view
+        Object[] values() { return values.clone(); }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            mask = keys.length - 1;
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int j = hash(oldKeys[i]) & mask;
+                    while (values[j] != null) j = (j + 1) & mask;
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                    size++;
+                }
+            }
+        }
+    }
+}
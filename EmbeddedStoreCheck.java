@@ -0,0 +1,65 @@
+// Vehicle Rental System - Embedded Store Recovery Check
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// EMBEDDED STORE CHECK
+// Round trip through a snapshot with more rows than fit in a signed short record count:
+//   java EmbeddedStoreCheck [users] [vehicles]
+// Fills a scratch store, leaves its log as an unfinished compaction so reopening writes
+// snapshot.bin, then reopens from the snapshot alone and compares every row count.
+class EmbeddedStoreCheck {
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 40_000;
+        int listed = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        Path dir = Files.createTempDirectory("embedded-check");
+        PrintStream out = System.out;
+        try {
+            // The store reports every insert; keep that out of the result
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override public void write(int b) { }
+                @Override public void write(byte[] b, int off, int len) { }
+            }));
+            EmbeddedStore store = EmbeddedStore.open(dir);
+            for (int i = 1; i <= accounts; i++) {
+                String name = "check" + i;
+                store.addUser(new User(0, name, "!", "Check " + i, name + "@check.test", "555-0100", "OWNER"));
+            }
+            int ownerId = store.getUserByUsername("check1").getUserId();
+            for (int i = 1; i <= listed; i++) {
+                store.addVehicle(new Vehicle(0, "CHK-" + i, "Toyota", "Check", 2020, "White", 40, "AVAILABLE",
+                                             ownerId, true, "Downtown"));
+            }
+            int users = store.getAllUsers().size(), vehicles = store.getUserListedVehicles(ownerId).size();
+            store.close();
+
+            Files.move(dir.resolve("wal.log"), dir.resolve("wal.old.log"));
+            EmbeddedStore.open(dir).close();
+            if (Files.exists(dir.resolve("wal.old.log")) || !Files.exists(dir.resolve("snapshot.bin"))) {
+                throw new IllegalStateException("Recovery did not write a snapshot");
+            }
+            Files.deleteIfExists(dir.resolve("wal.log"));
+
+            EmbeddedStore reopened = EmbeddedStore.open(dir);
+            int usersAfter = reopened.getAllUsers().size();
+            int vehiclesAfter = reopened.getUserListedVehicles(ownerId).size();
+            boolean lastUser = reopened.getUserByUsername("check" + accounts) != null;
+            reopened.close();
+            System.setOut(out);
+
+            System.out.println("Users: " + users + " written, " + usersAfter + " recovered");
+            System.out.println("Vehicles: " + vehicles + " written, " + vehiclesAfter + " recovered");
+            boolean ok = users == usersAfter && vehicles == vehiclesAfter && lastUser;
+            System.out.println(ok ? "[✓] Snapshot round trip matches." : "[✗] Snapshot round trip lost rows.");
+            if (!ok) System.exit(1);
+        } finally {
+            System.setOut(out);
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+// Vehicle Rental System - Change Event Bus
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.*;
+
+// EVENT BUS
+// In-process publish/subscribe fed by the EventOutbox table (migration V4). A single relay
+// thread reads the outbox in EventID order from each subscriber's own offset and hands it its
+// events in batches, so a slow or failing consumer never holds the others back.
+// Delivery is at-least-once: a consumer's offset (EventConsumerOffsets) only advances after its
+// handler returns, so a failing handler sees the same batch again after a backoff. After
+// ISOLATE_AFTER failures the batch is delivered one event at a time, and an event that still
+// fails PARK_AFTER times is parked in EventDeadLetters (migration V14) and skipped. Apart from
+// parked events, events of one aggregate are always delivered in the order they were written.
+class EventBus {
+    private static final int BATCH_SIZE = 500;
+    private static final long IDLE_POLL_MS = 200;
+    private static final int ISOLATE_AFTER = 3;
+    private static final int PARK_AFTER = 6;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(1);
+    private static final int PURGE_EVERY_POLLS = 3000;
+
+    static class Event {
+        final long eventId; final String aggregateType; final int aggregateId;
+        final String type; final String payload; final long createdAt;
+
+        Event(long eventId, String aggregateType, int aggregateId, String type, String payload, long createdAt) {
+            this.eventId = eventId; this.aggregateType = aggregateType; this.aggregateId = aggregateId;
+            this.type = type; this.payload = payload; this.createdAt = createdAt;
+        }
+
+        // Flat JSON payload field as text, or null (payloads are JSON_OBJECT of scalars)
+        String field(String name) {
+            Matcher m = Pattern.compile("\"" + Pattern.quote(name) + "\"\\s*:\\s*(\"((?:[^\"\\\\]|\\\\.)*)\"|[^,}\\s]+)")
+                               .matcher(payload);
+            if (!m.find()) return null;
+            return m.group(2) != null ? m.group(2) : (m.group(1).equals("null") ? null : m.group(1));
+        }
+
+        int intField(String name) {
+            String v = field(name);
+            return v == null ? 0 : Integer.parseInt(v);
+        }
+
+        double doubleField(String name) {
+            String v = field(name);
+            return v == null ? 0 : Double.parseDouble(v);
+        }
+
+        @Override public String toString() {
+            return "#" + eventId + " " + type + " " + aggregateType + ":" + aggregateId + " " + payload;
+        }
+    }
+
+    interface Subscriber {
+        void onEvents(List<Event> batch) throws Exception;
+    }
+
+    static class Subscription {
+        final String name; final Set<String> aggregateTypes; final Subscriber handler;
+        volatile long offset;
+        volatile long lastDeliveredCreatedAt;
+        volatile long delivered, failures, parked;
+        int attempts;        // consecutive failures at the current offset
+        long retryAt;
+
+        Subscription(String name, Set<String> aggregateTypes, Subscriber handler) {
+            this.name = name; this.aggregateTypes = aggregateTypes; this.handler = handler;
+        }
+
+        boolean accepts(Event e) {
+            return aggregateTypes.isEmpty() || aggregateTypes.contains(e.aggregateType);
+        }
+    }
+
+    private static final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private static final Object wakeLock = new Object();
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+    private static volatile long headEventId;
+    private static volatile long headCreatedAt;
+    private static Thread relay;
+
+    // ========== CONSUMER API ==========
+    // Subscribes a named, durable consumer; new consumers start at the current head
+    public static Subscription subscribe(String consumerName, Set<String> aggregateTypes, Subscriber handler) {
+        Subscription s = new Subscription(consumerName, aggregateTypes, handler);
+        try (Connection conn = DatabaseManager.openConnection()) {
+            s.offset = loadOffset(conn, consumerName);
+        } catch (SQLException e) {
+            System.err.println("[✗] Error loading offset for " + consumerName + ": " + e.getMessage());
+            return null;
+        }
+        subscriptions.add(s);
+        wake();
+        return s;
+    }
+
+    public static Subscription subscribe(String consumerName, Subscriber handler, String... aggregateTypes) {
+        return subscribe(consumerName, new HashSet<>(Arrays.asList(aggregateTypes)), handler);
+    }
+
+    public static void unsubscribe(Subscription s) {
+        subscriptions.remove(s);
+    }
+
+    // Events behind the head for a consumer
+    public static long lagEvents(Subscription s) {
+        return Math.max(0, headEventId - s.offset);
+    }
+
+    // Age of the newest event the consumer has not seen yet, in ms
+    public static long lagMillis(Subscription s) {
+        if (s.offset >= headEventId) return 0;
+        return Math.max(0, headCreatedAt - s.lastDeliveredCreatedAt);
+    }
+
+    // Called after local mutations so the relay does not wait for its next poll
+    public static void wake() {
+        synchronized (wakeLock) { wakeLock.notifyAll(); }
+    }
+
+    // ========== RELAY ==========
+    public static synchronized void start() {
+        if (!running.compareAndSet(false, true)) return;
+        relay = new Thread(EventBus::relayLoop, "event-relay");
+        relay.setDaemon(true);
+        relay.start();
+        System.out.println("[✓] Event bus relay started.");
+    }
+
+    public static synchronized void stop() {
+        running.set(false);
+        wake();
+    }
+
+    private static void relayLoop() {
+        Connection conn = null;
+        int polls = 0;
+        while (running.get()) {
+            try {
+                if (conn == null || conn.isClosed()) conn = DatabaseManager.openConnection();
+                int fetched = pollOnce(conn);
+                if (++polls % PURGE_EVERY_POLLS == 0) purge(conn);
+                if (fetched < BATCH_SIZE) idle(IDLE_POLL_MS);
+            } catch (SQLException e) {
+                System.err.println("[✗] Event relay error: " + e.getMessage());
+                closeQuietly(conn);
+                conn = null;
+                idle(5000);
+            }
+        }
+        closeQuietly(conn);
+    }
+
+    private static int pollOnce(Connection conn) throws SQLException {
+        int fetched = 0;
+        long now = System.currentTimeMillis();
+        for (Subscription s : subscriptions) {
+            if (now >= s.retryAt) fetched = Math.max(fetched, deliver(conn, s, now));
+        }
+        return fetched;
+    }
+
+    private static int deliver(Connection conn, Subscription s, long now) throws SQLException {
+        List<Event> events = fetch(conn, s.offset);
+        if (events.isEmpty()) return 0;
+        Event last = events.get(events.size() - 1);
+        headEventId = Math.max(headEventId, last.eventId);
+        headCreatedAt = Math.max(headCreatedAt, last.createdAt);
+
+        if (s.attempts >= ISOLATE_AFTER) {
+            deliverOneByOne(conn, s, events, now);
+            return events.size();
+        }
+        List<Event> batch = new ArrayList<>();
+        for (Event e : events) {
+            if (s.accepts(e)) batch.add(e);
+        }
+        try {
+            if (!batch.isEmpty()) s.handler.onEvents(Collections.unmodifiableList(batch));
+        } catch (Exception ex) {
+            // Offset stays put: the same batch is redelivered after the backoff
+            failed(s, ex, now);
+            return events.size();
+        }
+        s.delivered += batch.size();
+        advance(conn, s, last);
+        s.attempts = 0;
+        return events.size();
+    }
+
+    // Finds the poison event in a batch that keeps failing; everything before it is delivered
+    private static void deliverOneByOne(Connection conn, Subscription s, List<Event> events, long now)
+            throws SQLException {
+        for (Event e : events) {
+            if (s.accepts(e)) {
+                try {
+                    s.handler.onEvents(Collections.singletonList(e));
+                    s.delivered++;
+                } catch (Exception ex) {
+                    if (s.attempts + 1 < PARK_AFTER) {
+                        failed(s, ex, now);
+                        return;
+                    }
+                    park(conn, s, e, ex);
+                }
+            }
+            advance(conn, s, e);
+        }
+        s.attempts = 0;
+    }
+
+    private static void failed(Subscription s, Exception ex, long now) {
+        s.failures++;
+        s.attempts++;
+        s.retryAt = now + Math.min(MAX_BACKOFF_MS, IDLE_POLL_MS << s.attempts);
+        System.err.println("[✗] Subscriber " + s.name + " failed (attempt " + s.attempts + "): " + ex.getMessage());
+    }
+
+    private static void advance(Connection conn, Subscription s, Event e) throws SQLException {
+        saveOffset(conn, s.name, e.eventId);
+        s.offset = e.eventId;
+        s.lastDeliveredCreatedAt = e.createdAt;
+    }
+
+    private static void park(Connection conn, Subscription s, Event e, Exception ex) throws SQLException {
+        String error = String.valueOf(ex.getMessage());
+        try (PreparedStatement ps = conn.prepareStatement(
+                 "INSERT IGNORE INTO EventDeadLetters (ConsumerName, EventID, AggregateType, AggregateID, EventType, " +
+                 "Payload, Error, Attempts) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            ps.setString(1, s.name);
+            ps.setLong(2, e.eventId);
+            ps.setString(3, e.aggregateType);
+            ps.setInt(4, e.aggregateId);
+            ps.setString(5, e.type);
+            ps.setString(6, e.payload);
+            ps.setString(7, error.length() > 500 ? error.substring(0, 500) : error);
+            ps.setInt(8, s.attempts + 1);
+            ps.executeUpdate();
+        }
+        s.parked++;
+        System.err.println("[!] Subscriber " + s.name + " parked event " + e + ": " + error);
+    }
+
+    // Reads the next contiguous run of events. Auto-increment ids are assigned before commit,
+    // so missing ids may still appear: the gap is probed with a locking read, which waits for
+    // any inserting transaction to finish. A row that committed meanwhile ends the run here
+    // (the next poll reads it); ids still missing afterwards were rolled back and are skipped.
+    private static List<Event> fetch(Connection conn, long after) throws SQLException {
+        String sql = "SELECT EventID, AggregateType, AggregateID, EventType, Payload, CreatedAt " +
+                     "FROM EventOutbox WHERE EventID > ? ORDER BY EventID LIMIT ?";
+        List<Event> events = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, after);
+            ps.setInt(2, BATCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    events.add(new Event(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getString(4),
+                                         rs.getString(5), rs.getTimestamp(6).getTime()));
+                }
+            }
+        }
+        if (after == 0) return events;
+        long expected = after + 1;
+        for (int i = 0; i < events.size(); i++) {
+            long id = events.get(i).eventId;
+            if (id != expected && !gapAbandoned(conn, expected, id)) return events.subList(0, i);
+            expected = id + 1;
+        }
+        return events;
+    }
+
+    // True when no id in [from, to) committed once every transaction inserting there has ended
+    private static boolean gapAbandoned(Connection conn, long from, long to) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                 "SELECT EventID FROM EventOutbox WHERE EventID >= ? AND EventID < ? LIMIT 1 LOCK IN SHARE MODE")) {
+            ps.setLong(1, from);
+            ps.setLong(2, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                return !rs.next();
+            }
+        }
+    }
+
+    private static long loadOffset(Connection conn, String consumer) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                 "SELECT LastEventID FROM EventConsumerOffsets WHERE ConsumerName = ?")) {
+            ps.setString(1, consumer);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return rs.getLong(1);
+            }
+        }
+        long head;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(EventID), 0) FROM EventOutbox")) {
+            rs.next();
+            head = rs.getLong(1);
+        }
+        saveOffset(conn, consumer, head);
+        return head;
+    }
+
+    private static void saveOffset(Connection conn, String consumer, long offset) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                 "INSERT INTO EventConsumerOffsets (ConsumerName, LastEventID) VALUES (?, ?) " +
+                 "ON DUPLICATE KEY UPDATE LastEventID = GREATEST(LastEventID, VALUES(LastEventID))")) {
+            ps.setString(1, consumer);
+            ps.setLong(2, offset);
+            ps.executeUpdate();
+        }
+    }
+
+    // Deletes delivered events older than the retention window, in small chunks
+    private static void purge(Connection conn) throws SQLException {
+        long safe;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MIN(LastEventID), 0) FROM EventConsumerOffsets")) {
+            rs.next();
+            safe = rs.getLong(1);
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                 "DELETE FROM EventOutbox WHERE EventID <= ? AND CreatedAt < ? ORDER BY EventID LIMIT 5000")) {
+            ps.setLong(1, safe);
+            ps.setTimestamp(2, new Timestamp(System.currentTimeMillis() - RETENTION_MS));
+            while (ps.executeUpdate() == 5000) { /* next chunk */ }
+        }
+    }
+
+    private static void idle(long ms) {
+        synchronized (wakeLock) {
+            try {
+                wakeLock.wait(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            if (conn != null) conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    public static void printStatus() {
+        System.out.println("\n=== EVENT BUS ===");
+        System.out.println("Relay: " + (running.get() ? "running" : "stopped") + "  Head event: #" + headEventId);
+        System.out.printf("%-25s %10s %10s %10s %10s %8s\n", "Consumer", "Offset", "Lag", "Lag ms", "Failures", "Parked");
+        for (Subscription s : subscriptions) {
+            System.out.printf("%-25s %10d %10d %10d %10d %8d\n", s.name, s.offset, lagEvents(s), lagMillis(s),
+                              s.failures, s.parked);
+        }
+        System.out.println("=================\n");
+    }
+}
@@ -0,0 +1,502 @@
+// Vehicle Rental System - Bulk Fleet Import
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.time.Year;
+import java.util.*;
+import java.util.concurrent.*;
+
+// FLEET IMPORT
+// Loads a partner fleet from a file instead of one addVehicle call (two lookups, an INSERT and a
+// log row) per car. Input is CSV with a header row (registrationNo, make, model, year, color,
+// dailyRate, location and optionally owner) or JSON Lines with the same keys, one record per line.
+// A row without an owner becomes a company vehicle of the importing admin; a row with an owner
+// username becomes that user's listed vehicle.
+//
+// The file is streamed in chunks of CHUNK_ROWS lines. Chunks are parsed and checked against the
+// schema's constraints (lengths, Year and DailyRate CHECKs) in parallel, a few chunks ahead of the
+// writer. The writer takes them in file order on one connection and, per chunk:
+//  - rejects registrations repeated earlier in the file and skips ones already in Vehicles
+//  - resolves makes, colours and owners with one IN query each (new makes/colours are inserted
+//    in one batch) and caches them for the following chunks
+//  - inserts the vehicles with multi-row INSERTs in one transaction; if that fails, the chunk is
+//    retried row by row so the offending rows get their own error
+// Rejected rows go to <file>.errors.csv with their line number and reason. After each chunk the
+// last line done is written to <file>.checkpoint; a rerun after a crash resumes after it. A
+// finished import removes the checkpoint, and importing the file again skips what is present.
+class FleetImport {
+    private static final int CHUNK_ROWS = 2000;
+    private static final int ROWS_PER_INSERT = 500;
+    private static final double MAX_RATE = 999_999.99;       // DECIMAL(8,2)
+    private static final String[] COLUMNS = {"registrationno", "make", "model", "year", "color", "dailyrate", "location", "owner"};
+    private static final int REG = 0, MAKE = 1, MODEL = 2, YEAR = 3, COLOR = 4, RATE = 5, LOCATION = 6, OWNER = 7;
+
+    // One input record; error is set once the row is rejected
+    static final class Row {
+        final long line;
+        final String[] fields = new String[COLUMNS.length];
+        int year, makeId, colorId, ownerId;
+        double rate;
+        String error;
+        boolean present;        // already in Vehicles (e.g. imported before a crash)
+
+        Row(long line) { this.line = line; }
+
+        String reg() { return fields[REG]; }
+    }
+
+    private final Path input, errorsFile, checkpointFile;
+    private final int adminUserId;
+    private final int parallelism;
+    private final int maxYear = Year.now().getValue() + 1;
+
+    // Writer only
+    private final Map<String, Integer> makes = new HashMap<>(), colors = new HashMap<>(), owners = new HashMap<>();
+    private final Map<String, Long> seen = new HashMap<>();
+    private long imported, rejected, skipped;
+
+    FleetImport(Path input, int adminUserId, int parallelism) {
+        this.input = input;
+        this.errorsFile = input.resolveSibling(input.getFileName() + ".errors.csv");
+        this.checkpointFile = input.resolveSibling(input.getFileName() + ".checkpoint");
+        this.adminUserId = adminUserId;
+        this.parallelism = parallelism;
+    }
+
+    // ========== RUN ==========
+    public static void run(Path input, int adminUserId) {
+        int parallelism = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        try {
+            new FleetImport(input, adminUserId, parallelism).execute();
+        } catch (IOException | SQLException e) {
+            System.err.println("[✗] Fleet import failed: " + e.getMessage());
+        }
+    }
+
+    void execute() throws IOException, SQLException {
+        if (!Files.isRegularFile(input)) throw new IOException("No such file: " + input);
+        long resumeAfter = loadCheckpoint();
+        if (resumeAfter > 0) System.out.println("[-] Resuming after line " + resumeAfter + " (from " + checkpointFile.getFileName() + ")");
+        boolean json = input.getFileName().toString().toLowerCase().matches(".*\\.jsonl?$");
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "fleet-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             Connection conn = DatabaseManager.openConnection();
+             // A resumed run adds to the errors of the interrupted one
+             PrintWriter errors = new PrintWriter(Files.newBufferedWriter(errorsFile, StandardCharsets.UTF_8,
+                                                  StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                  resumeAfter > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING))) {
+            if (Files.size(errorsFile) == 0) errors.println("line,registrationNo,error");
+            int[] columns = json ? null : header(reader.readLine());
+            long lineNo = json ? 0 : 1;
+            Deque<Future<List<Row>>> ahead = new ArrayDeque<>();
+            boolean eof = false;
+            while (!eof || !ahead.isEmpty()) {
+                // Keep the validators a few chunks ahead of the writer
+                while (!eof && ahead.size() < parallelism * 2) {
+                    List<String> lines = new ArrayList<>(CHUNK_ROWS);
+                    long first = lineNo + 1;
+                    String line;
+                    while (lines.size() < CHUNK_ROWS && (line = reader.readLine()) != null) {
+                        lines.add(line);
+                        lineNo++;
+                    }
+                    if (lines.size() < CHUNK_ROWS) eof = true;
+                    if (lineNo <= resumeAfter || lines.isEmpty()) continue;
+                    ahead.add(pool.submit(() -> parseChunk(lines, first, resumeAfter, columns)));
+                }
+                if (ahead.isEmpty()) break;
+                List<Row> chunk;
+                try {
+                    chunk = ahead.poll().get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IOException("Chunk validation failed: " + e.getMessage(), e);
+                }
+                writeChunk(conn, chunk, errors);
+                errors.flush();
+                if (!chunk.isEmpty()) saveCheckpoint(chunk.get(chunk.size() - 1).line);
+                long done = imported + rejected + skipped;
+                if (done / (CHUNK_ROWS * 10) != (done - chunk.size()) / (CHUNK_ROWS * 10)) {
+                    System.out.println("  ... " + done + " rows, " + imported + " imported");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Files.deleteIfExists(checkpointFile);
+        double secs = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        System.out.printf("[✓] %d vehicles imported, %d rejected, %d already present in %.1f s (%.0f rows/s)\n",
+                          imported, rejected, skipped, secs, (imported + rejected + skipped) / secs);
+        if (rejected > 0) System.out.println("[!] Rejected rows are listed in " + errorsFile);
+        DataStore.logEvent("FLEET_IMPORT", "Imported " + imported + " vehicles from " + input.getFileName() +
+                           " (" + rejected + " rejected)", adminUserId);
+    }
+
+    // Maps the CSV header to COLUMNS; index -1 for an absent optional column
+    private static int[] header(String line) throws IOException {
+        if (line == null) throw new IOException("Empty file");
+        List<String> names = splitCsv(line.startsWith("\uFEFF") ? line.substring(1) : line);
+        int[] columns = new int[COLUMNS.length];
+        for (int c = 0; c < COLUMNS.length; c++) {
+            columns[c] = -1;
+            for (int i = 0; i < names.size(); i++) {
+                if (canonical(names.get(i)).equals(COLUMNS[c])) columns[c] = i;
+            }
+            if (columns[c] < 0 && c != OWNER) throw new IOException("Missing column " + COLUMNS[c]);
+        }
+        return columns;
+    }
+
+    private static String canonical(String name) {
+        String n = name.trim().toLowerCase().replace("_", "").replace(" ", "");
+        if (n.equals("colour")) return "color";
+        if (n.equals("registration") || n.equals("regno")) return "registrationno";
+        if (n.equals("rate")) return "dailyrate";
+        return n;
+    }
+
+    // ========== PARSE & VALIDATE (parallel) ==========
+    private List<Row> parseChunk(List<String> lines, long firstLine, long resumeAfter, int[] columns) {
+        List<Row> rows = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            long line = firstLine + i;
+            String text = lines.get(i).trim();
+            if (line <= resumeAfter || text.isEmpty() || text.equals("[") || text.equals("]")) continue;
+            Row row = new Row(line);
+            try {
+                if (columns == null) {
+                    readJson(text, row);
+                } else {
+                    List<String> values = splitCsv(text);
+                    for (int c = 0; c < COLUMNS.length; c++) {
+                        row.fields[c] = columns[c] >= 0 && columns[c] < values.size() ? values.get(columns[c]).trim() : "";
+                    }
+                }
+                validate(row);
+            } catch (IllegalArgumentException e) {
+                row.error = e.getMessage();
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // The Vehicles columns and CHECK constraints, so MySQL does not reject a whole batch
+    private void validate(Row row) {
+        String[] f = row.fields;
+        for (int c = 0; c < OWNER; c++) {
+            if (f[c] == null || f[c].isEmpty()) throw new IllegalArgumentException("missing " + COLUMNS[c]);
+        }
+        if (f[OWNER] == null) f[OWNER] = "";
+        require(f[REG].length() <= 20, "registrationNo longer than 20 characters");
+        require(f[MAKE].length() <= 50, "make longer than 50 characters");
+        require(f[MODEL].length() <= 50, "model longer than 50 characters");
+        require(f[COLOR].length() <= 30, "color longer than 30 characters");
+        require(f[LOCATION].length() <= 200, "location longer than 200 characters");
+        require(f[OWNER].length() <= 50, "owner longer than 50 characters");
+        try {
+            row.year = Integer.parseInt(f[YEAR]);
+            row.rate = Double.parseDouble(f[RATE]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("year/dailyRate is not a number");
+        }
+        require(row.year >= 1900 && row.year <= maxYear, "year outside 1900.." + maxYear);
+        require(row.rate > 0 && row.rate <= MAX_RATE, "dailyRate outside 0.01.." + MAX_RATE);
+        row.rate = Math.round(row.rate * 100) / 100.0;
+        require(row.rate > 0, "dailyRate rounds to 0.00");
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) throw new IllegalArgumentException(message);
+    }
+
+    // One CSV record on one line: comma-separated, "quoted" fields may contain commas and ""
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') { sb.append('"'); i++; }
+                else if (ch == '"') quoted = false;
+                else sb.append(ch);
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                values.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(ch);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quote");
+        values.add(sb.toString());
+        return values;
+    }
+
+    // A flat JSON object of string/number values (a trailing comma from an array is allowed)
+    static void readJson(String text, Row row) {
+        String s = text.endsWith(",") ? text.substring(0, text.length() - 1).trim() : text;
+        require(s.startsWith("{") && s.endsWith("}"), "not a JSON object");
+        int i = 1, end = s.length() - 1;
+        while (true) {
+            i = skipSpace(s, i);
+            if (i >= end) break;
+            StringBuilder key = new StringBuilder();
+            i = readJsonString(s, i, key);
+            i = skipSpace(s, i);
+            require(i < end && s.charAt(i) == ':', "expected ':' in JSON object");
+            i = skipSpace(s, i + 1);
+            StringBuilder value = new StringBuilder();
+            if (i < end && s.charAt(i) == '"') {
+                i = readJsonString(s, i, value);
+            } else {
+                while (i < end && s.charAt(i) != ',' && !Character.isWhitespace(s.charAt(i))) value.append(s.charAt(i++));
+                if (value.toString().equals("null")) value.setLength(0);
+            }
+            int c = Arrays.asList(COLUMNS).indexOf(canonical(key.toString()));
+            if (c >= 0) row.fields[c] = value.toString().trim();
+            i = skipSpace(s, i);
+            if (i < end) {
+                require(s.charAt(i) == ',', "expected ',' in JSON object");
+                i++;
+            }
+        }
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static int readJsonString(String s, int i, StringBuilder out) {
+        require(i < s.length() && s.charAt(i) == '"', "expected a JSON string");
+        for (i++; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '"') return i + 1;
+            if (ch != '\\') { out.append(ch); continue; }
+            require(++i < s.length(), "bad JSON escape");
+            char esc = s.charAt(i);
+            switch (esc) {
+                case 'n': out.append('\n'); break;
+                case 't': out.append('\t'); break;
+                case 'r': out.append('\r'); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'u':
+                    require(i + 4 < s.length(), "bad JSON escape");
+                    out.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: out.append(esc);
+            }
+        }
+        throw new IllegalArgumentException("unterminated JSON string");
+    }
+
+    // ========== WRITE (file order, one connection) ==========
+    private void writeChunk(Connection conn, List<Row> chunk, PrintWriter errors) throws SQLException {
+        List<Row> valid = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            if (row.error != null) continue;
+            // Registrations are unique case-insensitively in MySQL; the first row in the file wins
+            Long first = seen.putIfAbsent(row.reg().toUpperCase(), row.line);
+            if (first != null) row.error = "duplicate of line " + first;
+            else valid.add(row);
+        }
+        markPresent(conn, valid);
+        valid.removeIf(row -> row.present);
+        resolve(conn, valid, MAKE, makes, "VehicleMakes", "MakeName", "MakeID", IdAllocator.MAKES);
+        resolve(conn, valid, COLOR, colors, "VehicleColors", "ColorName", "ColorID", IdAllocator.COLORS);
+        resolveOwners(conn, valid);
+        valid.removeIf(row -> row.error != null);
+        for (Row row : valid) row.makeId = makes.get(key(row.fields[MAKE]));
+        for (Row row : valid) row.colorId = colors.get(key(row.fields[COLOR]));
+        insert(conn, valid);
+
+        for (Row row : chunk) {
+            if (row.present) {
+                skipped++;
+            } else if (row.error != null) {
+                rejected++;
+                errors.println(row.line + "," + csv(row.reg()) + "," + csv(row.error));
+            } else {
+                imported++;
+            }
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder("?");
+        for (int i = 1; i < n; i++) sb.append(",?");
+        return sb.toString();
+    }
+
+    private static void markPresent(Connection conn, List<Row> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        Map<String, Row> byReg = new HashMap<>();
+        for (Row row : rows) byReg.put(row.reg().toUpperCase(), row);
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT RegistrationNo FROM Vehicles WHERE RegistrationNo IN (" + placeholders(rows.size()) + ")")) {
+            for (int i = 0; i < rows.size(); i++) ps.setString(i + 1, rows.get(i).reg());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Row row = byReg.get(rs.getString(1).toUpperCase());
+                    if (row != null) row.present = true;
+                }
+            }
+        }
+    }
+
+    // Looks up the names not cached yet in one query and inserts the missing ones in one batch
+    private static void resolve(Connection conn, List<Row> rows, int field, Map<String, Integer> cache,
+                                String table, String nameColumn, String idColumn, IdAllocator.Sequence ids) throws SQLException {
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (Row row : rows) {
+            String name = row.fields[field];
+            if (!cache.containsKey(key(name))) missing.putIfAbsent(key(name), name);
+        }
+        if (missing.isEmpty()) return;
+        lookup(conn, missing, cache, table, nameColumn, idColumn);
+        missing.keySet().removeAll(cache.keySet());
+        if (missing.isEmpty()) return;
+        // INSERT IGNORE: another process may add the same name meanwhile; the re-read finds its id
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT IGNORE INTO " + table + " (" + idColumn + ", " + nameColumn + ") VALUES (?, ?)")) {
+            for (String name : missing.values()) {
+                ps.setInt(1, ids.next());
+                ps.setString(2, name);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        lookup(conn, missing, cache, table, nameColumn, idColumn);
+        for (Row row : rows) {
+            if (!cache.containsKey(key(row.fields[field]))) row.error = "could not create " + COLUMNS[field] + " " + row.fields[field];
+        }
+    }
+
+    private static void lookup(Connection conn, Map<String, String> names, Map<String, Integer> cache,
+                               String table, String nameColumn, String idColumn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT " + idColumn + ", " + nameColumn + " FROM " + table +
+                                                          " WHERE " + nameColumn + " IN (" + placeholders(names.size()) + ")")) {
+            int i = 1;
+            for (String name : names.values()) ps.setString(i++, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) cache.put(key(rs.getString(2)), rs.getInt(1));
+            }
+        }
+    }
+
+    private void resolveOwners(Connection conn, List<Row> rows) throws SQLException {
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (Row row : rows) {
+            String owner = row.fields[OWNER];
+            if (!owner.isEmpty() && !owners.containsKey(key(owner))) missing.putIfAbsent(key(owner), owner);
+        }
+        if (!missing.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT UserID, Username FROM Users WHERE IsActive = 1 AND Username IN (" +
+                                                              placeholders(missing.size()) + ")")) {
+                int i = 1;
+                for (String name : missing.values()) ps.setString(i++, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) owners.put(key(rs.getString(2)), rs.getInt(1));
+                }
+            }
+            // Remembered as unknown for the rest of the file
+            for (String name : missing.keySet()) owners.putIfAbsent(name, 0);
+        }
+        for (Row row : rows) {
+            String owner = row.fields[OWNER];
+            if (owner.isEmpty()) {
+                row.ownerId = adminUserId;
+            } else {
+                row.ownerId = owners.get(key(owner));
+                if (row.ownerId == 0) row.error = "unknown owner " + owner;
+            }
+        }
+    }
+
+    private static final String INSERT_SQL = "INSERT INTO Vehicles (VehicleID, RegistrationNo, MakeID, Model, Year, ColorID, " +
+                                             "DailyRate, StatusID, OwnerID, IsUserListed, Location) VALUES ";
+    private static final String VALUES = "(?, ?, ?, ?, ?, ?, ?, 1, ?, ?, ?)";
+
+    // Multi-row INSERTs in one transaction; on failure each row alone, so only bad rows are lost
+    private static void insert(Connection conn, List<Row> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+        int[] ids = new int[rows.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = IdAllocator.VEHICLES.next();
+        conn.setAutoCommit(false);
+        try {
+            for (int from = 0; from < rows.size(); from += ROWS_PER_INSERT) {
+                int to = Math.min(rows.size(), from + ROWS_PER_INSERT);
+                StringBuilder sql = new StringBuilder(INSERT_SQL);
+                for (int i = from; i < to; i++) sql.append(i > from ? ", " : "").append(VALUES);
+                try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                    int p = 1;
+                    for (int i = from; i < to; i++) p = bind(ps, p, ids[i], rows.get(i));
+                    ps.executeUpdate();
+                }
+            }
+            conn.commit();
+            return;
+        } catch (SQLException e) {
+            conn.rollback();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL + VALUES)) {
+            for (int i = 0; i < rows.size(); i++) {
+                try {
+                    bind(ps, 1, ids[i], rows.get(i));
+                    ps.executeUpdate();
+                } catch (SQLException e) {
+                    rows.get(i).error = e.getMessage();
+                }
+            }
+        }
+    }
+
+    private static int bind(PreparedStatement ps, int p, int id, Row row) throws SQLException {
+        ps.setInt(p++, id);
+        ps.setString(p++, row.reg());
+        ps.setInt(p++, row.makeId);
+        ps.setString(p++, row.fields[MODEL]);
+        ps.setInt(p++, row.year);
+        ps.setInt(p++, row.colorId);
+        ps.setDouble(p++, row.rate);
+        ps.setInt(p++, row.ownerId);
+        ps.setBoolean(p++, !row.fields[OWNER].isEmpty());
+        ps.setString(p++, row.fields[LOCATION]);
+        return p;
+    }
+
+    // ========== CHECKPOINT ==========
+    private long loadCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) return 0;
+        String text = new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text);
+    }
+
+    private void saveCheckpoint(long line) throws IOException {
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(tmp, Long.toString(line).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
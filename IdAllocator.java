@@ -0,0 +1,146 @@
+// Vehicle Rental System - Id Allocator
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ID ALLOCATOR
+// Users, Vehicles, Rentals, Transactions and the make/color lookups get their ids here instead of
+// from AUTO_INCREMENT, so an id is known before its row is written: a rental and its
+// Transactions row are built client-side and sent together, a retried insert reuses its id (a
+// duplicate key then means the first attempt landed), and shards never hand out the same id.
+//
+// Each process leases blocks of ids from IdSequences (one UPDATE ... LAST_INSERT_ID() per block,
+// on shard 0 when sharded) and hands them out with an AtomicLong increment: no lock and no
+// allocation until a block runs out. Ids are therefore ordered by lease time across processes
+// and strictly increasing within one; ids leased but never used are skipped. The key columns
+// are INT, so ids stay below 2^31.
+class IdAllocator {
+    static final class Sequence {
+        final String table, column;
+        private final int blockSize;
+        private volatile Block block = new Block(0, 0);
+        private long leases = 0;
+
+        Sequence(String table, String column, int blockSize) {
+            this.table = table;
+            this.column = column;
+            this.blockSize = blockSize;
+        }
+
+        // Next id; leases a new block from the database when the current one is used up
+        int next() throws SQLException {
+            while (true) {
+                Block current = block;
+                long id = current.next.getAndIncrement();
+                if (id < current.end) return (int) id;
+                refill(current);
+            }
+        }
+
+        private synchronized void refill(Block exhausted) throws SQLException {
+            if (block != exhausted) return;
+            long end = lease(table, blockSize);
+            block = new Block(end - blockSize, end);
+            leases++;
+        }
+
+        private synchronized String describe() {
+            long next = block.next.get();
+            return table + " " + (next >= block.end ? "-" : next + ".." + (block.end - 1)) + " (" + leases + " blocks)";
+        }
+    }
+
+    private static final class Block {
+        final AtomicLong next;
+        final long end;
+
+        Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    static final Sequence USERS = new Sequence("Users", "UserID", 50);
+    static final Sequence VEHICLES = new Sequence("Vehicles", "VehicleID", 50);
+    static final Sequence RENTALS = new Sequence("Rentals", "RentalID", 500);
+    static final Sequence TRANSACTIONS = new Sequence("Transactions", "TransactionID", 500);
+    static final Sequence MAKES = new Sequence("VehicleMakes", "MakeID", 10);
+    static final Sequence COLORS = new Sequence("VehicleColors", "ColorID", 10);
+    static final Sequence WAITLIST = new Sequence("WaitlistEntries", "EntryID", 50);
+    private static final Sequence[] SEQUENCES = {USERS, VEHICLES, RENTALS, TRANSACTIONS, MAKES, COLORS, WAITLIST};
+
+    // Leases use their own connection: UPDATE and SELECT LAST_INSERT_ID() must not interleave
+    // with other statements
+    private static String sourceUrl = null;
+    private static Connection leaseConnection;
+    private static final Resilience.Target LEASES = new Resilience.Target("Id leases", new Resilience.Connector() {
+        public Connection connect() throws SQLException { return connection(); }
+        public void discard() { closeConnection(); }
+        public Connection open() throws SQLException {
+            return sourceUrl == null ? DatabaseManager.openConnection() : DatabaseManager.openConnection(sourceUrl);
+        }
+    });
+
+    // Leases from another database (shard 0) instead of the main one; call before the first id
+    static synchronized void useSource(String url) {
+        closeConnection();
+        sourceUrl = url;
+    }
+
+    private static synchronized Connection connection() throws SQLException {
+        if (leaseConnection == null || leaseConnection.isClosed()) {
+            leaseConnection = sourceUrl == null ? DatabaseManager.openConnection() : DatabaseManager.openConnection(sourceUrl);
+        }
+        return leaseConnection;
+    }
+
+    private static synchronized void closeConnection() {
+        if (leaseConnection == null) return;
+        try {
+            leaseConnection.close();
+        } catch (SQLException ignored) {
+        }
+        leaseConnection = null;
+    }
+
+    // Returns the end (exclusive) of a new block of size ids. Retrying after a lost reply may
+    // lease a second block; the first is then never used, which is harmless.
+    private static synchronized long lease(String name, int size) throws SQLException {
+        long end = Resilience.call(LEASES, "lease " + name + " ids", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE IdSequences SET NextID = LAST_INSERT_ID(NextID + ?) WHERE Name = ?")) {
+                ps.setInt(1, size);
+                ps.setString(2, name);
+                if (ps.executeUpdate() == 0) throw new SQLException("No IdSequences row for " + name);
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+        if (end > Integer.MAX_VALUE) throw new SQLException(name + " ids exhausted (INT key column)");
+        return end;
+    }
+
+    // Moves the sequences in dir past every id already present in db (shards created before
+    // ids were allocated here)
+    static void raiseAbove(Connection dir, Connection db) throws SQLException {
+        try (Statement stmt = db.createStatement();
+             PreparedStatement raise = dir.prepareStatement("UPDATE IdSequences SET NextID = GREATEST(NextID, ?) WHERE Name = ?")) {
+            for (Sequence seq : SEQUENCES) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(" + seq.column + "), 0) + 1 FROM " + seq.table)) {
+                    rs.next();
+                    raise.setLong(1, rs.getLong(1));
+                }
+                raise.setString(2, seq.table);
+                raise.executeUpdate();
+            }
+        }
+    }
+
+    static String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Sequence seq : SEQUENCES) sb.append(sb.length() == 0 ? "" : ", ").append(seq.describe());
+        return sb.toString();
+    }
+}
@@ -0,0 +1,106 @@
+// Vehicle Rental System - Idempotency Keys
+import java.sql.*;
+import java.util.*;
+
+// IDEMPOTENCY KEYS
+// Rental creation, approval and wallet changes carry a key (a UUID). sp_CreateRental,
+// sp_ApproveRental and sp_AdjustWallet claim it in IdempotencyKeys inside their own
+// transaction, so a repeated key replays the recorded result and the duplicate check costs no
+// extra round-trip. Outcomes seen by this process are also kept in a small LRU, which rejects
+// duplicates without touching the database at all (and is the only guard in embedded mode).
+//
+// Callers describe what the user asked for as an "intent" and run it with run(): the key is
+// reused only while the previous attempt's outcome is unknown (DataAccessException), so
+// retrying "add $50" after a lost connection cannot credit twice, while a later deliberate
+// "add $50" gets a fresh key.
+class IdempotencyKeys {
+    private static final int LRU_CAPACITY = 10_000;
+    private static final long PURGE_INTERVAL_MS = 60 * 60 * 1000L;
+    private static final String RETENTION = "INTERVAL 1 DAY";
+
+    static final class Outcome {
+        final int resultId;
+        final double amount;
+
+        Outcome(int resultId, double amount) {
+            this.resultId = resultId;
+            this.amount = amount;
+        }
+    }
+
+    interface KeyedCall<T> {
+        T call(String key);
+    }
+
+    private static final Map<String, Outcome> recent = new LinkedHashMap<String, Outcome>(256, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Outcome> eldest) {
+            return size() > LRU_CAPACITY;
+        }
+    };
+    private static final Map<String, String> unsettled = new HashMap<>();
+    private static long lastPurge = 0;
+    private static long lruHits = 0;
+
+    static String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    // Runs a keyed call for an intent, keeping the key if the outcome is unknown
+    static <T> T run(String intent, KeyedCall<T> call) {
+        String key;
+        synchronized (unsettled) {
+            key = unsettled.remove(intent);
+        }
+        if (key == null) key = newKey();
+        try {
+            return call.call(key);
+        } catch (DataAccessException e) {
+            synchronized (unsettled) {
+                unsettled.put(intent, key);
+            }
+            throw e;
+        }
+    }
+
+    static Outcome cached(String key) {
+        synchronized (recent) {
+            Outcome outcome = recent.get(key);
+            if (outcome != null) lruHits++;
+            return outcome;
+        }
+    }
+
+    static void remember(String key, Outcome outcome) {
+        synchronized (recent) {
+            recent.put(key, outcome);
+        }
+    }
+
+    // Called from the lifecycle scheduler's tick; deletes at most once an hour
+    static void purgeExpired(Connection conn) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastPurge < PURGE_INTERVAL_MS) return;
+        lastPurge = now;
+        try (Statement stmt = conn.createStatement()) {
+            int deleted;
+            do {
+                deleted = stmt.executeUpdate("DELETE FROM IdempotencyKeys WHERE CreatedAt < NOW() - " + RETENTION +
+                                             " ORDER BY CreatedAt LIMIT 5000");
+            } while (deleted == 5000);
+        }
+    }
+
+    static String describe() {
+        int cached, pending;
+        long hits;
+        synchronized (recent) {
+            cached = recent.size();
+            hits = lruHits;
+        }
+        synchronized (unsettled) {
+            pending = unsettled.size();
+        }
+        return cached + " cached outcomes, " + hits + " duplicates rejected in memory, " +
+               pending + " requests with unknown outcome";
+    }
+}
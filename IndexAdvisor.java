@@ -0,0 +1,633 @@
+// Vehicle Rental System - Index Advisor
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.regex.*;
+
+// INDEX ADVISOR
+// Captures the SQL that DataStore issues, runs EXPLAIN ANALYZE on it at a chosen
+// data scale, proposes composite/covering indexes and applies them as a migration.
+// Synthetic data never touches the live schema: a seeded run works in a throwaway copy
+// (<db>_advisor: same tables and indexes, lookup rows only) that is dropped afterwards.
+class IndexAdvisor {
+    private static final String MIGRATIONS_DIR = "migrations";
+    private static final String SEED_PREFIX = "ADV";
+    private static final String SCRATCH_SUFFIX = "_advisor";
+    private static final Set<String> LOOKUP_TABLES = new HashSet<>(Arrays.asList(
+        "userroles", "vehiclestatuses", "vehiclemakes", "vehiclecolors", "rentalstatuses", "paymentstatuses",
+        "transactiontypes"));
+    private static final int TIMED_RUNS = 11;
+    private static final int WARMUP_RUNS = 3;
+
+    private static volatile boolean capturing = false;
+    private static final Map<String, CapturedQuery> captured = new LinkedHashMap<>();
+
+    static class CapturedQuery {
+        final String sql;
+        Object[] params = new Object[0];
+        int executions;
+        String plan = "";
+        boolean tableScan;
+        boolean fileSort;
+
+        CapturedQuery(String sql) { this.sql = sql; }
+
+        boolean isSelect() { return sql.trim().toUpperCase().startsWith("SELECT"); }
+    }
+
+    static class IndexChange {
+        final String table; final String name; final List<String> columns;
+        final boolean drop; final String reason;
+
+        IndexChange(String table, String name, List<String> columns, boolean drop, String reason) {
+            this.table = table; this.name = name; this.columns = columns;
+            this.drop = drop; this.reason = reason;
+        }
+
+        String toSql() {
+            if (drop) {
+                return "ALTER TABLE " + table + " DROP INDEX " + name + ", ALGORITHM=INPLACE, LOCK=NONE;";
+            }
+            return "ALTER TABLE " + table + " ADD INDEX " + name + " (" + String.join(", ", columns) +
+                   "), ALGORITHM=INPLACE, LOCK=NONE;";
+        }
+    }
+
+    // ========== CAPTURE ==========
+    public static boolean isCapturing() { return capturing; }
+
+    public static void startCapture() {
+        synchronized (captured) { captured.clear(); }
+        capturing = true;
+    }
+
+    public static List<CapturedQuery> stopCapture() {
+        capturing = false;
+        synchronized (captured) { return new ArrayList<>(captured.values()); }
+    }
+
+    private static void record(String sql, Object[] params) {
+        if (!capturing || sql == null) return;
+        synchronized (captured) {
+            CapturedQuery q = captured.computeIfAbsent(sql, CapturedQuery::new);
+            q.executions++;
+            if (params != null) q.params = params.clone();
+        }
+    }
+
+    // Wraps a connection so every prepared/plain statement records its SQL and bound parameters
+    static Connection wrapForCapture(Connection target) {
+        return (Connection) Proxy.newProxyInstance(IndexAdvisor.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                Object result = invoke(target, method, args);
+                String name = method.getName();
+                if (result instanceof PreparedStatement && (name.equals("prepareStatement") || name.equals("prepareCall"))) {
+                    return wrapStatement((PreparedStatement) result, (String) args[0]);
+                }
+                if (result instanceof Statement && name.equals("createStatement")) {
+                    return wrapStatement((Statement) result, null);
+                }
+                return result;
+            });
+    }
+
+    private static Statement wrapStatement(Statement target, String preparedSql) {
+        Class<?> iface = target instanceof CallableStatement ? CallableStatement.class
+                       : target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        Map<Integer, Object> bound = new TreeMap<>();
+        return (Statement) Proxy.newProxyInstance(IndexAdvisor.class.getClassLoader(),
+            new Class<?>[]{iface}, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    bound.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                } else if (name.startsWith("execute")) {
+                    if (args != null && args.length > 0 && args[0] instanceof String) {
+                        record((String) args[0], null);
+                    } else if (preparedSql != null) {
+                        record(preparedSql, bound.values().toArray());
+                    }
+                }
+                return invoke(target, method, args);
+            });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Replays the DataStore read paths so the capture sees the real query set
+    static List<CapturedQuery> captureDataStoreWorkload() {
+        startCapture();
+        DataStore.getUserByUsername("john");
+        DataStore.getUserById(2);
+        DataStore.getAllUsers();
+        DataStore.getAvailableVehicles();
+        DataStore.getUserListedVehicles(2);
+        DataStore.getVehicleById(1);
+        DataStore.getRentalsByUserId(2);
+        DataStore.getPendingRentals();
+        DataStore.getTotalAdminProfit();
+        return stopCapture();
+    }
+
+    // ========== DATA SCALE ==========
+    // Creates the scratch copy of the live schema and switches conn to it; a copy left by an
+    // interrupted run is replaced
+    static String createScratchSchema(Connection conn) throws SQLException {
+        String live = conn.getCatalog();
+        String scratch = live + SCRATCH_SUFFIX;
+        List<String> tables = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT TABLE_NAME FROM information_schema.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE'")) {
+            ps.setString(1, live);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) tables.add(rs.getString(1));
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP DATABASE IF EXISTS `" + scratch + "`");
+            stmt.execute("CREATE DATABASE `" + scratch + "`");
+            for (String table : tables) {
+                stmt.execute("CREATE TABLE `" + scratch + "`.`" + table + "` LIKE `" + live + "`.`" + table + "`");
+                if (LOOKUP_TABLES.contains(table.toLowerCase())) {
+                    stmt.execute("INSERT INTO `" + scratch + "`.`" + table + "` SELECT * FROM `" + live + "`.`" + table + "`");
+                }
+            }
+        }
+        conn.setCatalog(scratch);
+        return scratch;
+    }
+
+    static void dropScratchSchema(Connection conn, String live, String scratch) {
+        try (Statement stmt = conn.createStatement()) {
+            conn.setCatalog(live);
+            stmt.execute("DROP DATABASE IF EXISTS `" + scratch + "`");
+        } catch (SQLException e) {
+            System.err.println("[!] Could not drop scratch schema " + scratch + ": " + e.getMessage());
+        }
+    }
+
+    // Seeds synthetic customers, vehicles, rentals and transactions into the (scratch) schema
+    // conn points at. Ids are plain sequences because the tables start empty, and the
+    // password hash matches no password.
+    static void seedScale(Connection conn, int rentalCount) throws SQLException {
+        int userCount = Math.max(10, rentalCount / 20);
+        int vehicleCount = Math.max(10, rentalCount / 10);
+        Random random = new Random(42);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        try {
+            List<Integer> userIds = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO Users (UserID, Username, PasswordHash, FullName, Email, Phone, RoleID, WalletBalance, IsActive) " +
+                    "VALUES (?, ?, '!', ?, ?, NULL, ?, ?, ?)")) {
+                for (int i = 0; i < userCount; i++) {
+                    int userId = i + 1;
+                    ps.setInt(1, userId);
+                    ps.setString(2, SEED_PREFIX.toLowerCase() + "_user_" + i);
+                    ps.setString(3, "Seed User " + i);
+                    ps.setString(4, SEED_PREFIX.toLowerCase() + i + "@seed.com");
+                    ps.setInt(5, i % 5 == 0 ? 3 : 2);
+                    ps.setDouble(6, random.nextInt(5000));
+                    ps.setBoolean(7, random.nextInt(50) != 0);
+                    ps.addBatch();
+                    userIds.add(userId);
+                    if (i % 1000 == 999 || i == userCount - 1) flushBatch(conn, ps);
+                }
+            }
+
+            List<Integer> vehicleIds = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO Vehicles (VehicleID, RegistrationNo, MakeID, Model, Year, ColorID, DailyRate, StatusID, OwnerID, " +
+                    "IsUserListed, Location) VALUES (?, ?, ?, 'Seed', ?, ?, ?, ?, ?, ?, ?)")) {
+                String[] locations = {"Downtown", "Airport", "City Center", "Harbor", "University"};
+                for (int i = 0; i < vehicleCount; i++) {
+                    boolean userListed = random.nextInt(3) == 0;
+                    int vehicleId = i + 1;
+                    ps.setInt(1, vehicleId);
+                    ps.setString(2, SEED_PREFIX + i);
+                    ps.setInt(3, 1 + random.nextInt(6));
+                    ps.setInt(4, 2010 + random.nextInt(14));
+                    ps.setInt(5, 1 + random.nextInt(6));
+                    ps.setDouble(6, 20 + random.nextInt(150));
+                    ps.setInt(7, 1 + random.nextInt(3));
+                    ps.setInt(8, userListed ? userIds.get(random.nextInt(userCount)) : 1);
+                    ps.setBoolean(9, userListed);
+                    ps.setString(10, locations[random.nextInt(locations.length)]);
+                    ps.addBatch();
+                    vehicleIds.add(vehicleId);
+                    if (i % 1000 == 999 || i == vehicleCount - 1) flushBatch(conn, ps);
+                }
+            }
+
+            // Rental ids are known up front, so each rental and its transaction go in the same batch
+            try (PreparedStatement rental = conn.prepareStatement(
+                    "INSERT INTO Rentals (RentalID, UserID, VehicleID, RentalDate, ReturnDate, TotalAmount, StatusID, PaymentStatusID) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement txn = conn.prepareStatement(
+                    "INSERT INTO Transactions (TransactionID, RentalID, UserID, TypeID, Amount, AdminCommission, OwnerEarnings, " +
+                    "Status, Description) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 'Seed rental')")) {
+                LocalDate base = LocalDate.now().minusYears(2);
+                for (int i = 0; i < rentalCount; i++) {
+                    LocalDate start = base.plusDays(random.nextInt(760));
+                    int days = 1 + random.nextInt(10);
+                    double amount = days * (20 + random.nextInt(150));
+                    int status = 1 + random.nextInt(5);
+                    int userId = userIds.get(random.nextInt(userCount));
+                    int rentalId = i + 1;
+
+                    rental.setInt(1, rentalId);
+                    rental.setInt(2, userId);
+                    rental.setInt(3, vehicleIds.get(random.nextInt(vehicleCount)));
+                    rental.setDate(4, Date.valueOf(start));
+                    rental.setDate(5, Date.valueOf(start.plusDays(days)));
+                    rental.setDouble(6, amount);
+                    rental.setInt(7, status);
+                    rental.setInt(8, status == 1 ? 1 : 2);
+                    rental.addBatch();
+
+                    boolean userListed = random.nextInt(3) == 0;
+                    txn.setInt(1, rentalId);
+                    txn.setInt(2, rentalId);
+                    txn.setInt(3, userId);
+                    txn.setInt(4, userListed ? 1 : 2);
+                    txn.setDouble(5, amount);
+                    txn.setDouble(6, userListed ? amount * 0.2 : amount);
+                    txn.setDouble(7, userListed ? amount * 0.8 : 0);
+                    txn.setString(8, status == 1 ? "PENDING" : "COMPLETED");
+                    txn.addBatch();
+
+                    if (i % 1000 == 999 || i == rentalCount - 1) {
+                        rental.executeBatch();
+                        txn.executeBatch();
+                        conn.commit();
+                    }
+                }
+            }
+            System.out.println("[✓] Seeded " + userCount + " users, " + vehicleCount + " vehicles, " +
+                               rentalCount + " rentals.");
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void flushBatch(Connection conn, PreparedStatement ps) throws SQLException {
+        ps.executeBatch();
+        conn.commit();
+    }
+
+    // ========== EXPLAIN ==========
+    static void explainAll(Connection conn, List<CapturedQuery> queries) {
+        for (CapturedQuery q : queries) {
+            if (!q.isSelect()) continue;
+            try (PreparedStatement ps = conn.prepareStatement("EXPLAIN ANALYZE " + q.sql)) {
+                bind(ps, q.params);
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) plan.append(rs.getString(1));
+                }
+                q.plan = plan.toString();
+                q.tableScan = q.plan.contains("Table scan on");
+                q.fileSort = q.plan.contains("-> Sort");
+            } catch (SQLException e) {
+                q.plan = "EXPLAIN failed: " + e.getMessage();
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+    }
+
+    // ========== PROPOSAL ==========
+    private static final Pattern TABLE_REF = Pattern.compile(
+        "(?:FROM|JOIN)\\s+(\\w+)(?:\\s+(?:AS\\s+)?(?!ON\\b|WHERE\\b|JOIN\\b|ORDER\\b|GROUP\\b)(\\w+))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JOIN_COND = Pattern.compile("(\\w+)\\.(\\w+)\\s*=\\s*(\\w+)\\.(\\w+)");
+    private static final Pattern EQ_PRED = Pattern.compile(
+        "(?:(\\w+)\\.)?(\\w+)\\s*=\\s*(?:\\?|'[^']*'|\\d+|TRUE|FALSE)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ORDER_COL = Pattern.compile("(?:(\\w+)\\.)?(\\w+)(?:\\s+(?:ASC|DESC))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern AGGREGATE = Pattern.compile("(?:SUM|AVG|MIN|MAX)\\((?:(\\w+)\\.)?(\\w+)\\)", Pattern.CASE_INSENSITIVE);
+
+    // Derives (equality columns..., order/aggregate columns...) for the driving table of a query
+    static List<String> candidateColumns(String sql, String[] drivingTable) {
+        String upper = sql.toUpperCase();
+        int whereAt = upper.indexOf(" WHERE ");
+        int orderAt = upper.indexOf(" ORDER BY ");
+        int end = firstPositive(orderAt, upper.indexOf(" GROUP BY "), upper.indexOf(" LIMIT "), sql.length());
+
+        Map<String, String> aliasToTable = new HashMap<>();
+        Matcher m = TABLE_REF.matcher(sql);
+        String drivingAlias = null;
+        while (m.find()) {
+            String alias = m.group(2) != null ? m.group(2) : m.group(1);
+            aliasToTable.put(alias, m.group(1));
+            if (drivingAlias == null) {
+                drivingAlias = alias;
+                drivingTable[0] = m.group(1);
+            }
+        }
+        if (drivingAlias == null) return Collections.emptyList();
+
+        // Lookup alias -> driving column it is joined through (e.g. rs -> r.StatusID)
+        Map<String, String> joinedThrough = new HashMap<>();
+        m = JOIN_COND.matcher(whereAt > 0 ? sql.substring(0, whereAt) : sql);
+        while (m.find()) {
+            if (m.group(1).equals(drivingAlias)) joinedThrough.put(m.group(3), m.group(2));
+            else if (m.group(3).equals(drivingAlias)) joinedThrough.put(m.group(1), m.group(4));
+        }
+
+        LinkedHashSet<String> columns = new LinkedHashSet<>();
+        if (whereAt > 0) {
+            m = EQ_PRED.matcher(sql.substring(whereAt, end));
+            while (m.find()) {
+                String alias = m.group(1) == null ? drivingAlias : m.group(1);
+                if (alias.equals(drivingAlias)) columns.add(m.group(2));
+                else if (joinedThrough.containsKey(alias)) columns.add(joinedThrough.get(alias));
+            }
+        }
+        if (orderAt > 0) {
+            int orderEnd = firstPositive(upper.indexOf(" LIMIT ", orderAt), sql.length());
+            for (String part : sql.substring(orderAt + 10, orderEnd).split(",")) {
+                Matcher om = ORDER_COL.matcher(part.trim());
+                if (om.matches() && (om.group(1) == null || om.group(1).equals(drivingAlias))) {
+                    columns.add(om.group(2));
+                }
+            }
+        }
+        m = AGGREGATE.matcher(sql);
+        while (m.find()) {
+            if (m.group(1) == null || m.group(1).equals(drivingAlias)) columns.add(m.group(2));
+        }
+        return new ArrayList<>(columns);
+    }
+
+    private static int firstPositive(int... positions) {
+        for (int p : positions) if (p > 0) return p;
+        return -1;
+    }
+
+    // Existing indexes as table -> (index name -> columns); PRIMARY and UNIQUE flagged by name prefix
+    static Map<String, Map<String, List<String>>> loadIndexes(Connection conn, Set<String> uniqueOut) throws SQLException {
+        Map<String, Map<String, List<String>>> indexes = new HashMap<>();
+        String sql = "SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME, NON_UNIQUE FROM information_schema.STATISTICS " +
+                     "WHERE TABLE_SCHEMA = DATABASE() ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                String table = rs.getString(1).toLowerCase();
+                indexes.computeIfAbsent(table, t -> new LinkedHashMap<>())
+                       .computeIfAbsent(rs.getString(2), i -> new ArrayList<>())
+                       .add(rs.getString(3));
+                if (rs.getInt(4) == 0) uniqueOut.add(table + "." + rs.getString(2));
+            }
+        }
+        return indexes;
+    }
+
+    static List<IndexChange> proposeIndexes(Connection conn, List<CapturedQuery> queries) throws SQLException {
+        Set<String> unique = new HashSet<>();
+        Map<String, Map<String, List<String>>> indexes = loadIndexes(conn, unique);
+        List<IndexChange> creates = new ArrayList<>();
+        List<IndexChange> drops = new ArrayList<>();
+        Set<String> dropped = new HashSet<>();
+
+        for (CapturedQuery q : queries) {
+            if (!q.isSelect()) continue;
+            String[] table = new String[1];
+            List<String> columns = candidateColumns(q.sql, table);
+            if (columns.isEmpty()) continue;
+            Map<String, List<String>> existing = indexes.getOrDefault(table[0].toLowerCase(), Collections.emptyMap());
+
+            if (coveredByUnique(existing, unique, table[0], columns) || coveredByPrefix(existing, columns)) continue;
+            if (isBooleanColumn(conn, table[0], columns.get(0))) continue;
+
+            String name = "idx_" + table[0] + "_" + String.join("_", columns);
+            if (name.length() > 64) name = name.substring(0, 64);
+            IndexChange create = new IndexChange(table[0], name, columns, false,
+                "serves " + abbreviate(q.sql, 60) + (q.tableScan ? " [table scan]" : "") + (q.fileSort ? " [filesort]" : ""));
+            creates.add(create);
+            existing = new LinkedHashMap<>(existing);
+            existing.put(name, columns);
+            indexes.put(table[0].toLowerCase(), existing);
+
+            // Explicit single-purpose indexes that are now a strict prefix of the new one are redundant
+            for (Map.Entry<String, List<String>> e : existing.entrySet()) {
+                List<String> cols = e.getValue();
+                if (!e.getKey().equals(name) && e.getKey().startsWith("idx_") && cols.size() < columns.size()
+                        && columns.subList(0, cols.size()).equals(cols) && dropped.add(table[0] + "." + e.getKey())) {
+                    drops.add(new IndexChange(table[0], e.getKey(), cols, true, "prefix of " + name));
+                }
+            }
+        }
+
+        // Non-unique indexes duplicating a UNIQUE constraint on the same columns
+        for (Map.Entry<String, Map<String, List<String>>> t : indexes.entrySet()) {
+            for (Map.Entry<String, List<String>> idx : t.getValue().entrySet()) {
+                if (unique.contains(t.getKey() + "." + idx.getKey())) continue;
+                for (Map.Entry<String, List<String>> other : t.getValue().entrySet()) {
+                    if (unique.contains(t.getKey() + "." + other.getKey()) && other.getValue().equals(idx.getValue())
+                            && dropped.add(t.getKey() + "." + idx.getKey())) {
+                        drops.add(new IndexChange(tableName(queries, t.getKey()), idx.getKey(), idx.getValue(), true,
+                                                  "duplicates UNIQUE " + other.getKey()));
+                        break;
+                    }
+                }
+            }
+        }
+
+        // Creates must run before drops so foreign keys always keep a usable index
+        List<IndexChange> changes = new ArrayList<>(creates);
+        changes.addAll(drops);
+        return changes;
+    }
+
+    private static boolean coveredByUnique(Map<String, List<String>> existing, Set<String> unique,
+                                           String table, List<String> columns) {
+        for (Map.Entry<String, List<String>> e : existing.entrySet()) {
+            List<String> cols = e.getValue();
+            if (unique.contains(table.toLowerCase() + "." + e.getKey()) && cols.size() <= columns.size()
+                    && columns.subList(0, cols.size()).equals(cols)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean coveredByPrefix(Map<String, List<String>> existing, List<String> columns) {
+        for (List<String> cols : existing.values()) {
+            if (cols.size() >= columns.size() && cols.subList(0, columns.size()).equals(columns)) return true;
+        }
+        return false;
+    }
+
+    // A flag column (BOOLEAN = TINYINT(1)) is too unselective to lead an index
+    private static boolean isBooleanColumn(Connection conn, String table, String column) throws SQLException {
+        String sql = "SELECT COLUMN_TYPE FROM information_schema.COLUMNS " +
+                     "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, column);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getString(1).equalsIgnoreCase("tinyint(1)");
+            }
+        }
+    }
+
+    // information_schema may report lower-case names; prefer the spelling used in the queries
+    private static String tableName(List<CapturedQuery> queries, String lower) {
+        for (CapturedQuery q : queries) {
+            Matcher m = TABLE_REF.matcher(q.sql);
+            while (m.find()) if (m.group(1).equalsIgnoreCase(lower)) return m.group(1);
+        }
+        return lower;
+    }
+
+    // ========== MIGRATION ==========
+    static Path writeMigration(List<IndexChange> changes) throws IOException {
+        Path dir = Paths.get(MIGRATIONS_DIR);
+        Files.createDirectories(dir);
+        int version = 1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "V*__*.sql")) {
+            for (Path f : files) {
+                String n = f.getFileName().toString();
+                version = Math.max(version, Integer.parseInt(n.substring(1, n.indexOf("__"))));
+            }
+        }
+        Path file = dir.resolve("V" + (version + 1) + "__advisor_indexes.sql");
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("-- Generated by IndexAdvisor on " + LocalDate.now() + "\n");
+            for (IndexChange c : changes) {
+                out.write("-- " + c.reason + "\n");
+                out.write(c.toSql() + "\n");
+            }
+        }
+        return file;
+    }
+
+    static void applyChanges(Connection conn, List<IndexChange> changes) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (IndexChange c : changes) {
+                String sql = c.toSql();
+                stmt.execute(sql.substring(0, sql.length() - 1));
+                System.out.println("[✓] " + (c.drop ? "Dropped " : "Created ") + c.table + "." + c.name);
+            }
+        }
+    }
+
+    // ========== LATENCY ==========
+    static Map<String, Double> measureLatency(Connection conn, List<CapturedQuery> queries) {
+        Map<String, Double> medians = new LinkedHashMap<>();
+        for (CapturedQuery q : queries) {
+            if (!q.isSelect()) continue;
+            double[] samples = new double[TIMED_RUNS];
+            try (PreparedStatement ps = conn.prepareStatement(q.sql)) {
+                bind(ps, q.params);
+                for (int i = 0; i < WARMUP_RUNS + TIMED_RUNS; i++) {
+                    long start = System.nanoTime();
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) { /* drain */ }
+                    }
+                    if (i >= WARMUP_RUNS) samples[i - WARMUP_RUNS] = (System.nanoTime() - start) / 1_000_000.0;
+                }
+                Arrays.sort(samples);
+                medians.put(q.sql, samples[TIMED_RUNS / 2]);
+            } catch (SQLException e) {
+                medians.put(q.sql, -1.0);
+            }
+        }
+        return medians;
+    }
+
+    static void printReport(List<CapturedQuery> queries, Map<String, Double> before, Map<String, Double> after) {
+        System.out.println("\n=== INDEX ADVISOR LATENCY REPORT (median of " + TIMED_RUNS + " runs) ===");
+        System.out.printf("%-62s %10s %10s %8s\n", "Query", "Before ms", "After ms", "Speedup");
+        System.out.println("------------------------------------------------------------------------------------------------");
+        for (CapturedQuery q : queries) {
+            if (!before.containsKey(q.sql)) continue;
+            double b = before.get(q.sql);
+            double a = after.getOrDefault(q.sql, b);
+            System.out.printf("%-62s %10.3f %10.3f %7.1fx\n", abbreviate(q.sql, 62), b, a, a > 0 ? b / a : 0);
+        }
+        System.out.println("------------------------------------------------------------------------------------------------\n");
+    }
+
+    private static String abbreviate(String sql, int max) {
+        String s = sql.replaceAll("\\s+", " ");
+        int where = s.toUpperCase().indexOf(" FROM ");
+        if (where > 0) s = s.substring(where + 1);
+        return s.length() > max ? s.substring(0, max - 3) + "..." : s;
+    }
+
+    // Full advisor run: optional seeding, capture, explain, propose, migrate, measure. The
+    // changes reach the live schema only as the migration file: applied now through
+    // SchemaMigrator (which records the version), or at the next startup.
+    public static void run(int seedRentals, boolean apply) {
+        try (Connection conn = DatabaseManager.openConnection()) {
+            String live = conn.getCatalog();
+            String scratch = seedRentals > 0 ? createScratchSchema(conn) : null;
+            try {
+                advise(conn, scratch, seedRentals, apply);
+            } finally {
+                if (scratch != null) dropScratchSchema(conn, live, scratch);
+            }
+        } catch (SQLException | IOException e) {
+            System.err.println("[✗] Index advisor failed: " + e.getMessage());
+        }
+    }
+
+    private static void advise(Connection conn, String scratch, int seedRentals, boolean apply)
+            throws SQLException, IOException {
+        if (scratch != null) seedScale(conn, seedRentals);
+
+        List<CapturedQuery> queries = captureDataStoreWorkload();
+        System.out.println("[✓] Captured " + queries.size() + " distinct DataStore statements.");
+        explainAll(conn, queries);
+        for (CapturedQuery q : queries) {
+            System.out.println((q.tableScan || q.fileSort ? "[!] " : "[✓] ") + abbreviate(q.sql, 70) +
+                               (q.tableScan ? " [table scan]" : "") + (q.fileSort ? " [filesort]" : ""));
+        }
+
+        List<IndexChange> changes = proposeIndexes(conn, queries);
+        if (changes.isEmpty()) {
+            System.out.println("[✓] Current index set already covers the captured workload.");
+            return;
+        }
+        System.out.println("\nProposed index changes:");
+        for (IndexChange c : changes) System.out.println("  " + c.toSql() + "  -- " + c.reason);
+
+        Path migration = writeMigration(changes);
+        System.out.println("[✓] Migration written to " + migration);
+        if (!apply) {
+            System.out.println("[-] It is applied at the next startup.");
+            return;
+        }
+
+        Map<String, Double> before = measureLatency(conn, queries);
+        if (scratch != null) {
+            // Trial on the seeded copy; the live schema gets the migration at the next startup
+            applyChanges(conn, changes);
+        } else if (!SchemaMigrator.migrate(conn)) {
+            System.err.println("[✗] Migration not applied; it stays pending for the next startup.");
+            return;
+        }
+        Map<String, Double> after = measureLatency(conn, queries);
+        printReport(queries, before, after);
+        DataStore.logEvent("INDEX_ADVISOR", changes.size() + " index changes " +
+                           (scratch != null ? "measured on seeded data, pending in " : "applied from ") +
+                           migration.getFileName(), 0);
+    }
+}
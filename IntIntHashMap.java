@@ -0,0 +1,94 @@
+// Vehicle Rental System - Primitive Int Map
+import java.util.Arrays;
+
+// INT -> INT HASH MAP
+// Open-addressing map with linear probing over a single int[] of key/value pairs.
+// No boxing, no per-entry objects; get() returns the given default when absent.
+// Not thread-safe: callers guard it or publish it immutably.
+class IntIntHashMap {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] table;   // key at 2*i, value at 2*i+1
+    private int size;
+    private int mask;
+
+    IntIntHashMap() { this(16); }
+
+    IntIntHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        table = new int[capacity * 2];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int get(int key, int defaultValue) {
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k = table[2 * i];
+            if (k == key) return table[2 * i + 1];
+            if (k == EMPTY) return defaultValue;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k = table[2 * i];
+            if (k == key) return true;
+            if (k == EMPTY) return false;
+        }
+    }
+
+    public void put(int key, int value) {
+        if (key == EMPTY) throw new IllegalArgumentException("Reserved key " + key);
+        if ((size + 1) * 2 > mask + 1) resize();
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int k = table[2 * i];
+            if (k == key) { table[2 * i + 1] = value; return; }
+            if (k == EMPTY) {
+                table[2 * i] = key; table[2 * i + 1] = value;
+                size++;
+                return;
+            }
+        }
+    }
+
+    // Adds delta to the value for key (starting from 0) and returns the new value
+    public int addTo(int key, int delta) {
+        int v = get(key, 0) + delta;
+        put(key, v);
+        return v;
+    }
+
+    public int size() { return size; }
+
+    // Independent copy, e.g. to publish a snapshot while the original keeps changing
+    public IntIntHashMap copy() {
+        IntIntHashMap m = new IntIntHashMap(1);
+        m.table = table.clone();
+        m.size = size;
+        m.mask = mask;
+        return m;
+    }
+
+    // Iteration helpers: slots 0..capacity()-1, skipping empty ones
+    public int capacity() { return mask + 1; }
+    public boolean isUsed(int slot) { return table[2 * slot] != EMPTY; }
+    public int keyAt(int slot) { return table[2 * slot]; }
+    public int valueAt(int slot) { return table[2 * slot + 1]; }
+
+    private void resize() {
+        int[] old = table;
+        int capacity = (mask + 1) * 2;
+        table = new int[capacity * 2];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != EMPTY) put(old[i], old[i + 1]);
+        }
+    }
+}
@@ -0,0 +1,619 @@
+// Vehicle Rental System - Load Harness
+import java.io.*;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+
+// LOAD HARNESS
+// Soak and load test against a dedicated MySQL database (never the application's own), run on its own:
+//   java -Drental.db.url=jdbc:mysql://localhost:3306/VehicleRentalLoad -Drental.load.rate=20 LoadHarness
+// Simulated customers, owners and admins work through AuthController, VehicleController,
+// RentalController and PaymentController exactly as the console menus do, with the background
+// services (lifecycle, events, pricing, waitlist, auto-approval, login guard) running.
+//  - Sessions arrive as a Poisson process at rental.load.rate per second however slowly the
+//    system answers (an open model: a slow database builds a backlog, it does not slow the users).
+//  - Each session walks a script chosen by rental.load.mix, with exponential think times of mean
+//    rental.load.think ms between steps. Thousands of sessions share a small worker pool, each
+//    worker on its own connection as separate application instances would be.
+//  - A step's latency is measured from when it was due, not from when a worker picked it up, so
+//    time spent queued behind a slow database counts as it would for a real user.
+//  - Every rental.load.interval seconds throughput, refusal/error rates and p50/p99 per operation
+//    are printed (and appended to rental.load.csv if set); the totals after the warm-up follow at
+//    the end, then invariant checks over the whole database.
+class LoadHarness {
+    enum Op { LOGIN, BROWSE, QUOTE, RENT, HISTORY, TOPUP, MY_VEHICLES, LIST_VEHICLE, REPRICE, PENDING, APPROVE, LOGOUT }
+
+    // REFUSED: the controller said no (taken vehicle, throttled login); ERROR: it threw
+    enum Outcome { OK, REFUSED, ERROR }
+
+    // Fresh for every run and unusable once it ends (see lockPopulation)
+    private static final String PASSWORD = Long.toString(new java.security.SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+    private static final String[] MAKES = {"Toyota", "Honda", "Ford"};
+    private static final String[] COLORS = {"White", "Black", "Blue"};
+    private static final String[] LOCATIONS = {"Downtown", "Airport", "Harbour", "University"};
+    private static final double START_BALANCE = 2000;
+    private static final int VEHICLES_PER_OWNER = 2;
+    private static final int CUSTOMERS_PER_OWNER = 20, CUSTOMERS_PER_ADMIN = 500;
+    private static final long DRAIN_SECONDS = 60;
+
+    // Role weights, then step probabilities in percent; approve is the most pending rentals one
+    // admin session approves
+    private static final String DEFAULT_MIX =
+        "customer=90,owner=8,admin=2,rent=30,history=50,topup=20,list=10,reprice=30,approve=5";
+
+    // ========== CONFIGURATION ==========
+    static final class Config {
+        final double rate = Double.parseDouble(System.getProperty("rental.load.rate", "20"));
+        final long durationSeconds = Long.getLong("rental.load.duration", 300);
+        final long warmupSeconds = Long.getLong("rental.load.warmup", 30);
+        final long intervalSeconds = Long.getLong("rental.load.interval", 10);
+        final double thinkMs = Double.parseDouble(System.getProperty("rental.load.think", "2000"));
+        final int customers = Integer.getInteger("rental.load.users", 1000);
+        final int workers = Integer.getInteger("rental.load.workers", 32);
+        final int maxSessions = Integer.getInteger("rental.load.maxSessions", 10_000);
+        final String csv = System.getProperty("rental.load.csv", "").trim();
+        final Map<String, Double> mix = parseMix(System.getProperty("rental.load.mix", ""));
+
+        double mix(String key) { return mix.get(key); }
+    }
+
+    static Map<String, Double> parseMix(String spec) {
+        Map<String, Double> mix = new LinkedHashMap<>();
+        for (String part : (DEFAULT_MIX + "," + spec).split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) continue;
+            String key = kv[0].trim().toLowerCase();
+            if (!mix.containsKey(key) && !DEFAULT_MIX.contains(key + "=")) {
+                System.err.println("[!] Unknown load mix entry ignored: " + part.trim());
+                continue;
+            }
+            try {
+                mix.put(key, Math.max(0, Double.parseDouble(kv[1].trim())));
+            } catch (NumberFormatException e) {
+                System.err.println("[!] Bad load mix value ignored: " + part.trim());
+            }
+        }
+        return mix;
+    }
+
+    // ========== LATENCY HISTOGRAM ==========
+    // Log-linear buckets over microseconds: exact below 16, then 16 buckets per power of two
+    // (values in one bucket are within ~6% of each other). Recording is one atomic increment.
+    static final class Histogram {
+        static final int BUCKETS = 61 * 16;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        void record(long micros) {
+            counts.incrementAndGet(index(Math.max(0, micros)));
+        }
+
+        // Returns the counts since the last drain and resets them
+        long[] drain() {
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) snapshot[i] = counts.getAndSet(i, 0);
+            return snapshot;
+        }
+
+        static int index(long v) {
+            if (v < 16) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            return (exp - 3) * 16 + (int) ((v >>> (exp - 4)) & 15);
+        }
+
+        // Upper edge of a bucket, so percentiles err on the slow side
+        static long upper(int index) {
+            if (index < 16) return index;
+            int exp = index / 16 + 3;
+            return ((16L + index % 16 + 1) << (exp - 4)) - 1;
+        }
+
+        static long percentile(long[] counts, double q) {
+            long total = 0;
+            for (long c : counts) total += c;
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total)), seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return upper(i);
+            }
+            return upper(counts.length - 1);
+        }
+
+        static long max(long[] counts) {
+            for (int i = counts.length - 1; i >= 0; i--) if (counts[i] > 0) return upper(i);
+            return 0;
+        }
+    }
+
+    static final class OpStats {
+        final Histogram latency = new Histogram();
+        final LongAdder[] outcomes = {new LongAdder(), new LongAdder(), new LongAdder()};
+        // Totals after the warm-up, only touched by the reporter
+        final long[] totalLatency = new long[Histogram.BUCKETS];
+        final long[] totalOutcomes = new long[3];
+    }
+
+    // Counts stderr lines (DataStore reports SQL failures there and returns false/null)
+    static final class ErrorLog extends OutputStream {
+        final LongAdder lines = new LongAdder();
+        volatile String last = "";
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) {
+            if (b != '\n') {
+                line.write(b);
+                return;
+            }
+            String text = line.toString().trim();
+            line.reset();
+            if (text.isEmpty()) return;
+            lines.increment();
+            last = text;
+        }
+    }
+
+    private final Config config;
+    private final OpStats[] stats = new OpStats[Op.values().length];
+    private final VehicleController vehicles = new VehicleController();
+    private final RentalController rentals = new RentalController();
+    private final PaymentController payments = new PaymentController();
+    private final String runTag = Long.toString(System.currentTimeMillis(), 36).toUpperCase();
+    private final AtomicInteger registrations = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder started = new LongAdder(), shed = new LongAdder();
+    private final ErrorLog errorLog = new ErrorLog();
+    private final PrintStream out = System.out;
+    private List<User> customers, owners, admins;
+    private ScheduledExecutorService pool;
+    private PrintWriter csv;
+    private long startNanos;
+    private long measuredNanos;
+
+    LoadHarness(Config config) {
+        this.config = config;
+        for (int i = 0; i < stats.length; i++) stats[i] = new OpStats();
+    }
+
+    public static void main(String[] args) {
+        Config config = new Config();
+        System.out.println("=========================================");
+        System.out.println("   VEHICLE RENTAL SYSTEM (Load Harness)");
+        System.out.println("=========================================\n");
+        if (!DatabaseManager.testConnection()) {
+            System.err.println("[✗] Failed to connect to database. Exiting...");
+            return;
+        }
+        if (!dedicatedDatabase()) {
+            DatabaseManager.closeConnection();
+            return;
+        }
+        LoadHarness harness = new LoadHarness(config);
+        try {
+            harness.setUp();
+            WarmStart.start();
+            RentalLifecycleScheduler.start();
+            EventBus.start();
+            PricingEngine.start();
+            Waitlist.start();
+            ApprovalEngine.start();
+            // Started after the population exists so its username filter knows the load users
+            LoginGuard.start();
+            harness.run();
+        } finally {
+            LoginGuard.stop();
+            ApprovalEngine.stop();
+            Waitlist.stop();
+            PricingEngine.stop();
+            RentalLifecycleScheduler.stop();
+            EventBus.stop();
+            WarmStart.stop();
+            harness.lockPopulation();
+        }
+        harness.printTotals();
+        harness.checkInvariants();
+        DatabaseManager.closeConnection();
+    }
+
+    // The load users and their rentals, payments and ledger entries stay behind (the ledger is
+    // append-only), so the harness refuses to write them into the application's database
+    private static boolean dedicatedDatabase() {
+        try (Connection conn = DatabaseManager.openConnection()) {
+            String catalog = conn.getCatalog();
+            if (catalog == null || !catalog.equalsIgnoreCase(DatabaseManager.APP_DATABASE)) return true;
+            System.err.println("[✗] The load harness needs a dedicated database, not " + catalog + ".");
+            System.err.println("[✗] Create one from VehicleRentalDB.sql and pass -Drental.db.url=jdbc:mysql://host:3306/<name>");
+        } catch (SQLException e) {
+            System.err.println("[✗] Could not check the database: " + e.getMessage());
+        }
+        return false;
+    }
+
+    // ========== POPULATION ==========
+    // Load users are named load_c1.., load_o1.., load_a1.. and reused by later runs on the same
+    // dedicated database; each run gives them its own password and locks them again at the end
+    private void setUp() {
+        int n = Math.max(1, config.customers);
+        out.println("[-] Preparing " + n + " customers, " + Math.max(1, n / CUSTOMERS_PER_OWNER) + " owners, " +
+                    Math.max(1, n / CUSTOMERS_PER_ADMIN) + " admins...");
+        setPopulationPassword(PASSWORD);
+        customers = population("c", "CUSTOMER", n);
+        owners = population("o", "OWNER", Math.max(1, n / CUSTOMERS_PER_OWNER));
+        admins = population("a", "ADMIN", Math.max(1, n / CUSTOMERS_PER_ADMIN));
+        Random random = new Random();
+        for (User owner : owners) {
+            for (int i = vehicles.getUserVehicles(owner.getUserId()).size(); i < VEHICLES_PER_OWNER; i++) {
+                listVehicle(owner, random);
+            }
+        }
+        out.println("[✓] Load population ready.");
+    }
+
+    private List<User> population(String prefix, String role, int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String name = "load_" + prefix + i;
+            User user = DataStore.getUserByUsername(name);
+            if (user == null) {
+                User created = new User(0, name, PASSWORD, "Load " + role.toLowerCase() + " " + i,
+                                        name + "@load.test", "555-0100", role);
+                created.setWalletBalance(role.equals("CUSTOMER") ? START_BALANCE : 0);
+                DataStore.addUser(created);
+                user = DataStore.getUserByUsername(name);
+            }
+            if (user == null) throw new IllegalStateException("Could not create load user " + name);
+            users.add(user);
+        }
+        return users;
+    }
+
+    // '!' matches no password, so the accounts (admins included) cannot log in between runs
+    private void lockPopulation() {
+        if (setPopulationPassword("!")) out.println("[✓] Load users locked.");
+    }
+
+    private boolean setPopulationPassword(String password) {
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "UPDATE Users SET PasswordHash = ? WHERE Username LIKE 'load\\_%'")) {
+            ps.setString(1, password);
+            ps.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[!] Could not update the load users' password: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean listVehicle(User owner, Random random) {
+        String regNo = "LT" + runTag + "-" + registrations.incrementAndGet();
+        return vehicles.addUserVehicle(owner.getUserId(), regNo, MAKES[random.nextInt(MAKES.length)], "Load",
+                                       2015 + random.nextInt(10), COLORS[random.nextInt(COLORS.length)],
+                                       30 + random.nextInt(15) * 5, LOCATIONS[random.nextInt(LOCATIONS.length)]);
+    }
+
+    // ========== SESSIONS ==========
+    final class Session {
+        private final Random random = new Random();
+        private final AuthController auth = new AuthController();
+        private final User user;
+        private final String source;
+        private final List<Op> script = new ArrayList<>();
+        private int next;
+        private List<Vehicle> browsed = Collections.emptyList();
+        private List<Rental> pending = Collections.emptyList();
+        private Vehicle chosen;
+        private LocalDate from, to;
+        private PricingEngine.Quote quote;
+
+        Session() {
+            double c = config.mix("customer"), o = config.mix("owner"), a = config.mix("admin");
+            double pick = random.nextDouble() * (c + o + a);
+            script.add(Op.LOGIN);
+            if (pick < c) {
+                user = customers.get(random.nextInt(customers.size()));
+                script.add(Op.BROWSE);
+                if (chance("rent")) { script.add(Op.QUOTE); script.add(Op.RENT); }
+                if (chance("history")) script.add(Op.HISTORY);
+                if (chance("topup")) script.add(Op.TOPUP);
+            } else if (pick < c + o) {
+                user = owners.get(random.nextInt(owners.size()));
+                script.add(Op.MY_VEHICLES);
+                if (chance("list")) script.add(Op.LIST_VEHICLE);
+                if (chance("reprice")) script.add(Op.REPRICE);
+            } else {
+                user = admins.get(random.nextInt(admins.size()));
+                script.add(Op.PENDING);
+            }
+            script.add(Op.LOGOUT);
+            // One client address per simulated user, as the login guard would see real clients
+            source = "load-" + user.getUserId();
+        }
+
+        private boolean chance(String key) {
+            return random.nextDouble() * 100 < config.mix(key);
+        }
+
+        void step(long dueNanos) {
+            Op op = script.get(next++);
+            Outcome outcome;
+            try {
+                outcome = perform(op) ? Outcome.OK : Outcome.REFUSED;
+            } catch (RuntimeException e) {
+                outcome = Outcome.ERROR;
+                errorLog.last = op + ": " + e;
+            }
+            OpStats s = stats[op.ordinal()];
+            s.latency.record((System.nanoTime() - dueNanos) / 1000);
+            s.outcomes[outcome.ordinal()].increment();
+            if (next >= script.size() || op == Op.LOGIN && outcome != Outcome.OK) {
+                active.decrementAndGet();
+                return;
+            }
+            long think = (long) (-Math.log(1 - random.nextDouble()) * config.thinkMs * 1_000_000);
+            long due = System.nanoTime() + think;
+            try {
+                pool.schedule(() -> step(due), think, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                active.decrementAndGet();
+            }
+        }
+
+        private boolean perform(Op op) {
+            switch (op) {
+                case LOGIN:
+                    return auth.login(user.getUsername(), PASSWORD, source) != null;
+                case BROWSE:
+                    browsed = vehicles.getAvailableVehicles();
+                    return !browsed.isEmpty();
+                case QUOTE: {
+                    if (browsed.isEmpty()) return false;
+                    chosen = browsed.get(random.nextInt(browsed.size()));
+                    from = LocalDate.now().plusDays(1 + random.nextInt(30));
+                    to = from.plusDays(1 + random.nextInt(7));
+                    quote = rentals.quoteRental(chosen, from, to);
+                    double cost = rentals.calculateRentalCost(chosen, quote, from, to);
+                    // Short of money, the customer tops up before booking
+                    if (cost > auth.getCurrentUser().getWalletBalance()) script.add(next, Op.TOPUP);
+                    return true;
+                }
+                case RENT: {
+                    if (chosen == null) return false;
+                    Double balance = rentals.createRental(user.getUserId(), chosen.getVehicleId(), from, to, quote);
+                    if (balance != null) auth.getCurrentUser().setWalletBalance(balance);
+                    return balance != null;
+                }
+                case HISTORY:
+                    rentals.getUserRentals(user.getUserId());
+                    return true;
+                case TOPUP:
+                    return payments.addToWallet(auth.getCurrentUser(), 50 * (2 + random.nextInt(9)));
+                case MY_VEHICLES:
+                    browsed = vehicles.getUserVehicles(user.getUserId());
+                    return true;
+                case LIST_VEHICLE:
+                    return listVehicle(user, random);
+                case REPRICE: {
+                    if (browsed.isEmpty()) return false;
+                    Vehicle v = browsed.get(random.nextInt(browsed.size()));
+                    double rate = Math.max(10, Math.round(v.getDailyRate() * (90 + random.nextInt(21))) / 100.0);
+                    return vehicles.updateVehicleRate(v.getVehicleId(), rate);
+                }
+                case PENDING: {
+                    pending = new ArrayList<>(rentals.getPendingRentals());
+                    Collections.shuffle(pending, random);
+                    int approvals = Math.min(pending.size(), (int) config.mix("approve"));
+                    for (int i = 0; i < approvals; i++) script.add(next, Op.APPROVE);
+                    return true;
+                }
+                case APPROVE:
+                    return rentals.approveRental(pending.remove(pending.size() - 1).getRentalId(), user.getUserId());
+                case LOGOUT:
+                    auth.logout();
+                    return true;
+                default:
+                    throw new IllegalStateException("Unknown operation " + op);
+            }
+        }
+    }
+
+    // ========== RUN ==========
+    private void run() {
+        pool = Executors.newScheduledThreadPool(config.workers, r -> {
+            Thread t = new Thread(() -> {
+                // One session per worker, not all of them serialized on the shared connection
+                try {
+                    DatabaseManager.bindThreadConnection();
+                } catch (SQLException e) {
+                    errorLog.last = "worker connection: " + e;
+                }
+                r.run();
+            }, "load-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "load-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        if (!config.csv.isEmpty()) {
+            try {
+                csv = new PrintWriter(new FileWriter(config.csv, true), true);
+                csv.println("elapsed_s,operation,count,refused,errors,p50_ms,p99_ms,p999_ms");
+            } catch (IOException e) {
+                System.err.println("[!] Load CSV not written: " + e.getMessage());
+            }
+        }
+        out.printf("[-] %.1f sessions/s for %d s (warm-up %d s), think %.0f ms, %d workers, mix %s%n",
+                   config.rate, config.durationSeconds, config.warmupSeconds, config.thinkMs, config.workers, config.mix);
+        // The controllers talk to the console; keep that out of the report
+        PrintStream err = System.err;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override public void write(int b) { }
+            @Override public void write(byte[] b, int off, int len) { }
+        }));
+        System.setErr(new PrintStream(errorLog, true));
+        startNanos = System.nanoTime();
+        reporter.scheduleAtFixedRate(this::report, config.intervalSeconds, config.intervalSeconds, TimeUnit.SECONDS);
+        try {
+            arrive();
+            long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+            while (active.get() > 0 && System.nanoTime() < drainUntil) LockSupport.parkNanos(100_000_000);
+            if (active.get() > 0) out.println("[!] " + active.get() + " sessions still running after the drain period.");
+        } finally {
+            pool.shutdownNow();
+            reporter.shutdown();
+            try {
+                reporter.awaitTermination(10, TimeUnit.SECONDS);
+                pool.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            DatabaseManager.closeThreadConnections();
+            report();
+            System.setOut(out);
+            System.setErr(err);
+            if (csv != null) csv.close();
+        }
+    }
+
+    // Poisson arrivals on the calling thread, independent of how the sessions are doing
+    private void arrive() {
+        Random random = new Random();
+        long end = startNanos + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        long due = startNanos;
+        while (true) {
+            due += (long) (-Math.log(1 - random.nextDouble()) / config.rate * 1e9);
+            if (due >= end) return;
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            if (active.get() >= config.maxSessions) {
+                shed.increment();
+                continue;
+            }
+            Session session = new Session();
+            active.incrementAndGet();
+            started.increment();
+            long at = due;
+            pool.execute(() -> session.step(at));
+        }
+    }
+
+    // ========== REPORTING ==========
+    private long lastReport;
+    private long lastStarted;
+
+    private synchronized void report() {
+        long now = System.nanoTime();
+        long elapsed = now - startNanos;
+        double seconds = (elapsed - lastReport) / 1e9;
+        if (seconds <= 0) return;
+        boolean measured = elapsed > TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        if (measured) measuredNanos += elapsed - Math.max(lastReport, TimeUnit.SECONDS.toNanos(config.warmupSeconds));
+        lastReport = elapsed;
+        long startedNow = started.sum();
+        out.printf("%n[%5ds] %d active sessions, %.1f started/s, %d shed, %d database errors logged%s%n",
+                   elapsed / 1_000_000_000, active.get(), (startedNow - lastStarted) / seconds, shed.sum(),
+                   errorLog.lines.sum(), measured ? "" : " (warm-up)");
+        lastStarted = startedNow;
+        for (Op op : Op.values()) {
+            OpStats s = stats[op.ordinal()];
+            long[] latency = s.latency.drain();
+            long ok = s.outcomes[0].sumThenReset(), refused = s.outcomes[1].sumThenReset(), errors = s.outcomes[2].sumThenReset();
+            long count = ok + refused + errors;
+            if (measured) {
+                for (int i = 0; i < latency.length; i++) s.totalLatency[i] += latency[i];
+                s.totalOutcomes[0] += ok;
+                s.totalOutcomes[1] += refused;
+                s.totalOutcomes[2] += errors;
+            }
+            if (count == 0) continue;
+            out.printf("  %-13s %8.1f/s  refused %5.1f%%  errors %5.1f%%  p50 %8.1f ms  p99 %8.1f ms%n",
+                       op, count / seconds, 100.0 * refused / count, 100.0 * errors / count,
+                       Histogram.percentile(latency, 0.50) / 1000.0, Histogram.percentile(latency, 0.99) / 1000.0);
+            if (csv != null) {
+                csv.printf(Locale.ROOT, "%d,%s,%d,%d,%d,%.3f,%.3f,%.3f%n", elapsed / 1_000_000_000, op, count, refused, errors,
+                           Histogram.percentile(latency, 0.50) / 1000.0, Histogram.percentile(latency, 0.99) / 1000.0,
+                           Histogram.percentile(latency, 0.999) / 1000.0);
+            }
+        }
+    }
+
+    private void printTotals() {
+        double seconds = Math.max(1e-9, measuredNanos / 1e9);
+        System.out.println("\n=== LOAD TOTALS (" + Math.round(seconds) + " s after warm-up) ===");
+        System.out.printf("%-13s %9s %9s %8s %8s %10s %10s %10s %10s%n",
+                          "Operation", "Count", "Per sec", "Refused", "Errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Op op : Op.values()) {
+            OpStats s = stats[op.ordinal()];
+            long count = s.totalOutcomes[0] + s.totalOutcomes[1] + s.totalOutcomes[2];
+            if (count == 0) continue;
+            System.out.printf("%-13s %9d %9.1f %8d %8d %10.1f %10.1f %10.1f %10.1f%n",
+                              op, count, count / seconds, s.totalOutcomes[1], s.totalOutcomes[2],
+                              Histogram.percentile(s.totalLatency, 0.50) / 1000.0,
+                              Histogram.percentile(s.totalLatency, 0.99) / 1000.0,
+                              Histogram.percentile(s.totalLatency, 0.999) / 1000.0,
+                              Histogram.max(s.totalLatency) / 1000.0);
+        }
+        System.out.println("Sessions started: " + started.sum() + "  Shed at the session limit: " + shed.sum() +
+                           "  Database errors logged: " + errorLog.lines.sum());
+        if (!errorLog.last.isEmpty()) System.out.println("Last error: " + errorLog.last);
+    }
+
+    // ========== INVARIANTS ==========
+    // Checked over the whole database once the sessions have stopped
+    private void checkInvariants() {
+        System.out.println("\n=== INVARIANT CHECKS ===");
+        int violations = 0;
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement()) {
+            violations += check(stmt, "Negative wallet balances",
+                "SELECT COUNT(*) FROM Users WHERE WalletBalance < 0");
+            violations += check(stmt, "Overlapping pending/active rentals of one vehicle",
+                "SELECT COUNT(*) FROM Rentals a " +
+                "JOIN Rentals b ON b.VehicleID = a.VehicleID AND b.RentalID > a.RentalID " +
+                " AND b.RentalDate < a.ReturnDate AND a.RentalDate < b.ReturnDate " +
+                "JOIN RentalStatuses sa ON a.StatusID = sa.StatusID " +
+                "JOIN RentalStatuses sb ON b.StatusID = sb.StatusID " +
+                "WHERE sa.StatusName IN ('PENDING', 'ACTIVE') AND sb.StatusName IN ('PENDING', 'ACTIVE')");
+            violations += check(stmt, "Rental transactions not matching the rental amount",
+                "SELECT COUNT(*) FROM Transactions t JOIN Rentals r ON t.RentalID = r.RentalID " +
+                "JOIN TransactionTypes tt ON t.TypeID = tt.TypeID " +
+                "WHERE tt.TypeName <> 'REFUND' AND t.Amount <> r.TotalAmount");
+            violations += check(stmt, "Transactions whose commission and earnings do not add up",
+                "SELECT COUNT(*) FROM Transactions t JOIN TransactionTypes tt ON t.TypeID = tt.TypeID " +
+                "WHERE t.RentalID IS NOT NULL AND tt.TypeName <> 'REFUND' " +
+                "AND ABS(t.AdminCommission + t.OwnerEarnings - t.Amount) > 0.01");
+            // Recomputes the admin profit from the rentals rather than the stored commission
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT COALESCE(SUM(CASE WHEN v.IsUserListed THEN ROUND(t.Amount * 0.2, 2) ELSE t.Amount END), 0) " +
+                    "FROM Transactions t JOIN Rentals r ON t.RentalID = r.RentalID " +
+                    "JOIN Vehicles v ON r.VehicleID = v.VehicleID JOIN TransactionTypes tt ON t.TypeID = tt.TypeID " +
+                    "WHERE t.Status = 'COMPLETED' AND tt.TypeName <> 'REFUND'")) {
+                rs.next();
+                double expected = rs.getDouble(1), reported = DataStore.getTotalAdminProfit();
+                boolean matches = Math.abs(expected - reported) < 0.005;
+                System.out.printf("%s Admin profit: reported $%.2f, recomputed $%.2f%n", matches ? "[✓]" : "[✗]", reported, expected);
+                if (!matches) violations++;
+            }
+        } catch (SQLException e) {
+            System.err.println("[✗] Invariant checks failed: " + e.getMessage());
+            return;
+        }
+        System.out.println(violations == 0 ? "[✓] No invariant violations." : "[✗] " + violations + " invariant(s) violated.");
+        System.out.println("========================\n");
+    }
+
+    private static int check(Statement stmt, String name, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            long rows = rs.getLong(1);
+            System.out.println((rows == 0 ? "[✓] " : "[✗] ") + name + ": " + rows);
+            return rows == 0 ? 0 : 1;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+// Vehicle Rental System - Login Guard
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// LOGIN GUARD
+// Sits in front of AuthController.login so a burst of bogus logins does not turn into
+// getUserByUsername JOINs and one SystemLogs row per attempt:
+//  - Token buckets per username and per client address, kept in fixed striped tables of
+//    AtomicLongs (refill time and tokens packed in one long, updated by CAS). Names that share
+//    a stripe share a bucket, which can only throttle more, never less.
+//  - A Bloom filter of known usernames. A name it has never seen is rejected without a query;
+//    a small global budget still lets some through to the database so users registered by
+//    another process are found (and added) before the next reload.
+//  - Failed attempts are counted in memory and written as one LOGIN_FAILED_SUMMARY row per
+//    FLUSH_SECONDS instead of one LOGIN_FAILED row each.
+class LoginGuard {
+    enum Verdict { ALLOW, THROTTLED, UNKNOWN }
+
+    private static final int USER_STRIPES = 1 << 16, SOURCE_STRIPES = 1 << 12;
+    private static final int USER_BURST = 5;                 // attempts, then one per 20 s
+    private static final long USER_REFILL_MS = 20_000;
+    private static final int SOURCE_BURST = 30;              // attempts, then five per second
+    private static final long SOURCE_REFILL_MS = 200;
+    private static final int UNKNOWN_BURST = 20;             // Bloom misses checked in MySQL
+    private static final long UNKNOWN_REFILL_MS = 100;
+    private static final int BLOOM_BITS_PER_NAME = 10, BLOOM_HASHES = 7, BLOOM_MIN_BITS = 1 << 16;
+    private static final long FLUSH_SECONDS = 60, RELOAD_SECONDS = 600;
+    private static final int SUMMARY_NAMES = 10, TRACKED_NAMES = 10_000;
+
+    // ========== TOKEN BUCKETS ==========
+    // Each slot packs (ms since EPOCH << 20 | milli-tokens); 0 means a full, untouched bucket
+    static final class Buckets {
+        private static final long TOKEN_MASK = (1L << 20) - 1;
+        private static final long EPOCH = System.currentTimeMillis();
+        private final AtomicLongArray slots;
+        private final long capacity, refillMs;
+
+        Buckets(int stripes, int burst, long refillMs) {
+            this.slots = new AtomicLongArray(stripes);
+            this.capacity = burst * 1000L;
+            this.refillMs = refillMs;
+        }
+
+        boolean tryAcquire(String key) {
+            int i = stripe(key);
+            long now = System.currentTimeMillis() - EPOCH;
+            while (true) {
+                long state = slots.get(i);
+                long tokens = state == 0 ? capacity
+                            : Math.min(capacity, (state & TOKEN_MASK) + Math.max(0, now - (state >>> 20)) * 1000 / refillMs);
+                if (tokens < 1000) return false;
+                if (slots.compareAndSet(i, state, (now << 20) | (tokens - 1000))) return true;
+            }
+        }
+
+        private int stripe(String key) {
+            int h = key.hashCode() * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (slots.length() - 1);
+        }
+    }
+
+    // ========== BLOOM FILTER ==========
+    static final class Bloom {
+        private final AtomicLongArray words;
+        private final long bits;
+
+        Bloom(int expected) {
+            long size = Math.max(BLOOM_MIN_BITS, Long.highestOneBit((long) expected * BLOOM_BITS_PER_NAME) << 1);
+            this.words = new AtomicLongArray((int) (size >>> 6));
+            this.bits = size;
+        }
+
+        void add(String name) {
+            long h = hash(name);
+            int h1 = (int) h, h2 = (int) (h >>> 32);
+            for (int k = 0; k < BLOOM_HASHES; k++) {
+                long bit = ((h1 + k * h2) & 0x7FFFFFFFL) & (bits - 1);
+                int w = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long old;
+                while (((old = words.get(w)) & mask) == 0 && !words.compareAndSet(w, old, old | mask)) { }
+            }
+        }
+
+        boolean mightContain(String name) {
+            long h = hash(name);
+            int h1 = (int) h, h2 = (int) (h >>> 32);
+            for (int k = 0; k < BLOOM_HASHES; k++) {
+                long bit = ((h1 + k * h2) & 0x7FFFFFFFL) & (bits - 1);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        // 64-bit FNV-1a with a final mix
+        private static long hash(String name) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            return h ^ (h >>> 33);
+        }
+    }
+
+    private static volatile LoginGuard instance;
+
+    private final Buckets users = new Buckets(USER_STRIPES, USER_BURST, USER_REFILL_MS);
+    private final Buckets sources = new Buckets(SOURCE_STRIPES, SOURCE_BURST, SOURCE_REFILL_MS);
+    private final Buckets unknownLookups = new Buckets(1, UNKNOWN_BURST, UNKNOWN_REFILL_MS);
+    private volatile Bloom known;
+    private ScheduledExecutorService executor;
+
+    // Failed attempts since the last summary; names beyond TRACKED_NAMES only count in the total
+    private final ConcurrentHashMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final LongAdder failed = new LongAdder(), throttled = new LongAdder(), unknown = new LongAdder();
+    private final LongAdder totalFailed = new LongAdder(), totalThrottled = new LongAdder(), totalUnknown = new LongAdder();
+    private volatile long summaries;
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start() {
+        if (instance != null) return;
+        LoginGuard guard = new LoginGuard();
+        guard.reload();
+        guard.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "login-guard");
+            t.setDaemon(true);
+            return t;
+        });
+        guard.executor.scheduleWithFixedDelay(guard::flush, FLUSH_SECONDS, FLUSH_SECONDS, TimeUnit.SECONDS);
+        guard.executor.scheduleWithFixedDelay(guard::reload, RELOAD_SECONDS, RELOAD_SECONDS, TimeUnit.SECONDS);
+        instance = guard;
+        System.out.println("[✓] Login guard ready.");
+    }
+
+    public static synchronized void stop() {
+        if (instance == null) return;
+        instance.executor.shutdown();
+        instance.flush();
+        instance = null;
+    }
+
+    // Rebuilds the filter from the current users (also resizes it as the user count grows)
+    private void reload() {
+        try {
+            // At startup the warm start already holds the usernames
+            Collection<String> names = known == null ? WarmStart.usernames() : null;
+            if (names == null) {
+                names = new ArrayList<>();
+                for (User u : DataStore.getAllUsers()) names.add(u.getUsername());
+            }
+            // An empty list is more likely a failed read than a system without users
+            if (names.isEmpty()) return;
+            Bloom bloom = new Bloom(names.size());
+            for (String name : names) bloom.add(normalize(name));
+            known = bloom;
+        } catch (RuntimeException e) {
+            System.err.println("[!] Login guard kept its username filter: " + e.getMessage());
+        }
+    }
+
+    private static String normalize(String username) {
+        // Usernames compare case-insensitively in MySQL
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // ========== LOGIN API ==========
+    // Decides whether an attempt may reach the database
+    static Verdict check(String username, String source) {
+        LoginGuard g = instance;
+        if (g == null) return Verdict.ALLOW;
+        String name = normalize(username);
+        if (!g.sources.tryAcquire(source) || !g.users.tryAcquire(name)) {
+            g.throttled.increment();
+            return Verdict.THROTTLED;
+        }
+        Bloom bloom = g.known;
+        if (bloom != null && !bloom.mightContain(name) && !g.unknownLookups.tryAcquire("")) {
+            g.unknown.increment();
+            return Verdict.UNKNOWN;
+        }
+        return Verdict.ALLOW;
+    }
+
+    // A user found in the database (login or registration)
+    static void known(String username) {
+        LoginGuard g = instance;
+        if (g != null && g.known != null) g.known.add(normalize(username));
+    }
+
+    // Counts a failed attempt for the next summary row
+    static void failed(String username) {
+        LoginGuard g = instance;
+        if (g == null) {
+            DataStore.logEvent("LOGIN_FAILED", "Failed login: " + username, 0);
+            return;
+        }
+        g.failed.increment();
+        String name = normalize(username);
+        LongAdder count = g.failures.get(name);
+        if (count == null && g.failures.size() < TRACKED_NAMES) count = g.failures.computeIfAbsent(name, k -> new LongAdder());
+        if (count != null) count.increment();
+    }
+
+    // ========== SUMMARIES ==========
+    private synchronized void flush() {
+        long f = failed.sumThenReset(), t = throttled.sumThenReset(), u = unknown.sumThenReset();
+        List<Map.Entry<String, Long>> names = new ArrayList<>();
+        for (String name : failures.keySet()) {
+            LongAdder count = failures.remove(name);
+            if (count != null) names.add(new AbstractMap.SimpleEntry<>(name, count.sum()));
+        }
+        totalFailed.add(f);
+        totalThrottled.add(t);
+        totalUnknown.add(u);
+        if (f + t + u == 0) return;
+        names.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        StringBuilder sb = new StringBuilder();
+        sb.append(f).append(" failed, ").append(t).append(" throttled, ").append(u).append(" unknown names");
+        for (int i = 0; i < Math.min(SUMMARY_NAMES, names.size()); i++) {
+            sb.append(i == 0 ? ": " : ", ").append(names.get(i).getKey()).append(" x").append(names.get(i).getValue());
+        }
+        if (names.size() > SUMMARY_NAMES) sb.append(" (+").append(names.size() - SUMMARY_NAMES).append(" more)");
+        try {
+            DataStore.logEvent("LOGIN_FAILED_SUMMARY", sb.toString(), 0);
+            summaries++;
+        } catch (RuntimeException e) {
+            System.err.println("[!] Login summary not written: " + e.getMessage());
+        }
+    }
+
+    public static void printStatus() {
+        LoginGuard g = instance;
+        if (g == null) {
+            System.out.println("Login guard is not running.");
+            return;
+        }
+        System.out.println("\n=== LOGIN GUARD ===");
+        System.out.println("Since start: " + (g.totalFailed.sum() + g.failed.sum()) + " failed, " +
+                           (g.totalThrottled.sum() + g.throttled.sum()) + " throttled, " +
+                           (g.totalUnknown.sum() + g.unknown.sum()) + " unknown names rejected without a query");
+        System.out.println("Pending for next summary: " + g.failed.sum() + " failed on " + g.failures.size() + " names" +
+                           "  Summary rows written: " + g.summaries);
+        System.out.println("===================\n");
+    }
+}
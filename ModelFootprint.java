@@ -0,0 +1,92 @@
+// Vehicle Rental System - Model Footprint
+import java.lang.management.ManagementFactory;
+import java.time.*;
+import java.util.*;
+
+// MODEL FOOTPRINT
+// Heap footprint of List<Rental> versus the rental columns of AnalyticsEngine.Snapshot (epoch-day
+// ints, cents in longs, status ids in bytes), measured as retained heap after full GCs (no agent
+// needed). Run: java -Xmx8g ModelFootprint [rows], default 10,000,000.
+class ModelFootprint {
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        System.out.println("Rows: " + rows);
+
+        long base = usedHeap();
+        List<Rental> list = buildList(rows);
+        long withList = usedHeap();
+        report("List<Rental>", withList - base, rows);
+
+        long start = System.nanoTime();
+        AnalyticsEngine.Snapshot snapshot = columns(list);
+        long convertMs = (System.nanoTime() - start) / 1_000_000;
+        long withBoth = usedHeap();
+        report("Snapshot", withBoth - withList, rows);
+
+        list = null;
+        long columnsOnly = usedHeap() - base;
+        verify(snapshot, rows);
+        System.out.printf("Reduction: %.1fx (conversion took %d ms, columns alone retain %,d bytes)\n",
+                          (double) (withList - base) / Math.max(1, withBoth - withList), convertMs, columnsOnly);
+    }
+
+    private static final String[] STATUSES = {"PENDING", "ACTIVE", "COMPLETED", "CANCELLED", "REJECTED"};
+
+    private static List<Rental> buildList(int rows) {
+        List<Rental> list = new ArrayList<>(rows);
+        Random random = new Random(42);
+        String[] payments = {"PENDING", "PAID", "REFUNDED", "FAILED"};
+        LocalDate first = LocalDate.of(2020, 1, 1);
+        for (int i = 0; i < rows; i++) {
+            LocalDate from = first.plusDays(random.nextInt(2000));
+            // new String(...) as JDBC would return a fresh string per row
+            list.add(new Rental(i + 1, 1 + random.nextInt(500_000), 1 + random.nextInt(100_000), from,
+                                from.plusDays(1 + random.nextInt(14)), 20 + random.nextInt(50_000) / 100.0,
+                                new String(STATUSES[random.nextInt(5)]), new String(payments[random.nextInt(4)])));
+        }
+        return list;
+    }
+
+    // The rental columns AnalyticsEngine.loadRentals fills; status ids follow the seeded order
+    private static AnalyticsEngine.Snapshot columns(List<Rental> rentals) {
+        int n = rentals.size();
+        AnalyticsEngine.Snapshot s = new AnalyticsEngine.Snapshot();
+        s.rentalId = new int[n]; s.rentalVehicle = new int[n]; s.startDay = new int[n]; s.endDay = new int[n];
+        s.status = new byte[n]; s.amountCents = new long[n];
+        s.commissionCents = new long[n]; s.paid = new boolean[n];
+        List<String> statuses = Arrays.asList(STATUSES);
+        for (Rental r : rentals) {
+            int i = s.rentalCount++;
+            s.rentalId[i] = r.getRentalId();
+            s.rentalVehicle[i] = r.getVehicleId() - 1;
+            s.startDay[i] = (int) r.getRentalDate().toEpochDay();
+            s.endDay[i] = (int) r.getReturnDate().toEpochDay();
+            s.amountCents[i] = Math.round(r.getTotalAmount() * 100);
+            s.status[i] = (byte) (statuses.indexOf(r.getStatus()) + 1);
+        }
+        return s;
+    }
+
+    // Touches every row so the columns are live and correct before they are measured
+    private static void verify(AnalyticsEngine.Snapshot s, int rows) {
+        long sum = 0;
+        for (int i = 0; i < s.rentalCount; i++) sum += s.rentalId[i];
+        if (s.rentalCount != rows || sum != (long) rows * (rows + 1) / 2) throw new IllegalStateException("Bad columns");
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void report(String name, long bytes, int rows) {
+        System.out.printf("%-14s %,14d bytes  %6.1f bytes/row\n", name, bytes, (double) bytes / rows);
+    }
+}
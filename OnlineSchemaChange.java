@@ -0,0 +1,282 @@
+// Vehicle Rental System - Online Schema Change
+import java.sql.*;
+import java.util.*;
+
+// ONLINE SCHEMA CHANGE
+// Copy-and-swap for ALTERs MySQL cannot run in place: the change is applied to an empty
+// shadow table, triggers mirror live writes into it, existing rows are backfilled in small
+// throttled primary-key chunks, and a short LOCK TABLES cut-over swaps the tables.
+class OnlineSchemaChange {
+    private final Connection conn;
+    private final String table;
+    private final String alterSpec;
+    private final String shadow;
+    private final String old;
+
+    int chunkSize = 1000;
+    int maxThreadsRunning = 25;
+    double dutyCycle = 0.5;       // fraction of wall time spent copying
+    int lockWaitTimeoutSec = 5;   // metadata locks give up fast instead of queueing writers
+    int cutOverAttempts = 10;
+    boolean dropOldTable = true;
+
+    private String primaryKey;
+    private List<String> columns;
+
+    OnlineSchemaChange(Connection conn, String table, String alterSpec) {
+        this.conn = conn; this.table = table; this.alterSpec = alterSpec;
+        this.shadow = "_" + table + "_new";
+        this.old = "_" + table + "_old";
+    }
+
+    public void run() throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET SESSION lock_wait_timeout = " + lockWaitTimeoutSec);
+            primaryKey = singleIntegerPrimaryKey();
+
+            System.out.println("[!] Online change on " + table + ": creating shadow table...");
+            stmt.execute("DROP TABLE IF EXISTS " + shadow);
+            stmt.execute("CREATE TABLE " + shadow + " LIKE " + table);
+            stmt.execute("ALTER TABLE " + shadow + " " + alterSpec);
+            copyOutboundForeignKeys(stmt);
+            columns = commonColumns();
+
+            createMirrorTriggers(stmt);
+            try {
+                long copied = backfill();
+                System.out.println("[✓] Backfilled " + copied + " rows into " + shadow);
+                cutOver(stmt);
+            } catch (SQLException e) {
+                dropMirrorTriggers(stmt);
+                stmt.execute("DROP TABLE IF EXISTS " + shadow);
+                throw e;
+            }
+
+            if (dropOldTable) stmt.execute("DROP TABLE IF EXISTS " + old);
+        }
+        System.out.println("[✓] Online change on " + table + " finished in " +
+                           (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private String singleIntegerPrimaryKey() throws SQLException {
+        String sql = "SELECT k.COLUMN_NAME, c.DATA_TYPE FROM information_schema.KEY_COLUMN_USAGE k " +
+                     "JOIN information_schema.COLUMNS c ON c.TABLE_SCHEMA = k.TABLE_SCHEMA " +
+                     "AND c.TABLE_NAME = k.TABLE_NAME AND c.COLUMN_NAME = k.COLUMN_NAME " +
+                     "WHERE k.TABLE_SCHEMA = DATABASE() AND k.TABLE_NAME = ? AND k.CONSTRAINT_NAME = 'PRIMARY'";
+        List<String> keys = new ArrayList<>();
+        String type = null;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) { keys.add(rs.getString(1)); type = rs.getString(2); }
+            }
+        }
+        if (keys.size() != 1 || !(type.endsWith("int"))) {
+            throw new SQLException("Online change needs a single integer primary key on " + table);
+        }
+        return keys.get(0);
+    }
+
+    // CREATE TABLE ... LIKE does not copy foreign keys; constraint names are toggled with a '_'
+    // prefix because they must be unique per schema while the original table still exists.
+    private void copyOutboundForeignKeys(Statement stmt) throws SQLException {
+        String sql = "SELECT CONSTRAINT_NAME, COLUMN_NAME, REFERENCED_TABLE_NAME, REFERENCED_COLUMN_NAME " +
+                     "FROM information_schema.KEY_COLUMN_USAGE WHERE TABLE_SCHEMA = DATABASE() " +
+                     "AND TABLE_NAME = ? AND REFERENCED_TABLE_NAME IS NOT NULL";
+        List<String> adds = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String ref = rs.getString(3).equals(table) ? shadow : rs.getString(3);
+                    adds.add("ADD CONSTRAINT " + toggleName(rs.getString(1)) + " FOREIGN KEY (" + rs.getString(2) +
+                             ") REFERENCES " + ref + "(" + rs.getString(4) + ")");
+                }
+            }
+        }
+        if (!adds.isEmpty()) {
+            stmt.execute("ALTER TABLE " + shadow + " " + String.join(", ", adds));
+        }
+    }
+
+    private static String toggleName(String name) {
+        return name.startsWith("_") ? name.substring(1) : "_" + name;
+    }
+
+    private List<String> commonColumns() throws SQLException {
+        String sql = "SELECT COLUMN_NAME FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                     "AND TABLE_NAME = ? ORDER BY ORDINAL_POSITION";
+        List<String> original = new ArrayList<>();
+        Set<String> target = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) { while (rs.next()) original.add(rs.getString(1)); }
+            ps.setString(1, shadow);
+            try (ResultSet rs = ps.executeQuery()) { while (rs.next()) target.add(rs.getString(1)); }
+        }
+        original.retainAll(target);
+        return original;
+    }
+
+    // ========== TRIGGERS ==========
+    private String triggerName(String event) {
+        return "osc_" + table + "_" + event;
+    }
+
+    private void createMirrorTriggers(Statement stmt) throws SQLException {
+        String cols = String.join(", ", columns);
+        StringBuilder values = new StringBuilder();
+        for (String c : columns) values.append(values.length() > 0 ? ", " : "").append("NEW.").append(c);
+        String replace = "REPLACE INTO " + shadow + " (" + cols + ") VALUES (" + values + ")";
+
+        stmt.execute("CREATE TRIGGER " + triggerName("ins") + " AFTER INSERT ON " + table +
+                     " FOR EACH ROW " + replace);
+        stmt.execute("CREATE TRIGGER " + triggerName("upd") + " AFTER UPDATE ON " + table +
+                     " FOR EACH ROW BEGIN " +
+                     "DELETE IGNORE FROM " + shadow + " WHERE " + primaryKey + " = OLD." + primaryKey +
+                     " AND OLD." + primaryKey + " <> NEW." + primaryKey + "; " + replace + "; END");
+        stmt.execute("CREATE TRIGGER " + triggerName("del") + " AFTER DELETE ON " + table +
+                     " FOR EACH ROW DELETE IGNORE FROM " + shadow + " WHERE " + primaryKey + " = OLD." + primaryKey);
+    }
+
+    private void dropMirrorTriggers(Statement stmt) throws SQLException {
+        for (String event : new String[]{"ins", "upd", "del"}) {
+            stmt.execute("DROP TRIGGER IF EXISTS " + triggerName(event));
+        }
+    }
+
+    // ========== BACKFILL ==========
+    private long backfill() throws SQLException {
+        long min, max;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(" + primaryKey + "), MAX(" + primaryKey + ") FROM " + table)) {
+            rs.next();
+            min = rs.getLong(1);
+            max = rs.getLong(2);
+            if (rs.wasNull()) return 0;
+        }
+
+        // INSERT IGNORE never overwrites rows the triggers already mirrored with newer values
+        String cols = String.join(", ", columns);
+        String copySql = "INSERT IGNORE INTO " + shadow + " (" + cols + ") SELECT " + cols + " FROM " + table +
+                         " WHERE " + primaryKey + " BETWEEN ? AND ? LOCK IN SHARE MODE";
+        long copied = 0;
+        long reported = System.currentTimeMillis();
+        try (PreparedStatement ps = conn.prepareStatement(copySql)) {
+            for (long lo = min; lo <= max; lo += chunkSize) {
+                throttle();
+                long started = System.nanoTime();
+                ps.setLong(1, lo);
+                ps.setLong(2, Math.min(max, lo + chunkSize - 1));
+                copied += ps.executeUpdate();
+                long busyMs = (System.nanoTime() - started) / 1_000_000;
+                sleep((long) (busyMs * (1 - dutyCycle) / dutyCycle));
+
+                if (System.currentTimeMillis() - reported > 5000) {
+                    System.out.printf("    %s: %.1f%% copied\n", table, 100.0 * (lo - min) / Math.max(1, max - min));
+                    reported = System.currentTimeMillis();
+                }
+            }
+        }
+        return copied;
+    }
+
+    // Backs off while the server is busy so peak-hour writes keep their headroom
+    private void throttle() throws SQLException {
+        while (true) {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SHOW GLOBAL STATUS LIKE 'Threads_running'")) {
+                if (!rs.next() || rs.getInt(2) <= maxThreadsRunning) return;
+            }
+            sleep(500);
+        }
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ========== CUT-OVER ==========
+    private void cutOver(Statement stmt) throws SQLException {
+        List<String[]> childKeys = inboundForeignKeys();
+        List<String[]> userTriggers = existingTriggers();
+        Set<String> lockTables = new LinkedHashSet<>(Arrays.asList(table, shadow));
+        for (String[] fk : childKeys) lockTables.add(fk[0]);
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                StringBuilder lock = new StringBuilder("LOCK TABLES ");
+                int i = 0;
+                for (String t : lockTables) lock.append(i++ > 0 ? ", " : "").append(t).append(" WRITE");
+                stmt.execute(lock.toString());
+                break;
+            } catch (SQLException e) {
+                if (attempt >= cutOverAttempts) throw e;
+                sleep(200L * attempt);
+            }
+        }
+
+        try {
+            dropMirrorTriggers(stmt);
+            stmt.execute("SET SESSION foreign_key_checks = 0");
+            stmt.execute("RENAME TABLE " + table + " TO " + old + ", " + shadow + " TO " + table);
+
+            // Child tables followed the rename to the old table; point them at the new one
+            for (String[] fk : childKeys) {
+                stmt.execute("ALTER TABLE " + fk[0] + " DROP FOREIGN KEY " + fk[1] +
+                             ", ADD CONSTRAINT " + toggleName(fk[1]) + " FOREIGN KEY (" + fk[2] + ") REFERENCES " +
+                             table + "(" + fk[3] + ")");
+            }
+
+            // Application triggers stayed on the old table; move them to the new one
+            for (String[] trg : userTriggers) {
+                stmt.execute("DROP TRIGGER IF EXISTS " + trg[0]);
+                stmt.execute("CREATE TRIGGER " + trg[0] + " " + trg[1] + " " + trg[2] + " ON " + table +
+                             " FOR EACH ROW " + trg[3]);
+            }
+        } finally {
+            stmt.execute("SET SESSION foreign_key_checks = 1");
+            stmt.execute("UNLOCK TABLES");
+        }
+        System.out.println("[✓] Swapped " + shadow + " in as " + table);
+    }
+
+    private List<String[]> inboundForeignKeys() throws SQLException {
+        String sql = "SELECT TABLE_NAME, CONSTRAINT_NAME, COLUMN_NAME, REFERENCED_COLUMN_NAME " +
+                     "FROM information_schema.KEY_COLUMN_USAGE WHERE TABLE_SCHEMA = DATABASE() " +
+                     "AND REFERENCED_TABLE_NAME = ? AND TABLE_NAME <> ?";
+        List<String[]> keys = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(new String[]{rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)});
+                }
+            }
+        }
+        return keys;
+    }
+
+    private List<String[]> existingTriggers() throws SQLException {
+        String sql = "SELECT TRIGGER_NAME, ACTION_TIMING, EVENT_MANIPULATION, ACTION_STATEMENT " +
+                     "FROM information_schema.TRIGGERS WHERE TRIGGER_SCHEMA = DATABASE() " +
+                     "AND EVENT_OBJECT_TABLE = ? AND TRIGGER_NAME NOT LIKE 'osc\\_%' ORDER BY ACTION_ORDER";
+        List<String[]> triggers = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    triggers.add(new String[]{rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)});
+                }
+            }
+        }
+        return triggers;
+    }
+}
@@ -0,0 +1,389 @@
+// Vehicle Rental System - Owner Earnings Statements
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// OWNER STATEMENT JOB
+// Monthly earnings statements for owners of user-listed vehicles. Owners are split into fixed
+// OwnerID ranges (the plan, saved with the output so a rerun uses the same partitions). Each
+// partition streams its approved rental transactions in owner order on its own connection and
+// writes part-NNNNN.csv and part-NNNNN.bin through buffered file channels. Partitions run on a
+// fork-join pool; a finished partition is renamed into place and appended to the checkpoint
+// file, so an interrupted run resumes with the partitions that are not in the checkpoint yet.
+//
+// Binary layout (big-endian): file header int MAGIC, int yyyymm; then per owner: int ownerId,
+// int lineCount, long grossCents, long commissionCents, long earningsCents, followed by
+// lineCount lines of int transactionId, int rentalId, int vehicleId, int rentalDay,
+// int returnDay (epoch days), long amountCents, long commissionCents, long earningsCents.
+class OwnerStatementJob {
+    private static final int MAGIC = 0x4F575354;              // "OWST"
+    private static final int OWNERS_PER_PARTITION = 2000;
+    private static final int LINE_BYTES = 5 * 4 + 3 * 8;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final Path ROOT = Paths.get("statements");
+
+    private final YearMonth month;
+    private final Path dir;
+    private final int parallelism;
+    private final AtomicLong owners = new AtomicLong(), lines = new AtomicLong(), bytes = new AtomicLong();
+    private final AtomicLong partitionsDone = new AtomicLong();
+
+    OwnerStatementJob(YearMonth month, int parallelism) {
+        this.month = month;
+        this.dir = ROOT.resolve(month.toString());
+        this.parallelism = parallelism;
+    }
+
+    // ========== RUN ==========
+    public static void run(YearMonth month) {
+        int parallelism = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        try {
+            new OwnerStatementJob(month, parallelism).execute();
+        } catch (IOException | SQLException e) {
+            System.err.println("[✗] Statement job failed: " + e.getMessage());
+        }
+    }
+
+    void execute() throws IOException, SQLException {
+        Files.createDirectories(dir);
+        List<int[]> plan = loadOrCreatePlan();
+        Set<Integer> done = loadCheckpoint();
+        List<Integer> todo = new ArrayList<>();
+        for (int p = 0; p < plan.size(); p++) {
+            if (!done.contains(p)) todo.add(p);
+        }
+        System.out.println("Statements for " + month + ": " + plan.size() + " partitions, " +
+                           done.size() + " already done, " + todo.size() + " to run on " + parallelism + " workers");
+        if (todo.isEmpty()) return;
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new PartitionTask(plan, todo, 0, todo.size()));
+        } finally {
+            pool.shutdown();
+        }
+        double secs = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+        System.out.printf("[✓] %d partitions, %d owners, %d lines, %.1f MB in %.1f s " +
+                          "(%.0f owners/s, %.0f lines/s, %.1f MB/s)\n",
+                          partitionsDone.get(), owners.get(), lines.get(), bytes.get() / 1e6, secs,
+                          owners.get() / secs, lines.get() / secs, bytes.get() / 1e6 / secs);
+        DataStore.logEvent("STATEMENTS", "Owner statements for " + month + ": " + owners.get() + " owners", 0);
+    }
+
+    class PartitionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final List<int[]> plan; final List<Integer> todo; final int lo, hi;
+
+        PartitionTask(List<int[]> plan, List<Integer> todo, int lo, int hi) {
+            this.plan = plan; this.todo = todo; this.lo = lo; this.hi = hi;
+        }
+
+        @Override protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new PartitionTask(plan, todo, lo, mid), new PartitionTask(plan, todo, mid, hi));
+                return;
+            }
+            int p = todo.get(lo);
+            try {
+                writePartition(p, plan.get(p)[0], plan.get(p)[1]);
+                checkpoint(p);
+                long n = partitionsDone.incrementAndGet();
+                if (n % 25 == 0) System.out.println("  ... " + n + " partitions, " + owners.get() + " owners");
+            } catch (IOException | SQLException e) {
+                // Left out of the checkpoint, so the next run retries it
+                System.err.println("[✗] Partition " + p + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // ========== PLAN & CHECKPOINT ==========
+    // Lines "firstOwnerId lastOwnerId", one per partition
+    private List<int[]> loadOrCreatePlan() throws IOException, SQLException {
+        Path file = dir.resolve("plan.txt");
+        List<int[]> plan = new ArrayList<>();
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file)) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 2) plan.add(new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])});
+            }
+            return plan;
+        }
+        String sql = "SELECT DISTINCT OwnerID FROM Vehicles WHERE IsUserListed = TRUE ORDER BY OwnerID";
+        try (Connection conn = DatabaseManager.openConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                // Ranges are contiguous over the whole id space so owners added later still belong somewhere
+                int count = 0;
+                while (rs.next()) {
+                    if (count++ % OWNERS_PER_PARTITION != 0) continue;
+                    int first = rs.getInt(1);
+                    if (plan.isEmpty()) first = 0;
+                    else plan.get(plan.size() - 1)[1] = first - 1;
+                    plan.add(new int[] {first, Integer.MAX_VALUE});
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int[] range : plan) sb.append(range[0]).append(' ').append(range[1]).append('\n');
+        Path tmp = dir.resolve("plan.txt.tmp");
+        Files.write(tmp, sb.toString().getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        return plan;
+    }
+
+    private Set<Integer> loadCheckpoint() throws IOException {
+        Set<Integer> done = new HashSet<>();
+        Path file = dir.resolve("checkpoint.txt");
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file)) {
+                if (!line.trim().isEmpty()) done.add(Integer.parseInt(line.trim()));
+            }
+        }
+        return done;
+    }
+
+    private synchronized void checkpoint(int partition) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir.resolve("checkpoint.txt"),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap((partition + "\n").getBytes(StandardCharsets.US_ASCII)));
+            ch.force(false);
+        }
+    }
+
+    // ========== PARTITION ==========
+    private void writePartition(int partition, int firstOwner, int lastOwner) throws IOException, SQLException {
+        String name = String.format("part-%05d", partition);
+        Path csvTmp = dir.resolve(name + ".csv.tmp"), binTmp = dir.resolve(name + ".bin.tmp");
+        String sql = "SELECT v.OwnerID, u.FullName, t.TransactionID, t.RentalID, v.VehicleID, v.RegistrationNo, " +
+                     "TO_DAYS(r.RentalDate) - 719528, TO_DAYS(r.ReturnDate) - 719528, " +
+                     "CAST(ROUND(t.Amount * 100) AS SIGNED), CAST(ROUND(t.AdminCommission * 100) AS SIGNED), " +
+                     "CAST(ROUND(t.OwnerEarnings * 100) AS SIGNED) " +
+                     "FROM Vehicles v " +
+                     "JOIN Users u ON v.OwnerID = u.UserID " +
+                     "JOIN Rentals r ON r.VehicleID = v.VehicleID " +
+                     "JOIN Transactions t ON t.RentalID = r.RentalID " +
+                     "WHERE v.OwnerID BETWEEN ? AND ? AND v.IsUserListed = TRUE " +
+                     "AND t.Status = 'COMPLETED' AND t.OwnerEarnings > 0 " +
+                     "AND r.ApprovedAt >= ? AND r.ApprovedAt < ? " +
+                     "ORDER BY v.OwnerID, t.TransactionID";
+
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             ChannelWriter csv = new ChannelWriter(csvTmp);
+             ChannelWriter bin = new ChannelWriter(binTmp)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setInt(1, firstOwner);
+            ps.setInt(2, lastOwner);
+            ps.setTimestamp(3, Timestamp.valueOf(month.atDay(1).atStartOfDay()));
+            ps.setTimestamp(4, Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()));
+
+            csv.putText("OwnerID,OwnerName,TransactionID,RentalID,VehicleID,RegistrationNo," +
+                        "RentalDate,ReturnDate,Amount,AdminCommission,OwnerEarnings\n");
+            bin.putInt(MAGIC);
+            bin.putInt(month.getYear() * 100 + month.getMonthValue());
+
+            OwnerBlock block = new OwnerBlock();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int owner = rs.getInt(1);
+                    if (owner != block.ownerId) {
+                        block.flush(csv, bin);
+                        block.reset(owner, rs.getString(2));
+                    }
+                    int tx = rs.getInt(3), rental = rs.getInt(4), vehicle = rs.getInt(5);
+                    int from = rs.getInt(7), to = rs.getInt(8);
+                    long amount = rs.getLong(9), commission = rs.getLong(10), earnings = rs.getLong(11);
+                    block.add(tx, rental, vehicle, from, to, amount, commission, earnings);
+                    csv.putText(owner + "," + csvField(block.ownerName) + "," + tx + "," + rental + "," + vehicle + "," +
+                                csvField(rs.getString(6)) + "," + LocalDate.ofEpochDay(from) + "," +
+                                LocalDate.ofEpochDay(to) + "," + cents(amount) + "," + cents(commission) + "," +
+                                cents(earnings) + "\n");
+                }
+            }
+            block.flush(csv, bin);
+            csv.force();
+            bin.force();
+            bytes.addAndGet(csv.written + bin.written);
+        }
+        Files.move(csvTmp, dir.resolve(name + ".csv"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(binTmp, dir.resolve(name + ".bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // One owner's lines, held until the owner changes so the binary block can carry its count and totals
+    class OwnerBlock {
+        int ownerId = -1; String ownerName;
+        int count;
+        int[] ints = new int[5 * 64];
+        long[] longs = new long[3 * 64];
+        long gross, commission, earnings;
+
+        void reset(int ownerId, String ownerName) {
+            this.ownerId = ownerId; this.ownerName = ownerName;
+            count = 0; gross = 0; commission = 0; earnings = 0;
+        }
+
+        void add(int tx, int rental, int vehicle, int from, int to, long amount, long fee, long owned) {
+            if (count * 5 == ints.length) {
+                ints = Arrays.copyOf(ints, ints.length * 2);
+                longs = Arrays.copyOf(longs, longs.length * 2);
+            }
+            int i = count * 5, l = count * 3;
+            ints[i] = tx; ints[i + 1] = rental; ints[i + 2] = vehicle; ints[i + 3] = from; ints[i + 4] = to;
+            longs[l] = amount; longs[l + 1] = fee; longs[l + 2] = owned;
+            gross += amount; commission += fee; earnings += owned;
+            count++;
+        }
+
+        void flush(ChannelWriter csv, ChannelWriter bin) throws IOException {
+            if (ownerId < 0 || count == 0) return;
+            csv.putText(ownerId + "," + csvField(ownerName) + ",,,,TOTAL,,," + cents(gross) + "," +
+                        cents(commission) + "," + cents(earnings) + "\n");
+            bin.putInt(ownerId); bin.putInt(count);
+            bin.putLong(gross); bin.putLong(commission); bin.putLong(earnings);
+            for (int k = 0; k < count; k++) {
+                for (int j = 0; j < 5; j++) bin.putInt(ints[k * 5 + j]);
+                for (int j = 0; j < 3; j++) bin.putLong(longs[k * 3 + j]);
+            }
+            owners.incrementAndGet();
+            lines.addAndGet(count);
+        }
+    }
+
+    // Buffered writes to a file channel through one direct buffer
+    static class ChannelWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        long written;
+
+        ChannelWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buffer.remaining() < n) drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) written += channel.write(buffer);
+            buffer.clear();
+        }
+
+        void putInt(int v) throws IOException { ensure(4); buffer.putInt(v); }
+
+        void putLong(long v) throws IOException { ensure(8); buffer.putLong(v); }
+
+        void putText(String s) throws IOException {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (b.length > buffer.capacity()) {
+                drain();
+                ByteBuffer wrap = ByteBuffer.wrap(b);
+                while (wrap.hasRemaining()) written += channel.write(wrap);
+                return;
+            }
+            ensure(b.length);
+            buffer.put(b);
+        }
+
+        void force() throws IOException {
+            drain();
+            channel.force(false);
+        }
+
+        @Override public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private static String cents(long c) {
+        return (c < 0 ? "-" : "") + Math.abs(c) / 100 + "." + String.format("%02d", Math.abs(c) % 100);
+    }
+
+    private static String csvField(String s) {
+        if (s == null) return "";
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    // ========== OWNER VIEW ==========
+    // Prints one owner's statement from the binary files of a finished (or partial) run
+    public static void printStatement(int ownerId, YearMonth month) {
+        Path dir = ROOT.resolve(month.toString());
+        Path planFile = dir.resolve("plan.txt");
+        if (!Files.exists(planFile)) {
+            System.out.println("No statements generated for " + month + " yet.");
+            return;
+        }
+        try {
+            List<String> plan = Files.readAllLines(planFile);
+            int partition = -1;
+            for (int p = 0; p < plan.size(); p++) {
+                String[] parts = plan.get(p).trim().split(" ");
+                if (parts.length == 2 && ownerId >= Integer.parseInt(parts[0]) && ownerId <= Integer.parseInt(parts[1])) {
+                    partition = p;
+                    break;
+                }
+            }
+            Path bin = dir.resolve(String.format("part-%05d.bin", partition));
+            if (partition < 0 || !Files.exists(bin)) {
+                System.out.println("No statement for you in " + month + ".");
+                return;
+            }
+            try (FileChannel ch = FileChannel.open(bin, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(8 + 4 * 2 + 8 * 3);
+                readFully(ch, header, 0, 8);
+                long pos = 8, size = ch.size();
+                while (pos < size) {
+                    readFully(ch, header, pos, 32);
+                    int owner = header.getInt(0), count = header.getInt(4);
+                    if (owner == ownerId) {
+                        printBlock(ch, pos + 32, count, header.getLong(8), header.getLong(16), header.getLong(24), month);
+                        return;
+                    }
+                    pos += 32 + (long) count * LINE_BYTES;
+                }
+            }
+            System.out.println("No earnings in " + month + ".");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[✗] Error reading statement: " + e.getMessage());
+        }
+    }
+
+    private static void printBlock(FileChannel ch, long pos, int count, long gross, long commission,
+                                   long earnings, YearMonth month) throws IOException {
+        ByteBuffer lineBuf = ByteBuffer.allocate(count * LINE_BYTES);
+        readFully(ch, lineBuf, pos, count * LINE_BYTES);
+        System.out.println("\n=== EARNINGS STATEMENT " + month + " ===");
+        System.out.printf("%-8s %-10s %-12s %-12s %10s %12s %10s\n",
+                          "Rental", "Vehicle", "From", "To", "Amount", "Commission", "Earnings");
+        for (int k = 0; k < count; k++) {
+            int b = k * LINE_BYTES;
+            System.out.printf("%-8d %-10d %-12s %-12s %10s %12s %10s\n", lineBuf.getInt(b + 4), lineBuf.getInt(b + 8),
+                              LocalDate.ofEpochDay(lineBuf.getInt(b + 12)), LocalDate.ofEpochDay(lineBuf.getInt(b + 16)),
+                              cents(lineBuf.getLong(b + 20)), cents(lineBuf.getLong(b + 28)), cents(lineBuf.getLong(b + 36)));
+        }
+        System.out.printf("%-46s %10s %12s %10s\n", "TOTAL", cents(gross), cents(commission), cents(earnings));
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos, int n) throws IOException {
+        buf.clear().limit(n);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) throw new IOException("Truncated statement file");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+// Vehicle Rental System - Payment Controller
+
+// PAYMENT CONTROLLER
+class PaymentController {
+    // Wallet changes are applied relative to the stored balance under an idempotency key, and
+    // the in-memory balance is taken from the database's answer
+    public boolean processPayment(User user, double amount, String method) {
+        if (user.getWalletBalance() >= amount) {
+            String intent = "pay:" + user.getUserId() + ":" + amount + ":" + method;
+            Double balance = IdempotencyKeys.run(intent, key -> DataStore.adjustWallet(user.getUserId(), -amount, key));
+            if (balance != null) {
+                user.setWalletBalance(balance);
+                System.out.println("[✓] Payment of $" + amount + " processed via " + method);
+                DataStore.logEvent("PAYMENT_PROCESSED", user.getUserId() + " paid $" + amount, user.getUserId());
+                return true;
+            }
+        }
+        System.out.println("[-] Insufficient funds!");
+        return false;
+    }
+    
+    public boolean addToWallet(User user, double amount) {
+        String intent = "topup:" + user.getUserId() + ":" + amount;
+        Double balance = IdempotencyKeys.run(intent, key -> DataStore.adjustWallet(user.getUserId(), amount, key));
+        if (balance != null) {
+            user.setWalletBalance(balance);
+            System.out.println("[✓] $" + amount + " added to wallet.");
+            System.out.println("[✓] New balance: $" + user.getWalletBalance());
+            DataStore.logEvent("WALLET_ADDED", user.getUserId() + " added $" + amount, user.getUserId());
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,441 @@
+// Vehicle Rental System - Dynamic Pricing
+import java.sql.*;
+import java.sql.Date;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+// PRICING ENGINE
+// Computes per-vehicle effective daily rates from rolling statistics kept incrementally from
+// Rentals (via the event bus): vehicle utilization over the last/next 28 days, bookings per
+// vehicle at each location over the last 7 days and fleet demand by day of week. Quotes add a
+// booking lead-time factor and are cached in memory; only when a customer confirms a booking is
+// the quote they were shown persisted to PriceQuotes (hold), and sp_CreateRental charges exactly
+// that row while it is valid.
+class PricingEngine {
+    private static final int PAST_DAYS = 28;
+    private static final int WINDOW = 2 * PAST_DAYS;          // past 28 + next 28 days
+    private static final int DEMAND_DAYS = 7;
+    private static final long QUOTE_TTL_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final long RECOMPUTE_SECONDS = 60;
+    private static final double MIN_MULTIPLIER = 0.7, MAX_MULTIPLIER = 2.0;
+
+    static class Quote {
+        final int vehicleId; final LocalDate rentalDate; final LocalDate returnDate;
+        final double totalAmount; final long expiresAt;
+
+        Quote(int vehicleId, LocalDate rentalDate, LocalDate returnDate, double totalAmount, long expiresAt) {
+            this.vehicleId = vehicleId; this.rentalDate = rentalDate; this.returnDate = returnDate;
+            this.totalAmount = totalAmount; this.expiresAt = expiresAt;
+        }
+
+        boolean isValid(long now) { return now < expiresAt; }
+    }
+
+    private static volatile PricingEngine instance;
+
+    // Fleet, indexed densely; vehicle id -> index via a primitive map
+    private final IntIntHashMap indexOf = new IntIntHashMap(1024);
+    private int size;
+    private int[] vehicleIds = new int[1024];
+    private double[] baseRate = new double[1024];
+    private int[] locationOf = new int[1024];
+    private short[] booked = new short[1024 * WINDOW];        // per vehicle ring of booked days
+    // Bookings reaching past the window ({from, to} by vehicle id), counted in as rollTo opens their days
+    private final Map<Integer, List<long[]>> ahead = new HashMap<>();
+
+    private final Map<String, Integer> locationCodes = new HashMap<>();
+    private int[] locationVehicles = new int[16];
+    private int[] locationBookings = new int[16 * DEMAND_DAYS]; // per location ring of bookings by day
+
+    private long today = LocalDate.now().toEpochDay();
+    private int cancelledStatusId, rejectedStatusId;
+
+    // Published results, swapped atomically after each recompute
+    private volatile double[] effectiveRate = new double[0];
+    private volatile double[] dowFactor = {1, 1, 1, 1, 1, 1, 1};
+    private final ConcurrentHashMap<Long, Quote> quotes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+    private EventBus.Subscription subscription;
+    private volatile long lastRecomputeMs;
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start() {
+        if (instance != null) return;
+        PricingEngine engine = new PricingEngine();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            engine.load(conn);
+        } catch (SQLException e) {
+            System.err.println("[✗] Pricing engine not started: " + e.getMessage());
+            return;
+        }
+        engine.recompute();
+        engine.subscription = EventBus.subscribe("pricing-engine", engine::onEvents, "VEHICLE", "RENTAL");
+        engine.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pricing-engine");
+            t.setDaemon(true);
+            return t;
+        });
+        engine.executor.scheduleWithFixedDelay(engine::periodic, RECOMPUTE_SECONDS, RECOMPUTE_SECONDS, TimeUnit.SECONDS);
+        instance = engine;
+        System.out.println("[✓] Pricing engine ready for " + engine.size + " vehicles.");
+    }
+
+    public static synchronized void stop() {
+        if (instance == null) return;
+        instance.executor.shutdown();
+        if (instance.subscription != null) EventBus.unsubscribe(instance.subscription);
+        instance = null;
+    }
+
+    private void load(Connection conn) throws SQLException {
+        cancelledStatusId = statusId(conn, "CANCELLED");
+        rejectedStatusId = statusId(conn, "REJECTED");
+
+        List<Vehicle> fleet = WarmStart.vehicles();
+        if (fleet != null) {
+            for (Vehicle v : fleet) upsertVehicle(v.getVehicleId(), v.getDailyRate(), v.getLocation());
+        } else {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT VehicleID, DailyRate, Location FROM Vehicles")) {
+                while (rs.next()) upsertVehicle(rs.getInt(1), rs.getDouble(2), rs.getString(3));
+            }
+        }
+
+        String sql = "SELECT VehicleID, RentalDate, ReturnDate, CreatedAt FROM Rentals " +
+                     "WHERE ReturnDate >= ? AND StatusID NOT IN (?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setDate(1, Date.valueOf(LocalDate.ofEpochDay(today - PAST_DAYS)));
+            ps.setInt(2, cancelledStatusId);
+            ps.setInt(3, rejectedStatusId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    recordBooking(rs.getInt(1), rs.getDate(2).toLocalDate().toEpochDay(),
+                                  rs.getDate(3).toLocalDate().toEpochDay(), 1);
+                    Timestamp created = rs.getTimestamp(4);
+                    if (created != null) recordDemand(rs.getInt(1), created.toLocalDateTime().toLocalDate().toEpochDay(), 1);
+                }
+            }
+        }
+    }
+
+    private static int statusId(Connection conn, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT StatusID FROM RentalStatuses WHERE StatusName = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    // ========== INCREMENTAL STATISTICS ==========
+    private synchronized void onEvents(List<EventBus.Event> events) {
+        boolean fleetChanged = false;
+        for (EventBus.Event e : events) {
+            switch (e.type) {
+                case "VEHICLE_CREATED":
+                case "VEHICLE_UPDATED":
+                    upsertVehicle(e.aggregateId, e.doubleField("dailyRate"), e.field("location"));
+                    fleetChanged = true;
+                    break;
+                case "RENTAL_CREATED":
+                    recordBooking(e.intField("vehicleId"), epochDay(e.field("rentalDate")),
+                                  epochDay(e.field("returnDate")), 1);
+                    recordDemand(e.intField("vehicleId"), LocalDate.now().toEpochDay(), 1);
+                    break;
+                case "RENTAL_STATUS_CHANGED":
+                    int status = e.intField("statusId");
+                    int old = e.intField("oldStatusId");
+                    boolean nowClosed = status == cancelledStatusId || status == rejectedStatusId;
+                    boolean wasClosed = old == cancelledStatusId || old == rejectedStatusId;
+                    if (nowClosed != wasClosed && e.field("rentalDate") != null) {
+                        recordBooking(e.intField("vehicleId"), epochDay(e.field("rentalDate")),
+                                      epochDay(e.field("returnDate")), nowClosed ? -1 : 1);
+                    }
+                    break;
+                default:
+            }
+        }
+        // Rate edits by owners should show up in quotes immediately
+        if (fleetChanged) recompute();
+    }
+
+    private static long epochDay(String isoDate) {
+        return LocalDate.parse(isoDate.substring(0, 10)).toEpochDay();
+    }
+
+    private void upsertVehicle(int vehicleId, double dailyRate, String location) {
+        int idx = indexOf.get(vehicleId, -1);
+        int loc = locationCode(location);
+        if (idx < 0) {
+            idx = size++;
+            if (idx == vehicleIds.length) {
+                int cap = idx * 2;
+                vehicleIds = Arrays.copyOf(vehicleIds, cap);
+                baseRate = Arrays.copyOf(baseRate, cap);
+                locationOf = Arrays.copyOf(locationOf, cap);
+                booked = Arrays.copyOf(booked, cap * WINDOW);
+            }
+            vehicleIds[idx] = vehicleId;
+            indexOf.put(vehicleId, idx);
+        } else {
+            locationVehicles[locationOf[idx]]--;
+        }
+        if (dailyRate > 0) baseRate[idx] = dailyRate;
+        locationOf[idx] = loc;
+        locationVehicles[loc]++;
+    }
+
+    private int locationCode(String location) {
+        String key = location == null ? "" : location.trim().toLowerCase();
+        Integer code = locationCodes.get(key);
+        if (code == null) {
+            code = locationCodes.size();
+            locationCodes.put(key, code);
+            if (code == locationVehicles.length) {
+                locationVehicles = Arrays.copyOf(locationVehicles, code * 2);
+                locationBookings = Arrays.copyOf(locationBookings, code * 2 * DEMAND_DAYS);
+            }
+        }
+        return code;
+    }
+
+    // Marks [from, to) as booked (delta 1) or frees it (delta -1) within the ring window; the
+    // days beyond it are remembered until the window reaches them
+    private void recordBooking(int vehicleId, long from, long to, int delta) {
+        int idx = indexOf.get(vehicleId, -1);
+        if (idx < 0) return;
+        addBooked(idx, Math.max(from, today - PAST_DAYS), Math.min(to, today + PAST_DAYS), delta);
+        if (to <= today + PAST_DAYS) return;
+        List<long[]> pending = ahead.computeIfAbsent(vehicleId, k -> new ArrayList<>());
+        if (delta > 0) {
+            pending.add(new long[] {from, to});
+        } else {
+            for (Iterator<long[]> it = pending.iterator(); it.hasNext(); ) {
+                long[] b = it.next();
+                if (b[0] == from && b[1] == to) {
+                    it.remove();
+                    break;
+                }
+            }
+        }
+        if (pending.isEmpty()) ahead.remove(vehicleId);
+    }
+
+    // Saturating, so a pile-up of overlapping bookings cannot wrap a day to free
+    private void addBooked(int idx, long lo, long hi, int delta) {
+        for (long d = lo; d < hi; d++) {
+            int slot = idx * WINDOW + (int) Math.floorMod(d, (long) WINDOW);
+            booked[slot] = (short) Math.max(0, Math.min(Short.MAX_VALUE, booked[slot] + delta));
+        }
+    }
+
+    private void recordDemand(int vehicleId, long createdDay, int delta) {
+        int idx = indexOf.get(vehicleId, -1);
+        if (idx < 0 || createdDay <= today - DEMAND_DAYS || createdDay > today) return;
+        locationBookings[locationOf[idx] * DEMAND_DAYS + (int) Math.floorMod(createdDay, (long) DEMAND_DAYS)] += delta;
+    }
+
+    // Moves the windows forward: slots of days that fell out are cleared for the new days, then
+    // bookings made further ahead fill in the days that just opened
+    private void rollTo(long newToday) {
+        for (long d = today + 1; d <= newToday && d <= today + WINDOW; d++) {
+            int futureSlot = (int) Math.floorMod(d + PAST_DAYS - 1, (long) WINDOW);
+            for (int i = 0; i < size; i++) booked[i * WINDOW + futureSlot] = 0;
+            int demandSlot = (int) Math.floorMod(d, (long) DEMAND_DAYS);
+            for (int l = 0; l < locationCodes.size(); l++) locationBookings[l * DEMAND_DAYS + demandSlot] = 0;
+        }
+        long opened = Math.max(today + PAST_DAYS, newToday - PAST_DAYS), edge = newToday + PAST_DAYS;
+        today = newToday;
+        for (Iterator<Map.Entry<Integer, List<long[]>>> it = ahead.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, List<long[]>> entry = it.next();
+            int idx = indexOf.get(entry.getKey(), -1);
+            for (Iterator<long[]> bookings = entry.getValue().iterator(); bookings.hasNext(); ) {
+                long[] b = bookings.next();
+                if (idx >= 0) addBooked(idx, Math.max(b[0], opened), Math.min(b[1], edge), 1);
+                if (b[1] <= edge) bookings.remove();
+            }
+            if (entry.getValue().isEmpty()) it.remove();
+        }
+    }
+
+    // ========== RECOMPUTATION ==========
+    private void periodic() {
+        try {
+            synchronized (this) {
+                long now = LocalDate.now().toEpochDay();
+                if (now != today) rollTo(now);
+                recompute();
+            }
+            purgeExpiredQuotes();
+        } catch (RuntimeException e) {
+            System.err.println("[✗] Pricing recompute failed: " + e);
+        }
+    }
+
+    // Parallel over fleet chunks; each chunk also accumulates booked days per day-of-week
+    private synchronized void recompute() {
+        long start = System.nanoTime();
+        int n = size;
+        double[] rates = new double[n];
+        int locations = locationCodes.size();
+
+        double[] locationDemand = new double[locations];
+        long totalBookings = 0;
+        for (int l = 0; l < locations; l++) {
+            int sum = 0;
+            for (int d = 0; d < DEMAND_DAYS; d++) sum += locationBookings[l * DEMAND_DAYS + d];
+            totalBookings += sum;
+            locationDemand[l] = locationVehicles[l] > 0 ? (double) sum / locationVehicles[l] : 0;
+        }
+        double fleetDemand = n > 0 ? (double) totalBookings / n : 0;
+
+        int chunk = 4096;
+        int chunks = (n + chunk - 1) / chunk;
+        long[] dowBooked = new long[7];
+        long firstDay = today - PAST_DAYS;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            long[] localDow = new long[7];
+            int end = Math.min(n, (c + 1) * chunk);
+            for (int i = c * chunk; i < end; i++) {
+                int past = 0, future = 0;
+                for (int k = 0; k < WINDOW; k++) {
+                    long day = firstDay + k;
+                    int b = booked[i * WINDOW + (int) Math.floorMod(day, (long) WINDOW)];
+                    if (b == 0) continue;
+                    if (day < today) past++; else future++;
+                    localDow[(int) Math.floorMod(day + 3, 7L)]++;   // epoch day 0 was a Thursday
+                }
+                double utilization = 0.5 * past / PAST_DAYS + 0.5 * future / PAST_DAYS;
+                double utilFactor = 0.85 + 0.5 * utilization;
+                double ratio = (locationDemand[locationOf[i]] + 1) / (fleetDemand + 1);
+                double locationFactor = clamp(1 + 0.2 * (ratio - 1), 0.9, 1.25);
+                double multiplier = clamp(utilFactor * locationFactor, MIN_MULTIPLIER, MAX_MULTIPLIER);
+                rates[i] = Math.round(baseRate[i] * multiplier * 100) / 100.0;
+            }
+            synchronized (dowBooked) {
+                for (int d = 0; d < 7; d++) dowBooked[d] += localDow[d];
+            }
+        });
+
+        double[] dow = new double[7];
+        long total = 0;
+        for (long v : dowBooked) total += v;
+        for (int d = 0; d < 7; d++) {
+            double r = total > 0 ? dowBooked[d] * 7.0 / total : 1;
+            dow[d] = clamp(1 + 0.1 * (r - 1), 0.9, 1.15);
+        }
+
+        effectiveRate = rates;
+        dowFactor = dow;
+        quotes.clear();   // cached quotes were priced from the previous rates
+        lastRecomputeMs = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static double clamp(double v, double lo, double hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+
+    // Last-minute bookings pay a premium, early bookings get a discount
+    private static double leadFactor(long leadDays) {
+        if (leadDays <= 1) return 1.10;
+        if (leadDays < 7) return 1.0;
+        if (leadDays < 30) return 0.97;
+        return 0.93;
+    }
+
+    // ========== QUOTES ==========
+    public static double effectiveDailyRate(int vehicleId) {
+        PricingEngine engine = instance;
+        if (engine == null) return -1;
+        double[] rates = engine.effectiveRate;
+        int idx;
+        synchronized (engine) { idx = engine.indexOf.get(vehicleId, -1); }
+        return idx >= 0 && idx < rates.length ? rates[idx] : -1;
+    }
+
+    // Returns a cached or new quote valid for QUOTE_TTL_MS, or null if the engine cannot price it
+    public static Quote quote(int vehicleId, LocalDate rentalDate, LocalDate returnDate) {
+        PricingEngine engine = instance;
+        if (engine == null || !returnDate.isAfter(rentalDate)) return null;
+        long now = System.currentTimeMillis();
+        long key = ((long) vehicleId << 32) | ((rentalDate.toEpochDay() & 0xFFFFF) << 12)
+                 | Math.min(0xFFF, returnDate.toEpochDay() - rentalDate.toEpochDay());
+        Quote cached = engine.quotes.get(key);
+        if (cached != null && cached.rentalDate.equals(rentalDate) && cached.returnDate.equals(returnDate)
+                && cached.isValid(now + 60_000)) {
+            return cached;
+        }
+
+        double rate = effectiveDailyRate(vehicleId);
+        if (rate <= 0) return null;
+        double[] dow = engine.dowFactor;
+        double total = 0;
+        for (LocalDate d = rentalDate; d.isBefore(returnDate); d = d.plusDays(1)) {
+            total += rate * dow[d.getDayOfWeek().getValue() - 1];
+        }
+        total *= leadFactor(rentalDate.toEpochDay() - LocalDate.now().toEpochDay());
+        total = Math.round(total * 100) / 100.0;
+
+        Quote q = new Quote(vehicleId, rentalDate, returnDate, total, now + QUOTE_TTL_MS);
+        engine.quotes.put(key, q);
+        return q;
+    }
+
+    // Persists the quote a customer confirmed for the booking they are starting; returns its
+    // QuoteID for sp_CreateRental, or 0 if it has expired or cannot be saved
+    public static long hold(Quote q) {
+        if (!q.isValid(System.currentTimeMillis())) return 0;
+        String sql = "INSERT INTO PriceQuotes (VehicleID, RentalDate, ReturnDate, TotalAmount, ExpiresAt) VALUES (?, ?, ?, ?, ?)";
+        try {
+            return Resilience.call("holdQuote", Resilience.Policy.WRITE, conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setInt(1, q.vehicleId);
+                    pstmt.setDate(2, Date.valueOf(q.rentalDate));
+                    pstmt.setDate(3, Date.valueOf(q.returnDate));
+                    pstmt.setDouble(4, q.totalAmount);
+                    pstmt.setTimestamp(5, new Timestamp(q.expiresAt));
+                    pstmt.executeUpdate();
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        return keys.next() ? keys.getLong(1) : 0L;
+                    }
+                }
+            });
+        } catch (SQLException | DataAccessException e) {
+            System.err.println("[✗] Error saving price quote: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private void purgeExpiredQuotes() {
+        long now = System.currentTimeMillis();
+        quotes.values().removeIf(q -> !q.isValid(now));
+        try (Connection conn = DatabaseManager.openConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "DELETE FROM PriceQuotes WHERE ExpiresAt < ? ORDER BY ExpiresAt LIMIT 10000")) {
+            ps.setTimestamp(1, new Timestamp(now - QUOTE_TTL_MS));
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("[✗] Error purging price quotes: " + e.getMessage());
+        }
+    }
+
+    public static void printStatus() {
+        PricingEngine engine = instance;
+        if (engine == null) {
+            System.out.println("Pricing engine is not running.");
+            return;
+        }
+        System.out.println("\n=== PRICING ENGINE ===");
+        System.out.println("Vehicles priced: " + engine.effectiveRate.length +
+                           "  Last recompute: " + engine.lastRecomputeMs + " ms" +
+                           "  Cached quotes: " + engine.quotes.size());
+        String[] days = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+        StringBuilder dow = new StringBuilder("Day-of-week factors:");
+        for (int d = 0; d < 7; d++) dow.append(String.format(" %s %.2f", days[d], engine.dowFactor[d]));
+        System.out.println(dow);
+        System.out.println("======================\n");
+    }
+}
@@ -0,0 +1,669 @@
+// Vehicle Rental System - Vehicle Recommendations
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// RECOMMENDER
+// "Customers who rented X also rented Y" and "recommended for you", built from Rentals history.
+// Every booking counts as one signal; a user's history is the distinct vehicles they booked.
+//
+// The co-occurrence matrix is never stored whole. Vehicles and users get dense int indexes
+// (IntIntHashMap), and two adjacency lists link them: vehicle -> users who booked it and user ->
+// vehicles booked, oldest first. Row X of the matrix is produced on demand by walking X's users
+// and their histories into a per-thread int[] counter, touching only the vehicles that actually
+// co-occur; only the row's top-K survives, scored count / (sqrt(usersX * usersY) + SHRINK) so a
+// pair seen once between two rarely booked cars does not outrank well supported pairs. A user's
+// top-K sums the vehicle rows of their most recent bookings, skipping what they already booked.
+// Rows are recomputed on a fork-join pool, each task with its own scratch arrays.
+//
+// Incremental: RENTAL_CREATED events (EventBus) queue the new pair; every UPDATE_SECONDS the
+// engine thread adds them and recomputes only the booked vehicle's row and the user's row. The
+// score of a pair is symmetric, so while the booked vehicle's counts are in the scratch array
+// the new pairs' scores are read off and patched into the rows of the vehicles already in the
+// user's history, instead of re-walking those rows. Scores elsewhere drift as popularity
+// changes, so every REBUILD_HOURS all rows are recomputed from the in-memory lists.
+//
+// Serving: rows are published as an immutable Model through a volatile field, so a lookup is an
+// array walk filtered by an availability bitset over VehicleID that VEHICLE events keep current.
+// Users with a capped history (fleet and test accounts) stop adding pairs at MAX_HISTORY so one
+// account cannot dominate the matrix or make its rows quadratic.
+class Recommender {
+    private static final int K_VEHICLE = 20;
+    private static final int K_USER = 10;
+    private static final int USER_SEEDS = 20;              // most recent bookings behind "for you"
+    private static final int MAX_HISTORY = 200;
+    private static final int POPULAR = 50;
+    private static final float SHRINK = 5f;
+    private static final int ROWS_PER_TASK = 64;
+    private static final long UPDATE_SECONDS = 30;
+    private static final long REBUILD_HOURS = 6;
+    private static final long[] NO_ROW = new long[0];
+    private static final int[] NO_USER_ROW = new int[0];
+
+    private static volatile Recommender instance;
+
+    private final Index index = new Index();
+    private final ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private final IntIntHashMap availableStatus = new IntIntHashMap(8);
+    private ScheduledExecutorService executor;
+    private EventBus.Subscription subscription;
+    private volatile Model model;
+    private volatile long[] available = new long[0];      // bit per VehicleID
+    private int[] pending = new int[3 * 256];              // rentalId, userId, vehicleId triples
+    private int pendingSize;
+    private long loadedThrough;                            // highest RentalID in the lists
+    private volatile long lastBuildMs, lastUpdateMs, updates, rentalsApplied;
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start() {
+        if (instance != null) return;
+        Recommender r = new Recommender();
+        // Subscribe before loading so nothing booked during the load is missed; a rental the load
+        // already saw is a repeat pair and changes nothing
+        r.subscription = EventBus.subscribe("recommender", r::onEvents, "VEHICLE", "RENTAL");
+        r.executor = Executors.newSingleThreadScheduledExecutor(t -> {
+            Thread thread = new Thread(t, "recommender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        r.executor.execute(() -> {
+            try {
+                r.load();
+                r.rebuild();
+            } catch (SQLException e) {
+                System.err.println("[✗] Recommendations not built: " + e.getMessage());
+            }
+        });
+        r.executor.scheduleWithFixedDelay(r::applyPending, UPDATE_SECONDS, UPDATE_SECONDS, TimeUnit.SECONDS);
+        r.executor.scheduleWithFixedDelay(r::rebuild, REBUILD_HOURS, REBUILD_HOURS, TimeUnit.HOURS);
+        instance = r;
+        System.out.println("[✓] Recommendations building in the background.");
+    }
+
+    public static synchronized void stop() {
+        if (instance == null) return;
+        if (instance.subscription != null) EventBus.unsubscribe(instance.subscription);
+        instance.executor.shutdownNow();
+        instance.pool.shutdownNow();
+        instance = null;
+    }
+
+    public static void rebuildNow() {
+        Recommender r = instance;
+        if (r == null) {
+            System.out.println("[-] Recommendations are not running.");
+            return;
+        }
+        try {
+            r.executor.submit(() -> { r.applyPending(); r.rebuild(); }).get();
+            System.out.println("[✓] Rebuilt in " + r.lastBuildMs + " ms.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("[✗] Rebuild failed: " + e.getCause().getMessage());
+        }
+    }
+
+    public static void printStatus() {
+        Recommender r = instance;
+        System.out.println("\n=== RECOMMENDATIONS ===");
+        if (r == null) {
+            System.out.println("Not running.");
+        } else if (r.model == null) {
+            System.out.println("Building...");
+        } else {
+            Model m = r.model;
+            System.out.println("Vehicles: " + m.vehicleIndex.size() + "  Users: " + m.userIndex.size() +
+                               "  Rentals through #" + r.loadedThrough);
+            System.out.println("Last full build: " + r.lastBuildMs + " ms  Incremental updates: " + r.updates +
+                               " (" + r.rentalsApplied + " rentals, last " + r.lastUpdateMs + " ms)");
+            if (r.subscription != null) {
+                System.out.println("Event lag: " + EventBus.lagEvents(r.subscription) + " events");
+            }
+        }
+        System.out.println("=======================\n");
+    }
+
+    // ========== SERVING ==========
+    // Vehicle IDs booked by customers who also booked vehicleId, currently available, best first
+    public static List<Integer> alsoRented(int vehicleId, int n) {
+        Recommender r = instance;
+        Model m = r == null ? null : r.model;
+        return m == null ? Collections.emptyList() : m.alsoRented(r.available, vehicleId, n);
+    }
+
+    // Vehicle IDs for this user, currently available, best first; popular cars fill short lists
+    public static List<Integer> recommendedFor(int userId, int n) {
+        Recommender r = instance;
+        Model m = r == null ? null : r.model;
+        return m == null ? Collections.emptyList() : m.recommendedFor(r.available, userId, n);
+    }
+
+    // Immutable rows for lookups; vehicle rows are packed (score bits << 32 | vehicle index)
+    static final class Model {
+        final IntIntHashMap vehicleIndex, userIndex;
+        final int[] vehicleIds;
+        final long[][] similar;
+        final int[][] forUser;
+        final int[] popular;
+
+        Model(IntIntHashMap vehicleIndex, IntIntHashMap userIndex, int[] vehicleIds, long[][] similar,
+              int[][] forUser, int[] popular) {
+            this.vehicleIndex = vehicleIndex;
+            this.userIndex = userIndex;
+            this.vehicleIds = vehicleIds;
+            this.similar = similar;
+            this.forUser = forUser;
+            this.popular = popular;
+        }
+
+        List<Integer> alsoRented(long[] available, int vehicleId, int n) {
+            List<Integer> out = new ArrayList<>(n);
+            int x = vehicleIndex.get(vehicleId, -1);
+            if (x < 0) return out;
+            for (long key : similar[x]) {
+                if (out.size() == n) break;
+                int id = vehicleIds[(int) key];
+                if (isSet(available, id)) out.add(id);
+            }
+            return out;
+        }
+
+        List<Integer> recommendedFor(long[] available, int userId, int n) {
+            List<Integer> out = new ArrayList<>(n);
+            int u = userIndex.get(userId, -1);
+            int[] row = u < 0 ? NO_USER_ROW : forUser[u];
+            for (int i = 0; i < row.length && out.size() < n; i++) {
+                int id = vehicleIds[row[i]];
+                if (isSet(available, id)) out.add(id);
+            }
+            for (int i = 0; i < popular.length && out.size() < n; i++) {
+                int id = vehicleIds[popular[i]];
+                if (isSet(available, id) && !out.contains(id)) out.add(id);
+            }
+            return out;
+        }
+    }
+
+    private static boolean isSet(long[] bits, int id) {
+        int word = id >>> 6;
+        return word < bits.length && (bits[word] & (1L << id)) != 0;
+    }
+
+    // ========== LOADING AND EVENTS ==========
+    private void load() throws SQLException {
+        try (Connection conn = DatabaseManager.openConnection()) {
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT StatusID FROM VehicleStatuses WHERE StatusName = 'AVAILABLE'")) {
+                while (rs.next()) availableStatus.put(rs.getInt(1), 1);
+            }
+            long[] bits = new long[0];
+            try (Statement st = conn.createStatement()) {
+                st.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = st.executeQuery("SELECT VehicleID, StatusID FROM Vehicles")) {
+                    while (rs.next()) {
+                        index.vehicle(rs.getInt(1));
+                        bits = setBit(bits, rs.getInt(1), availableStatus.containsKey(rs.getInt(2)));
+                    }
+                }
+            }
+            available = bits;
+            try (Statement st = conn.createStatement()) {
+                st.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = st.executeQuery("SELECT RentalID, UserID, VehicleID FROM Rentals ORDER BY RentalID")) {
+                    while (rs.next()) {
+                        index.addRental(rs.getInt(2), rs.getInt(3), false);
+                        loadedThrough = rs.getLong(1);
+                    }
+                }
+            }
+        }
+    }
+
+    private void onEvents(List<EventBus.Event> events) {
+        long[] bits = null;
+        for (EventBus.Event e : events) {
+            switch (e.type) {
+                case "VEHICLE_CREATED":
+                case "VEHICLE_UPDATED":
+                    if (bits == null) bits = available.clone();
+                    bits = setBit(bits, e.aggregateId, availableStatus.containsKey(e.intField("statusId")));
+                    break;
+                case "RENTAL_CREATED":
+                    synchronized (this) {
+                        if (pendingSize + 3 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+                        pending[pendingSize++] = e.aggregateId;
+                        pending[pendingSize++] = e.intField("userId");
+                        pending[pendingSize++] = e.intField("vehicleId");
+                    }
+                    break;
+                default:
+            }
+        }
+        if (bits != null) available = bits;
+    }
+
+    // Copy-on-write by the caller; grows to fit the id
+    private static long[] setBit(long[] bits, int id, boolean set) {
+        int word = id >>> 6;
+        if (word >= bits.length) {
+            if (!set) return bits;
+            bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+        }
+        if (set) bits[word] |= 1L << id;
+        else bits[word] &= ~(1L << id);
+        return bits;
+    }
+
+    // ========== UPDATES ==========
+    private void applyPending() {
+        if (model == null) {
+            // The initial load failed (it runs on this thread first): queued pairs are in what a
+            // new load reads, so drop them and try again rather than let the queue grow
+            synchronized (this) {
+                pending = new int[3 * 256];
+                pendingSize = 0;
+            }
+            try {
+                load();
+                rebuild();
+            } catch (SQLException e) {
+                System.err.println("[✗] Recommendations not built: " + e.getMessage());
+            }
+            return;
+        }
+        int[] batch;
+        int size;
+        synchronized (this) {
+            if (pendingSize == 0) return;
+            batch = pending;
+            size = pendingSize;
+            pending = new int[3 * 256];
+            pendingSize = 0;
+        }
+        long start = System.nanoTime();
+        int applied = 0;
+        for (int i = 0; i < size; i += 3) {
+            if (index.addRental(batch[i + 1], batch[i + 2], true)) applied++;
+            loadedThrough = Math.max(loadedThrough, batch[i]);
+        }
+        if (applied > 0) {
+            index.recompute(pool, false);
+            model = index.publish(model);
+        }
+        rentalsApplied += applied;
+        updates++;
+        lastUpdateMs = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        index.recompute(pool, true);
+        model = index.publish(model);
+        lastBuildMs = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    // ========== CO-OCCURRENCE INDEX ==========
+    // Changed by one thread; the fork-join passes only read it while that thread waits
+    static final class Index {
+        final IntIntHashMap vehicleIndex = new IntIntHashMap(1024), userIndex = new IntIntHashMap(1024);
+        int[] vehicleIds = new int[1024];
+        int vehicles, users;
+        int[][] vehicleUsers = new int[1024][], userVehicles = new int[1024][];
+        int[] vehicleDegree = new int[1024], userDegree = new int[1024];
+        long[][] similar = new long[1024][];
+        int[][] forUser = new int[1024][];
+        boolean[] vehicleDirty = new boolean[1024], userDirty = new boolean[1024];
+        // Per dirty vehicle: the vehicles it newly co-occurs with, whose rows get its score patched in
+        int[][] partners = new int[1024][];
+        int[] partnerCount = new int[1024];
+        float[][] partnerScores = new float[1024][];
+
+        int vehicle(int vehicleId) {
+            int x = vehicleIndex.get(vehicleId, -1);
+            if (x >= 0) return x;
+            x = vehicles++;
+            if (x == vehicleIds.length) {
+                int cap = x * 2;
+                vehicleIds = Arrays.copyOf(vehicleIds, cap);
+                vehicleUsers = Arrays.copyOf(vehicleUsers, cap);
+                vehicleDegree = Arrays.copyOf(vehicleDegree, cap);
+                similar = Arrays.copyOf(similar, cap);
+                vehicleDirty = Arrays.copyOf(vehicleDirty, cap);
+                partners = Arrays.copyOf(partners, cap);
+                partnerCount = Arrays.copyOf(partnerCount, cap);
+                partnerScores = Arrays.copyOf(partnerScores, cap);
+            }
+            vehicleIds[x] = vehicleId;
+            vehicleUsers[x] = new int[4];
+            similar[x] = NO_ROW;
+            vehicleIndex.put(vehicleId, x);
+            return x;
+        }
+
+        int user(int userId) {
+            int u = userIndex.get(userId, -1);
+            if (u >= 0) return u;
+            u = users++;
+            if (u == userVehicles.length) {
+                int cap = u * 2;
+                userVehicles = Arrays.copyOf(userVehicles, cap);
+                userDegree = Arrays.copyOf(userDegree, cap);
+                forUser = Arrays.copyOf(forUser, cap);
+                userDirty = Arrays.copyOf(userDirty, cap);
+            }
+            userVehicles[u] = new int[4];
+            forUser[u] = NO_USER_ROW;
+            userIndex.put(userId, u);
+            return u;
+        }
+
+        // False when the pair adds nothing (a repeat booking or a capped history)
+        boolean addRental(int userId, int vehicleId, boolean markDirty) {
+            int x = vehicle(vehicleId), u = user(userId);
+            int[] history = userVehicles[u];
+            int len = userDegree[u];
+            if (len == MAX_HISTORY) return false;
+            for (int i = 0; i < len; i++) {
+                if (history[i] == x) return false;
+            }
+            if (len == history.length) userVehicles[u] = history = Arrays.copyOf(history, len * 2);
+            history[len] = x;
+            userDegree[u] = len + 1;
+            int[] booked = vehicleUsers[x];
+            if (vehicleDegree[x] == booked.length) vehicleUsers[x] = booked = Arrays.copyOf(booked, booked.length * 2);
+            booked[vehicleDegree[x]++] = u;
+            if (markDirty) {
+                vehicleDirty[x] = true;
+                userDirty[u] = true;
+                int[] p = partners[x] == null ? new int[Math.max(4, len)] : partners[x];
+                int n = partnerCount[x];
+                if (n + len > p.length) p = Arrays.copyOf(p, Math.max(p.length * 2, n + len));
+                System.arraycopy(history, 0, p, n, len);
+                partners[x] = p;
+                partnerCount[x] = n + len;
+            }
+            return true;
+        }
+
+        // Vehicle rows first, then the patches they collected, then user rows, which are built
+        // from them
+        void recompute(ForkJoinPool pool, boolean all) {
+            int[] rows = collect(vehicleDirty, vehicles, all);
+            pool.invoke(new RowTask(this, rows, 0, -1, false));
+            for (int x : rows) {
+                for (int i = 0; i < partnerCount[x]; i++) {
+                    int h = partners[x][i];
+                    similar[h] = upsert(similar[h], x, partnerScores[x][i]);
+                }
+                partners[x] = null;
+                partnerScores[x] = null;
+                partnerCount[x] = 0;
+            }
+            pool.invoke(new RowTask(this, collect(userDirty, users, all), 0, -1, true));
+        }
+
+        private static int[] collect(boolean[] dirty, int count, boolean all) {
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (all || dirty[i]) n++;
+            }
+            int[] rows = new int[n];
+            n = 0;
+            for (int i = 0; i < count; i++) {
+                if (all || dirty[i]) rows[n++] = i;
+                dirty[i] = false;
+            }
+            return rows;
+        }
+
+        // Copies the row tables so later recomputes cannot touch what lookups are reading
+        Model publish(Model previous) {
+            boolean sameVehicles = previous != null && previous.vehicleIndex.size() == vehicles;
+            boolean sameUsers = previous != null && previous.userIndex.size() == users;
+            long[] top = new long[POPULAR];
+            int size = 0;
+            for (int x = 0; x < vehicles; x++) {
+                size = pushTopK(top, size, ((long) vehicleDegree[x] << 32) | x);
+            }
+            int[] popular = new int[size];
+            sortDescending(top, size);
+            for (int i = 0; i < size; i++) popular[i] = (int) top[i];
+            return new Model(sameVehicles ? previous.vehicleIndex : vehicleIndex.copy(),
+                             sameUsers ? previous.userIndex : userIndex.copy(),
+                             Arrays.copyOf(vehicleIds, vehicles), Arrays.copyOf(similar, vehicles),
+                             Arrays.copyOf(forUser, users), popular);
+        }
+    }
+
+    // Scratch arrays are per worker thread and grow with the fleet; counts is all zero between rows
+    private static final class Scratch {
+        int[] counts = new int[0], touched = new int[0];
+        float[] scores = new float[0];
+        long[] top = new long[Math.max(K_VEHICLE, K_USER)];
+
+        void ensure(int vehicles) {
+            if (counts.length >= vehicles) return;
+            counts = new int[vehicles];
+            touched = new int[vehicles];
+            scores = new float[vehicles];
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private static final class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Index index;
+        private final int[] rows;
+        private final int lo, hi;
+        private final boolean userRows;
+
+        RowTask(Index index, int[] rows, int lo, int hi, boolean userRows) {
+            this.index = index;
+            this.rows = rows;
+            this.lo = lo;
+            this.hi = hi < 0 ? rows.length : hi;
+            this.userRows = userRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > ROWS_PER_TASK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RowTask(index, rows, lo, mid, userRows), new RowTask(index, rows, mid, hi, userRows));
+                return;
+            }
+            Scratch s = SCRATCH.get();
+            s.ensure(index.vehicles);
+            for (int i = lo; i < hi; i++) {
+                if (userRows) index.forUser[rows[i]] = userRow(index, s, rows[i]);
+                else index.similar[rows[i]] = vehicleRow(index, s, rows[i]);
+            }
+        }
+    }
+
+    private static long[] vehicleRow(Index ix, Scratch s, int x) {
+        int[] counts = s.counts, touched = s.touched;
+        int n = 0;
+        int[] booked = ix.vehicleUsers[x];
+        for (int i = 0, dx = ix.vehicleDegree[x]; i < dx; i++) {
+            int u = booked[i];
+            int[] history = ix.userVehicles[u];
+            for (int j = 0, len = ix.userDegree[u]; j < len; j++) {
+                int y = history[j];
+                if (y != x && counts[y]++ == 0) touched[n++] = y;
+            }
+        }
+        double dx = ix.vehicleDegree[x];
+        int partners = ix.partnerCount[x];
+        if (partners > 0) {
+            float[] scores = new float[partners];
+            for (int i = 0; i < partners; i++) {
+                int y = ix.partners[x][i];
+                scores[i] = (float) (counts[y] / (Math.sqrt(dx * ix.vehicleDegree[y]) + SHRINK));
+            }
+            ix.partnerScores[x] = scores;
+        }
+        if (n == 0) return NO_ROW;
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            int y = touched[i];
+            float score = (float) (counts[y] / (Math.sqrt(dx * ix.vehicleDegree[y]) + SHRINK));
+            counts[y] = 0;
+            size = pushTopK(s.top, size, ((long) Float.floatToIntBits(score) << 32) | y, K_VEHICLE);
+        }
+        sortDescending(s.top, size);
+        return Arrays.copyOf(s.top, size);
+    }
+
+    private static int[] userRow(Index ix, Scratch s, int u) {
+        int[] counts = s.counts, touched = s.touched;
+        float[] scores = s.scores;
+        int[] history = ix.userVehicles[u];
+        int len = ix.userDegree[u];
+        for (int i = 0; i < len; i++) counts[history[i]] = 1;      // already booked: skip
+        int n = 0;
+        for (int i = Math.max(0, len - USER_SEEDS); i < len; i++) {
+            for (long key : ix.similar[history[i]]) {
+                int y = (int) key;
+                if (counts[y] == 1) continue;
+                if (scores[y] == 0) touched[n++] = y;
+                scores[y] += Float.intBitsToFloat((int) (key >>> 32));
+            }
+        }
+        for (int i = 0; i < len; i++) counts[history[i]] = 0;
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            int y = touched[i];
+            size = pushTopK(s.top, size, ((long) Float.floatToIntBits(scores[y]) << 32) | y, K_USER);
+            scores[y] = 0;
+        }
+        sortDescending(s.top, size);
+        int[] row = new int[size];
+        for (int i = 0; i < size; i++) row[i] = (int) s.top[i];
+        return row;
+    }
+
+    // Row with y at the given score (replacing its old entry), best first, at most K_VEHICLE long;
+    // a new array, since published models share the old one
+    private static long[] upsert(long[] row, int y, float score) {
+        long[] out = new long[row.length + 1];
+        int n = 0;
+        for (long key : row) {
+            if ((int) key != y) out[n++] = key;
+        }
+        out[n++] = ((long) Float.floatToIntBits(score) << 32) | y;
+        sortDescending(out, n);
+        return Arrays.copyOf(out, Math.min(n, K_VEHICLE));
+    }
+
+    // ========== TOP-K ==========
+    // Min-heap of packed keys in heap[0..size); positive float bits order like the floats
+    private static int pushTopK(long[] heap, int size, long key) {
+        return pushTopK(heap, size, key, heap.length);
+    }
+
+    private static int pushTopK(long[] heap, int size, long key, int k) {
+        if (size < k) {
+            int i = size++;
+            while (i > 0 && heap[(i - 1) >>> 1] > key) {
+                heap[i] = heap[(i - 1) >>> 1];
+                i = (i - 1) >>> 1;
+            }
+            heap[i] = key;
+        } else if (key > heap[0]) {
+            int i = 0;
+            while (true) {
+                int c = 2 * i + 1;
+                if (c >= size) break;
+                if (c + 1 < size && heap[c + 1] < heap[c]) c++;
+                if (heap[c] >= key) break;
+                heap[i] = heap[c];
+                i = c;
+            }
+            heap[i] = key;
+        }
+        return size;
+    }
+
+    private static void sortDescending(long[] a, int size) {
+        Arrays.sort(a, 0, size);
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            long t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    // ========== BENCHMARK ==========
+    // Synthetic history with the shape of the real one: users mostly book within one of 500
+    // segments (city and class), and popularity inside a segment is skewed. Times the full build,
+    // an incremental update and lookups; needs roughly -Xmx4g at 20M rentals.
+    public static void benchmark(int rentals) {
+        int vehicleCount = Math.max(100, rentals / 200), userCount = Math.max(100, rentals / 20);
+        int segments = Math.min(500, vehicleCount / 10);
+        Random random = new Random(42);
+        Index index = new Index();
+        long start = System.nanoTime();
+        for (int i = 0; i < rentals; i++) {
+            int user = random.nextInt(userCount);
+            index.addRental(user + 1, syntheticVehicle(random, user, segments, vehicleCount) + 1, false);
+        }
+        long loadMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Synthetic history: " + rentals + " rentals, " + index.users + " users, " +
+                           index.vehicles + " vehicles (" + loadMs + " ms to index)");
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        try {
+            start = System.nanoTime();
+            index.recompute(pool, true);
+            Model model = index.publish(null);
+            long buildMs = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("Full build: %d ms on %d threads (%.1f M rentals/s)\n", buildMs, pool.getParallelism(),
+                              rentals / 1e3 / Math.max(1, buildMs));
+
+            int extra = 10_000;
+            start = System.nanoTime();
+            for (int i = 0; i < extra; i++) {
+                int user = random.nextInt(userCount);
+                index.addRental(user + 1, syntheticVehicle(random, user, segments, vehicleCount) + 1, true);
+            }
+            index.recompute(pool, false);
+            model = index.publish(model);
+            System.out.println("Incremental update of " + extra + " rentals: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+            long[] available = new long[(vehicleCount >>> 6) + 2];
+            for (int id = 1; id <= vehicleCount; id++) {
+                if (random.nextInt(10) < 7) available[id >>> 6] |= 1L << id;
+            }
+            int lookups = 1_000_000;
+            long[] vehicleNs = new long[lookups], userNs = new long[lookups];
+            long found = 0;
+            for (int i = 0; i < lookups; i++) {
+                long t0 = System.nanoTime();
+                found += model.alsoRented(available, random.nextInt(vehicleCount) + 1, 5).size();
+                long t1 = System.nanoTime();
+                found += model.recommendedFor(available, random.nextInt(userCount) + 1, 5).size();
+                userNs[i] = System.nanoTime() - t1;
+                vehicleNs[i] = t1 - t0;
+            }
+            Arrays.sort(vehicleNs);
+            Arrays.sort(userNs);
+            System.out.printf("Also rented:     p50 %.1f us  p99 %.1f us  p999 %.1f us\n", vehicleNs[lookups / 2] / 1e3,
+                              vehicleNs[lookups * 99 / 100] / 1e3, vehicleNs[lookups * 999 / 1000] / 1e3);
+            System.out.printf("Recommended for: p50 %.1f us  p99 %.1f us  p999 %.1f us  (%.1f results per lookup)\n",
+                              userNs[lookups / 2] / 1e3, userNs[lookups * 99 / 100] / 1e3,
+                              userNs[lookups * 999 / 1000] / 1e3, found / (2.0 * lookups));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static int syntheticVehicle(Random random, int user, int segments, int vehicleCount) {
+        int perSegment = vehicleCount / segments;
+        int segment = random.nextInt(10) < 8 ? user % segments : random.nextInt(segments);
+        double r = random.nextDouble();
+        return Math.min(vehicleCount - 1, segment * perSegment + (int) (perSegment * r * r));
+    }
+}
@@ -0,0 +1,29 @@
+// Vehicle Rental System - Rental
+import java.time.*;
+
+// RENTAL
+class Rental {
+    private int rentalId; private int userId; private int vehicleId; 
+    private LocalDate rentalDate; private LocalDate returnDate; private double totalAmount;
+    private String status; private String paymentStatus; private LocalDateTime createdAt;
+    
+    public Rental(int rentalId, int userId, int vehicleId, LocalDate rentalDate, 
+                 LocalDate returnDate, double totalAmount, String status, String paymentStatus) {
+        this.rentalId = rentalId; this.userId = userId; this.vehicleId = vehicleId;
+        this.rentalDate = rentalDate; this.returnDate = returnDate; this.totalAmount = totalAmount;
+        this.status = status; this.paymentStatus = paymentStatus; this.createdAt = LocalDateTime.now();
+    }
+    
+    public int getRentalId() { return rentalId; } public int getUserId() { return userId; }
+    public int getVehicleId() { return vehicleId; } public LocalDate getRentalDate() { return rentalDate; }
+    public LocalDate getReturnDate() { return returnDate; } public double getTotalAmount() { return totalAmount; }
+    public String getStatus() { return status; } public String getPaymentStatus() { return paymentStatus; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    
+    public void setStatus(String status) { this.status = status; }
+    public void setPaymentStatus(String paymentStatus) { this.paymentStatus = paymentStatus; }
+    @Override public String toString() {
+        return String.format("Rental #%d: Vehicle %d from %s to %s - $%.2f - %s - Payment: %s", 
+            rentalId, vehicleId, rentalDate, returnDate, totalAmount, status, paymentStatus);
+    }
+}
@@ -0,0 +1,53 @@
+// Vehicle Rental System - Rental Controller
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+// RENTAL CONTROLLER
+class RentalController {
+    // Dynamic price to show the customer, or null when the flat daily rate applies. Nothing is
+    // stored until the booking starts: pass the quote to createRental to be charged exactly it.
+    public PricingEngine.Quote quoteRental(Vehicle v, LocalDate rentalDate, LocalDate returnDate) {
+        return PricingEngine.quote(v.getVehicleId(), rentalDate, returnDate);
+    }
+    
+    // Takes the vehicle the caller already loaded, so pricing costs no extra lookup
+    public double calculateRentalCost(Vehicle v, PricingEngine.Quote quote, LocalDate rentalDate, LocalDate returnDate) {
+        if (quote != null) return quote.totalAmount;
+        return ChronoUnit.DAYS.between(rentalDate, returnDate) * v.getDailyRate();
+    }
+    
+    public List<Rental> getUserRentals(int userId) {
+        return DataStore.getRentalsByUserId(userId);
+    }
+    
+    public List<Rental> getPendingRentals() {
+        return DataStore.getPendingRentals();
+    }
+    
+    // Returns the renter's new wallet balance, or null if the booking failed. The quote the
+    // customer confirmed (from quoteRental, may be null) is what gets charged. Re-submitting the
+    // same booking after an unknown outcome reuses its idempotency key.
+    public Double createRental(int userId, int vehicleId, LocalDate rentalDate, LocalDate returnDate,
+                               PricingEngine.Quote quote) {
+        // A vehicle held for a waitlisted customer is refused without a database round-trip
+        if (!Waitlist.mayBook(userId, vehicleId)) {
+            System.out.println("[-] Vehicle is held for a waitlisted customer.");
+            return null;
+        }
+        long quoteId = quote != null ? PricingEngine.hold(quote) : 0;
+        if (quote != null && quoteId == 0) {
+            System.out.println("[-] The quoted price has expired; please check the price again.");
+            return null;
+        }
+        String intent = "rent:" + userId + ":" + vehicleId + ":" + rentalDate + ":" + returnDate;
+        Double balance = IdempotencyKeys.run(intent, key -> DataStore.createRentalWithProcedure(userId, vehicleId, rentalDate,
+                                                                                            returnDate, quoteId, key));
+        if (balance != null) Waitlist.booked(userId, vehicleId);
+        return balance;
+    }
+    
+    public boolean approveRental(int rentalId, int adminUserId) {
+        return IdempotencyKeys.run("approve:" + rentalId, key -> DataStore.approveRentalWithProcedure(rentalId, adminUserId, key));
+    }
+}
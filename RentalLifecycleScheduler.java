@@ -0,0 +1,431 @@
+// Vehicle Rental System - Rental Lifecycle Scheduler
+import java.sql.*;
+import java.sql.Date;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// RENTAL LIFECYCLE SCHEDULER
+// Keeps every open (PENDING/ACTIVE) rental in a time-ordered in-memory heap keyed by its next
+// check time, and processes due rentals in batched transactions:
+//   ACTIVE  past ReturnDate + grace  -> flagged RENTAL_OVERDUE (not returned) for the admins
+//   ACTIVE  past the return cutoff   -> COMPLETED, vehicle back to AVAILABLE
+//   PENDING on RentalDate            -> flagged RENTAL_OVERDUE (not approved) for the admins
+//   PENDING past TTL or ReturnDate   -> REJECTED, REFUNDED, REFUND transaction, vehicle released
+// The app has no check-in step, so completion past the cutoff stands in for the return; the
+// overdue flag in between is when admins chase a car that has not come back.
+// New rentals are picked up by tailing open rentals by CreatedAt through the (StatusID, CreatedAt)
+// index, so no full-table polling is needed. RentalIDs come from leased IdAllocator blocks and
+// commit out of order, so the tail re-reads an overlap window far longer than any transaction
+// and skips the rentals it already tracks.
+class RentalLifecycleScheduler {
+    private static final long PENDING_TTL_MS = Duration.ofHours(48).toMillis();
+    // Measured from the end of the ReturnDate
+    private static final long RETURN_GRACE_MS = Duration.ofHours(2).toMillis();
+    private static final long RETURN_CUTOFF_MS = Duration.ofHours(72).toMillis();
+    private static final long RETRY_DELAY_MS = Duration.ofMinutes(1).toMillis();
+    private static final int TICK_SECONDS = 5;
+    private static final int BATCH_SIZE = 500;
+    private static final long TAIL_OVERLAP_MS = Duration.ofMinutes(10).toMillis();
+
+    private static RentalLifecycleScheduler instance;
+
+    private final DueHeap heap = new DueHeap();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private ScheduledExecutorService executor;
+    private long tailFrom;   // newest CreatedAt seen; the tail re-reads TAIL_OVERLAP_MS before it
+    private final Map<Integer, Long> recent = new HashMap<>();   // RentalID -> CreatedAt inside the overlap window
+    private int pendingId, activeId, completedId, rejectedId, refundedId, refundTypeId;
+    private long completed, expired, flagged;
+
+    // Binary min-heap of (dueMillis, rentalId) in parallel primitive arrays
+    static class DueHeap {
+        private long[] due = new long[1024];
+        private int[] ids = new int[1024];
+        private int size;
+
+        synchronized void push(long dueAt, int rentalId) {
+            if (size == due.length) {
+                due = Arrays.copyOf(due, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (due[parent] <= dueAt) break;
+                due[i] = due[parent]; ids[i] = ids[parent];
+                i = parent;
+            }
+            due[i] = dueAt; ids[i] = rentalId;
+        }
+
+        // Removes up to max rentals due at or before now
+        synchronized int pollDue(long now, int[] out, int max) {
+            int n = 0;
+            while (n < max && size > 0 && due[0] <= now) {
+                out[n++] = ids[0];
+                long lastDue = due[--size]; int lastId = ids[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && due[child + 1] < due[child]) child++;
+                    if (due[child] >= lastDue) break;
+                    due[i] = due[child]; ids[i] = ids[child];
+                    i = child;
+                }
+                due[i] = lastDue; ids[i] = lastId;
+            }
+            return n;
+        }
+
+        synchronized int size() { return size; }
+    }
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start() {
+        if (instance != null) return;
+        RentalLifecycleScheduler scheduler = new RentalLifecycleScheduler();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            scheduler.loadLookupIds(conn);
+            scheduler.loadOpenRentals(conn);
+        } catch (SQLException e) {
+            System.err.println("[✗] Lifecycle scheduler not started: " + e.getMessage());
+            return;
+        }
+        scheduler.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rental-lifecycle");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.executor.scheduleWithFixedDelay(scheduler::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+        instance = scheduler;
+        System.out.println("[✓] Rental lifecycle scheduler tracking " + scheduler.heap.size() + " open rentals.");
+    }
+
+    public static synchronized void stop() {
+        if (instance == null) return;
+        instance.executor.shutdown();
+        instance = null;
+    }
+
+    private void loadLookupIds(Connection conn) throws SQLException {
+        pendingId = lookupId(conn, "RentalStatuses", "PENDING");
+        activeId = lookupId(conn, "RentalStatuses", "ACTIVE");
+        completedId = lookupId(conn, "RentalStatuses", "COMPLETED");
+        rejectedId = lookupId(conn, "RentalStatuses", "REJECTED");
+        refundedId = lookupId(conn, "PaymentStatuses", "REFUNDED");
+        try (PreparedStatement ps = conn.prepareStatement("SELECT TypeID FROM TransactionTypes WHERE TypeName = 'REFUND'");
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) throw new SQLException("Missing REFUND transaction type");
+            refundTypeId = rs.getInt(1);
+        }
+    }
+
+    private static int lookupId(Connection conn, String table, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT StatusID FROM " + table + " WHERE StatusName = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new SQLException("Missing " + table + " row " + name);
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    // Streams only open rentals (served by the StatusID-leading index), never the whole table
+    private void loadOpenRentals(Connection conn) throws SQLException {
+        String sql = "SELECT RentalID, StatusID, RentalDate, ReturnDate, CreatedAt FROM Rentals " +
+                     "WHERE StatusID IN (?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);   // MySQL row streaming
+            ps.setInt(1, pendingId);
+            ps.setInt(2, activeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                schedule(rs, System.currentTimeMillis());
+            }
+        }
+    }
+
+    // Open rentals created since tailFrom minus the overlap; a rental whose insert committed
+    // after a later one was already read is still inside the window on the next tick
+    private void tailNewRentals(Connection conn, long now) throws SQLException {
+        String sql = "SELECT RentalID, StatusID, RentalDate, ReturnDate, CreatedAt FROM Rentals " +
+                     "WHERE StatusID IN (?, ?) AND CreatedAt >= ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, pendingId);
+            ps.setInt(2, activeId);
+            ps.setTimestamp(3, new Timestamp(tailFrom - TAIL_OVERLAP_MS));
+            try (ResultSet rs = ps.executeQuery()) {
+                schedule(rs, now);
+            }
+        }
+        recent.values().removeIf(createdAt -> createdAt < tailFrom - TAIL_OVERLAP_MS);
+    }
+
+    private void schedule(ResultSet rs, long now) throws SQLException {
+        while (rs.next()) {
+            int rentalId = rs.getInt(1);
+            Timestamp createdAt = rs.getTimestamp(5);
+            long created = createdAt != null ? createdAt.getTime() : now;
+            if (created >= tailFrom - TAIL_OVERLAP_MS && recent.put(rentalId, created) != null) continue;
+            tailFrom = Math.max(tailFrom, created);
+            long next = nextCheck(rs.getInt(2), rs.getDate(3), rs.getDate(4), createdAt, now);
+            if (next > 0) heap.push(next, rentalId);
+        }
+    }
+
+    // Next time a rental needs attention, or 0 if it is closed
+    private long nextCheck(int statusId, Date rentalDate, Date returnDate, Timestamp createdAt, long now) {
+        if (statusId == activeId) {
+            long overdueAt = endOfDay(returnDate) + RETURN_GRACE_MS;
+            return overdueAt > now ? overdueAt : completion(returnDate);
+        }
+        if (statusId == pendingId) {
+            long expireAt = expiry(returnDate, createdAt);
+            long overdueAt = startOfDay(rentalDate);
+            return overdueAt > now && overdueAt < expireAt ? overdueAt : expireAt;
+        }
+        return 0;
+    }
+
+    private long expiry(Date returnDate, Timestamp createdAt) {
+        long created = createdAt != null ? createdAt.getTime() : System.currentTimeMillis();
+        return Math.min(created + PENDING_TTL_MS, startOfDay(returnDate));
+    }
+
+    private long completion(Date returnDate) {
+        return endOfDay(returnDate) + RETURN_CUTOFF_MS;
+    }
+
+    private long startOfDay(Date date) {
+        return date.toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private long endOfDay(Date date) {
+        return date.toLocalDate().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    // ========== PROCESSING ==========
+    private void tick() {
+        try (Connection conn = DatabaseManager.openConnection()) {
+            long now = System.currentTimeMillis();
+            tailNewRentals(conn, now);
+            int[] due = new int[BATCH_SIZE];
+            int n;
+            while ((n = heap.pollDue(now, due, BATCH_SIZE)) > 0) {
+                processBatch(conn, Arrays.copyOf(due, n), now);
+            }
+            IdempotencyKeys.purgeExpired(conn);
+        } catch (SQLException e) {
+            System.err.println("[✗] Lifecycle tick failed: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("[✗] Lifecycle tick error: " + e);
+        }
+    }
+
+    private static class DueRental {
+        int rentalId, userId, vehicleId, statusId;
+        double amount;
+        Date rentalDate, returnDate;
+        Timestamp createdAt;
+    }
+
+    private void processBatch(Connection conn, int[] rentalIds, long now) throws SQLException {
+        List<DueRental> toComplete = new ArrayList<>();
+        List<DueRental> toExpire = new ArrayList<>();
+        List<DueRental> toFlag = new ArrayList<>();
+
+        for (DueRental r : loadCurrent(conn, rentalIds)) {
+            if (r.statusId == activeId && now >= completion(r.returnDate)) {
+                toComplete.add(r);
+            } else if (r.statusId == activeId && now >= endOfDay(r.returnDate) + RETURN_GRACE_MS) {
+                toFlag.add(r);
+                heap.push(completion(r.returnDate), r.rentalId);
+            } else if (r.statusId == pendingId && now >= expiry(r.returnDate, r.createdAt)) {
+                toExpire.add(r);
+            } else if (r.statusId == pendingId && now >= startOfDay(r.rentalDate)) {
+                toFlag.add(r);
+                heap.push(expiry(r.returnDate, r.createdAt), r.rentalId);
+            } else {
+                // State moved on (e.g. approved); schedule its next relevant check
+                long next = nextCheck(r.statusId, r.rentalDate, r.returnDate, r.createdAt, now);
+                if (next > 0) heap.push(next, r.rentalId);
+            }
+        }
+        if (toComplete.isEmpty() && toExpire.isEmpty() && toFlag.isEmpty()) return;
+
+        List<DueRental> stale;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            List<DueRental> done = transition(conn, toComplete, activeId, completedId, 0);
+            List<DueRental> rejected = transition(conn, toExpire, pendingId, rejectedId, refundedId);
+            stale = new ArrayList<>(toComplete);
+            stale.addAll(toExpire);
+            stale.removeAll(done);
+            stale.removeAll(rejected);
+            refund(conn, rejected);
+            List<DueRental> released = new ArrayList<>(done);
+            released.addAll(rejected);
+            releaseVehicles(conn, released);
+            logBatch(conn, done, rejected, toFlag);
+            conn.commit();
+            completed += done.size();
+            expired += rejected.size();
+            flagged += toFlag.size();
+        } catch (SQLException e) {
+            conn.rollback();
+            for (DueRental r : toComplete) heap.push(now + RETRY_DELAY_MS, r.rentalId);
+            for (DueRental r : toExpire) heap.push(now + RETRY_DELAY_MS, r.rentalId);
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        if (!stale.isEmpty()) reschedule(conn, stale, now);
+    }
+
+    // Rentals another writer changed between loadCurrent and the guarded UPDATE; they are
+    // tracked again from their committed state
+    private void reschedule(Connection conn, List<DueRental> stale, long now) throws SQLException {
+        int[] ids = new int[stale.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = stale.get(i).rentalId;
+        for (DueRental r : loadCurrent(conn, ids)) {
+            long next = nextCheck(r.statusId, r.rentalDate, r.returnDate, r.createdAt, now);
+            if (next > 0) heap.push(next, r.rentalId);
+        }
+    }
+
+    private List<DueRental> loadCurrent(Connection conn, int[] rentalIds) throws SQLException {
+        StringBuilder in = new StringBuilder();
+        for (int i = 0; i < rentalIds.length; i++) in.append(i > 0 ? ",?" : "?");
+        String sql = "SELECT RentalID, UserID, VehicleID, StatusID, TotalAmount, RentalDate, ReturnDate, CreatedAt " +
+                     "FROM Rentals WHERE RentalID IN (" + in + ")";
+        List<DueRental> rentals = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < rentalIds.length; i++) ps.setInt(i + 1, rentalIds[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    DueRental r = new DueRental();
+                    r.rentalId = rs.getInt(1); r.userId = rs.getInt(2); r.vehicleId = rs.getInt(3);
+                    r.statusId = rs.getInt(4); r.amount = rs.getDouble(5);
+                    r.rentalDate = rs.getDate(6); r.returnDate = rs.getDate(7); r.createdAt = rs.getTimestamp(8);
+                    rentals.add(r);
+                }
+            }
+        }
+        return rentals;
+    }
+
+    // Guarded status change; returns only the rentals this batch actually moved
+    private List<DueRental> transition(Connection conn, List<DueRental> rentals, int fromStatus,
+                                       int toStatus, int paymentStatus) throws SQLException {
+        if (rentals.isEmpty()) return rentals;
+        String sql = paymentStatus > 0
+            ? "UPDATE Rentals SET StatusID = ?, PaymentStatusID = " + paymentStatus + " WHERE RentalID = ? AND StatusID = ?"
+            : "UPDATE Rentals SET StatusID = ? WHERE RentalID = ? AND StatusID = ?";
+        List<DueRental> moved = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (DueRental r : rentals) {
+                ps.setInt(1, toStatus);
+                ps.setInt(2, r.rentalId);
+                ps.setInt(3, fromStatus);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) moved.add(rentals.get(i));
+            }
+        }
+        return moved;
+    }
+
+    private void refund(Connection conn, List<DueRental> rentals) throws SQLException {
+        if (rentals.isEmpty()) return;
+        try (PreparedStatement wallet = conn.prepareStatement(
+                 "UPDATE Users SET WalletBalance = WalletBalance + ? WHERE UserID = ?");
+             PreparedStatement original = conn.prepareStatement(
+                 "UPDATE Transactions SET Status = 'CANCELLED' WHERE RentalID = ? AND Status = 'PENDING'");
+             PreparedStatement refund = conn.prepareStatement(
+                 "INSERT INTO Transactions (TransactionID, RentalID, UserID, TypeID, Amount, AdminCommission, OwnerEarnings, " +
+                 "Status, Description) VALUES (?, ?, ?, ?, ?, 0, 0, 'COMPLETED', ?)");
+             PreparedStatement ledger = conn.prepareStatement(WalletLedger.POST_SQL)) {
+            for (DueRental r : rentals) {
+                wallet.setDouble(1, r.amount);
+                wallet.setInt(2, r.userId);
+                wallet.addBatch();
+
+                original.setInt(1, r.rentalId);
+                original.addBatch();
+
+                refund.setInt(1, IdAllocator.TRANSACTIONS.next());
+                refund.setInt(2, r.rentalId);
+                refund.setInt(3, r.userId);
+                refund.setInt(4, refundTypeId);
+                refund.setDouble(5, r.amount);
+                refund.setString(6, "Auto-refund for expired rental #" + r.rentalId);
+                refund.addBatch();
+
+                WalletLedger.bind(ledger, r.userId, WalletLedger.Kind.REFUND, r.amount, r.rentalId);
+                ledger.addBatch();
+            }
+            wallet.executeBatch();
+            original.executeBatch();
+            refund.executeBatch();
+            ledger.executeBatch();
+        }
+    }
+
+    // Vehicle goes back to AVAILABLE only if it is still RENTED and no other open rental holds it
+    private void releaseVehicles(Connection conn, List<DueRental> rentals) throws SQLException {
+        if (rentals.isEmpty()) return;
+        String sql = "UPDATE Vehicles SET StatusID = (SELECT StatusID FROM VehicleStatuses WHERE StatusName = 'AVAILABLE') " +
+                     "WHERE VehicleID = ? AND StatusID = (SELECT StatusID FROM VehicleStatuses WHERE StatusName = 'RENTED') " +
+                     "AND NOT EXISTS (SELECT 1 FROM Rentals WHERE VehicleID = ? AND StatusID IN (?, ?))";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (DueRental r : rentals) {
+                ps.setInt(1, r.vehicleId);
+                ps.setInt(2, r.vehicleId);
+                ps.setInt(3, pendingId);
+                ps.setInt(4, activeId);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void logBatch(Connection conn, List<DueRental> done, List<DueRental> rejected,
+                          List<DueRental> overdue) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                 "INSERT INTO SystemLogs (LogType, LogMessage, UserID) VALUES (?, ?, ?)")) {
+            for (DueRental r : done) addLog(ps, "RENTAL_COMPLETED", "Rental " + r.rentalId + " completed", r.userId);
+            for (DueRental r : rejected) addLog(ps, "RENTAL_EXPIRED", "Rental " + r.rentalId +
+                                                " expired unapproved, refunded $" + r.amount, r.userId);
+            for (DueRental r : overdue) {
+                addLog(ps, "RENTAL_OVERDUE", r.statusId == activeId
+                       ? "Rental " + r.rentalId + " was due back " + r.returnDate + " but is not returned"
+                       : "Rental " + r.rentalId + " starts " + r.rentalDate + " but is still pending", r.userId);
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void addLog(PreparedStatement ps, String type, String message, int userId) throws SQLException {
+        ps.setString(1, type);
+        ps.setString(2, message);
+        ps.setInt(3, userId);
+        ps.addBatch();
+    }
+
+    public static void printStatus() {
+        RentalLifecycleScheduler s = instance;
+        if (s == null) {
+            System.out.println("Lifecycle scheduler is not running.");
+            return;
+        }
+        System.out.println("\n=== RENTAL LIFECYCLE ===");
+        System.out.println("Tracked open rentals: " + s.heap.size());
+        System.out.println("Completed: " + s.completed + "  Expired/refunded: " + s.expired +
+                           "  Overdue flags: " + s.flagged);
+        System.out.println("========================\n");
+    }
+}
@@ -0,0 +1,479 @@
+// Vehicle Rental System - Resilience
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// RESILIENCE
+// Every MySQL DataStore call and stored procedure runs through Resilience.call():
+//   - errors are classified by SQLSTATE / vendor code: deadlocks and lock-wait timeouts are
+//     rolled back by InnoDB and always retried; a lost connection is retried only when the call
+//     is idempotent or an "already applied?" check says the first attempt did not take effect
+//   - retries use exponential backoff with full jitter
+//   - every statement gets the policy's query timeout, so a slow query cannot hang the caller
+//   - consecutive connection failures and timeouts open a circuit breaker: calls fail fast until
+//     a health probe (Connection.isValid) succeeds, with the open period doubling up to a minute
+//   - single statements share one connection in autocommit mode; stored procedures and
+//     transaction() bodies run on a pooled connection of their own, so no other thread's
+//     statement runs inside their transaction and a failure is cleaned up by closing just that
+//     connection
+// Permanent errors (constraint violations, bad SQL) are rethrown unchanged for DataStore to
+// report as before. Each Target (the main database, or one shard) has its own breaker.
+// -Drental.faults=... injects failures for exercising all of this locally.
+class Resilience {
+    enum Failure { TRANSACTION_ROLLBACK, CONNECTION, TIMEOUT, PERMANENT }
+
+    enum Policy {
+        READ(5, true, false), IDEMPOTENT_WRITE(10, true, false), WRITE(10, false, false), PROCEDURE(20, false, true),
+        // Procedure guarded by an idempotency key: repeating it replays the first result
+        KEYED_PROCEDURE(20, true, true);
+
+        final int timeoutSeconds;
+        final boolean idempotent;
+        final boolean dedicated;   // opens its own transaction, so must not use the shared connection
+
+        Policy(int timeoutSeconds, boolean idempotent, boolean dedicated) {
+            this.timeoutSeconds = timeoutSeconds;
+            this.idempotent = idempotent;
+            this.dedicated = dedicated;
+        }
+    }
+
+    interface SqlCall<T> {
+        T call(Connection conn) throws SQLException;
+    }
+
+    interface Connector {
+        Connection connect() throws SQLException;   // the shared connection
+        void discard();
+        Connection open() throws SQLException;      // a new connection owned by the caller
+    }
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BACKOFF_BASE_MS = 50;
+    private static final long BACKOFF_CAP_MS = 1000;
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_MIN_MS = 5_000;
+    private static final long OPEN_MAX_MS = 60_000;
+    private static final int PROBE_TIMEOUT_SECONDS = 2;
+    private static final int MAX_IDLE = 8;
+
+    // Targets whose breakers are shown in printStatus()
+    private static final List<Target> targets = new java.util.concurrent.CopyOnWriteArrayList<>();
+    static final Target DATABASE = new Target("MySQL", new Connector() {
+        public Connection connect() throws SQLException { return DatabaseManager.connect(); }
+        public void discard() { DatabaseManager.discardConnection(); }
+        public Connection open() throws SQLException { return DatabaseManager.openConnection(); }
+    });
+
+    // Metrics
+    private static final AtomicLong calls = new AtomicLong();
+    private static final AtomicLong retries = new AtomicLong();
+    private static final AtomicLong recovered = new AtomicLong();
+    private static final AtomicLong appliedChecks = new AtomicLong();
+    private static final AtomicLong fastFails = new AtomicLong();
+    private static final AtomicLong circuitOpens = new AtomicLong();
+    private static final AtomicLong probesOk = new AtomicLong();
+    private static final AtomicLong probesFailed = new AtomicLong();
+    private static final AtomicLongArray failures = new AtomicLongArray(Failure.values().length);
+
+    static <T> T call(String name, Policy policy, SqlCall<T> body) throws SQLException {
+        return call(DATABASE, name, policy, body, null);
+    }
+
+    static <T> T call(String name, Policy policy, SqlCall<T> body, SqlCall<T> ifApplied) throws SQLException {
+        return call(DATABASE, name, policy, body, ifApplied);
+    }
+
+    static <T> T call(Target target, String name, Policy policy, SqlCall<T> body) throws SQLException {
+        return call(target, name, policy, body, null);
+    }
+
+    // ifApplied is asked after a lost connection on a non-idempotent call: it returns the call's
+    // result if the first attempt did take effect, or null to run the call again
+    static <T> T call(Target target, String name, Policy policy, SqlCall<T> body, SqlCall<T> ifApplied) throws SQLException {
+        return run(target, name, policy, false, body, ifApplied);
+    }
+
+    // Runs body as one transaction on a connection of its own: committed when body returns,
+    // rolled back when it throws, and retried as a whole under the policy
+    static <T> T transaction(String name, Policy policy, SqlCall<T> body) throws SQLException {
+        return run(DATABASE, name, policy, true, body, null);
+    }
+
+    static <T> T transaction(Target target, String name, Policy policy, SqlCall<T> body) throws SQLException {
+        return run(target, name, policy, true, body, null);
+    }
+
+    private static <T> T run(Target target, String name, Policy policy, boolean transactional,
+                             SqlCall<T> body, SqlCall<T> ifApplied) throws SQLException {
+        calls.incrementAndGet();
+        boolean dedicated = transactional || policy.dedicated;
+        boolean checkApplied = false;
+        for (int attempt = 1; ; attempt++) {
+            target.admit(name);
+            Connection raw = null;
+            try {
+                raw = dedicated ? target.lease() : target.connector.connect();
+                Connection conn = session(raw, policy);
+                if (transactional) raw.setAutoCommit(false);
+                if (checkApplied) {
+                    T applied = ifApplied.call(conn);
+                    if (applied != null) {
+                        appliedChecks.incrementAndGet();
+                        target.onSuccess();
+                        return applied;
+                    }
+                }
+                T result = body.call(conn);
+                if (transactional) raw.commit();
+                target.onSuccess();
+                if (attempt > 1) recovered.incrementAndGet();
+                return result;
+            } catch (SQLException e) {
+                Failure kind = classify(e);
+                failures.incrementAndGet(kind.ordinal());
+                if (dedicated) {
+                    // Whatever the failed call left open is rolled back on its own connection only
+                    target.recycle(raw, kind != Failure.CONNECTION);
+                    raw = null;
+                    if (kind == Failure.CONNECTION) target.drainIdle();
+                } else if (kind == Failure.CONNECTION) {
+                    target.connector.discard();
+                }
+                if (kind == Failure.PERMANENT) {
+                    target.onSuccess();
+                    throw e;
+                }
+                if (kind != Failure.TRANSACTION_ROLLBACK) target.onFailure();
+
+                boolean retryable = kind == Failure.TRANSACTION_ROLLBACK
+                                 || (kind == Failure.CONNECTION && (policy.idempotent || ifApplied != null));
+                if (!retryable || attempt == MAX_ATTEMPTS) {
+                    throw new DataAccessException(describe(kind) + " in " + name + target.suffix() + " after " + attempt +
+                                                  (attempt == 1 ? " attempt: " : " attempts: ") + e.getMessage(), kind, e);
+                }
+                checkApplied = kind == Failure.CONNECTION && !policy.idempotent;
+                retries.incrementAndGet();
+                backoff(attempt);
+            } catch (RuntimeException | Error e) {
+                // Not a database failure, but the transaction is just as unfinished: roll it back
+                // before the connection is pooled, or re-enabling autocommit would commit it
+                if (dedicated) {
+                    target.recycle(raw, true);
+                    raw = null;
+                }
+                throw e;
+            } finally {
+                // Only reached with a connection after the call succeeded (and committed)
+                if (dedicated && raw != null) target.release(raw, true);
+            }
+        }
+    }
+
+    static Failure classify(SQLException e) {
+        String state = e.getSQLState() == null ? "" : e.getSQLState();
+        int code = e.getErrorCode();
+        if (code == 1213 || code == 1205 || state.startsWith("40") || e instanceof SQLTransactionRollbackException) {
+            return Failure.TRANSACTION_ROLLBACK;
+        }
+        if (code == 1317 || code == 3024 || state.equals("HY008") || e instanceof SQLTimeoutException) {
+            return Failure.TIMEOUT;
+        }
+        if (state.startsWith("08") || code == 2006 || code == 2013 || e instanceof SQLRecoverableException
+                || e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException) {
+            return Failure.CONNECTION;
+        }
+        return Failure.PERMANENT;
+    }
+
+    private static String describe(Failure kind) {
+        switch (kind) {
+            case TRANSACTION_ROLLBACK: return "Deadlock/lock wait";
+            case CONNECTION: return "Database connection lost";
+            case TIMEOUT: return "Query timed out";
+            default: return "Database error";
+        }
+    }
+
+    private static void backoff(int attempt) {
+        long ceiling = Math.min(BACKOFF_CAP_MS, BACKOFF_BASE_MS << (attempt - 1));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Connection whose statements carry the policy's timeout; close() is a no-op (run() owns it)
+    private static Connection session(Connection conn, Policy policy) {
+        return (Connection) Proxy.newProxyInstance(Resilience.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                if (method.getName().equals("close")) return null;
+                Object result = invoke(conn, method, args);
+                if (result instanceof Statement) {
+                    Statement stmt = (Statement) result;
+                    stmt.setQueryTimeout(policy.timeoutSeconds);
+                    return FaultInjector.enabled ? FaultInjector.wrap(stmt) : stmt;
+                }
+                return result;
+            });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ========== Circuit breaker ==========
+
+    // A connection source with its own circuit breaker (guarded by this)
+    static final class Target {
+        final String label;
+        final Connector connector;
+        private volatile boolean open = false;
+        private int consecutiveFailures = 0;
+        private long openUntil = 0;
+        private long openMillis = OPEN_MIN_MS;
+        private boolean probing = false;
+        private final Deque<Connection> idle = new ArrayDeque<>();
+
+        Target(String label, Connector connector) {
+            this.label = label;
+            this.connector = connector;
+            targets.add(this);
+        }
+
+        String suffix() {
+            return this == DATABASE ? "" : " on " + label;
+        }
+
+        private void admit(String name) {
+            if (!open) return;
+            synchronized (this) {
+                if (!open) return;
+                if (probing || System.currentTimeMillis() < openUntil) {
+                    fastFails.incrementAndGet();
+                    long waitSeconds = Math.max(1, (openUntil - System.currentTimeMillis() + 999) / 1000);
+                    throw new DataAccessException(label + " unavailable (circuit open, next check in " + waitSeconds +
+                                                  "s) - " + name + " not attempted", Failure.CONNECTION, null);
+                }
+                probing = true;
+            }
+            boolean healthy = probe();
+            synchronized (this) {
+                probing = false;
+                if (healthy) {
+                    probesOk.incrementAndGet();
+                    open = false;
+                    consecutiveFailures = 0;
+                    openMillis = OPEN_MIN_MS;
+                    System.out.println("[✓] " + label + " reachable again, circuit closed.");
+                    return;
+                }
+                probesFailed.incrementAndGet();
+                fastFails.incrementAndGet();
+                openMillis = Math.min(OPEN_MAX_MS, openMillis * 2);
+                openUntil = System.currentTimeMillis() + openMillis;
+            }
+            throw new DataAccessException(label + " unavailable (health check failed) - " + name + " not attempted",
+                                          Failure.CONNECTION, null);
+        }
+
+        private boolean probe() {
+            try {
+                return connector.connect().isValid(PROBE_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                connector.discard();
+                return false;
+            }
+        }
+
+        // ========== Dedicated connections ==========
+        private Connection lease() throws SQLException {
+            while (true) {
+                Connection conn;
+                synchronized (this) {
+                    conn = idle.pollFirst();
+                }
+                if (conn == null) return connector.open();
+                if (conn.isValid(PROBE_TIMEOUT_SECONDS)) return conn;
+                closeQuietly(conn);
+            }
+        }
+
+        private void release(Connection conn, boolean reusable) {
+            if (conn == null) return;
+            if (reusable) {
+                try {
+                    if (!conn.getAutoCommit()) conn.setAutoCommit(true);
+                    synchronized (this) {
+                        if (idle.size() < MAX_IDLE) {
+                            idle.addFirst(conn);
+                            return;
+                        }
+                    }
+                } catch (SQLException ignored) {
+                }
+            }
+            closeQuietly(conn);
+        }
+
+        // Rolls back a failed call's transaction and pools the connection; closes it if that fails
+        private void recycle(Connection conn, boolean reusable) {
+            if (conn == null) return;
+            if (reusable) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("ROLLBACK");
+                } catch (SQLException e) {
+                    reusable = false;
+                }
+            }
+            release(conn, reusable);
+        }
+
+        // After a lost connection the pooled ones are likely dead too
+        private void drainIdle() {
+            List<Connection> dropped;
+            synchronized (this) {
+                dropped = new ArrayList<>(idle);
+                idle.clear();
+            }
+            for (Connection conn : dropped) closeQuietly(conn);
+        }
+
+        private static void closeQuietly(Connection conn) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+            }
+        }
+
+        private void onSuccess() {
+            if (consecutiveFailures == 0) return;
+            synchronized (this) {
+                consecutiveFailures = 0;
+            }
+        }
+
+        private synchronized void onFailure() {
+            if (open || ++consecutiveFailures < FAILURE_THRESHOLD) return;
+            open = true;
+            openUntil = System.currentTimeMillis() + openMillis;
+            circuitOpens.incrementAndGet();
+            System.err.println("[!] " + label + " circuit opened after " + consecutiveFailures +
+                               " consecutive failures; failing fast for " + openMillis / 1000 + "s");
+        }
+
+        private synchronized String state() {
+            if (!open) return "CLOSED (" + consecutiveFailures + " consecutive failures)";
+            long wait = Math.max(0, openUntil - System.currentTimeMillis());
+            return String.format("OPEN (next health check in %.1fs)", wait / 1000.0);
+        }
+    }
+
+    public static void printStatus() {
+        System.out.println("\n=== DATABASE RESILIENCE ===");
+        for (Target target : targets) {
+            System.out.println("Circuit " + target.label + ": " + target.state());
+        }
+        System.out.println("Calls: " + calls.get() + "   Retries: " + retries.get() +
+                           "   Recovered by retry: " + recovered.get() + "   Already-applied checks: " + appliedChecks.get());
+        System.out.println("Failures: deadlock/lock wait " + failures.get(Failure.TRANSACTION_ROLLBACK.ordinal()) +
+                           ", connection " + failures.get(Failure.CONNECTION.ordinal()) +
+                           ", timeout " + failures.get(Failure.TIMEOUT.ordinal()) +
+                           ", other " + failures.get(Failure.PERMANENT.ordinal()));
+        System.out.println("Fast-fails: " + fastFails.get() + "   Circuit opens: " + circuitOpens.get() +
+                           "   Health probes: " + probesOk.get() + " ok / " + probesFailed.get() + " failed");
+        System.out.println("Idempotency: " + IdempotencyKeys.describe());
+        System.out.println("Id blocks: " + IdAllocator.describe());
+        System.out.println("Fault injection: " + FaultInjector.describe());
+        System.out.println("===========================\n");
+    }
+
+    // ========== Fault injection ==========
+
+    // Local JDBC proxy that fails statements at random, e.g.
+    //   -Drental.faults=deadlock=0.05,lockwait=0.02,disconnect=0.02,lostreply=0.01,timeout=0.01
+    // "disconnect" fails before the statement runs, "lostreply" after it ran (exercising the
+    // already-applied checks), "timeout" after a delay as a cancelled query would.
+    static final class FaultInjector {
+        private static final String[] KINDS = {"deadlock", "lockwait", "disconnect", "lostreply", "timeout"};
+        private static final double[] rates = new double[KINDS.length];
+        private static final AtomicLongArray injected = new AtomicLongArray(KINDS.length);
+        static final boolean enabled;
+
+        static {
+            String spec = System.getProperty("rental.faults", "");
+            boolean any = false;
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split("=");
+                if (kv.length != 2) continue;
+                int k = Arrays.asList(KINDS).indexOf(kv[0].trim().toLowerCase());
+                if (k < 0) continue;
+                try {
+                    rates[k] = Double.parseDouble(kv[1].trim());
+                    any |= rates[k] > 0;
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            enabled = any;
+        }
+
+        static Statement wrap(Statement target) {
+            Class<?> iface = target instanceof CallableStatement ? CallableStatement.class
+                           : target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+            return (Statement) Proxy.newProxyInstance(Resilience.class.getClassLoader(),
+                new Class<?>[]{iface}, (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) return invoke(target, method, args);
+                    int fault = pick();
+                    if (fault < 0) return invoke(target, method, args);
+                    injected.incrementAndGet(fault);
+                    switch (KINDS[fault]) {
+                        case "deadlock":
+                            throw new SQLTransactionRollbackException(
+                                "Deadlock found when trying to get lock; try restarting transaction (injected)", "40001", 1213);
+                        case "lockwait":
+                            throw new SQLTransientException(
+                                "Lock wait timeout exceeded; try restarting transaction (injected)", "HY000", 1205);
+                        case "disconnect":
+                            throw new SQLNonTransientConnectionException("Communications link failure (injected)", "08S01", 0);
+                        case "lostreply":
+                            invoke(target, method, args);
+                            throw new SQLNonTransientConnectionException(
+                                "Communications link failure after statement (injected)", "08S01", 0);
+                        default:
+                            Thread.sleep(200);
+                            throw new SQLTimeoutException("Statement cancelled due to timeout (injected)", "HY008", 0);
+                    }
+                });
+        }
+
+        private static int pick() {
+            double roll = ThreadLocalRandom.current().nextDouble();
+            for (int k = 0; k < KINDS.length; k++) {
+                if (roll < rates[k]) return k;
+                roll -= rates[k];
+            }
+            return -1;
+        }
+
+        static String describe() {
+            if (!enabled) return "off";
+            StringBuilder sb = new StringBuilder();
+            for (int k = 0; k < KINDS.length; k++) {
+                if (rates[k] <= 0) continue;
+                if (sb.length() > 0) sb.append(", ");
+                sb.append(KINDS[k]).append(' ').append(rates[k]).append(" (").append(injected.get(k)).append(" injected)");
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,361 @@
+// Vehicle Rental System - Schema Migrations
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.*;
+import java.util.regex.*;
+
+// SCHEMA MIGRATOR
+// Tracks applied versions in SchemaVersions and applies ordered SQL (migrations/V<n>__name.sql)
+// and Java migrations at startup. Large-table ALTERs go through OnlineSchemaChange.
+// A version is recorded as STARTED before its first statement and counts the statements that
+// succeeded (MySQL commits each DDL statement on its own), so a script that failed halfway
+// resumes after its last successful statement on the next start; Java migrations are re-run
+// whole and must be idempotent. A migration edited after it was started or applied stops
+// startup instead of leaving the schema different from the files.
+class SchemaMigrator {
+    private static final String MIGRATIONS_DIR = "migrations";
+    private static final String LOCK_NAME = "VehicleRentalDB.schema_migrations";
+    private static final long ONLINE_THRESHOLD_ROWS = 100_000;
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final Pattern ALTER_TABLE = Pattern.compile(
+        "^ALTER\\s+TABLE\\s+(\\w+)\\s+(.*)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    interface Migration {
+        int version();
+        String description();
+        String checksum();
+        // Runs the migration, skipping the first skip statements where it has several
+        void apply(Connection conn, int skip, Progress progress) throws SQLException;
+    }
+
+    interface Progress {
+        void applied(int statements) throws SQLException;
+    }
+
+    static final class Applied {
+        final String checksum; final boolean completed; final int statements;
+
+        Applied(String checksum, boolean completed, int statements) {
+            this.checksum = checksum; this.completed = completed; this.statements = statements;
+        }
+    }
+
+    private static final List<Migration> javaMigrations = new ArrayList<>();
+
+    static {
+        register(new JavaMigration(3, "reference_data") {
+            public void apply(Connection conn, int skip, Progress progress) throws SQLException {
+                // Databases bootstrapped by older initializeDefaultData lack rows from the script
+                try (Statement stmt = conn.createStatement()) {
+                    DatabaseManager.insertReferenceData(stmt);
+                }
+            }
+        });
+    }
+
+    static abstract class JavaMigration implements Migration {
+        private final int version; private final String description;
+
+        JavaMigration(int version, String description) {
+            this.version = version; this.description = description;
+        }
+
+        public int version() { return version; }
+        public String description() { return description; }
+        public String checksum() { return "java:" + version + ":" + description; }
+    }
+
+    static class SqlMigration implements Migration {
+        private final int version; private final String description; private final String script;
+
+        SqlMigration(int version, String description, String script) {
+            this.version = version; this.description = description; this.script = script;
+        }
+
+        public int version() { return version; }
+        public String description() { return description; }
+        public String checksum() { return sha256(script); }
+
+        public void apply(Connection conn, int skip, Progress progress) throws SQLException {
+            List<String> statements = splitStatements(script);
+            try (Statement stmt = conn.createStatement()) {
+                for (int i = skip; i < statements.size(); i++) {
+                    executeStatement(conn, stmt, statements.get(i));
+                    progress.applied(i + 1);
+                }
+            }
+        }
+    }
+
+    public static void register(Migration migration) {
+        javaMigrations.add(migration);
+    }
+
+    // ========== STARTUP ==========
+    public static boolean migrate() {
+        try (Connection conn = DatabaseManager.openConnection()) {
+            return migrate(conn);
+        } catch (SQLException e) {
+            System.err.println("[✗] Schema migration failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    static boolean migrate(Connection conn) throws SQLException {
+        ensureVersionTable(conn);
+        if (!acquireLock(conn)) {
+            System.err.println("[!] Another instance is migrating the schema; skipping.");
+            return false;
+        }
+        try {
+            Map<Integer, Applied> applied = appliedVersions(conn);
+            if (applied.isEmpty()) {
+                // Existing installs created by VehicleRentalDB.sql are adopted as version 1
+                recordVersion(conn, 1, "baseline VehicleRentalDB.sql", "BASELINE", "baseline", 0);
+                applied.put(1, new Applied("baseline", true, 0));
+            }
+
+            List<Migration> migrations = loadMigrations();
+            for (Migration m : migrations) {
+                Applied done = applied.get(m.version());
+                if (done != null && !done.checksum.equals(m.checksum())) {
+                    System.err.println("[✗] Migration V" + m.version() + " changed after it was " +
+                                       (done.completed ? "applied" : "started") +
+                                       "; restore the original file and put the change in a new migration.");
+                    return false;
+                }
+            }
+
+            int count = 0;
+            for (Migration m : migrations) {
+                Applied done = applied.get(m.version());
+                if (done != null && done.completed) continue;
+                long start = System.currentTimeMillis();
+                int version = m.version();
+                if (done == null) {
+                    System.out.println("[!] Applying migration V" + version + " " + m.description() + "...");
+                    recordStart(conn, version, m.description(), m instanceof SqlMigration ? "SQL" : "JAVA", m.checksum());
+                } else {
+                    System.out.println("[!] Resuming migration V" + version + " " + m.description() +
+                                       " after " + done.statements + " statement(s)...");
+                }
+                m.apply(conn, done == null ? 0 : done.statements, n -> recordProgress(conn, version, n));
+                recordCompletion(conn, version, (int) (System.currentTimeMillis() - start));
+                count++;
+            }
+            if (count > 0) {
+                System.out.println("[✓] Applied " + count + " schema migration(s).");
+            }
+            return true;
+        } finally {
+            releaseLock(conn);
+        }
+    }
+
+    private static void ensureVersionTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS SchemaVersions (" +
+                         "Version INT PRIMARY KEY, " +
+                         "Description VARCHAR(200) NOT NULL, " +
+                         "Type VARCHAR(10) NOT NULL, " +
+                         "Checksum VARCHAR(100) NOT NULL, " +
+                         "ExecutionMs INT NOT NULL DEFAULT 0, " +
+                         "InstalledAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                         "Status VARCHAR(10) NOT NULL DEFAULT 'COMPLETED', " +
+                         "AppliedStatements INT NOT NULL DEFAULT 0)");
+            // Tables created before progress was tracked: their rows are all completed versions
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                    "AND TABLE_NAME = 'SchemaVersions' AND COLUMN_NAME = 'Status'")) {
+                rs.next();
+                if (rs.getInt(1) > 0) return;
+            }
+            stmt.execute("ALTER TABLE SchemaVersions ADD COLUMN Status VARCHAR(10) NOT NULL DEFAULT 'COMPLETED', " +
+                         "ADD COLUMN AppliedStatements INT NOT NULL DEFAULT 0");
+        }
+    }
+
+    private static boolean acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, 60)")) {
+            ps.setString(1, LOCK_NAME);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("[✗] Error releasing migration lock: " + e.getMessage());
+        }
+    }
+
+    private static Map<Integer, Applied> appliedVersions(Connection conn) throws SQLException {
+        Map<Integer, Applied> applied = new TreeMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Version, Checksum, Status, AppliedStatements FROM SchemaVersions")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), new Applied(rs.getString(2), "COMPLETED".equals(rs.getString(3)), rs.getInt(4)));
+            }
+        }
+        return applied;
+    }
+
+    private static void recordStart(Connection conn, int version, String description, String type,
+                                    String checksum) throws SQLException {
+        String sql = "INSERT INTO SchemaVersions (Version, Description, Type, Checksum, Status) VALUES (?, ?, ?, ?, 'STARTED')";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, version);
+            ps.setString(2, description);
+            ps.setString(3, type);
+            ps.setString(4, checksum);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void recordProgress(Connection conn, int version, int statements) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE SchemaVersions SET AppliedStatements = ? WHERE Version = ?")) {
+            ps.setInt(1, statements);
+            ps.setInt(2, version);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void recordCompletion(Connection conn, int version, int elapsedMs) throws SQLException {
+        String sql = "UPDATE SchemaVersions SET Status = 'COMPLETED', ExecutionMs = ExecutionMs + ? WHERE Version = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, elapsedMs);
+            ps.setInt(2, version);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void recordVersion(Connection conn, int version, String description, String type,
+                                      String checksum, int elapsedMs) throws SQLException {
+        String sql = "INSERT INTO SchemaVersions (Version, Description, Type, Checksum, ExecutionMs) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, version);
+            ps.setString(2, description);
+            ps.setString(3, type);
+            ps.setString(4, checksum);
+            ps.setInt(5, elapsedMs);
+            ps.executeUpdate();
+        }
+    }
+
+    static List<Migration> loadMigrations() {
+        List<Migration> all = new ArrayList<>(javaMigrations);
+        Path dir = Paths.get(MIGRATIONS_DIR);
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "V*__*.sql")) {
+                for (Path f : files) {
+                    Matcher m = FILE_NAME.matcher(f.getFileName().toString());
+                    if (!m.matches()) continue;
+                    all.add(new SqlMigration(Integer.parseInt(m.group(1)), m.group(2),
+                                             new String(Files.readAllBytes(f), StandardCharsets.UTF_8)));
+                }
+            } catch (IOException e) {
+                System.err.println("[✗] Error reading migrations: " + e.getMessage());
+            }
+        }
+        all.sort(Comparator.comparingInt(Migration::version));
+        for (int i = 1; i < all.size(); i++) {
+            if (all.get(i).version() == all.get(i - 1).version()) {
+                throw new IllegalStateException("Duplicate migration version V" + all.get(i).version());
+            }
+        }
+        return all;
+    }
+
+    // ========== STATEMENT EXECUTION ==========
+    // ALTERs are attempted as in-place, lock-free DDL first; when MySQL cannot do that and the
+    // table is large, the change is run as an online copy-and-swap instead of a blocking copy.
+    static void executeStatement(Connection conn, Statement stmt, String sql) throws SQLException {
+        Matcher alter = ALTER_TABLE.matcher(sql);
+        if (!alter.matches() || sql.toUpperCase().contains("ALGORITHM=")) {
+            stmt.execute(sql);
+            return;
+        }
+        try {
+            stmt.execute(sql + ", ALGORITHM=INPLACE, LOCK=NONE");
+        } catch (SQLException e) {
+            // 1845/1846: operation not supported in place / with LOCK=NONE
+            if (e.getErrorCode() != 1845 && e.getErrorCode() != 1846) throw e;
+            String table = alter.group(1);
+            if (estimatedRows(conn, table) >= ONLINE_THRESHOLD_ROWS) {
+                new OnlineSchemaChange(conn, table, alter.group(2)).run();
+            } else {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    static long estimatedRows(Connection conn, String table) throws SQLException {
+        String sql = "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    // Splits a script on ';' (or the current DELIMITER), skipping comment lines
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        String delimiter = ";";
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.toUpperCase().startsWith("DELIMITER ")) {
+                delimiter = trimmed.substring(10).trim();
+                continue;
+            }
+            if (current.length() == 0 && (trimmed.isEmpty() || trimmed.startsWith("--"))) continue;
+            current.append(line).append('\n');
+            if (trimmed.endsWith(delimiter)) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - delimiter.length()).trim());
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) statements.add(current.toString().trim());
+        return statements;
+    }
+
+    static String sha256(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void printStatus() {
+        try (Connection conn = DatabaseManager.openConnection()) {
+            ensureVersionTable(conn);
+            Map<Integer, Applied> applied = appliedVersions(conn);
+            System.out.println("\n=== SCHEMA VERSIONS ===");
+            for (Migration m : loadMigrations()) {
+                Applied done = applied.get(m.version());
+                String state = done == null ? "pending" : done.completed ? "applied"
+                             : "started (" + done.statements + " statements applied)";
+                if (done != null && !done.checksum.equals(m.checksum())) state += ", file changed since";
+                System.out.printf("V%-4d %-30s %s\n", m.version(), m.description(), state);
+            }
+            System.out.println("=======================\n");
+        } catch (SQLException e) {
+            System.err.println("[✗] Error reading schema versions: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,1200 @@
+// Vehicle Rental System - Sharded Store
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// SHARDED STORE
+// StorageBackend spreading Users, Vehicles and Rentals over several MySQL instances
+// (-Drental.shards=url0,url1,...; every instance created from VehicleRentalDB.sql):
+//   - a user lives on a home shard picked from the username, and their vehicles live with them
+//     (OwnerID-derived); company vehicles are placed by Location (region)
+//   - a rental lives with its vehicle, so sp_CreateRental and sp_ApproveRental stay on one
+//     shard; a renter from another shard pays through a guest account on the vehicle's shard,
+//     funded by keyed sp_AdjustWallet steps and compensated if the booking fails
+//   - shard 0 holds the global directory (UserDirectory for usernames, ShardDirectory for ids);
+//     lookups are cached, and a miss asks every shard and repairs the directory
+//   - ids stay unique across shards because IdAllocator leases them from shard 0
+//   - admin views scatter the query to all shards in parallel and merge the sorted results
+//   - startSplit() moves owners (user, vehicles, their rentals and transactions) to another
+//     shard one at a time while the store keeps serving; writes for an owner being moved wait
+//     on that owner's lock (in this process)
+class ShardedStore implements StorageBackend {
+    static final int MAX_SHARDS = 16;
+    private static final int DIRECTORY = 0;
+    private static final int LOCK_STRIPES = 64;
+    private static final int LOG_LIMIT = 20;
+
+    private static final String USER_SQL = "SELECT " + DataStore.USER_COLUMNS + " FROM Users u JOIN UserRoles ur ON u.RoleID = ur.RoleID ";
+    private static final String USER_LIST_SQL = "SELECT " + DataStore.USER_LIST_COLUMNS + " FROM Users u JOIN UserRoles ur ON u.RoleID = ur.RoleID ";
+    private static final String VEHICLE_SQL = "SELECT " + DataStore.VEHICLE_COLUMNS + " FROM Vehicles v " +
+        "JOIN VehicleMakes vm ON v.MakeID = vm.MakeID JOIN VehicleColors vc ON v.ColorID = vc.ColorID " +
+        "JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID ";
+    private static final String RENTAL_SQL = "SELECT " + DataStore.RENTAL_COLUMNS + " FROM Rentals r " +
+        "JOIN RentalStatuses rs ON r.StatusID = rs.StatusID JOIN PaymentStatuses ps ON r.PaymentStatusID = ps.StatusID ";
+    // Pending rentals also carry CreatedAt (column 9) for the cross-shard merge
+    private static final String PENDING_SQL = "SELECT " + DataStore.RENTAL_COLUMNS + ", r.CreatedAt FROM Rentals r " +
+        "JOIN RentalStatuses rs ON r.StatusID = rs.StatusID JOIN PaymentStatuses ps ON r.PaymentStatusID = ps.StatusID ";
+
+    static final class Shard {
+        final int index;
+        final String url;
+        final Resilience.Target target;
+        private Connection conn;
+
+        Shard(int index, String url) {
+            this.index = index;
+            this.url = url;
+            this.target = new Resilience.Target("shard " + index, new Resilience.Connector() {
+                public Connection connect() throws SQLException { return shared(); }
+                public void discard() { close(); }
+                public Connection open() throws SQLException { return Shard.this.open(); }
+            });
+        }
+
+        private synchronized Connection shared() throws SQLException {
+            if (conn == null || conn.isClosed()) conn = open();
+            return conn;
+        }
+
+        // New connection for setup and splits; caller must close it
+        Connection open() throws SQLException {
+            return DatabaseManager.openConnection(url);
+        }
+
+        synchronized void close() {
+            if (conn == null) return;
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+            }
+            conn = null;
+        }
+    }
+
+    // Row from one shard with its position in the merged order
+    private static final class Sorted<T> {
+        final T value;
+        final long key, tie;
+
+        Sorted(T value, long key, long tie) {
+            this.value = value;
+            this.key = key;
+            this.tie = tie;
+        }
+    }
+
+    private static final class Booking {
+        final int rentalId;
+        final double amount;
+        final double balance;       // renter's balance on their home shard afterwards
+
+        Booking(int rentalId, double amount, double balance) {
+            this.rentalId = rentalId;
+            this.amount = amount;
+            this.balance = balance;
+        }
+    }
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final ExecutorService scatterPool;
+    private final Map<Integer, Integer> userShards = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> vehicleShards = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> rentalShards = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> vehicleOwners = new ConcurrentHashMap<>();
+    private final Map<String, Integer> userIds = new ConcurrentHashMap<>();
+    private final Set<Long> guests = ConcurrentHashMap.newKeySet();
+    private final ReentrantReadWriteLock[] ownerLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private volatile Thread splitThread;
+    private volatile String splitStatus = "No split has run.";
+
+    private ShardedStore(List<String> urls) {
+        for (int i = 0; i < urls.size(); i++) shards.add(new Shard(i, urls.get(i).trim()));
+        for (int i = 0; i < LOCK_STRIPES; i++) ownerLocks[i] = new ReentrantReadWriteLock();
+        scatterPool = Executors.newFixedThreadPool(urls.size(), r -> {
+            Thread t = new Thread(r, "shard-scatter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static ShardedStore open(List<String> urls) throws SQLException {
+        if (urls.isEmpty() || urls.size() > MAX_SHARDS) {
+            throw new SQLException("Between 1 and " + MAX_SHARDS + " shard URLs are required");
+        }
+        ShardedStore store = new ShardedStore(urls);
+        try {
+            store.initialize();
+        } catch (SQLException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    // ========== SETUP ==========
+    private void initialize() throws SQLException {
+        for (Shard shard : shards) {
+            try (Connection conn = shard.open()) {
+                if (!SchemaMigrator.migrate(conn)) throw new SQLException("Migration failed on shard " + shard.index);
+            }
+        }
+        try (Connection dir = shards.get(DIRECTORY).open();
+             Statement stmt = dir.createStatement()) {
+            Set<Integer> claimed = new HashSet<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT ShardID FROM ShardInfo")) {
+                while (rs.next()) claimed.add(rs.getInt(1));
+            }
+            if (!claimed.contains(DIRECTORY)) {
+                // Everything that exists before sharding lives on shard 0
+                stmt.executeUpdate("INSERT IGNORE INTO ShardDirectory (EntityType, EntityID, ShardID) " +
+                                   "SELECT 'U', UserID, 0 FROM Users WHERE IsGuest = FALSE");
+                stmt.executeUpdate("INSERT IGNORE INTO ShardDirectory (EntityType, EntityID, ShardID) SELECT 'V', VehicleID, 0 FROM Vehicles");
+                stmt.executeUpdate("INSERT IGNORE INTO ShardDirectory (EntityType, EntityID, ShardID) SELECT 'R', RentalID, 0 FROM Rentals");
+                stmt.executeUpdate("INSERT IGNORE INTO UserDirectory (Username, UserID) SELECT Username, UserID FROM Users WHERE IsGuest = FALSE");
+                recordClaim(dir, shards.get(DIRECTORY));
+            }
+            for (Shard shard : shards) {
+                if (shard.index != DIRECTORY && !claimed.contains(shard.index)) claim(dir, shard);
+            }
+            for (Shard shard : shards) {
+                try (Connection conn = shard.open()) {
+                    IdAllocator.raiseAbove(dir, conn);
+                }
+            }
+        }
+        IdAllocator.useSource(shards.get(DIRECTORY).url);
+        System.out.println("[✓] Sharded store ready: " + shards.size() + " shard(s), directory on " + shards.get(DIRECTORY).url);
+    }
+
+    // A new shard's sample rows from VehicleRentalDB.sql duplicate shard 0's: its users become
+    // guests (the admin still owns company vehicles), their duplicated opening balances are
+    // reversed in the ledger, and its sample vehicles go
+    private void claim(Connection dir, Shard shard) throws SQLException {
+        try (Connection conn = shard.open();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Rentals")) {
+                rs.next();
+                if (rs.getLong(1) > 0) {
+                    throw new SQLException("Shard " + shard.index + " already holds rentals; only a fresh " +
+                                           "VehicleRentalDB.sql install can be added as a shard");
+                }
+            }
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("DELETE FROM Transactions");
+            stmt.executeUpdate("DELETE FROM PriceQuotes");
+            stmt.executeUpdate("DELETE FROM Vehicles");
+            stmt.executeUpdate("INSERT INTO WalletLedger (UserID, Kind, Amount, ContraAccount) " +
+                               "SELECT UserID, 'ADJUSTMENT', -WalletBalance, 'ADJUSTMENTS' FROM Users " +
+                               "WHERE WalletBalance <> 0");
+            stmt.executeUpdate("UPDATE Users SET IsGuest = TRUE, WalletBalance = 0");
+            conn.commit();
+        }
+        recordClaim(dir, shard);
+        System.out.println("[✓] Shard " + shard.index + " claimed (" + shard.url + ")");
+    }
+
+    private static void recordClaim(Connection dir, Shard shard) throws SQLException {
+        try (PreparedStatement ps = dir.prepareStatement("INSERT INTO ShardInfo (ShardID, Url) VALUES (?, ?)")) {
+            ps.setInt(1, shard.index);
+            ps.setString(2, shard.url);
+            ps.executeUpdate();
+        }
+    }
+
+    // ========== ROUTING ==========
+    private <T> T on(int shard, String name, Resilience.Policy policy, Resilience.SqlCall<T> body) throws SQLException {
+        return Resilience.call(shards.get(shard).target, name, policy, body);
+    }
+
+    private Map<Integer, Integer> cacheFor(char type) {
+        return type == 'U' ? userShards : type == 'V' ? vehicleShards : rentalShards;
+    }
+
+    // Shard holding a user ('U'), vehicle ('V') or rental ('R'), or -1 if it does not exist
+    private int shardOf(char type, int id) {
+        Map<Integer, Integer> cache = cacheFor(type);
+        Integer shard = cache.get(id);
+        if (shard != null) return shard;
+        try {
+            shard = on(DIRECTORY, "directory lookup", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT ShardID FROM ShardDirectory WHERE EntityType = ? AND EntityID = ?")) {
+                    ps.setString(1, String.valueOf(type));
+                    ps.setInt(2, id);
+                    ResultSet rs = ps.executeQuery();
+                    return rs.next() ? rs.getInt(1) : null;
+                }
+            });
+            if (shard == null) shard = locate(type, id);
+        } catch (SQLException e) {
+            System.err.println("[✗] Directory lookup failed: " + e.getMessage());
+            return -1;
+        }
+        if (shard == null) return -1;
+        cache.put(id, shard);
+        return shard;
+    }
+
+    // Directory miss (e.g. a crash between insert and registration): ask every shard
+    private Integer locate(char type, int id) throws SQLException {
+        String sql = type == 'U' ? "SELECT 1 FROM Users WHERE UserID = ? AND IsGuest = FALSE"
+                   : type == 'V' ? "SELECT 1 FROM Vehicles WHERE VehicleID = ?"
+                   : "SELECT 1 FROM Rentals WHERE RentalID = ?";
+        for (Shard shard : shards) {
+            boolean found = on(shard.index, "locate", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, id);
+                    return ps.executeQuery().next();
+                }
+            });
+            if (found) {
+                register(type, id, shard.index);
+                return shard.index;
+            }
+        }
+        return null;
+    }
+
+    private void register(char type, int id, int shard) throws SQLException {
+        on(DIRECTORY, "directory register", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO ShardDirectory (EntityType, EntityID, ShardID) VALUES (?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE ShardID = VALUES(ShardID)")) {
+                ps.setString(1, String.valueOf(type));
+                ps.setInt(2, id);
+                ps.setInt(3, shard);
+                return ps.executeUpdate();
+            }
+        });
+        cacheFor(type).put(id, shard);
+    }
+
+    private int homeShardFor(String username) {
+        return Math.floorMod(username.toLowerCase().hashCode(), shards.size());
+    }
+
+    private int regionShardFor(String location) {
+        return Math.floorMod(location.trim().toLowerCase().hashCode(), shards.size());
+    }
+
+    private ReentrantReadWriteLock.ReadLock ownerLock(int ownerId) {
+        return ownerLocks[Math.floorMod(ownerId, LOCK_STRIPES)].readLock();
+    }
+
+    private Integer ownerOf(int vehicleId) {
+        Integer owner = vehicleOwners.get(vehicleId);
+        if (owner == null) {
+            Vehicle v = getVehicleById(vehicleId);
+            if (v != null) owner = v.getOwnerId();
+        }
+        return owner;
+    }
+
+    private static String stepKey(String key, String step) {
+        return UUID.nameUUIDFromBytes((key + ":" + step).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static int roleId(String role) {
+        return role.equalsIgnoreCase("ADMIN") ? 1 : role.equalsIgnoreCase("OWNER") ? 3 : 2;
+    }
+
+    // Guest account so rentals, transactions and approvals on a shard can reference the user
+    private void ensureGuest(int shard, int userId) throws SQLException {
+        if (shardOf('U', userId) == shard || !guests.add(((long) shard << 32) | userId)) return;
+        User user = getUserById(userId);
+        if (user == null) return;
+        on(shard, "ensureGuest", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT IGNORE INTO Users (UserID, Username, PasswordHash, FullName, Email, Phone, RoleID, WalletBalance, IsGuest) " +
+                    "VALUES (?, ?, '', ?, ?, ?, ?, 0, TRUE)")) {
+                ps.setInt(1, userId);
+                ps.setString(2, "guest#" + userId);
+                ps.setString(3, user.getFullName());
+                ps.setString(4, "guest" + userId + "@shards.local");
+                ps.setString(5, user.getPhone());
+                ps.setInt(6, roleId(user.getRole()));
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    // ========== SCATTER-GATHER ==========
+    // Runs body on every shard in parallel; a shard that fails is reported and left out
+    private <T> List<T> scatter(String name, Resilience.SqlCall<T> body) {
+        List<Future<T>> futures = new ArrayList<>();
+        for (Shard shard : shards) {
+            futures.add(scatterPool.submit(() -> Resilience.call(shard.target, name, Resilience.Policy.READ, body)));
+        }
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                System.err.println("[!] Shard " + i + " left out of " + name + ": " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DataAccessException(name + " interrupted", Resilience.Failure.TIMEOUT, e);
+            }
+        }
+        return results;
+    }
+
+    // k-way merge of per-shard runs already sorted by (key, tie)
+    private static <T> List<T> merge(List<List<Sorted<T>>> runs, int limit) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> {
+            Sorted<T> x = runs.get(a[0]).get(a[1]), y = runs.get(b[0]).get(b[1]);
+            return x.key != y.key ? Long.compare(x.key, y.key) : Long.compare(x.tie, y.tie);
+        });
+        for (int r = 0; r < runs.size(); r++) {
+            if (!runs.get(r).isEmpty()) heads.add(new int[]{r, 0});
+        }
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            int[] head = heads.poll();
+            List<Sorted<T>> run = runs.get(head[0]);
+            merged.add(run.get(head[1]).value);
+            if (++head[1] < run.size()) heads.add(head);
+        }
+        return merged;
+    }
+
+    // ========== USERS ==========
+    private Integer userIdOf(String username) {
+        Integer id = userIds.get(username);
+        if (id != null) return id;
+        try {
+            id = on(DIRECTORY, "UserDirectory", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT UserID FROM UserDirectory WHERE Username = ?")) {
+                    ps.setString(1, username);
+                    ResultSet rs = ps.executeQuery();
+                    if (!rs.next()) return null;
+                    int userId = rs.getInt(1);
+                    return rs.wasNull() ? null : userId;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting user: " + e.getMessage());
+            return null;
+        }
+        if (id != null) userIds.put(username, id);
+        return id;
+    }
+
+    @Override public User getUserByUsername(String username) {
+        Integer userId = userIdOf(username);
+        return userId == null ? null : getUserById(userId);
+    }
+
+    @Override public User getUserById(int userId) {
+        int shard = shardOf('U', userId);
+        if (shard < 0) return null;
+        try {
+            return on(shard, "getUserById", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        USER_SQL + "WHERE u.UserID = ? AND u.IsActive = 1 AND u.IsGuest = FALSE")) {
+                    ps.setInt(1, userId);
+                    ResultSet rs = ps.executeQuery();
+                    return rs.next() ? DataStore.readUser(rs) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting user: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override public boolean addUser(User user) {
+        String username = user.getUsername();
+        // Reserve the username across all shards before inserting the user
+        try {
+            on(DIRECTORY, "reserveUsername", Resilience.Policy.WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO UserDirectory (Username) VALUES (?)")) {
+                    ps.setString(1, username);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println(e.getErrorCode() == 1062 ? "[✗] Username already exists!" : "[✗] Error adding user: " + e.getMessage());
+            return false;
+        }
+
+        int shard = homeShardFor(username);
+        int userId;
+        try {
+            userId = IdAllocator.USERS.next();
+            on(shard, "addUser", Resilience.Policy.WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO Users (UserID, Username, PasswordHash, FullName, Email, Phone, RoleID, WalletBalance) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    ps.setInt(1, userId);
+                    ps.setString(2, username);
+                    ps.setString(3, user.getPassword());
+                    ps.setString(4, user.getFullName());
+                    ps.setString(5, user.getEmail());
+                    ps.setString(6, user.getPhone());
+                    ps.setInt(7, roleId(user.getRole()));
+                    ps.setDouble(8, user.getWalletBalance());
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error adding user: " + e.getMessage());
+            releaseUsername(username);
+            return false;
+        }
+
+        try {
+            on(DIRECTORY, "registerUser", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE UserDirectory SET UserID = ? WHERE Username = ?")) {
+                    ps.setInt(1, userId);
+                    ps.setString(2, username);
+                    return ps.executeUpdate();
+                }
+            });
+            register('U', userId, shard);
+        } catch (SQLException e) {
+            System.err.println("[✗] Error registering user in the directory: " + e.getMessage());
+        }
+        userIds.put(username, userId);
+        logEvent("USER_REGISTERED", "New user: " + username, 0);
+        return true;
+    }
+
+    private void releaseUsername(String username) {
+        try {
+            on(DIRECTORY, "releaseUsername", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM UserDirectory WHERE Username = ? AND UserID IS NULL")) {
+                    ps.setString(1, username);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException | DataAccessException e) {
+            System.err.println("[!] Username " + username + " stays reserved: " + e.getMessage());
+        }
+    }
+
+    @Override public List<User> getAllUsers() {
+        List<List<Sorted<User>>> runs = scatter("getAllUsers", conn -> {
+            List<Sorted<User>> run = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(USER_LIST_SQL + "WHERE u.IsActive = 1 AND u.IsGuest = FALSE ORDER BY u.UserID")) {
+                while (rs.next()) {
+                    User u = DataStore.readUser(rs);
+                    run.add(new Sorted<>(u, u.getUserId(), 0));
+                }
+            }
+            return run;
+        });
+        return merge(runs, Integer.MAX_VALUE);
+    }
+
+    @Override public boolean updateUserWallet(int userId, double amount) {
+        ReentrantReadWriteLock.ReadLock lock = ownerLock(userId);
+        lock.lock();
+        try {
+            int shard = shardOf('U', userId);
+            if (shard < 0) return false;
+            // As DataStore.updateUserWallet: the difference is posted to the shard's ledger in the same transaction
+            boolean updated = Resilience.transaction(shards.get(shard).target, "updateUserWallet",
+                                                     Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                Double current = lockedBalance(conn, userId);
+                if (current == null) return false;
+                try (PreparedStatement ps = conn.prepareStatement("UPDATE Users SET WalletBalance = ? WHERE UserID = ?")) {
+                    ps.setDouble(1, amount);
+                    ps.setInt(2, userId);
+                    ps.executeUpdate();
+                }
+                postDifference(conn, userId, WalletLedger.Kind.ADJUSTMENT, current, amount);
+                return true;
+            });
+            if (updated) logEvent("WALLET_UPDATED", "User " + userId + " wallet: $" + amount, userId);
+            return updated;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error updating wallet: " + e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Balance of a user's row on this shard, locked until commit; null if the row is missing
+    private static Double lockedBalance(Connection conn, int userId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT WalletBalance FROM Users WHERE UserID = ? FOR UPDATE")) {
+            ps.setInt(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getDouble(1) : null;
+            }
+        }
+    }
+
+    // Posts the change from one balance to another, if any, as a ledger entry of the given kind
+    private static void postDifference(Connection conn, int userId, WalletLedger.Kind kind,
+                                       double from, double to) throws SQLException {
+        long delta = Math.round(to * 100) - Math.round(from * 100);
+        if (delta == 0) return;
+        try (PreparedStatement ps = conn.prepareStatement(WalletLedger.POST_SQL)) {
+            WalletLedger.bind(ps, userId, kind, delta / 100.0, null);
+            ps.executeUpdate();
+        }
+    }
+
+    @Override public Double adjustWallet(int userId, double amount, String idemKey) {
+        ReentrantReadWriteLock.ReadLock lock = ownerLock(userId);
+        lock.lock();
+        try {
+            int shard = shardOf('U', userId);
+            if (shard < 0) return null;
+            return adjustOn(shard, userId, amount, idemKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // sp_AdjustWallet on one shard (home or guest account); null if refused
+    private Double adjustOn(int shard, int userId, double amount, String idemKey) {
+        try {
+            Object[] result = on(shard, "sp_AdjustWallet", Resilience.Policy.KEYED_PROCEDURE, conn -> {
+                try (CallableStatement cs = conn.prepareCall("{call sp_AdjustWallet(?, ?, ?)}")) {
+                    cs.setInt(1, userId);
+                    cs.setDouble(2, amount);
+                    cs.setString(3, idemKey);
+                    ResultSet rs = cs.executeQuery();
+                    if (!rs.next() || !rs.getString("Status").equals("SUCCESS")) return null;
+                    return new Object[]{rs.getDouble("NewBalance"), rs.getBoolean("Replayed")};
+                }
+            });
+            if (result == null) return null;
+            if (!(Boolean) result[1] && shard == shardOf('U', userId)) {
+                logEvent("WALLET_UPDATED", "User " + userId + " wallet: $" + result[0], userId);
+            }
+            return (Double) result[0];
+        } catch (SQLException e) {
+            System.err.println("[✗] Error updating wallet: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ========== VEHICLES ==========
+    private List<Vehicle> readVehicles(ResultSet rs) throws SQLException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        while (rs.next()) {
+            Vehicle v = DataStore.readVehicle(rs);
+            vehicleOwners.put(v.getVehicleId(), v.getOwnerId());
+            vehicles.add(v);
+        }
+        return vehicles;
+    }
+
+    @Override public List<Vehicle> getAvailableVehicles() {
+        List<List<Sorted<Vehicle>>> runs = scatter("getAvailableVehicles", conn -> {
+            List<Sorted<Vehicle>> run = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(VEHICLE_SQL + "WHERE vs.StatusName = 'AVAILABLE' ORDER BY v.DailyRate, v.VehicleID")) {
+                for (Vehicle v : readVehicles(rs)) {
+                    run.add(new Sorted<>(v, Math.round(v.getDailyRate() * 100), v.getVehicleId()));
+                }
+            }
+            return run;
+        });
+        return merge(runs, Integer.MAX_VALUE);
+    }
+
+    @Override public List<Vehicle> getUserListedVehicles(int ownerId) {
+        int shard = shardOf('U', ownerId);
+        if (shard < 0) return new ArrayList<>();
+        try {
+            return on(shard, "getUserListedVehicles", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(VEHICLE_SQL + "WHERE v.OwnerID = ? AND v.IsUserListed = TRUE")) {
+                    ps.setInt(1, ownerId);
+                    return readVehicles(ps.executeQuery());
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting user vehicles: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    @Override public Vehicle getVehicleById(int id) {
+        int shard = shardOf('V', id);
+        if (shard < 0) return null;
+        try {
+            return on(shard, "getVehicleById", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(VEHICLE_SQL + "WHERE v.VehicleID = ?")) {
+                    ps.setInt(1, id);
+                    List<Vehicle> found = readVehicles(ps.executeQuery());
+                    return found.isEmpty() ? null : found.get(0);
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error getting vehicle: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean updateVehicle(int vehicleId, String name, String sql, Object value) {
+        Integer owner = ownerOf(vehicleId);
+        if (owner == null) return false;
+        ReentrantReadWriteLock.ReadLock lock = ownerLock(owner);
+        lock.lock();
+        try {
+            int shard = shardOf('V', vehicleId);
+            if (shard < 0) return false;
+            return on(shard, name, Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setObject(1, value);
+                    ps.setInt(2, vehicleId);
+                    return ps.executeUpdate() > 0;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error in " + name + ": " + e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override public boolean updateVehicleStatus(int vehicleId, String status) {
+        boolean updated = updateVehicle(vehicleId, "updateVehicleStatus",
+            "UPDATE Vehicles SET StatusID = (SELECT StatusID FROM VehicleStatuses WHERE StatusName = ?) WHERE VehicleID = ?", status);
+        if (updated) logEvent("VEHICLE_STATUS", "Vehicle " + vehicleId + " -> " + status, 0);
+        return updated;
+    }
+
+    @Override public boolean updateVehicleRate(int vehicleId, double newRate) {
+        return updateVehicle(vehicleId, "updateVehicleRate", "UPDATE Vehicles SET DailyRate = ? WHERE VehicleID = ?", newRate);
+    }
+
+    private static int lookupId(Connection conn, String table, String nameColumn, String idColumn, String value) throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement("SELECT " + idColumn + " FROM " + table + " WHERE " + nameColumn + " = ?");
+             PreparedStatement insert = conn.prepareStatement("INSERT IGNORE INTO " + table + " (" + idColumn + ", " + nameColumn + ") VALUES (?, ?)")) {
+            select.setString(1, value);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+            insert.setInt(1, (table.equals("VehicleMakes") ? IdAllocator.MAKES : IdAllocator.COLORS).next());
+            insert.setString(2, value);
+            insert.executeUpdate();
+            ResultSet rs = select.executeQuery();
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    @Override public boolean addVehicle(Vehicle vehicle) {
+        int ownerId = vehicle.getOwnerId();
+        ReentrantReadWriteLock.ReadLock lock = ownerLock(ownerId);
+        lock.lock();
+        try {
+            int shard = vehicle.isUserListed() ? shardOf('U', ownerId) : regionShardFor(vehicle.getLocation());
+            if (shard < 0) return false;
+            if (!vehicle.isUserListed()) ensureGuest(shard, ownerId);
+            int vehicleId = IdAllocator.VEHICLES.next();
+            on(shard, "addVehicle", Resilience.Policy.WRITE, conn -> {
+                int makeId = lookupId(conn, "VehicleMakes", "MakeName", "MakeID", vehicle.getMake());
+                int colorId = lookupId(conn, "VehicleColors", "ColorName", "ColorID", vehicle.getColor());
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO Vehicles (VehicleID, RegistrationNo, MakeID, Model, Year, ColorID, DailyRate, StatusID, OwnerID, " +
+                        "IsUserListed, Location) VALUES (?, ?, ?, ?, ?, ?, ?, 1, ?, ?, ?)")) {
+                    ps.setInt(1, vehicleId);
+                    ps.setString(2, vehicle.getRegistrationNo());
+                    ps.setInt(3, makeId);
+                    ps.setString(4, vehicle.getModel());
+                    ps.setInt(5, vehicle.getYear());
+                    ps.setInt(6, colorId);
+                    ps.setDouble(7, vehicle.getDailyRate());
+                    ps.setInt(8, ownerId);
+                    ps.setBoolean(9, vehicle.isUserListed());
+                    ps.setString(10, vehicle.getLocation());
+                    return ps.executeUpdate();
+                }
+            });
+            vehicleOwners.put(vehicleId, ownerId);
+            register('V', vehicleId, shard);
+            logEvent("VEHICLE_ADDED", vehicle.getRegistrationNo() + " added", ownerId);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error adding vehicle: " + e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ========== RENTALS ==========
+    @Override public List<Rental> getRentalsByUserId(int userId) {
+        List<List<Sorted<Rental>>> runs = scatter("getRentalsByUserId", conn -> {
+            List<Sorted<Rental>> run = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(RENTAL_SQL + "WHERE r.UserID = ? ORDER BY r.RentalID DESC")) {
+                ps.setInt(1, userId);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    Rental r = DataStore.readRental(rs);
+                    run.add(new Sorted<>(r, -r.getRentalId(), 0));
+                }
+            }
+            return run;
+        });
+        return merge(runs, Integer.MAX_VALUE);
+    }
+
+    @Override public List<Rental> getPendingRentals() {
+        List<List<Sorted<Rental>>> runs = scatter("getPendingRentals", conn -> {
+            List<Sorted<Rental>> run = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(PENDING_SQL + "WHERE rs.StatusName = 'PENDING' ORDER BY r.CreatedAt, r.RentalID")) {
+                while (rs.next()) {
+                    Rental r = DataStore.readRental(rs);
+                    run.add(new Sorted<>(r, rs.getTimestamp(9).getTime(), r.getRentalId()));
+                }
+            }
+            return run;
+        });
+        return merge(runs, Integer.MAX_VALUE);
+    }
+
+    @Override public Double createRental(int userId, int vehicleId, LocalDate rentalDate, LocalDate returnDate, String idemKey) {
+        Integer owner = ownerOf(vehicleId);
+        if (owner == null) {
+            System.err.println("[✗] Error creating rental: Vehicle not available");
+            return null;
+        }
+        // Renter's wallet and the owner's vehicle must not move mid-booking
+        ReentrantReadWriteLock.ReadLock first = ownerLock(Math.min(userId, owner)), second = ownerLock(Math.max(userId, owner));
+        first.lock();
+        second.lock();
+        try {
+            int home = shardOf('U', userId), shard = shardOf('V', vehicleId);
+            if (home < 0 || shard < 0) return null;
+            Booking booking = home == shard ? book(shard, userId, vehicleId, rentalDate, returnDate, idemKey)
+                                            : bookAcrossShards(home, shard, userId, vehicleId, rentalDate, returnDate, idemKey);
+            if (booking == null) return null;
+            // sp_CreateRental wrote the RENTAL_CREATED log row on the vehicle's shard
+            register('R', booking.rentalId, shard);
+            return booking.balance;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error creating rental: " + e.getMessage());
+            return null;
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    private Booking book(int shard, int userId, int vehicleId, LocalDate rentalDate, LocalDate returnDate, String idemKey) {
+        try {
+            int rentalId = IdAllocator.RENTALS.next();
+            int transactionId = IdAllocator.TRANSACTIONS.next();
+            return on(shard, "sp_CreateRental", Resilience.Policy.KEYED_PROCEDURE, conn -> {
+                try (CallableStatement cs = conn.prepareCall("{call sp_CreateRental(?, ?, ?, ?, ?, ?, ?, ?)}")) {
+                    cs.setInt(1, userId);
+                    cs.setInt(2, vehicleId);
+                    cs.setDate(3, Date.valueOf(rentalDate));
+                    cs.setDate(4, Date.valueOf(returnDate));
+                    cs.setString(5, idemKey);
+                    cs.setInt(6, rentalId);
+                    cs.setInt(7, transactionId);
+                    cs.setNull(8, Types.BIGINT);   // PricingEngine does not run over shards
+                    ResultSet rs = cs.executeQuery();
+                    if (!rs.next() || !rs.getString("Status").equals("SUCCESS")) return null;
+                    return new Booking(rs.getInt("RentalID"), rs.getDouble("TotalAmount"), rs.getDouble("NewBalance"));
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error creating rental: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The renter's money moves from the home shard to a guest account next to the vehicle, then
+    // sp_CreateRental charges it there. Every step has its own key derived from the request's,
+    // so a retried request replays the steps that already happened.
+    private Booking bookAcrossShards(int home, int shard, int userId, int vehicleId,
+                                     LocalDate rentalDate, LocalDate returnDate, String idemKey) throws SQLException {
+        ensureGuest(shard, userId);
+        double amount = on(shard, "rentalPrice", Resilience.Policy.READ, conn -> {
+            // Same price rule as sp_CreateRental without a quote
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT v.DailyRate * DATEDIFF(?, ?) FROM Vehicles v WHERE v.VehicleID = ?")) {
+                ps.setDate(1, Date.valueOf(returnDate));
+                ps.setDate(2, Date.valueOf(rentalDate));
+                ps.setInt(3, vehicleId);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? rs.getDouble(1) : 0.0;
+            }
+        });
+        if (amount <= 0) {
+            System.err.println("[✗] Error creating rental: Invalid rental period");
+            return null;
+        }
+        Double balance = adjustOn(home, userId, -amount, stepKey(idemKey, "debit"));
+        if (balance == null) return null;
+        if (adjustOn(shard, userId, amount, stepKey(idemKey, "fund")) == null) {
+            adjustOn(home, userId, amount, stepKey(idemKey, "refund"));
+            return null;
+        }
+        Booking booking = book(shard, userId, vehicleId, rentalDate, returnDate, idemKey);
+        if (booking == null) {
+            adjustOn(shard, userId, -amount, stepKey(idemKey, "unfund"));
+            adjustOn(home, userId, amount, stepKey(idemKey, "refund"));
+            return null;
+        }
+        double unused = Math.round((amount - booking.amount) * 100) / 100.0;
+        if (unused > 0) {
+            adjustOn(shard, userId, -unused, stepKey(idemKey, "sweep"));
+            Double returned = adjustOn(home, userId, unused, stepKey(idemKey, "return"));
+            if (returned != null) balance = returned;
+        }
+        // The guest row's balance is not the renter's; report the home shard's
+        return new Booking(booking.rentalId, booking.amount, balance);
+    }
+
+    @Override public boolean approveRental(int rentalId, int adminUserId, String idemKey) {
+        int shard = shardOf('R', rentalId);
+        if (shard < 0) {
+            System.err.println("[✗] Error approving rental: Rental is not pending approval");
+            return false;
+        }
+        Integer owner;
+        try {
+            owner = on(shard, "rentalOwner", Resilience.Policy.READ, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT v.OwnerID FROM Rentals r JOIN Vehicles v ON r.VehicleID = v.VehicleID WHERE r.RentalID = ?")) {
+                    ps.setInt(1, rentalId);
+                    ResultSet rs = ps.executeQuery();
+                    return rs.next() ? rs.getInt(1) : null;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error approving rental: " + e.getMessage());
+            return false;
+        }
+        if (owner == null) return false;
+        // The owner's wallet is credited on this shard, so the owner must not be mid-move
+        ReentrantReadWriteLock.ReadLock lock = ownerLock(owner);
+        lock.lock();
+        try {
+            int current = shardOf('R', rentalId);
+            ensureGuest(current, adminUserId);
+            Boolean replayed = on(current, "sp_ApproveRental", Resilience.Policy.KEYED_PROCEDURE, conn -> {
+                try (CallableStatement cs = conn.prepareCall("{call sp_ApproveRental(?, ?, ?)}")) {
+                    cs.setInt(1, rentalId);
+                    cs.setInt(2, adminUserId);
+                    cs.setString(3, idemKey);
+                    ResultSet rs = cs.executeQuery();
+                    if (!rs.next() || !rs.getString("Status").equals("SUCCESS")) return null;
+                    return rs.getBoolean("Replayed");
+                }
+            });
+            if (replayed == null) return false;
+            if (!replayed) logEvent("RENTAL_APPROVED", "Rental " + rentalId + " approved", adminUserId);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[✗] Error approving rental: " + e.getMessage());
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ========== TRANSACTIONS AND LOGS ==========
+    @Override public double getTotalAdminProfit() {
+        double total = 0;
+        for (double profit : scatter("getTotalAdminProfit", conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT SUM(AdminCommission) FROM Transactions WHERE Status = 'COMPLETED'")) {
+                return rs.next() ? rs.getDouble(1) : 0.0;
+            }
+        })) {
+            total += profit;
+        }
+        return total;
+    }
+
+    // Logs go to the user's home shard (SystemLogs.UserID references Users there)
+    @Override public void logEvent(String logType, String message, int userId) {
+        int shard = userId > 0 ? shardOf('U', userId) : DIRECTORY;
+        try {
+            on(shard < 0 ? DIRECTORY : shard, "logEvent", Resilience.Policy.WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("INSERT INTO SystemLogs (LogType, LogMessage, UserID) VALUES (?, ?, ?)")) {
+                    ps.setString(1, logType);
+                    ps.setString(2, message);
+                    if (userId > 0 && shard >= 0) {
+                        ps.setInt(3, userId);
+                    } else {
+                        ps.setNull(3, Types.INTEGER);
+                    }
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException | DataAccessException e) {
+            System.err.println("[✗] Failed to log event: " + e.getMessage());
+        }
+    }
+
+    @Override public void printDatabaseStats() {
+        System.out.println("\n=== DATABASE STATISTICS (" + shards.size() + " shards) ===");
+        String[] tables = {"Users", "Vehicles", "Rentals", "Transactions", "SystemLogs"};
+        long[] totals = new long[tables.length];
+        for (Shard shard : shards) {
+            StringBuilder line = new StringBuilder("Shard " + shard.index + ":");
+            try {
+                long[] counts = on(shard.index, "printDatabaseStats", Resilience.Policy.READ, conn -> {
+                    long[] c = new long[tables.length];
+                    try (Statement stmt = conn.createStatement()) {
+                        for (int t = 0; t < tables.length; t++) {
+                            String where = tables[t].equals("Users") ? " WHERE IsGuest = FALSE" : "";
+                            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + tables[t] + where)) {
+                                rs.next();
+                                c[t] = rs.getLong(1);
+                            }
+                        }
+                    }
+                    return c;
+                });
+                for (int t = 0; t < tables.length; t++) {
+                    line.append(' ').append(tables[t]).append('=').append(counts[t]);
+                    totals[t] += counts[t];
+                }
+            } catch (SQLException | DataAccessException e) {
+                line.append(" Error - ").append(e.getMessage());
+            }
+            System.out.println(line);
+        }
+        for (int t = 0; t < tables.length; t++) {
+            System.out.println(tables[t] + ": " + totals[t] + " rows");
+        }
+        System.out.println("===========================\n");
+    }
+
+    @Override public void viewSystemLogs() {
+        List<List<Sorted<String>>> runs = scatter("viewSystemLogs", conn -> {
+            List<Sorted<String>> run = new ArrayList<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT * FROM SystemLogs ORDER BY CreatedAt DESC, LogID DESC LIMIT " + LOG_LIMIT)) {
+                while (rs.next()) {
+                    String message = rs.getString("LogMessage");
+                    String line = String.format("%-5d %-20s %-40s %-10d %-20s",
+                        rs.getInt("LogID"), rs.getString("LogType"),
+                        message.length() > 40 ? message.substring(0, 37) + "..." : message,
+                        rs.getInt("UserID"), rs.getTimestamp("CreatedAt").toString().substring(0, 19));
+                    run.add(new Sorted<>(line, -rs.getTimestamp("CreatedAt").getTime(), -rs.getInt("LogID")));
+                }
+            }
+            return run;
+        });
+        System.out.println("\n=== RECENT SYSTEM LOGS (all shards) ===");
+        System.out.printf("%-5s %-20s %-40s %-10s %-20s\n", "ID", "Type", "Message", "UserID", "Timestamp");
+        System.out.println("----------------------------------------------------------------------------------------");
+        for (String line : merge(runs, LOG_LIMIT)) System.out.println(line);
+        System.out.println("----------------------------------------------------------------------------------------\n");
+    }
+
+    // ========== SHARD SPLIT ==========
+    // Moves every other owner on one shard (by a hash of the user id) to another shard
+    synchronized boolean startSplit(int from, int to) {
+        if (from == to || from < 0 || to < 0 || from >= shards.size() || to >= shards.size()) {
+            System.out.println("[-] Pick two different shards between 0 and " + (shards.size() - 1) + ".");
+            return false;
+        }
+        if (splitThread != null && splitThread.isAlive()) {
+            System.out.println("[-] A split is already running.");
+            return false;
+        }
+        splitThread = new Thread(() -> split(from, to), "shard-split");
+        splitThread.setDaemon(true);
+        splitThread.start();
+        System.out.println("[✓] Moving half of shard " + from + "'s owners to shard " + to + " in the background.");
+        return true;
+    }
+
+    private void split(int from, int to) {
+        long start = System.currentTimeMillis();
+        List<Integer> owners = new ArrayList<>();
+        try (Connection dir = shards.get(DIRECTORY).open();
+             PreparedStatement ps = dir.prepareStatement(
+                 "SELECT EntityID FROM ShardDirectory WHERE EntityType = 'U' AND ShardID = ? ORDER BY EntityID")) {
+            ps.setInt(1, from);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                int userId = rs.getInt(1);
+                if ((Integer.rotateLeft(userId * 0x9E3779B9, 16) & 1) == 1) owners.add(userId);
+            }
+        } catch (SQLException e) {
+            splitStatus = "Split " + from + " -> " + to + " failed: " + e.getMessage();
+            return;
+        }
+        int moved = 0;
+        for (int userId : owners) {
+            splitStatus = "Split " + from + " -> " + to + ": " + moved + "/" + owners.size() + " owners moved";
+            try {
+                moveOwner(userId, from, to);
+                moved++;
+            } catch (SQLException e) {
+                splitStatus = "Split " + from + " -> " + to + " stopped at user " + userId + " after " + moved +
+                              " owners: " + e.getMessage() + " (running it again resumes)";
+                DataStore.logEvent("SHARD_SPLIT", splitStatus, 0);
+                return;
+            }
+        }
+        splitStatus = "Split " + from + " -> " + to + " finished: " + moved + " owners moved in " +
+                      (System.currentTimeMillis() - start) / 1000 + "s";
+        DataStore.logEvent("SHARD_SPLIT", splitStatus, 0);
+    }
+
+    // Copies the owner (user row, vehicles, their rentals and transactions) to the target,
+    // flips the directory, then removes it from the source; the source keeps a guest row for
+    // rentals the user made on other owners' vehicles. Copies are upserts, so a move that was
+    // interrupted before the directory flip is simply repeated. The wallet leaves the source as
+    // a TRANSFER_OUT and arrives as a TRANSFER_IN of whatever the target row did not hold yet,
+    // each in its shard's transaction, so a repeated copy posts only the difference.
+    private void moveOwner(int userId, int from, int to) throws SQLException {
+        ReentrantReadWriteLock.WriteLock lock = ownerLocks[Math.floorMod(userId, LOCK_STRIPES)].writeLock();
+        lock.lock();
+        try (Connection src = shards.get(from).open();
+             Connection dst = shards.get(to).open()) {
+            if (shardOf('U', userId) != from) return;
+            List<Integer> vehicles = ids(src, "SELECT VehicleID FROM Vehicles WHERE OwnerID = " + userId);
+            List<Integer> rentals = vehicles.isEmpty() ? new ArrayList<>()
+                : ids(src, "SELECT RentalID FROM Rentals WHERE VehicleID IN (" + join(vehicles) + ")");
+            List<Integer> transactions = rentals.isEmpty() ? new ArrayList<>()
+                : ids(src, "SELECT TransactionID FROM Transactions WHERE RentalID IN (" + join(rentals) + ")");
+
+            dst.setAutoCommit(false);
+            try {
+                // A zero-balance guest row first, so the upsert below never fires the opening trigger
+                copyRows(src, dst, "Users", "UserID = " + userId, null, false);
+                double arrived = lockedBalance(dst, userId);
+                copyRows(src, dst, "Users", "UserID = " + userId, null, true);
+                postDifference(dst, userId, WalletLedger.Kind.TRANSFER_IN, arrived, lockedBalance(dst, userId));
+                if (!rentals.isEmpty()) {
+                    // Renters, approvers and payers referenced by the moved rows
+                    List<Integer> people = ids(src, "SELECT UserID FROM Rentals WHERE RentalID IN (" + join(rentals) + ") " +
+                                                    "UNION SELECT ApprovedBy FROM Rentals WHERE ApprovedBy IS NOT NULL AND RentalID IN (" + join(rentals) + ") " +
+                                                    (transactions.isEmpty() ? "" : "UNION SELECT UserID FROM Transactions WHERE TransactionID IN (" + join(transactions) + ")"));
+                    people.remove(Integer.valueOf(userId));
+                    if (!people.isEmpty()) copyRows(src, dst, "Users", "UserID IN (" + join(people) + ")", null, false);
+                }
+                if (!vehicles.isEmpty()) {
+                    Map<String, Map<Object, Object>> remap = new HashMap<>();
+                    remap.put("MakeID", lookupRemap(src, dst, "VehicleMakes", "MakeID", "MakeName"));
+                    remap.put("ColorID", lookupRemap(src, dst, "VehicleColors", "ColorID", "ColorName"));
+                    copyRows(src, dst, "Vehicles", "VehicleID IN (" + join(vehicles) + ")", remap, true);
+                }
+                if (!rentals.isEmpty()) copyRows(src, dst, "Rentals", "RentalID IN (" + join(rentals) + ")", null, true);
+                if (!transactions.isEmpty()) copyRows(src, dst, "Transactions", "TransactionID IN (" + join(transactions) + ")", null, true);
+                dst.commit();
+            } catch (SQLException e) {
+                dst.rollback();
+                throw e;
+            }
+
+            register('U', userId, to);
+            for (int id : vehicles) register('V', id, to);
+            for (int id : rentals) register('R', id, to);
+            guests.removeIf(k -> (int) (long) k == userId);
+
+            src.setAutoCommit(false);
+            try (Statement stmt = src.createStatement()) {
+                Double left = lockedBalance(src, userId);
+                if (left != null) postDifference(src, userId, WalletLedger.Kind.TRANSFER_OUT, left, 0);
+                if (!transactions.isEmpty()) stmt.executeUpdate("DELETE FROM Transactions WHERE TransactionID IN (" + join(transactions) + ")");
+                if (!rentals.isEmpty()) stmt.executeUpdate("DELETE FROM Rentals WHERE RentalID IN (" + join(rentals) + ")");
+                if (!vehicles.isEmpty()) {
+                    stmt.executeUpdate("DELETE FROM PriceQuotes WHERE VehicleID IN (" + join(vehicles) + ")");
+                    stmt.executeUpdate("DELETE FROM Vehicles WHERE VehicleID IN (" + join(vehicles) + ")");
+                }
+                stmt.executeUpdate("UPDATE Users SET IsGuest = TRUE, WalletBalance = 0, Username = CONCAT('guest#', UserID), " +
+                                   "Email = CONCAT('guest', UserID, '@shards.local') WHERE UserID = " + userId);
+                src.commit();
+            } catch (SQLException e) {
+                src.rollback();
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static List<Integer> ids(Connection conn, String sql) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+
+    private static String join(List<Integer> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (int id : ids) sb.append(sb.length() == 0 ? "" : ",").append(id);
+        return sb.toString();
+    }
+
+    // Lookup ids can differ between shards; maps source ids to target ids by name
+    private static Map<Object, Object> lookupRemap(Connection src, Connection dst, String table,
+                                                   String idColumn, String nameColumn) throws SQLException {
+        Map<Object, Object> remap = new HashMap<>();
+        try (Statement stmt = src.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + idColumn + ", " + nameColumn + " FROM " + table)) {
+            while (rs.next()) remap.put(rs.getInt(1), lookupId(dst, table, nameColumn, idColumn, rs.getString(2)));
+        }
+        return remap;
+    }
+
+    // Copies rows by primary key: real rows are upserted, guest rows only added if missing
+    private static void copyRows(Connection src, Connection dst, String table, String where,
+                                 Map<String, Map<Object, Object>> remap, boolean real) throws SQLException {
+        try (Statement stmt = src.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " WHERE " + where)) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int n = meta.getColumnCount();
+            StringBuilder cols = new StringBuilder(), marks = new StringBuilder(), updates = new StringBuilder();
+            for (int c = 1; c <= n; c++) {
+                String col = meta.getColumnName(c);
+                cols.append(c > 1 ? ", " : "").append(col);
+                marks.append(c > 1 ? ", " : "").append('?');
+                updates.append(c > 1 ? ", " : "").append(col).append(" = VALUES(").append(col).append(')');
+            }
+            String sql = real ? "INSERT INTO " + table + " (" + cols + ") VALUES (" + marks + ") ON DUPLICATE KEY UPDATE " + updates
+                              : "INSERT IGNORE INTO " + table + " (" + cols + ") VALUES (" + marks + ")";
+            try (PreparedStatement ps = dst.prepareStatement(sql)) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    for (int c = 1; c <= n; c++) {
+                        String col = meta.getColumnName(c);
+                        Object value = rs.getObject(c);
+                        if (remap != null && remap.containsKey(col)) value = remap.get(col).get(value);
+                        if (table.equals("Users")) {
+                            if (col.equals("IsGuest")) value = !real;
+                            if (!real && col.equals("WalletBalance")) value = 0;
+                            if (!real && col.equals("Username")) value = "guest#" + id;
+                            if (!real && col.equals("Email")) value = "guest" + id + "@shards.local";
+                        }
+                        ps.setObject(c, value);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    void printShards() {
+        System.out.println("\n=== SHARDS ===");
+        for (Shard shard : shards) System.out.println("Shard " + shard.index + ": " + shard.url);
+        System.out.println("Directory cache: " + userShards.size() + " users, " + vehicleShards.size() +
+                           " vehicles, " + rentalShards.size() + " rentals");
+        System.out.println(splitStatus);
+        System.out.println("==============\n");
+    }
+
+    @Override public void close() {
+        scatterPool.shutdownNow();
+        for (Shard shard : shards) shard.close();
+    }
+}
@@ -0,0 +1,42 @@
+// Vehicle Rental System - Storage Backend
+import java.time.LocalDate;
+import java.util.List;
+
+// STORAGE BACKEND
+// Alternative engine behind DataStore. DataStore's own methods are the MySQL implementation;
+// when a backend is installed with DataStore.useBackend() every call is delegated to it, so a
+// backend must keep the same results and side effects (including the sp_CreateRental and
+// sp_ApproveRental rules and the SystemLogs entries). Idempotency keys are passed through for
+// backends that store them; DataStore already rejects keys it has seen in this process.
+interface StorageBackend extends AutoCloseable {
+    // Users
+    User getUserByUsername(String username);
+    User getUserById(int userId);
+    boolean addUser(User user);
+    List<User> getAllUsers();
+    boolean updateUserWallet(int userId, double amount);
+    Double adjustWallet(int userId, double amount, String idemKey);
+
+    // Vehicles
+    List<Vehicle> getAvailableVehicles();
+    List<Vehicle> getUserListedVehicles(int ownerId);
+    Vehicle getVehicleById(int id);
+    boolean updateVehicleStatus(int vehicleId, String status);
+    boolean addVehicle(Vehicle vehicle);
+    boolean updateVehicleRate(int vehicleId, double newRate);
+
+    // Rentals
+    List<Rental> getRentalsByUserId(int userId);
+    List<Rental> getPendingRentals();
+    // Renter's wallet balance after the booking, or null if it was refused
+    Double createRental(int userId, int vehicleId, LocalDate rentalDate, LocalDate returnDate, String idemKey);
+    boolean approveRental(int rentalId, int adminUserId, String idemKey);
+
+    // Transactions and logs
+    double getTotalAdminProfit();
+    void logEvent(String logType, String message, int userId);
+    void printDatabaseStats();
+    void viewSystemLogs();
+
+    @Override void close();
+}
@@ -0,0 +1,37 @@
+// Vehicle Rental System - String Dictionary
+import java.util.*;
+
+// STRING DICTIONARY
+// Dictionary encoding for low-cardinality text columns (makes, locations, ...): each distinct
+// value gets a dense int code in first-seen order, so columns can be stored as int[] and
+// grouped by array index. Not thread-safe while encoding; read-only use after that is safe.
+class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    // Returns the code for value, assigning the next one if it is new (null is stored as "")
+    public int encode(String value) {
+        String key = value == null ? "" : value;
+        Integer code = codes.get(key);
+        if (code == null) {
+            code = values.size();
+            codes.put(key, code);
+            values.add(key);
+        }
+        return code;
+    }
+
+    // Returns the code for value, or -1 if it has never been encoded
+    public int lookup(String value) {
+        Integer code = codes.get(value == null ? "" : value);
+        return code == null ? -1 : code;
+    }
+
+    public String decode(int code) {
+        return values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,32 @@
+// Vehicle Rental System - User
+
+// USER
+class User {
+    private int userId; private String username; private String password; 
+    private String fullName; private String email; private String phone; 
+    private String role; private double walletBalance;
+    
+    public User(int userId, String username, String password, String fullName, 
+               String email, String phone, String role) {
+        this.userId = userId; this.username = username; this.password = password;
+        this.fullName = fullName; this.email = email; this.phone = phone;
+        this.role = role; this.walletBalance = 0.0;
+    }
+    
+    // Getters
+    public int getUserId() { return userId; } public String getUsername() { return username; }
+    public String getPassword() { return password; } public String getFullName() { return fullName; }
+    public String getEmail() { return email; } public String getPhone() { return phone; }
+    public String getRole() { return role; } public double getWalletBalance() { return walletBalance; }
+    
+    // Setters
+    public void setWalletBalance(double walletBalance) { this.walletBalance = walletBalance; }
+    public void addToWallet(double amount) { this.walletBalance += amount; }
+    public boolean deductFromWallet(double amount) {
+        if (this.walletBalance >= amount) { this.walletBalance -= amount; return true; }
+        return false;
+    }
+    @Override public String toString() {
+        return fullName + " (" + role + ") - Balance: $" + String.format("%.2f", walletBalance);
+    }
+}
@@ -0,0 +1,32 @@
+// Vehicle Rental System - Vehicle
+
+// VEHICLE
+class Vehicle {
+    private int vehicleId; private String registrationNo; private String make; private String model;
+    private int year; private String color; private double dailyRate; private String status;
+    private int ownerId; private boolean isUserListed; private String location;
+    
+    public Vehicle(int vehicleId, String registrationNo, String make, String model, 
+                  int year, String color, double dailyRate, String status, 
+                  int ownerId, boolean isUserListed, String location) {
+        this.vehicleId = vehicleId; this.registrationNo = registrationNo; this.make = make;
+        this.model = model; this.year = year; this.color = color; this.dailyRate = dailyRate;
+        this.status = status; this.ownerId = ownerId; this.isUserListed = isUserListed;
+        this.location = location;
+    }
+    
+    public int getVehicleId() { return vehicleId; } public String getRegistrationNo() { return registrationNo; }
+    public String getMake() { return make; } public String getModel() { return model; }
+    public int getYear() { return year; } public String getColor() { return color; }
+    public double getDailyRate() { return dailyRate; } public String getStatus() { return status; }
+    public int getOwnerId() { return ownerId; } public boolean isUserListed() { return isUserListed; }
+    public String getLocation() { return location; }
+    
+    public void setStatus(String status) { this.status = status; }
+    public void setDailyRate(double dailyRate) { this.dailyRate = dailyRate; }
+    @Override public String toString() {
+        return String.format("%d. %s %s (%d) - $%.2f/day - %s - %s - %s", 
+            vehicleId, make, model, year, dailyRate, status, 
+            isUserListed ? "User" : "Company", location);
+    }
+}
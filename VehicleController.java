@@ -0,0 +1,31 @@
+// Vehicle Rental System - Vehicle Controller
+import java.util.*;
+
+// VEHICLE CONTROLLER
+class VehicleController {
+    public List<Vehicle> getAvailableVehicles() {
+        return DataStore.getAvailableVehicles();
+    }
+    
+    public Vehicle getVehicleById(int id) {
+        return DataStore.getVehicleById(id);
+    }
+    
+    public boolean addCompanyVehicle(String regNo, String make, String model, int year, 
+                                     String color, double dailyRate, String location) {
+        return DataStore.addVehicle(new Vehicle(0, regNo, make, model, year, color, dailyRate, "AVAILABLE", 0, false, location));
+    }
+    
+    public boolean addUserVehicle(int ownerId, String regNo, String make, String model, int year, 
+                                  String color, double dailyRate, String location) {
+        return DataStore.addVehicle(new Vehicle(0, regNo, make, model, year, color, dailyRate, "AVAILABLE", ownerId, true, location));
+    }
+    
+    public List<Vehicle> getUserVehicles(int ownerId) {
+        return DataStore.getUserListedVehicles(ownerId);
+    }
+    
+    public boolean updateVehicleRate(int vehicleId, double newRate) {
+        return DataStore.updateVehicleRate(vehicleId, newRate);
+    }
+}
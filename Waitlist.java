@@ -0,0 +1,372 @@
+// Vehicle Rental System - Waitlist
+import java.sql.*;
+import java.sql.Date;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+
+// WAITLIST
+// Customers who find a vehicle taken can queue for it instead of retrying. Each vehicle has a
+// FIFO queue in memory, mirrored in WaitlistEntries (migration V9) and reloaded at startup.
+// The waitlist follows VEHICLE events on the event bus: when a vehicle becomes AVAILABLE again
+// (its rental was rejected, expired or completed) the first waiter whose dates are still ahead
+// is offered the car and it is held for them for OFFER_HOLD. While the hold lasts, other
+// customers are turned away in memory, without running sp_CreateRental. An offer that runs out
+// passes to the next waiter.
+class Waitlist {
+    private static final Duration OFFER_HOLD = Duration.ofMinutes(15);
+    private static final int TICK_SECONDS = 30;
+    private static final DateTimeFormatter HOLD_TIME = DateTimeFormatter.ofPattern("HH:mm");
+
+    static final class Entry {
+        final int entryId, vehicleId, userId;
+        final LocalDate rentalDate, returnDate;
+        volatile long offerExpiresAt;   // 0 while waiting
+
+        Entry(int entryId, int vehicleId, int userId, LocalDate rentalDate, LocalDate returnDate) {
+            this.entryId = entryId;
+            this.vehicleId = vehicleId;
+            this.userId = userId;
+            this.rentalDate = rentalDate;
+            this.returnDate = returnDate;
+        }
+
+        boolean isOffered() { return offerExpiresAt > 0; }
+    }
+
+    private static Waitlist instance;
+
+    // Both maps guarded by this
+    private final Map<Integer, Deque<Entry>> queues = new HashMap<>();
+    private final Map<Integer, Entry> offers = new HashMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private int availableStatusId;
+    private ScheduledExecutorService executor;
+    private EventBus.Subscription subscription;
+    private long joined, offered, accepted, lapsed, turnedAway;
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start() {
+        if (instance != null) return;
+        Waitlist waitlist = new Waitlist();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            waitlist.load(conn);
+        } catch (SQLException e) {
+            System.err.println("[✗] Waitlist not started: " + e.getMessage());
+            return;
+        }
+        waitlist.subscription = EventBus.subscribe("waitlist", waitlist::onEvents, "VEHICLE");
+        waitlist.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "waitlist");
+            t.setDaemon(true);
+            return t;
+        });
+        waitlist.executor.scheduleWithFixedDelay(waitlist::expireOffers, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+        instance = waitlist;
+        System.out.println("[✓] Waitlist ready with " + waitlist.waiting() + " waiting customers.");
+    }
+
+    public static synchronized void stop() {
+        if (instance == null) return;
+        instance.executor.shutdown();
+        if (instance.subscription != null) EventBus.unsubscribe(instance.subscription);
+        instance = null;
+    }
+
+    static boolean isRunning() {
+        return instance != null;
+    }
+
+    private void load(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT StatusID FROM VehicleStatuses WHERE StatusName = 'AVAILABLE'")) {
+            availableStatusId = rs.next() ? rs.getInt(1) : 1;
+        }
+        String sql = "SELECT EntryID, VehicleID, UserID, RentalDate, ReturnDate, Status, OfferExpiresAt " +
+                     "FROM WaitlistEntries WHERE Status IN ('WAITING', 'OFFERED') ORDER BY EntryID";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                Entry e = new Entry(rs.getInt(1), rs.getInt(2), rs.getInt(3),
+                                    rs.getDate(4).toLocalDate(), rs.getDate(5).toLocalDate());
+                if (rs.getString(6).equals("OFFERED")) {
+                    e.offerExpiresAt = rs.getTimestamp(7).getTime();
+                    offers.put(e.vehicleId, e);
+                } else {
+                    queues.computeIfAbsent(e.vehicleId, k -> new ArrayDeque<>()).addLast(e);
+                }
+            }
+        }
+    }
+
+    private synchronized int waiting() {
+        int n = 0;
+        for (Deque<Entry> q : queues.values()) n += q.size();
+        return n;
+    }
+
+    // ========== CUSTOMER API ==========
+    // Queues the user for a vehicle; returns their position (1 = next) or -1
+    public static int join(int userId, int vehicleId, LocalDate rentalDate, LocalDate returnDate) {
+        Waitlist w = instance;
+        if (w == null) return -1;
+        synchronized (w) {
+            Deque<Entry> queue = w.queues.get(vehicleId);
+            Entry offer = w.offers.get(vehicleId);
+            if (offer != null && offer.userId == userId) return 0;
+            if (queue != null) {
+                int position = 1;
+                for (Entry e : queue) {
+                    if (e.userId == userId) return position;
+                    position++;
+                }
+            }
+        }
+        Entry entry;
+        try {
+            entry = new Entry(IdAllocator.WAITLIST.next(), vehicleId, userId, rentalDate, returnDate);
+            Resilience.call("waitlist join", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT IGNORE INTO WaitlistEntries (EntryID, VehicleID, UserID, RentalDate, ReturnDate, Status) " +
+                        "VALUES (?, ?, ?, ?, ?, 'WAITING')")) {
+                    ps.setInt(1, entry.entryId);
+                    ps.setInt(2, vehicleId);
+                    ps.setInt(3, userId);
+                    ps.setDate(4, Date.valueOf(rentalDate));
+                    ps.setDate(5, Date.valueOf(returnDate));
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("[✗] Error joining waitlist: " + e.getMessage());
+            return -1;
+        }
+        int position;
+        synchronized (w) {
+            Deque<Entry> queue = w.queues.computeIfAbsent(vehicleId, k -> new ArrayDeque<>());
+            queue.addLast(entry);
+            position = queue.size();
+            w.joined++;
+        }
+        DataStore.logEvent("WAITLIST_JOINED", "User " + userId + " waiting for vehicle " + vehicleId, userId);
+        // The vehicle may have been released while the customer was deciding
+        Vehicle v = DataStore.getVehicleById(vehicleId);
+        if (v != null && v.getStatus().equals("AVAILABLE")) w.offerNext(vehicleId);
+        return position;
+    }
+
+    // False while the vehicle is held for another customer
+    public static boolean mayBook(int userId, int vehicleId) {
+        Waitlist w = instance;
+        if (w == null) return true;
+        synchronized (w) {
+            Entry offer = w.offers.get(vehicleId);
+            if (offer == null || offer.userId == userId || offer.offerExpiresAt < System.currentTimeMillis()) return true;
+            w.turnedAway++;
+            return false;
+        }
+    }
+
+    // A successful booking settles the user's offer or queue entry for that vehicle
+    public static void booked(int userId, int vehicleId) {
+        Waitlist w = instance;
+        if (w == null) return;
+        Entry settled = null;
+        synchronized (w) {
+            Entry offer = w.offers.get(vehicleId);
+            if (offer != null && offer.userId == userId) {
+                w.offers.remove(vehicleId);
+                w.accepted++;
+                settled = offer;
+            } else {
+                Deque<Entry> queue = w.queues.get(vehicleId);
+                if (queue != null) {
+                    for (Iterator<Entry> it = queue.iterator(); it.hasNext(); ) {
+                        Entry e = it.next();
+                        if (e.userId == userId) {
+                            it.remove();
+                            settled = e;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (settled != null) w.persist(settled, "ACCEPTED");
+    }
+
+    public static boolean leave(int userId, int entryId) {
+        Waitlist w = instance;
+        if (w == null) return false;
+        Entry removed = null;
+        synchronized (w) {
+            for (Deque<Entry> queue : w.queues.values()) {
+                for (Iterator<Entry> it = queue.iterator(); it.hasNext(); ) {
+                    Entry e = it.next();
+                    if (e.entryId == entryId && e.userId == userId) {
+                        it.remove();
+                        removed = e;
+                    }
+                }
+            }
+            Entry offer = null;
+            for (Entry e : w.offers.values()) {
+                if (e.entryId == entryId && e.userId == userId) offer = e;
+            }
+            if (offer != null) {
+                w.offers.remove(offer.vehicleId);
+                removed = offer;
+            }
+        }
+        if (removed == null) return false;
+        w.persist(removed, "CANCELLED");
+        if (removed.isOffered()) w.offerNext(removed.vehicleId);
+        return true;
+    }
+
+    // The user's entries: offers first, then queue positions
+    public static List<String> describeFor(int userId) {
+        List<String> lines = new ArrayList<>();
+        Waitlist w = instance;
+        if (w == null) return lines;
+        synchronized (w) {
+            for (Entry e : w.offers.values()) {
+                if (e.userId == userId) {
+                    lines.add(String.format("#%d Vehicle %d  %s to %s  OFFERED - held for you until %s",
+                        e.entryId, e.vehicleId, e.rentalDate, e.returnDate,
+                        Instant.ofEpochMilli(e.offerExpiresAt).atZone(w.zone).format(HOLD_TIME)));
+                }
+            }
+            for (Deque<Entry> queue : w.queues.values()) {
+                int position = 1;
+                for (Entry e : queue) {
+                    if (e.userId == userId) {
+                        lines.add(String.format("#%d Vehicle %d  %s to %s  position %d",
+                            e.entryId, e.vehicleId, e.rentalDate, e.returnDate, position));
+                    }
+                    position++;
+                }
+            }
+        }
+        return lines;
+    }
+
+    public static int offerCount(int userId) {
+        Waitlist w = instance;
+        if (w == null) return 0;
+        int n = 0;
+        synchronized (w) {
+            for (Entry e : w.offers.values()) {
+                if (e.userId == userId) n++;
+            }
+        }
+        return n;
+    }
+
+    // Unexpired offer made to the user under that entry id, or null
+    public static Entry offerFor(int userId, int entryId) {
+        Waitlist w = instance;
+        if (w == null) return null;
+        synchronized (w) {
+            for (Entry e : w.offers.values()) {
+                if (e.entryId == entryId && e.userId == userId && e.offerExpiresAt >= System.currentTimeMillis()) return e;
+            }
+        }
+        return null;
+    }
+
+    // ========== OFFERS ==========
+    private void onEvents(List<EventBus.Event> events) {
+        for (EventBus.Event e : events) {
+            if (e.type.equals("VEHICLE_UPDATED") && e.intField("statusId") == availableStatusId &&
+                e.intField("oldStatusId") != availableStatusId) {
+                offerNext(e.aggregateId);
+            }
+        }
+    }
+
+    // Holds the vehicle for the first waiter whose rental has not started yet
+    private void offerNext(int vehicleId) {
+        LocalDate today = LocalDate.now(zone);
+        List<Entry> stale = new ArrayList<>();
+        Entry next = null;
+        synchronized (this) {
+            if (offers.containsKey(vehicleId)) return;
+            Deque<Entry> queue = queues.get(vehicleId);
+            while (queue != null && !queue.isEmpty()) {
+                Entry e = queue.pollFirst();
+                if (e.rentalDate.isBefore(today)) {
+                    stale.add(e);
+                    continue;
+                }
+                e.offerExpiresAt = System.currentTimeMillis() + OFFER_HOLD.toMillis();
+                offers.put(vehicleId, e);
+                offered++;
+                next = e;
+                break;
+            }
+            if (queue != null && queue.isEmpty()) queues.remove(vehicleId);
+        }
+        for (Entry e : stale) persist(e, "EXPIRED");
+        if (next != null) {
+            persist(next, "OFFERED");
+            DataStore.logEvent("WAITLIST_OFFER", "Vehicle " + vehicleId + " held for user " + next.userId, next.userId);
+        }
+    }
+
+    private void expireOffers() {
+        long now = System.currentTimeMillis();
+        List<Entry> lapsedOffers = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Entry> it = offers.values().iterator(); it.hasNext(); ) {
+                Entry e = it.next();
+                if (e.offerExpiresAt < now) {
+                    it.remove();
+                    lapsedOffers.add(e);
+                    lapsed++;
+                }
+            }
+        }
+        for (Entry e : lapsedOffers) {
+            persist(e, "EXPIRED");
+            Vehicle v = DataStore.getVehicleById(e.vehicleId);
+            if (v != null && v.getStatus().equals("AVAILABLE")) offerNext(e.vehicleId);
+        }
+    }
+
+    private void persist(Entry e, String status) {
+        try {
+            Resilience.call("waitlist update", Resilience.Policy.IDEMPOTENT_WRITE, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE WaitlistEntries SET Status = ?, OfferExpiresAt = ? WHERE EntryID = ?")) {
+                    ps.setString(1, status);
+                    if (status.equals("OFFERED")) {
+                        ps.setTimestamp(2, new Timestamp(e.offerExpiresAt));
+                    } else {
+                        ps.setNull(2, Types.TIMESTAMP);
+                    }
+                    ps.setInt(3, e.entryId);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException | DataAccessException ex) {
+            System.err.println("[✗] Error saving waitlist entry #" + e.entryId + ": " + ex.getMessage());
+        }
+    }
+
+    public static void printStatus() {
+        Waitlist w = instance;
+        if (w == null) {
+            System.out.println("Waitlist is not running.");
+            return;
+        }
+        synchronized (w) {
+            System.out.println("\n=== WAITLIST ===");
+            System.out.println("Waiting: " + w.waiting() + " on " + w.queues.size() + " vehicles  Held offers: " + w.offers.size());
+            System.out.println("Joined: " + w.joined + "  Offered: " + w.offered + "  Accepted: " + w.accepted +
+                               "  Lapsed: " + w.lapsed + "  Bookings turned away during holds: " + w.turnedAway);
+            System.out.println("================\n");
+        }
+    }
+}
@@ -0,0 +1,349 @@
+// Vehicle Rental System - Wallet Ledger
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// WALLET LEDGER
+// Every change to Users.WalletBalance posts one WalletLedger row in the transaction that makes
+// it: sp_CreateRental (RENTAL_DEBIT), sp_ApproveRental (OWNER_PAYOUT), sp_AdjustWallet (TOPUP,
+// PAYMENT), the scheduler's expiry refunds (REFUND), DataStore.updateUserWallet (ADJUSTMENT),
+// ShardedStore's shard claims and owner moves (ADJUSTMENT, TRANSFER_OUT/TRANSFER_IN) and the
+// insert trigger on Users (OPENING). Rows are never updated or deleted. Amount is signed from
+// the wallet's side and the contra account takes the other side, so all wallets plus all contra
+// accounts always sum to zero. Each writer holds the user's row lock until it commits, so one
+// user's entries commit in EntryID order.
+//
+// Reconciliation splits users into fixed UserID ranges run on a pool, each on its own connection
+// inside one consistent snapshot: three range scans read the stored balances, each user's latest
+// checkpoint and the sum of the entries after it, and checkpoint + entries must equal the stored
+// balance. Users that agree and have new entries get a fresh checkpoint; users that disagree are
+// reported and never checkpointed, so a bad balance is not written into the books. A balance at
+// time T is the last checkpoint with AsOf <= T plus that user's later entries created by T, which
+// reads the entries since one checkpoint instead of the account's whole history.
+class WalletLedger {
+    static final String POST_SQL =
+        "INSERT INTO WalletLedger (UserID, Kind, Amount, ContraAccount, RentalID) VALUES (?, ?, ?, ?, ?)";
+    private static final int USERS_PER_PARTITION = Integer.getInteger("rental.ledger.partition", 20000);
+    private static final long INTERVAL_HOURS = Long.getLong("rental.ledger.hours", 24);
+    private static final int MAX_MISMATCHES = 1000;
+    private static final int CHECKPOINT_BATCH = 1000;
+
+    enum Kind {
+        OPENING("ADJUSTMENTS"), TOPUP("EXTERNAL"), PAYMENT("EXTERNAL"), RENTAL_DEBIT("RENTAL_CLEARING"),
+        OWNER_PAYOUT("RENTAL_CLEARING"), REFUND("RENTAL_CLEARING"), ADJUSTMENT("ADJUSTMENTS"),
+        TRANSFER_OUT("SHARD_TRANSFER"), TRANSFER_IN("SHARD_TRANSFER");
+
+        final String contra;
+
+        Kind(String contra) {
+            this.contra = contra;
+        }
+    }
+
+    // Binds one entry to a statement prepared from POST_SQL; amount is what the wallet gained
+    static void bind(PreparedStatement ps, int userId, Kind kind, double amount, Integer rentalId) throws SQLException {
+        ps.setInt(1, userId);
+        ps.setString(2, kind.name());
+        ps.setBigDecimal(3, BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP));
+        ps.setString(4, kind.contra);
+        if (rentalId != null) ps.setInt(5, rentalId);
+        else ps.setNull(5, Types.INTEGER);
+    }
+
+    // ========== SERVICE ==========
+    private static ScheduledExecutorService scheduler;
+    private static final AtomicBoolean running = new AtomicBoolean();
+    private static volatile Report last;
+
+    public static synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wallet-ledger");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            Report report = reconcile(true);
+            if (report != null && report.mismatchCount > 0) {
+                System.err.println("[!] Wallet reconciliation: " + report.mismatchCount + " balances disagree with the ledger");
+            }
+        }, INTERVAL_HOURS, INTERVAL_HOURS, TimeUnit.HOURS);
+    }
+
+    public static synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    public static void printStatus() {
+        Report report = last;
+        System.out.println("\n=== WALLET LEDGER ===");
+        if (report == null) {
+            System.out.println("No reconciliation has run since startup (every " + INTERVAL_HOURS + " h).");
+        } else {
+            System.out.println("Last reconciliation: " + report.finishedAt + " in " + report.millis + " ms");
+            report.printSummary();
+        }
+        System.out.println("=====================\n");
+    }
+
+    // ========== POINT IN TIME ==========
+    // Balance at the given instant in cents, or null for an unknown user
+    public static Long balanceAt(int userId, Timestamp at) throws SQLException {
+        String checkpointSql = "SELECT EntryID, Balance FROM WalletCheckpoints " +
+                               "WHERE UserID = ? AND AsOf <= ? ORDER BY EntryID DESC LIMIT 1";
+        String entriesSql = "SELECT COALESCE(SUM(Amount), 0) FROM WalletLedger " +
+                            "WHERE UserID = ? AND EntryID > ? AND CreatedAt <= ?";
+        return Resilience.call("walletBalanceAt", Resilience.Policy.READ, conn -> {
+            try (PreparedStatement user = conn.prepareStatement("SELECT 1 FROM Users WHERE UserID = ?")) {
+                user.setInt(1, userId);
+                try (ResultSet rs = user.executeQuery()) {
+                    if (!rs.next()) return null;
+                }
+            }
+            long fromEntry = 0, cents = 0;
+            try (PreparedStatement ps = conn.prepareStatement(checkpointSql)) {
+                ps.setInt(1, userId);
+                ps.setTimestamp(2, at);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        fromEntry = rs.getLong(1);
+                        cents = cents(rs.getBigDecimal(2));
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(entriesSql)) {
+                ps.setInt(1, userId);
+                ps.setLong(2, fromEntry);
+                ps.setTimestamp(3, at);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return cents + cents(rs.getBigDecimal(1));
+                }
+            }
+        });
+    }
+
+    public static void printEntries(int userId, int limit) {
+        String sql = "SELECT EntryID, Kind, Amount, ContraAccount, RentalID, CreatedAt FROM WalletLedger " +
+                     "WHERE UserID = ? ORDER BY EntryID DESC LIMIT ?";
+        try {
+            List<String> lines = Resilience.call("walletEntries", Resilience.Policy.READ, conn -> {
+                List<String> out = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, userId);
+                    ps.setInt(2, limit);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            int rentalId = rs.getInt(5);
+                            out.add(String.format("#%-10d %s  %-12s %10s  %-15s %s", rs.getLong(1), rs.getTimestamp(6),
+                                                  rs.getString(2), rs.getBigDecimal(3).toPlainString(), rs.getString(4),
+                                                  rs.wasNull() ? "" : "rental #" + rentalId));
+                        }
+                    }
+                }
+                return out;
+            });
+            if (lines.isEmpty()) {
+                System.out.println("No ledger entries for user #" + userId + ".");
+            } else {
+                System.out.println("\nLatest " + lines.size() + " entries for user #" + userId + ":");
+                lines.forEach(System.out::println);
+            }
+        } catch (SQLException e) {
+            System.err.println("[✗] Error reading ledger: " + e.getMessage());
+        }
+    }
+
+    // ========== RECONCILIATION ==========
+    static final class Mismatch {
+        final int userId;
+        final long ledgerCents, walletCents;
+
+        Mismatch(int userId, long ledgerCents, long walletCents) {
+            this.userId = userId;
+            this.ledgerCents = ledgerCents;
+            this.walletCents = walletCents;
+        }
+    }
+
+    static final class Report {
+        long users, entries, checkpoints, walletCents, ledgerCents, millis;
+        int partitions, mismatchCount;
+        final List<Mismatch> mismatches = new ArrayList<>();
+        Timestamp finishedAt;
+
+        synchronized void add(Report part) {
+            users += part.users;
+            entries += part.entries;
+            checkpoints += part.checkpoints;
+            walletCents += part.walletCents;
+            ledgerCents += part.ledgerCents;
+            partitions++;
+            mismatchCount += part.mismatchCount;
+            for (Mismatch m : part.mismatches) {
+                if (mismatches.size() < MAX_MISMATCHES) mismatches.add(m);
+            }
+        }
+
+        void printSummary() {
+            System.out.println("Users: " + users + " in " + partitions + " partitions  Entries since checkpoints: " + entries +
+                               "  New checkpoints: " + checkpoints);
+            System.out.println("Wallets: $" + money(walletCents) + "  Ledger: $" + money(ledgerCents) +
+                               "  Mismatches: " + mismatchCount);
+            for (int i = 0; i < Math.min(20, mismatches.size()); i++) {
+                Mismatch m = mismatches.get(i);
+                System.out.println("  User #" + m.userId + ": wallet $" + money(m.walletCents) + ", ledger $" +
+                                   money(m.ledgerCents));
+            }
+            if (mismatchCount > 20) System.out.println("  ... and " + (mismatchCount - 20) + " more");
+        }
+    }
+
+    // Verifies every balance and, when checkpoint is set, records checkpoints for those that agree.
+    // Returns null if a run is already in progress or the user range could not be read.
+    public static Report reconcile(boolean checkpoint) {
+        if (!running.compareAndSet(false, true)) return null;
+        long start = System.nanoTime();
+        int parallelism = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            int[] range = Resilience.call("walletUserRange", Resilience.Policy.READ, conn -> {
+                try (Statement st = conn.createStatement();
+                     ResultSet rs = st.executeQuery("SELECT COALESCE(MIN(UserID), 0), COALESCE(MAX(UserID), -1) FROM Users")) {
+                    rs.next();
+                    return new int[] { rs.getInt(1), rs.getInt(2) };
+                }
+            });
+            List<Future<Report>> parts = new ArrayList<>();
+            for (long lo = range[0]; lo <= range[1]; lo += USERS_PER_PARTITION) {
+                int from = (int) lo, to = (int) Math.min(range[1] + 1L, lo + USERS_PER_PARTITION);
+                parts.add(pool.submit(() -> reconcileRange(from, to, checkpoint)));
+            }
+            Report report = new Report();
+            for (Future<Report> part : parts) {
+                try {
+                    report.add(part.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof SQLException ? (SQLException) cause : new SQLException(cause);
+                }
+            }
+            report.millis = (System.nanoTime() - start) / 1_000_000;
+            report.finishedAt = new Timestamp(System.currentTimeMillis());
+            last = report;
+            DataStore.logEvent("WALLET_RECONCILE", "Reconciled " + report.users + " wallets: " + report.mismatchCount +
+                               " mismatches, " + report.checkpoints + " checkpoints", 0);
+            return report;
+        } catch (SQLException e) {
+            System.err.println("[✗] Wallet reconciliation failed: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            pool.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    // Users [from, to): all three reads see the same snapshot, checkpoints are written after it
+    private static Report reconcileRange(int from, int to, boolean checkpoint) throws SQLException {
+        int n = to - from;
+        long[] wallet = new long[n], base = new long[n], since = new long[n], lastEntry = new long[n];
+        int[] count = new int[n];
+        boolean[] present = new boolean[n];
+        Timestamp[] lastAt = new Timestamp[n];
+        String latest = "SELECT UserID, MAX(EntryID) AS EntryID FROM WalletCheckpoints " +
+                        "WHERE UserID >= ? AND UserID < ? GROUP BY UserID";
+        Report part = new Report();
+
+        try (Connection conn = DatabaseManager.openConnection()) {
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            conn.setAutoCommit(false);
+            try (Statement st = conn.createStatement()) {
+                st.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                     "SELECT UserID, WalletBalance FROM Users WHERE UserID >= ? AND UserID < ?")) {
+                ps.setInt(1, from);
+                ps.setInt(2, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int i = rs.getInt(1) - from;
+                        present[i] = true;
+                        wallet[i] = cents(rs.getBigDecimal(2));
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                     "SELECT c.UserID, c.Balance FROM WalletCheckpoints c JOIN (" + latest + ") m " +
+                     "ON m.UserID = c.UserID AND m.EntryID = c.EntryID")) {
+                ps.setInt(1, from);
+                ps.setInt(2, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) base[rs.getInt(1) - from] = cents(rs.getBigDecimal(2));
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                     "SELECT l.UserID, SUM(l.Amount), COUNT(*), MAX(l.EntryID), MAX(l.CreatedAt) FROM WalletLedger l " +
+                     "LEFT JOIN (" + latest + ") m ON m.UserID = l.UserID " +
+                     "WHERE l.UserID >= ? AND l.UserID < ? AND l.EntryID > COALESCE(m.EntryID, 0) GROUP BY l.UserID")) {
+                ps.setInt(1, from);
+                ps.setInt(2, to);
+                ps.setInt(3, from);
+                ps.setInt(4, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int i = rs.getInt(1) - from;
+                        since[i] = cents(rs.getBigDecimal(2));
+                        count[i] = rs.getInt(3);
+                        lastEntry[i] = rs.getLong(4);
+                        lastAt[i] = rs.getTimestamp(5);
+                    }
+                }
+            }
+            conn.commit();
+
+            try (PreparedStatement ps = conn.prepareStatement(
+                     "INSERT IGNORE INTO WalletCheckpoints (UserID, EntryID, Balance, AsOf) VALUES (?, ?, ?, ?)")) {
+                int batched = 0;
+                for (int i = 0; i < n; i++) {
+                    if (!present[i]) continue;
+                    long ledger = base[i] + since[i];
+                    part.users++;
+                    part.entries += count[i];
+                    part.walletCents += wallet[i];
+                    part.ledgerCents += ledger;
+                    if (ledger != wallet[i]) {
+                        part.mismatchCount++;
+                        if (part.mismatches.size() < MAX_MISMATCHES) part.mismatches.add(new Mismatch(from + i, ledger, wallet[i]));
+                    } else if (checkpoint && count[i] > 0) {
+                        ps.setInt(1, from + i);
+                        ps.setLong(2, lastEntry[i]);
+                        ps.setBigDecimal(3, BigDecimal.valueOf(ledger, 2));
+                        ps.setTimestamp(4, lastAt[i]);
+                        ps.addBatch();
+                        part.checkpoints++;
+                        if (++batched % CHECKPOINT_BATCH == 0) ps.executeBatch();
+                    }
+                }
+                if (batched % CHECKPOINT_BATCH != 0) ps.executeBatch();
+                conn.commit();
+            }
+        }
+        return part;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    static String money(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+}
@@ -0,0 +1,360 @@
+// Vehicle Rental System - Warm Start
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+// WARM START
+// Keeps the state the services load at boot (the whole fleet with its make/colour/status/location
+// dictionaries, and the active usernames) in a compact binary file, -Drental.warm=path
+// (default warm.bin), rewritten every SNAPSHOT_SECONDS and at shutdown. On boot the file is
+// memory-mapped and checked against one cheap probe (same server, same schema version, not too
+// old), then only rows changed since its watermark are read:
+//   Vehicles WHERE LastUpdated >= watermark - slack   (V12 indexes LastUpdated)
+//   Users WHERE LastUpdated >= watermark - slack      (V17; deactivated users are dropped)
+// If the patched fleet does not match COUNT(*) the snapshot is dropped and everything is
+// loaded once from MySQL. The catalogue server, login guard and pricing engine take their
+// initial vehicles/usernames from here instead of their own full queries.
+class WarmStart {
+    private static final int MAGIC = 0x5741524D;             // "WARM"
+    private static final int FORMAT = 1;
+    private static final long SNAPSHOT_SECONDS = 300;
+    private static final long MAX_AGE_HOURS = 24;
+    // Rows committed late (long transactions) can carry a LastUpdated before the watermark
+    private static final long WATERMARK_SLACK_MS = 60_000;
+    // Consumers only take state this fresh, i.e. during startup
+    private static final long FRESH_MS = 10_000;
+
+    private static final String VEHICLE_SQL =
+        "SELECT " + DataStore.VEHICLE_COLUMNS + " FROM Vehicles v " +
+        "JOIN VehicleMakes vm ON v.MakeID = vm.MakeID " +
+        "JOIN VehicleColors vc ON v.ColorID = vc.ColorID " +
+        "JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID";
+
+    // Immutable; a refresh publishes a new one
+    static final class State {
+        final long watermark;                   // database time the rows are current to
+        final int schemaVersion;
+        final String server;
+        final Map<Integer, Vehicle> fleet;      // every vehicle by id
+        final TreeMap<Integer, String> users;   // active usernames by id
+        final long refreshedAt = System.currentTimeMillis();
+
+        State(long watermark, int schemaVersion, String server, Map<Integer, Vehicle> fleet, TreeMap<Integer, String> users) {
+            this.watermark = watermark; this.schemaVersion = schemaVersion; this.server = server;
+            this.fleet = fleet; this.users = users;
+        }
+    }
+
+    // Database clock, schema version and server identity, read in one statement
+    private static final class Probe {
+        final long now; final int schemaVersion; final String server;
+
+        Probe(long now, int schemaVersion, String server) {
+            this.now = now; this.schemaVersion = schemaVersion; this.server = server;
+        }
+    }
+
+    private static volatile WarmStart instance;
+
+    private final Path file;
+    private volatile State state;
+    private ScheduledExecutorService executor;
+    private volatile long lastLoadMs, lastWriteMs, lastDelta, snapshotsWritten;
+    private volatile String lastSource = "";
+
+    private WarmStart(Path file) {
+        this.file = file;
+    }
+
+    // ========== LIFECYCLE ==========
+    public static synchronized void start() {
+        if (instance != null) return;
+        WarmStart ws = new WarmStart(Paths.get(System.getProperty("rental.warm", "warm.bin")));
+        long started = System.nanoTime();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            ws.state = ws.load(conn);
+        } catch (SQLException e) {
+            System.err.println("[✗] Warm start not available: " + e.getMessage());
+            return;
+        }
+        ws.lastLoadMs = (System.nanoTime() - started) / 1_000_000;
+        ws.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "warm-start");
+            t.setDaemon(true);
+            return t;
+        });
+        ws.executor.scheduleWithFixedDelay(ws::snapshot, SNAPSHOT_SECONDS, SNAPSHOT_SECONDS, TimeUnit.SECONDS);
+        instance = ws;
+        System.out.println("[✓] Warm start: " + ws.state.fleet.size() + " vehicles, " + ws.state.users.size() +
+                           " users " + ws.lastSource + " in " + ws.lastLoadMs + " ms.");
+    }
+
+    // Writes a final snapshot so the next start finds few deltas
+    public static synchronized void stop() {
+        if (instance == null) return;
+        instance.executor.shutdown();
+        try {
+            instance.executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        instance.snapshot();
+        instance = null;
+    }
+
+    // ========== CONSUMERS ==========
+    // All vehicles, or null when there is no fresh warm state (the caller queries MySQL itself)
+    static List<Vehicle> vehicles() {
+        State s = fresh();
+        return s == null ? null : new ArrayList<>(s.fleet.values());
+    }
+
+    // AVAILABLE vehicles ordered as DataStore.getAvailableVehicles orders them, or null
+    static List<Vehicle> availableVehicles() {
+        State s = fresh();
+        if (s == null) return null;
+        List<Vehicle> available = new ArrayList<>();
+        for (Vehicle v : s.fleet.values()) if ("AVAILABLE".equals(v.getStatus())) available.add(v);
+        available.sort(Comparator.comparingDouble(Vehicle::getDailyRate));
+        return available;
+    }
+
+    // Active usernames, or null
+    static Collection<String> usernames() {
+        State s = fresh();
+        return s == null ? null : s.users.values();
+    }
+
+    private static State fresh() {
+        WarmStart ws = instance;
+        State s = ws == null ? null : ws.state;
+        return s != null && System.currentTimeMillis() - s.refreshedAt < FRESH_MS ? s : null;
+    }
+
+    // ========== LOAD ==========
+    private State load(Connection conn) throws SQLException {
+        Probe probe = probe(conn);
+        State snapshot = null;
+        String reason;
+        try {
+            snapshot = read(file);
+            reason = snapshot == null ? "no snapshot" : rejection(snapshot, probe);
+        } catch (IOException | RuntimeException e) {
+            reason = "unreadable snapshot (" + e.getMessage() + ")";
+        }
+        if (reason == null) {
+            State patched = patch(conn, snapshot, probe);
+            if (patched.fleet.size() == countVehicles(conn)) {
+                lastSource = "from snapshot (" + lastDelta + " changed rows)";
+                return patched;
+            }
+            reason = "vehicle count changed outside the watermark";
+        }
+        lastSource = "loaded from MySQL (" + reason + ")";
+        return patch(conn, new State(0, probe.schemaVersion, probe.server, new HashMap<>(), new TreeMap<>()), probe);
+    }
+
+    private static String rejection(State snapshot, Probe probe) {
+        if (!snapshot.server.equals(probe.server)) return "snapshot of another server";
+        if (snapshot.schemaVersion != probe.schemaVersion) return "schema changed";
+        if (probe.now - snapshot.watermark > TimeUnit.HOURS.toMillis(MAX_AGE_HOURS)) return "snapshot too old";
+        return null;
+    }
+
+    private static Probe probe(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT NOW(), (SELECT COALESCE(MAX(Version), 0) FROM SchemaVersions), @@server_uuid")) {
+            rs.next();
+            return new Probe(rs.getTimestamp(1).getTime(), rs.getInt(2), rs.getString(3));
+        }
+    }
+
+    private static int countVehicles(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Vehicles")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // Copies base and applies the rows changed since its watermark (everything when it is 0)
+    private State patch(Connection conn, State base, Probe probe) throws SQLException {
+        Map<Integer, Vehicle> fleet = new HashMap<>(base.fleet);
+        TreeMap<Integer, String> users = new TreeMap<>(base.users);
+        long delta = 0;
+        boolean full = base.watermark == 0;
+        try (PreparedStatement ps = conn.prepareStatement(full ? VEHICLE_SQL : VEHICLE_SQL + " WHERE v.LastUpdated >= ?")) {
+            if (!full) ps.setTimestamp(1, new Timestamp(base.watermark - WATERMARK_SLACK_MS));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Vehicle v = DataStore.readVehicle(rs);
+                    fleet.put(v.getVehicleId(), v);
+                    delta++;
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(full
+                ? "SELECT UserID, Username, IsActive FROM Users WHERE IsActive = 1"
+                : "SELECT UserID, Username, IsActive FROM Users WHERE LastUpdated >= ?")) {
+            if (!full) ps.setTimestamp(1, new Timestamp(base.watermark - WATERMARK_SLACK_MS));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getBoolean(3)) users.put(rs.getInt(1), rs.getString(2));
+                    else users.remove(rs.getInt(1));
+                    delta++;
+                }
+            }
+        }
+        lastDelta = delta;
+        return new State(probe.now, probe.schemaVersion, probe.server, fleet, users);
+    }
+
+    // ========== SNAPSHOT FILE ==========
+    // Refreshes from the deltas, then replaces the file atomically
+    private synchronized void snapshot() {
+        long started = System.nanoTime();
+        try (Connection conn = DatabaseManager.openConnection()) {
+            Probe probe = probe(conn);
+            State s = state;
+            state = s.schemaVersion == probe.schemaVersion ? patch(conn, s, probe)
+                  : patch(conn, new State(0, probe.schemaVersion, probe.server, new HashMap<>(), new TreeMap<>()), probe);
+            write(state, file);
+            snapshotsWritten++;
+            lastWriteMs = (System.nanoTime() - started) / 1_000_000;
+        } catch (SQLException | IOException e) {
+            System.err.println("[!] Warm start snapshot not written: " + e.getMessage());
+        }
+    }
+
+    // Layout: header, string dictionary, vehicles (text columns as dictionary codes), users, CRC32
+    static void write(State s, Path file) throws IOException {
+        StringDictionary dict = new StringDictionary();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + s.fleet.size() * 48 + s.users.size() * 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeInt(s.schemaVersion);
+        out.writeLong(s.watermark);
+        writeString(out, s.server);
+
+        // Dictionary first so the reader can decode vehicles in one pass
+        int[][] codes = new int[s.fleet.size()][];
+        int i = 0;
+        for (Vehicle v : s.fleet.values()) {
+            codes[i++] = new int[]{dict.encode(v.getMake()), dict.encode(v.getModel()), dict.encode(v.getColor()),
+                                   dict.encode(v.getStatus()), dict.encode(v.getLocation())};
+        }
+        out.writeInt(dict.size());
+        for (int d = 0; d < dict.size(); d++) writeString(out, dict.decode(d));
+
+        out.writeInt(s.fleet.size());
+        i = 0;
+        for (Vehicle v : s.fleet.values()) {
+            int[] c = codes[i++];
+            out.writeInt(v.getVehicleId());
+            writeString(out, v.getRegistrationNo());
+            out.writeInt(c[0]);
+            out.writeInt(c[1]);
+            out.writeShort(v.getYear());
+            out.writeInt(c[2]);
+            out.writeLong(Math.round(v.getDailyRate() * 100));
+            out.writeInt(c[3]);
+            out.writeInt(v.getOwnerId());
+            out.writeBoolean(v.isUserListed());
+            out.writeInt(c[4]);
+        }
+        out.writeInt(s.users.size());
+        for (Map.Entry<Integer, String> u : s.users.entrySet()) {
+            out.writeInt(u.getKey());
+            writeString(out, u.getValue());
+        }
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, bytes.toByteArray());
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Memory-maps the file; null if there is none
+    static State read(Path file) throws IOException {
+        if (!Files.exists(file)) return null;
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (buf.limit() < 8 || buf.getInt() != MAGIC || buf.getInt() != FORMAT) throw new IOException("not a warm-start snapshot");
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buf.duplicate();
+        body.position(0).limit(buf.limit() - 4);
+        crc.update(body);
+        if ((int) crc.getValue() != buf.getInt(buf.limit() - 4)) throw new IOException("checksum mismatch");
+
+        int schemaVersion = buf.getInt();
+        long watermark = buf.getLong();
+        String server = readString(buf);
+        String[] dict = new String[buf.getInt()];
+        for (int d = 0; d < dict.length; d++) dict[d] = readString(buf);
+
+        int vehicles = buf.getInt();
+        Map<Integer, Vehicle> fleet = new HashMap<>(vehicles * 2);
+        for (int i = 0; i < vehicles; i++) {
+            int id = buf.getInt();
+            String regNo = readString(buf);
+            String make = dict[buf.getInt()], model = dict[buf.getInt()];
+            int year = buf.getShort();
+            String color = dict[buf.getInt()];
+            double rate = buf.getLong() / 100.0;
+            String status = dict[buf.getInt()];
+            int ownerId = buf.getInt();
+            boolean listed = buf.get() != 0;
+            fleet.put(id, new Vehicle(id, regNo, make, model, year, color, rate, status, ownerId, listed, dict[buf.getInt()]));
+        }
+        int count = buf.getInt();
+        TreeMap<Integer, String> users = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            int id = buf.getInt();
+            users.put(id, readString(buf));
+        }
+        return new State(watermark, schemaVersion, server, fleet, users);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] b = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeShort(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getShort() & 0xFFFF];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    public static void printStatus() {
+        WarmStart ws = instance;
+        if (ws == null) {
+            System.out.println("Warm start is not running.");
+            return;
+        }
+        State s = ws.state;
+        System.out.println("\n=== WARM START ===");
+        System.out.println("Snapshot file: " + ws.file.toAbsolutePath());
+        System.out.println("Boot: " + ws.lastSource + " in " + ws.lastLoadMs + " ms");
+        System.out.println("State: " + s.fleet.size() + " vehicles, " + s.users.size() + " users, watermark " +
+                           new Timestamp(s.watermark));
+        System.out.println("Snapshots written: " + ws.snapshotsWritten + "  Last write: " + ws.lastWriteMs + " ms" +
+                           "  Rows read by last refresh: " + ws.lastDelta);
+        System.out.println("==================\n");
+    }
+}
@@ -0,0 +1,130 @@
+-- Booking in one round-trip: sp_CreateRental also writes the RENTAL_CREATED audit row inside
+-- its transaction and returns the renter's new wallet balance, so the client needs no follow-up
+-- INSERT or balance read.
+DROP PROCEDURE IF EXISTS sp_CreateRental;
+
+DELIMITER $$
+
+CREATE PROCEDURE sp_CreateRental(
+    IN p_UserID INT,
+    IN p_VehicleID INT,
+    IN p_RentalDate DATE,
+    IN p_ReturnDate DATE,
+    IN p_IdemKey CHAR(36),
+    IN p_RentalID INT,
+    IN p_TransactionID INT
+)
+proc: BEGIN
+    DECLARE v_DailyRate DECIMAL(8,2);
+    DECLARE v_Days INT;
+    DECLARE v_TotalAmount DECIMAL(10,2);
+    DECLARE v_QuotedAmount DECIMAL(10,2) DEFAULT NULL;
+    DECLARE v_IsUserListed BOOLEAN;
+    DECLARE v_OwnerID INT;
+    DECLARE v_TransactionTypeID INT;
+    DECLARE v_AdminCommission DECIMAL(10,2);
+    DECLARE v_OwnerEarnings DECIMAL(10,2);
+    DECLARE v_Duplicate BOOLEAN DEFAULT FALSE;
+    DECLARE v_NewBalance DECIMAL(10,2);
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    START TRANSACTION;
+
+    -- Claim the key; a concurrent call with the same key waits here until we commit
+    IF p_IdemKey IS NOT NULL THEN
+        BEGIN
+            DECLARE CONTINUE HANDLER FOR 1062 SET v_Duplicate = TRUE;
+            INSERT INTO IdempotencyKeys (IdemKey, Operation, UserID) VALUES (p_IdemKey, 'CREATE_RENTAL', p_UserID);
+        END;
+        IF v_Duplicate THEN
+            ROLLBACK;
+            SELECT k.ResultID AS RentalID, 'SUCCESS' AS Status, 'Rental already created' AS Message,
+                   k.ResultAmount AS TotalAmount, TRUE AS Replayed, u.WalletBalance AS NewBalance
+            FROM IdempotencyKeys k JOIN Users u ON u.UserID = p_UserID
+            WHERE k.IdemKey = p_IdemKey;
+            LEAVE proc;
+        END IF;
+    END IF;
+
+    -- Check vehicle availability (row locked so two bookings cannot both pass)
+    IF NOT EXISTS (SELECT 1 FROM Vehicles v
+                   JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID
+                   WHERE v.VehicleID = p_VehicleID AND vs.IsAvailable = TRUE
+                   FOR UPDATE) THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Vehicle not available';
+    END IF;
+
+    -- Get vehicle details
+    SELECT DailyRate, IsUserListed, OwnerID INTO v_DailyRate, v_IsUserListed, v_OwnerID
+    FROM Vehicles WHERE VehicleID = p_VehicleID;
+
+    -- Calculate rental cost
+    SET v_Days = DATEDIFF(p_ReturnDate, p_RentalDate);
+    IF v_Days <= 0 THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Invalid rental period';
+    END IF;
+
+    -- Use the latest unexpired dynamic quote when one exists
+    SELECT TotalAmount INTO v_QuotedAmount FROM PriceQuotes
+    WHERE VehicleID = p_VehicleID AND RentalDate = p_RentalDate AND ReturnDate = p_ReturnDate
+      AND ExpiresAt > CURRENT_TIMESTAMP
+    ORDER BY QuoteID DESC LIMIT 1;
+
+    SET v_TotalAmount = COALESCE(v_QuotedAmount, v_DailyRate * v_Days);
+
+    -- Check user wallet balance (row locked: the balance returned below is the one we leave)
+    SELECT WalletBalance INTO v_NewBalance FROM Users WHERE UserID = p_UserID FOR UPDATE;
+    IF v_NewBalance < v_TotalAmount THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Insufficient wallet balance';
+    END IF;
+    SET v_NewBalance = v_NewBalance - v_TotalAmount;
+
+    -- Create rental (ids come from IdAllocator; NULL still falls back to AUTO_INCREMENT)
+    INSERT INTO Rentals (RentalID, UserID, VehicleID, RentalDate, ReturnDate, TotalAmount, StatusID)
+    VALUES (p_RentalID, p_UserID, p_VehicleID, p_RentalDate, p_ReturnDate, v_TotalAmount, 1);
+
+    SET @NewRentalID = COALESCE(p_RentalID, LAST_INSERT_ID());
+
+    -- Update vehicle status
+    UPDATE Vehicles SET StatusID = 2 WHERE VehicleID = p_VehicleID;
+
+    -- Deduct from user wallet
+    UPDATE Users SET WalletBalance = WalletBalance - v_TotalAmount WHERE UserID = p_UserID;
+
+    -- Determine transaction type and commissions
+    IF v_IsUserListed = TRUE THEN
+        SET v_TransactionTypeID = 1; -- USER_RENTAL
+        SET v_AdminCommission = v_TotalAmount * 0.2;
+        SET v_OwnerEarnings = v_TotalAmount * 0.8;
+    ELSE
+        SET v_TransactionTypeID = 2; -- COMPANY_RENTAL
+        SET v_AdminCommission = v_TotalAmount;
+        SET v_OwnerEarnings = 0;
+    END IF;
+
+    -- Create transaction record
+    INSERT INTO Transactions (TransactionID, RentalID, UserID, TypeID, Amount, AdminCommission, OwnerEarnings, Status, Description)
+    VALUES (p_TransactionID, @NewRentalID, p_UserID, v_TransactionTypeID, v_TotalAmount, v_AdminCommission, v_OwnerEarnings, 'PENDING',
+            CONCAT('Rental for vehicle #', p_VehicleID));
+
+    -- Audit row, formerly a separate INSERT from the client
+    INSERT INTO SystemLogs (LogType, LogMessage, UserID)
+    VALUES ('RENTAL_CREATED', CONCAT('User ', p_UserID, ' rented vehicle ', p_VehicleID), p_UserID);
+
+    -- Record the outcome under the key
+    IF p_IdemKey IS NOT NULL THEN
+        UPDATE IdempotencyKeys SET ResultID = @NewRentalID, ResultAmount = v_TotalAmount WHERE IdemKey = p_IdemKey;
+    END IF;
+
+    COMMIT;
+
+    SELECT @NewRentalID AS RentalID, 'SUCCESS' AS Status, 'Rental created successfully' AS Message,
+           v_TotalAmount AS TotalAmount, FALSE AS Replayed, v_NewBalance AS NewBalance;
+END$$
+
+DELIMITER ;
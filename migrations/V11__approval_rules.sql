@@ -0,0 +1,29 @@
+-- Automatic rental approval (see ApprovalEngine). Enabled rules are tried in Priority order and
+-- the first whose conditions all hold decides; a rental no rule matches is left for the admins.
+-- Conditions are "fact op number" terms joined by AND, e.g. 'amount <= 300 AND completed >= 1'.
+CREATE TABLE ApprovalRules (
+    RuleID INT PRIMARY KEY AUTO_INCREMENT,
+    Priority INT NOT NULL,
+    Action ENUM('APPROVE', 'REFER') NOT NULL,
+    Conditions VARCHAR(500) NOT NULL,
+    Description VARCHAR(200),
+    IsEnabled BOOLEAN NOT NULL DEFAULT TRUE,
+    INDEX idx_ApprovalRules_Priority (IsEnabled, Priority)
+);
+
+-- One row per rental the engine looked at: the outcome, the deciding rule and the facts used
+CREATE TABLE ApprovalDecisions (
+    RentalID INT PRIMARY KEY,
+    Decision ENUM('APPROVED', 'REFERRED', 'FAILED') NOT NULL,
+    RuleID INT NULL,
+    Facts VARCHAR(500) NOT NULL,
+    DecidedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (RentalID) REFERENCES Rentals(RentalID)
+);
+
+INSERT INTO ApprovalRules (Priority, Action, Conditions, Description) VALUES
+(10, 'REFER', 'amount > 1000', 'Large bookings are checked by hand'),
+(20, 'REFER', 'rejected >= 2', 'Customers with cancelled or rejected rentals'),
+(30, 'REFER', 'listed = 1 AND ownerCompleted < 3', 'Vehicles of owners without a track record'),
+(40, 'APPROVE', 'completed >= 1 AND coverage >= 1', 'Returning customers who could pay for the booking again'),
+(50, 'APPROVE', 'amount <= 300 AND accountDays >= 7', 'Small bookings from established accounts');
@@ -0,0 +1,2 @@
+-- Lets WarmStart read only the vehicles changed since its snapshot's watermark
+ALTER TABLE Vehicles ADD INDEX idx_Vehicles_LastUpdated (LastUpdated), ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,317 @@
+-- Append-only wallet ledger (see WalletLedger). Every change to Users.WalletBalance posts one
+-- entry in the same transaction: Amount is signed from the wallet's side and the contra account
+-- takes the opposite side, so each row is a balanced double entry. WalletCheckpoints holds
+-- verified per-user balances, so a balance at time T is the last checkpoint at or before T plus
+-- the entries after it.
+CREATE TABLE WalletLedger (
+    EntryID BIGINT PRIMARY KEY AUTO_INCREMENT,
+    UserID INT NOT NULL,
+    Kind ENUM('OPENING', 'TOPUP', 'PAYMENT', 'RENTAL_DEBIT', 'OWNER_PAYOUT', 'REFUND', 'ADJUSTMENT') NOT NULL,
+    Amount DECIMAL(12,2) NOT NULL,
+    ContraAccount ENUM('EXTERNAL', 'RENTAL_CLEARING', 'ADJUSTMENTS') NOT NULL,
+    RentalID INT NULL,
+    CreatedAt TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_WalletLedger_User (UserID, EntryID),
+    FOREIGN KEY (UserID) REFERENCES Users(UserID)
+);
+
+-- EntryID is the last entry the balance includes and AsOf the latest CreatedAt among its entries
+CREATE TABLE WalletCheckpoints (
+    UserID INT NOT NULL,
+    EntryID BIGINT NOT NULL,
+    Balance DECIMAL(12,2) NOT NULL,
+    AsOf TIMESTAMP(3) NOT NULL,
+    CheckpointedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (UserID, EntryID)
+);
+
+-- Today's balances are the opening entries
+INSERT INTO WalletLedger (UserID, Kind, Amount, ContraAccount)
+SELECT UserID, 'OPENING', WalletBalance, 'ADJUSTMENTS' FROM Users WHERE WalletBalance <> 0;
+
+DROP PROCEDURE IF EXISTS sp_CreateRental;
+DROP PROCEDURE IF EXISTS sp_ApproveRental;
+DROP PROCEDURE IF EXISTS sp_AdjustWallet;
+
+DELIMITER $$
+
+CREATE TRIGGER trg_WalletLedger_NoUpdate
+BEFORE UPDATE ON WalletLedger
+FOR EACH ROW
+BEGIN
+    SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'WalletLedger is append-only';
+END$$
+
+CREATE TRIGGER trg_WalletLedger_NoDelete
+BEFORE DELETE ON WalletLedger
+FOR EACH ROW
+BEGIN
+    SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'WalletLedger is append-only';
+END$$
+
+-- A new account's starting balance is its opening entry, whichever code path inserted it
+CREATE TRIGGER trg_WalletLedger_Opening
+AFTER INSERT ON Users
+FOR EACH ROW
+BEGIN
+    IF NEW.WalletBalance <> 0 THEN
+        INSERT INTO WalletLedger (UserID, Kind, Amount, ContraAccount)
+        VALUES (NEW.UserID, 'OPENING', NEW.WalletBalance, 'ADJUSTMENTS');
+    END IF;
+END$$
+
+CREATE PROCEDURE sp_CreateRental(
+    IN p_UserID INT,
+    IN p_VehicleID INT,
+    IN p_RentalDate DATE,
+    IN p_ReturnDate DATE,
+    IN p_IdemKey CHAR(36),
+    IN p_RentalID INT,
+    IN p_TransactionID INT
+)
+proc: BEGIN
+    DECLARE v_DailyRate DECIMAL(8,2);
+    DECLARE v_Days INT;
+    DECLARE v_TotalAmount DECIMAL(10,2);
+    DECLARE v_QuotedAmount DECIMAL(10,2) DEFAULT NULL;
+    DECLARE v_IsUserListed BOOLEAN;
+    DECLARE v_OwnerID INT;
+    DECLARE v_TransactionTypeID INT;
+    DECLARE v_AdminCommission DECIMAL(10,2);
+    DECLARE v_OwnerEarnings DECIMAL(10,2);
+    DECLARE v_Duplicate BOOLEAN DEFAULT FALSE;
+    DECLARE v_NewBalance DECIMAL(10,2);
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    START TRANSACTION;
+
+    -- Claim the key; a concurrent call with the same key waits here until we commit
+    IF p_IdemKey IS NOT NULL THEN
+        BEGIN
+            DECLARE CONTINUE HANDLER FOR 1062 SET v_Duplicate = TRUE;
+            INSERT INTO IdempotencyKeys (IdemKey, Operation, UserID) VALUES (p_IdemKey, 'CREATE_RENTAL', p_UserID);
+        END;
+        IF v_Duplicate THEN
+            ROLLBACK;
+            SELECT k.ResultID AS RentalID, 'SUCCESS' AS Status, 'Rental already created' AS Message,
+                   k.ResultAmount AS TotalAmount, TRUE AS Replayed, u.WalletBalance AS NewBalance
+            FROM IdempotencyKeys k JOIN Users u ON u.UserID = p_UserID
+            WHERE k.IdemKey = p_IdemKey;
+            LEAVE proc;
+        END IF;
+    END IF;
+
+    -- Check vehicle availability (row locked so two bookings cannot both pass)
+    IF NOT EXISTS (SELECT 1 FROM Vehicles v
+                   JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID
+                   WHERE v.VehicleID = p_VehicleID AND vs.IsAvailable = TRUE
+                   FOR UPDATE) THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Vehicle not available';
+    END IF;
+
+    -- Get vehicle details
+    SELECT DailyRate, IsUserListed, OwnerID INTO v_DailyRate, v_IsUserListed, v_OwnerID
+    FROM Vehicles WHERE VehicleID = p_VehicleID;
+
+    -- Calculate rental cost
+    SET v_Days = DATEDIFF(p_ReturnDate, p_RentalDate);
+    IF v_Days <= 0 THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Invalid rental period';
+    END IF;
+
+    -- Use the latest unexpired dynamic quote when one exists
+    SELECT TotalAmount INTO v_QuotedAmount FROM PriceQuotes
+    WHERE VehicleID = p_VehicleID AND RentalDate = p_RentalDate AND ReturnDate = p_ReturnDate
+      AND ExpiresAt > CURRENT_TIMESTAMP
+    ORDER BY QuoteID DESC LIMIT 1;
+
+    SET v_TotalAmount = COALESCE(v_QuotedAmount, v_DailyRate * v_Days);
+
+    -- Check user wallet balance (row locked: the balance returned below is the one we leave)
+    SELECT WalletBalance INTO v_NewBalance FROM Users WHERE UserID = p_UserID FOR UPDATE;
+    IF v_NewBalance < v_TotalAmount THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Insufficient wallet balance';
+    END IF;
+    SET v_NewBalance = v_NewBalance - v_TotalAmount;
+
+    -- Create rental (ids come from IdAllocator; NULL still falls back to AUTO_INCREMENT)
+    INSERT INTO Rentals (RentalID, UserID, VehicleID, RentalDate, ReturnDate, TotalAmount, StatusID)
+    VALUES (p_RentalID, p_UserID, p_VehicleID, p_RentalDate, p_ReturnDate, v_TotalAmount, 1);
+
+    SET @NewRentalID = COALESCE(p_RentalID, LAST_INSERT_ID());
+
+    -- Update vehicle status
+    UPDATE Vehicles SET StatusID = 2 WHERE VehicleID = p_VehicleID;
+
+    -- Deduct from user wallet
+    UPDATE Users SET WalletBalance = WalletBalance - v_TotalAmount WHERE UserID = p_UserID;
+    INSERT INTO WalletLedger (UserID, Kind, Amount, ContraAccount, RentalID, CreatedAt)
+    VALUES (p_UserID, 'RENTAL_DEBIT', -v_TotalAmount, 'RENTAL_CLEARING', @NewRentalID, SYSDATE(3));
+
+    -- Determine transaction type and commissions
+    IF v_IsUserListed = TRUE THEN
+        SET v_TransactionTypeID = 1; -- USER_RENTAL
+        SET v_AdminCommission = v_TotalAmount * 0.2;
+        SET v_OwnerEarnings = v_TotalAmount * 0.8;
+    ELSE
+        SET v_TransactionTypeID = 2; -- COMPANY_RENTAL
+        SET v_AdminCommission = v_TotalAmount;
+        SET v_OwnerEarnings = 0;
+    END IF;
+
+    -- Create transaction record
+    INSERT INTO Transactions (TransactionID, RentalID, UserID, TypeID, Amount, AdminCommission, OwnerEarnings, Status, Description)
+    VALUES (p_TransactionID, @NewRentalID, p_UserID, v_TransactionTypeID, v_TotalAmount, v_AdminCommission, v_OwnerEarnings, 'PENDING',
+            CONCAT('Rental for vehicle #', p_VehicleID));
+
+    -- Audit row, formerly a separate INSERT from the client
+    INSERT INTO SystemLogs (LogType, LogMessage, UserID)
+    VALUES ('RENTAL_CREATED', CONCAT('User ', p_UserID, ' rented vehicle ', p_VehicleID), p_UserID);
+
+    -- Record the outcome under the key
+    IF p_IdemKey IS NOT NULL THEN
+        UPDATE IdempotencyKeys SET ResultID = @NewRentalID, ResultAmount = v_TotalAmount WHERE IdemKey = p_IdemKey;
+    END IF;
+
+    COMMIT;
+
+    SELECT @NewRentalID AS RentalID, 'SUCCESS' AS Status, 'Rental created successfully' AS Message,
+           v_TotalAmount AS TotalAmount, FALSE AS Replayed, v_NewBalance AS NewBalance;
+END$$
+
+CREATE PROCEDURE sp_ApproveRental(
+    IN p_RentalID INT,
+    IN p_AdminUserID INT,
+    IN p_IdemKey CHAR(36)
+)
+proc: BEGIN
+    DECLARE v_RentalStatus VARCHAR(20);
+    DECLARE v_VehicleID INT;
+    DECLARE v_OwnerID INT;
+    DECLARE v_OwnerEarnings DECIMAL(10,2);
+    DECLARE v_Duplicate BOOLEAN DEFAULT FALSE;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    START TRANSACTION;
+
+    IF p_IdemKey IS NOT NULL THEN
+        BEGIN
+            DECLARE CONTINUE HANDLER FOR 1062 SET v_Duplicate = TRUE;
+            INSERT INTO IdempotencyKeys (IdemKey, Operation, UserID, ResultID)
+            VALUES (p_IdemKey, 'APPROVE_RENTAL', p_AdminUserID, p_RentalID);
+        END;
+        IF v_Duplicate THEN
+            ROLLBACK;
+            SELECT 'SUCCESS' AS Status, 'Rental already approved' AS Message, TRUE AS Replayed;
+            LEAVE proc;
+        END IF;
+    END IF;
+
+    -- Check rental status
+    SELECT rs.StatusName, r.VehicleID INTO v_RentalStatus, v_VehicleID
+    FROM Rentals r
+    JOIN RentalStatuses rs ON r.StatusID = rs.StatusID
+    WHERE r.RentalID = p_RentalID
+    FOR UPDATE;
+
+    IF v_RentalStatus IS NULL OR v_RentalStatus != 'PENDING' THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Rental is not pending approval';
+    END IF;
+
+    -- Update rental status
+    UPDATE Rentals
+    SET StatusID = 2, -- ACTIVE
+        PaymentStatusID = 2, -- PAID
+        ApprovedBy = p_AdminUserID,
+        ApprovedAt = CURRENT_TIMESTAMP
+    WHERE RentalID = p_RentalID;
+
+    -- Update transaction status
+    UPDATE Transactions
+    SET Status = 'COMPLETED'
+    WHERE RentalID = p_RentalID;
+
+    -- Get owner earnings
+    SELECT OwnerEarnings, v.OwnerID INTO v_OwnerEarnings, v_OwnerID
+    FROM Transactions t
+    JOIN Rentals r ON t.RentalID = r.RentalID
+    JOIN Vehicles v ON r.VehicleID = v.VehicleID
+    WHERE r.RentalID = p_RentalID;
+
+    -- Update owner wallet if user-listed vehicle
+    IF v_OwnerEarnings > 0 AND v_OwnerID IS NOT NULL THEN
+        UPDATE Users SET WalletBalance = WalletBalance + v_OwnerEarnings WHERE UserID = v_OwnerID;
+        INSERT INTO WalletLedger (UserID, Kind, Amount, ContraAccount, RentalID, CreatedAt)
+        VALUES (v_OwnerID, 'OWNER_PAYOUT', v_OwnerEarnings, 'RENTAL_CLEARING', p_RentalID, SYSDATE(3));
+    END IF;
+
+    COMMIT;
+
+    SELECT 'SUCCESS' AS Status, 'Rental approved and payments processed' AS Message, FALSE AS Replayed;
+END$$
+
+-- Relative wallet change (top-up or payment), so a replay cannot apply it twice
+CREATE PROCEDURE sp_AdjustWallet(
+    IN p_UserID INT,
+    IN p_Amount DECIMAL(10,2),
+    IN p_IdemKey CHAR(36)
+)
+proc: BEGIN
+    DECLARE v_Balance DECIMAL(10,2) DEFAULT NULL;
+    DECLARE v_Duplicate BOOLEAN DEFAULT FALSE;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    START TRANSACTION;
+
+    IF p_IdemKey IS NOT NULL THEN
+        BEGIN
+            DECLARE CONTINUE HANDLER FOR 1062 SET v_Duplicate = TRUE;
+            INSERT INTO IdempotencyKeys (IdemKey, Operation, UserID) VALUES (p_IdemKey, 'ADJUST_WALLET', p_UserID);
+        END;
+        IF v_Duplicate THEN
+            ROLLBACK;
+            SELECT 'SUCCESS' AS Status, ResultAmount AS NewBalance, TRUE AS Replayed
+            FROM IdempotencyKeys WHERE IdemKey = p_IdemKey;
+            LEAVE proc;
+        END IF;
+    END IF;
+
+    SELECT WalletBalance INTO v_Balance FROM Users WHERE UserID = p_UserID AND IsActive = 1 FOR UPDATE;
+
+    IF v_Balance IS NULL THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'User not found';
+    END IF;
+    IF v_Balance + p_Amount < 0 THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Insufficient wallet balance';
+    END IF;
+
+    SET v_Balance = v_Balance + p_Amount;
+    UPDATE Users SET WalletBalance = v_Balance WHERE UserID = p_UserID;
+    INSERT INTO WalletLedger (UserID, Kind, Amount, ContraAccount, CreatedAt)
+    VALUES (p_UserID, IF(p_Amount >= 0, 'TOPUP', 'PAYMENT'), p_Amount, 'EXTERNAL', SYSDATE(3));
+
+    IF p_IdemKey IS NOT NULL THEN
+        UPDATE IdempotencyKeys SET ResultAmount = v_Balance WHERE IdemKey = p_IdemKey;
+    END IF;
+
+    COMMIT;
+
+    SELECT 'SUCCESS' AS Status, v_Balance AS NewBalance, FALSE AS Replayed;
+END$$
+
+DELIMITER ;
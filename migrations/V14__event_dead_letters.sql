@@ -0,0 +1,15 @@
+-- Events a consumer could not handle even one at a time are parked here with the error,
+-- so the consumer moves on instead of retrying them forever. The event is copied because
+-- the outbox row is purged after the retention window.
+CREATE TABLE EventDeadLetters (
+    ConsumerName VARCHAR(100) NOT NULL,
+    EventID BIGINT NOT NULL,
+    AggregateType VARCHAR(20) NOT NULL,
+    AggregateID INT NOT NULL,
+    EventType VARCHAR(40) NOT NULL,
+    Payload JSON NOT NULL,
+    Error VARCHAR(500),
+    Attempts INT NOT NULL,
+    ParkedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (ConsumerName, EventID)
+);
@@ -0,0 +1,7 @@
+-- A wallet moving between shards (ShardedStore.moveOwner) leaves the source shard as a
+-- TRANSFER_OUT and arrives on the target as a TRANSFER_IN, both against SHARD_TRANSFER, so
+-- each shard's ledger still sums to its stored balances and the pair nets to zero overall.
+ALTER TABLE WalletLedger
+    MODIFY Kind ENUM('OPENING', 'TOPUP', 'PAYMENT', 'RENTAL_DEBIT', 'OWNER_PAYOUT', 'REFUND', 'ADJUSTMENT',
+                     'TRANSFER_OUT', 'TRANSFER_IN') NOT NULL,
+    MODIFY ContraAccount ENUM('EXTERNAL', 'RENTAL_CLEARING', 'ADJUSTMENTS', 'SHARD_TRANSFER') NOT NULL;
@@ -0,0 +1,5 @@
+-- Lets WarmStart read only the users changed since its snapshot's watermark: new accounts get
+-- ids from IdAllocator blocks, so "UserID above the highest known" misses some, and it never
+-- saw deactivations
+ALTER TABLE Users ADD COLUMN LastUpdated TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP;
+ALTER TABLE Users ADD INDEX idx_Users_LastUpdated (LastUpdated), ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,23 @@
+-- Generated by IndexAdvisor on 2026-10-19
+-- serves FROM Vehicles v JOIN VehicleMakes vm ON v.MakeID = vm.M... [filesort]
+ALTER TABLE Vehicles ADD INDEX idx_Vehicles_StatusID_DailyRate (StatusID, DailyRate), ALGORITHM=INPLACE, LOCK=NONE;
+-- serves FROM Vehicles v JOIN VehicleMakes vm ON v.MakeID = vm.M...
+ALTER TABLE Vehicles ADD INDEX idx_Vehicles_OwnerID_IsUserListed (OwnerID, IsUserListed), ALGORITHM=INPLACE, LOCK=NONE;
+-- serves FROM Rentals r JOIN RentalStatuses rs ON r.StatusID = r... [filesort]
+ALTER TABLE Rentals ADD INDEX idx_Rentals_UserID_RentalID (UserID, RentalID), ALGORITHM=INPLACE, LOCK=NONE;
+-- serves FROM Rentals r JOIN RentalStatuses rs ON r.StatusID = r... [filesort]
+ALTER TABLE Rentals ADD INDEX idx_Rentals_StatusID_CreatedAt (StatusID, CreatedAt), ALGORITHM=INPLACE, LOCK=NONE;
+-- serves FROM Transactions WHERE Status = 'COMPLETED' [table scan]
+ALTER TABLE Transactions ADD INDEX idx_Transactions_Status_AdminCommission (Status, AdminCommission), ALGORITHM=INPLACE, LOCK=NONE;
+-- prefix of idx_Vehicles_StatusID_DailyRate
+ALTER TABLE Vehicles DROP INDEX idx_Vehicles_StatusID, ALGORITHM=INPLACE, LOCK=NONE;
+-- prefix of idx_Rentals_UserID_RentalID
+ALTER TABLE Rentals DROP INDEX idx_Rentals_UserID, ALGORITHM=INPLACE, LOCK=NONE;
+-- prefix of idx_Rentals_StatusID_CreatedAt
+ALTER TABLE Rentals DROP INDEX idx_Rentals_StatusID, ALGORITHM=INPLACE, LOCK=NONE;
+-- duplicates UNIQUE Email
+ALTER TABLE Users DROP INDEX idx_Users_Email, ALGORITHM=INPLACE, LOCK=NONE;
+-- duplicates UNIQUE Username
+ALTER TABLE Users DROP INDEX idx_Users_Username, ALGORITHM=INPLACE, LOCK=NONE;
+-- duplicates UNIQUE RegistrationNo
+ALTER TABLE Vehicles DROP INDEX idx_Vehicles_RegistrationNo, ALGORITHM=INPLACE, LOCK=NONE;
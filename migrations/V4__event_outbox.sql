@@ -0,0 +1,82 @@
+-- Transactional outbox for vehicle, rental and wallet changes.
+-- Triggers write the event in the same transaction as the change, whether it comes
+-- from DataStore, sp_CreateRental/sp_ApproveRental or any other writer.
+CREATE TABLE EventOutbox (
+    EventID BIGINT PRIMARY KEY AUTO_INCREMENT,
+    AggregateType VARCHAR(20) NOT NULL,
+    AggregateID INT NOT NULL,
+    EventType VARCHAR(40) NOT NULL,
+    Payload JSON NOT NULL,
+    CreatedAt TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3)
+);
+
+CREATE TABLE EventConsumerOffsets (
+    ConsumerName VARCHAR(100) PRIMARY KEY,
+    LastEventID BIGINT NOT NULL DEFAULT 0,
+    UpdatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+DELIMITER $$
+
+CREATE TRIGGER trg_Outbox_VehicleInsert
+AFTER INSERT ON Vehicles
+FOR EACH ROW
+BEGIN
+    INSERT INTO EventOutbox (AggregateType, AggregateID, EventType, Payload)
+    VALUES ('VEHICLE', NEW.VehicleID, 'VEHICLE_CREATED',
+            JSON_OBJECT('statusId', NEW.StatusID, 'dailyRate', NEW.DailyRate,
+                        'ownerId', NEW.OwnerID, 'location', NEW.Location));
+END$$
+
+CREATE TRIGGER trg_Outbox_VehicleUpdate
+AFTER UPDATE ON Vehicles
+FOR EACH ROW
+BEGIN
+    IF NOT (OLD.StatusID <=> NEW.StatusID AND OLD.DailyRate <=> NEW.DailyRate
+            AND OLD.Location <=> NEW.Location AND OLD.OwnerID <=> NEW.OwnerID
+            AND OLD.MakeID <=> NEW.MakeID AND OLD.Model <=> NEW.Model
+            AND OLD.ColorID <=> NEW.ColorID AND OLD.Year <=> NEW.Year) THEN
+        INSERT INTO EventOutbox (AggregateType, AggregateID, EventType, Payload)
+        VALUES ('VEHICLE', NEW.VehicleID, 'VEHICLE_UPDATED',
+                JSON_OBJECT('oldStatusId', OLD.StatusID, 'statusId', NEW.StatusID,
+                            'dailyRate', NEW.DailyRate, 'ownerId', NEW.OwnerID, 'location', NEW.Location));
+    END IF;
+END$$
+
+CREATE TRIGGER trg_Outbox_RentalInsert
+AFTER INSERT ON Rentals
+FOR EACH ROW
+BEGIN
+    INSERT INTO EventOutbox (AggregateType, AggregateID, EventType, Payload)
+    VALUES ('RENTAL', NEW.RentalID, 'RENTAL_CREATED',
+            JSON_OBJECT('userId', NEW.UserID, 'vehicleId', NEW.VehicleID, 'statusId', NEW.StatusID,
+                        'rentalDate', NEW.RentalDate, 'returnDate', NEW.ReturnDate,
+                        'totalAmount', NEW.TotalAmount));
+END$$
+
+CREATE TRIGGER trg_Outbox_RentalUpdate
+AFTER UPDATE ON Rentals
+FOR EACH ROW
+BEGIN
+    IF NOT (OLD.StatusID <=> NEW.StatusID AND OLD.PaymentStatusID <=> NEW.PaymentStatusID) THEN
+        INSERT INTO EventOutbox (AggregateType, AggregateID, EventType, Payload)
+        VALUES ('RENTAL', NEW.RentalID, 'RENTAL_STATUS_CHANGED',
+                JSON_OBJECT('userId', NEW.UserID, 'vehicleId', NEW.VehicleID,
+                            'oldStatusId', OLD.StatusID, 'statusId', NEW.StatusID,
+                            'paymentStatusId', NEW.PaymentStatusID, 'totalAmount', NEW.TotalAmount));
+    END IF;
+END$$
+
+CREATE TRIGGER trg_Outbox_WalletUpdate
+AFTER UPDATE ON Users
+FOR EACH ROW
+BEGIN
+    IF NOT (OLD.WalletBalance <=> NEW.WalletBalance) THEN
+        INSERT INTO EventOutbox (AggregateType, AggregateID, EventType, Payload)
+        VALUES ('WALLET', NEW.UserID, 'WALLET_CHANGED',
+                JSON_OBJECT('oldBalance', OLD.WalletBalance, 'balance', NEW.WalletBalance,
+                            'delta', NEW.WalletBalance - OLD.WalletBalance));
+    END IF;
+END$$
+
+DELIMITER ;
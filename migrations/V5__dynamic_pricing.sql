@@ -0,0 +1,127 @@
+-- Short-lived price quotes issued by PricingEngine; sp_CreateRental charges a valid
+-- quote instead of DailyRate * days so the customer pays what they were shown.
+CREATE TABLE PriceQuotes (
+    QuoteID BIGINT PRIMARY KEY AUTO_INCREMENT,
+    VehicleID INT NOT NULL,
+    RentalDate DATE NOT NULL,
+    ReturnDate DATE NOT NULL,
+    TotalAmount DECIMAL(10,2) NOT NULL,
+    ExpiresAt TIMESTAMP NOT NULL,
+    CreatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (VehicleID) REFERENCES Vehicles(VehicleID),
+    INDEX idx_PriceQuotes_Lookup (VehicleID, RentalDate, ReturnDate, ExpiresAt),
+    INDEX idx_PriceQuotes_ExpiresAt (ExpiresAt),
+    CHECK (TotalAmount > 0)
+);
+
+DROP PROCEDURE IF EXISTS sp_CreateRental;
+
+DELIMITER $$
+
+CREATE PROCEDURE sp_CreateRental(
+    IN p_UserID INT,
+    IN p_VehicleID INT,
+    IN p_RentalDate DATE,
+    IN p_ReturnDate DATE
+)
+BEGIN
+    DECLARE v_DailyRate DECIMAL(8,2);
+    DECLARE v_Days INT;
+    DECLARE v_TotalAmount DECIMAL(10,2);
+    DECLARE v_QuotedAmount DECIMAL(10,2) DEFAULT NULL;
+    DECLARE v_IsUserListed BOOLEAN;
+    DECLARE v_OwnerID INT;
+    DECLARE v_TransactionTypeID INT;
+    DECLARE v_AdminCommission DECIMAL(10,2);
+    DECLARE v_OwnerEarnings DECIMAL(10,2);
+    
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+    
+    START TRANSACTION;
+    
+    -- Check vehicle availability (row locked so two bookings cannot both pass)
+    IF NOT EXISTS (SELECT 1 FROM Vehicles v 
+                   JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID 
+                   WHERE v.VehicleID = p_VehicleID AND vs.IsAvailable = TRUE
+                   FOR UPDATE) THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Vehicle not available';
+    END IF;
+    
+    -- Get vehicle details
+    SELECT DailyRate, IsUserListed, OwnerID INTO v_DailyRate, v_IsUserListed, v_OwnerID
+    FROM Vehicles WHERE VehicleID = p_VehicleID;
+    
+    -- Calculate rental cost
+    SET v_Days = DATEDIFF(p_ReturnDate, p_RentalDate);
+    IF v_Days <= 0 THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Invalid rental period';
+    END IF;
+    
+    -- Use the latest unexpired dynamic quote when one exists
+    SELECT TotalAmount INTO v_QuotedAmount FROM PriceQuotes
+    WHERE VehicleID = p_VehicleID AND RentalDate = p_RentalDate AND ReturnDate = p_ReturnDate
+      AND ExpiresAt > CURRENT_TIMESTAMP
+    ORDER BY QuoteID DESC LIMIT 1;
+    
+    SET v_TotalAmount = COALESCE(v_QuotedAmount, v_DailyRate * v_Days);
+    
+    -- Check user wallet balance
+    IF (SELECT WalletBalance FROM Users WHERE UserID = p_UserID) < v_TotalAmount THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Insufficient wallet balance';
+    END IF;
+    
+    -- Create rental
+    INSERT INTO Rentals (UserID, VehicleID, RentalDate, ReturnDate, TotalAmount, StatusID)
+    VALUES (p_UserID, p_VehicleID, p_RentalDate, p_ReturnDate, v_TotalAmount, 1);
+    
+    SET @NewRentalID = LAST_INSERT_ID();
+    
+    -- Update vehicle status
+    UPDATE Vehicles SET StatusID = 2 WHERE VehicleID = p_VehicleID;
+    
+    -- Deduct from user wallet
+    UPDATE Users SET WalletBalance = WalletBalance - v_TotalAmount WHERE UserID = p_UserID;
+    
+    -- Determine transaction type and commissions
+    IF v_IsUserListed = TRUE THEN
+        SET v_TransactionTypeID = 1; -- USER_RENTAL
+        SET v_AdminCommission = v_TotalAmount * 0.2;
+        SET v_OwnerEarnings = v_TotalAmount * 0.8;
+    ELSE
+        SET v_TransactionTypeID = 2; -- COMPANY_RENTAL
+        SET v_AdminCommission = v_TotalAmount;
+        SET v_OwnerEarnings = 0;
+    END IF;
+    
+    -- Create transaction record
+    INSERT INTO Transactions (RentalID, UserID, TypeID, Amount, AdminCommission, OwnerEarnings, Status, Description)
+    VALUES (@NewRentalID, p_UserID, v_TransactionTypeID, v_TotalAmount, v_AdminCommission, v_OwnerEarnings, 'PENDING', 
+            CONCAT('Rental for vehicle #', p_VehicleID));
+    
+    COMMIT;
+    
+    SELECT @NewRentalID AS RentalID, 'SUCCESS' AS Status, 'Rental created successfully' AS Message;
+END$$
+
+-- Status events also carry the rental period so consumers can undo bookings
+DROP TRIGGER IF EXISTS trg_Outbox_RentalUpdate$$
+
+CREATE TRIGGER trg_Outbox_RentalUpdate
+AFTER UPDATE ON Rentals
+FOR EACH ROW
+BEGIN
+    IF NOT (OLD.StatusID <=> NEW.StatusID AND OLD.PaymentStatusID <=> NEW.PaymentStatusID) THEN
+        INSERT INTO EventOutbox (AggregateType, AggregateID, EventType, Payload)
+        VALUES ('RENTAL', NEW.RentalID, 'RENTAL_STATUS_CHANGED',
+                JSON_OBJECT('userId', NEW.UserID, 'vehicleId', NEW.VehicleID,
+                            'oldStatusId', OLD.StatusID, 'statusId', NEW.StatusID,
+                            'paymentStatusId', NEW.PaymentStatusID, 'totalAmount', NEW.TotalAmount,
+                            'rentalDate', NEW.RentalDate, 'returnDate', NEW.ReturnDate));
+    END IF;
+END$$
+
+DELIMITER ;
@@ -0,0 +1,258 @@
+-- Client-supplied idempotency keys. A procedure claims its key in the same transaction as the
+-- work it guards, so a retried request replays the original result instead of booking or
+-- charging twice. Keys are kept for a day (purged by RentalLifecycleScheduler).
+CREATE TABLE IdempotencyKeys (
+    IdemKey CHAR(36) PRIMARY KEY,
+    Operation VARCHAR(30) NOT NULL,
+    UserID INT NULL,
+    ResultID INT NULL,
+    ResultAmount DECIMAL(12,2) NULL,
+    CreatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_IdempotencyKeys_CreatedAt (CreatedAt)
+);
+
+DROP PROCEDURE IF EXISTS sp_CreateRental;
+DROP PROCEDURE IF EXISTS sp_ApproveRental;
+DROP PROCEDURE IF EXISTS sp_AdjustWallet;
+
+DELIMITER $$
+
+CREATE PROCEDURE sp_CreateRental(
+    IN p_UserID INT,
+    IN p_VehicleID INT,
+    IN p_RentalDate DATE,
+    IN p_ReturnDate DATE,
+    IN p_IdemKey CHAR(36)
+)
+proc: BEGIN
+    DECLARE v_DailyRate DECIMAL(8,2);
+    DECLARE v_Days INT;
+    DECLARE v_TotalAmount DECIMAL(10,2);
+    DECLARE v_QuotedAmount DECIMAL(10,2) DEFAULT NULL;
+    DECLARE v_IsUserListed BOOLEAN;
+    DECLARE v_OwnerID INT;
+    DECLARE v_TransactionTypeID INT;
+    DECLARE v_AdminCommission DECIMAL(10,2);
+    DECLARE v_OwnerEarnings DECIMAL(10,2);
+    DECLARE v_Duplicate BOOLEAN DEFAULT FALSE;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    START TRANSACTION;
+
+    -- Claim the key; a concurrent call with the same key waits here until we commit
+    IF p_IdemKey IS NOT NULL THEN
+        BEGIN
+            DECLARE CONTINUE HANDLER FOR 1062 SET v_Duplicate = TRUE;
+            INSERT INTO IdempotencyKeys (IdemKey, Operation, UserID) VALUES (p_IdemKey, 'CREATE_RENTAL', p_UserID);
+        END;
+        IF v_Duplicate THEN
+            ROLLBACK;
+            SELECT ResultID AS RentalID, 'SUCCESS' AS Status, 'Rental already created' AS Message,
+                   ResultAmount AS TotalAmount, TRUE AS Replayed
+            FROM IdempotencyKeys WHERE IdemKey = p_IdemKey;
+            LEAVE proc;
+        END IF;
+    END IF;
+
+    -- Check vehicle availability (row locked so two bookings cannot both pass)
+    IF NOT EXISTS (SELECT 1 FROM Vehicles v
+                   JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID
+                   WHERE v.VehicleID = p_VehicleID AND vs.IsAvailable = TRUE
+                   FOR UPDATE) THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Vehicle not available';
+    END IF;
+
+    -- Get vehicle details
+    SELECT DailyRate, IsUserListed, OwnerID INTO v_DailyRate, v_IsUserListed, v_OwnerID
+    FROM Vehicles WHERE VehicleID = p_VehicleID;
+
+    -- Calculate rental cost
+    SET v_Days = DATEDIFF(p_ReturnDate, p_RentalDate);
+    IF v_Days <= 0 THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Invalid rental period';
+    END IF;
+
+    -- Use the latest unexpired dynamic quote when one exists
+    SELECT TotalAmount INTO v_QuotedAmount FROM PriceQuotes
+    WHERE VehicleID = p_VehicleID AND RentalDate = p_RentalDate AND ReturnDate = p_ReturnDate
+      AND ExpiresAt > CURRENT_TIMESTAMP
+    ORDER BY QuoteID DESC LIMIT 1;
+
+    SET v_TotalAmount = COALESCE(v_QuotedAmount, v_DailyRate * v_Days);
+
+    -- Check user wallet balance
+    IF (SELECT WalletBalance FROM Users WHERE UserID = p_UserID) < v_TotalAmount THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Insufficient wallet balance';
+    END IF;
+
+    -- Create rental
+    INSERT INTO Rentals (UserID, VehicleID, RentalDate, ReturnDate, TotalAmount, StatusID)
+    VALUES (p_UserID, p_VehicleID, p_RentalDate, p_ReturnDate, v_TotalAmount, 1);
+
+    SET @NewRentalID = LAST_INSERT_ID();
+
+    -- Update vehicle status
+    UPDATE Vehicles SET StatusID = 2 WHERE VehicleID = p_VehicleID;
+
+    -- Deduct from user wallet
+    UPDATE Users SET WalletBalance = WalletBalance - v_TotalAmount WHERE UserID = p_UserID;
+
+    -- Determine transaction type and commissions
+    IF v_IsUserListed = TRUE THEN
+        SET v_TransactionTypeID = 1; -- USER_RENTAL
+        SET v_AdminCommission = v_TotalAmount * 0.2;
+        SET v_OwnerEarnings = v_TotalAmount * 0.8;
+    ELSE
+        SET v_TransactionTypeID = 2; -- COMPANY_RENTAL
+        SET v_AdminCommission = v_TotalAmount;
+        SET v_OwnerEarnings = 0;
+    END IF;
+
+    -- Create transaction record
+    INSERT INTO Transactions (RentalID, UserID, TypeID, Amount, AdminCommission, OwnerEarnings, Status, Description)
+    VALUES (@NewRentalID, p_UserID, v_TransactionTypeID, v_TotalAmount, v_AdminCommission, v_OwnerEarnings, 'PENDING',
+            CONCAT('Rental for vehicle #', p_VehicleID));
+
+    -- Record the outcome under the key
+    IF p_IdemKey IS NOT NULL THEN
+        UPDATE IdempotencyKeys SET ResultID = @NewRentalID, ResultAmount = v_TotalAmount WHERE IdemKey = p_IdemKey;
+    END IF;
+
+    COMMIT;
+
+    SELECT @NewRentalID AS RentalID, 'SUCCESS' AS Status, 'Rental created successfully' AS Message,
+           v_TotalAmount AS TotalAmount, FALSE AS Replayed;
+END$$
+
+CREATE PROCEDURE sp_ApproveRental(
+    IN p_RentalID INT,
+    IN p_AdminUserID INT,
+    IN p_IdemKey CHAR(36)
+)
+proc: BEGIN
+    DECLARE v_RentalStatus VARCHAR(20);
+    DECLARE v_VehicleID INT;
+    DECLARE v_OwnerID INT;
+    DECLARE v_OwnerEarnings DECIMAL(10,2);
+    DECLARE v_Duplicate BOOLEAN DEFAULT FALSE;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    START TRANSACTION;
+
+    IF p_IdemKey IS NOT NULL THEN
+        BEGIN
+            DECLARE CONTINUE HANDLER FOR 1062 SET v_Duplicate = TRUE;
+            INSERT INTO IdempotencyKeys (IdemKey, Operation, UserID, ResultID)
+            VALUES (p_IdemKey, 'APPROVE_RENTAL', p_AdminUserID, p_RentalID);
+        END;
+        IF v_Duplicate THEN
+            ROLLBACK;
+            SELECT 'SUCCESS' AS Status, 'Rental already approved' AS Message, TRUE AS Replayed;
+            LEAVE proc;
+        END IF;
+    END IF;
+
+    -- Check rental status
+    SELECT rs.StatusName, r.VehicleID INTO v_RentalStatus, v_VehicleID
+    FROM Rentals r
+    JOIN RentalStatuses rs ON r.StatusID = rs.StatusID
+    WHERE r.RentalID = p_RentalID
+    FOR UPDATE;
+
+    IF v_RentalStatus IS NULL OR v_RentalStatus != 'PENDING' THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Rental is not pending approval';
+    END IF;
+
+    -- Update rental status
+    UPDATE Rentals
+    SET StatusID = 2, -- ACTIVE
+        PaymentStatusID = 2, -- PAID
+        ApprovedBy = p_AdminUserID,
+        ApprovedAt = CURRENT_TIMESTAMP
+    WHERE RentalID = p_RentalID;
+
+    -- Update transaction status
+    UPDATE Transactions
+    SET Status = 'COMPLETED'
+    WHERE RentalID = p_RentalID;
+
+    -- Get owner earnings
+    SELECT OwnerEarnings, v.OwnerID INTO v_OwnerEarnings, v_OwnerID
+    FROM Transactions t
+    JOIN Rentals r ON t.RentalID = r.RentalID
+    JOIN Vehicles v ON r.VehicleID = v.VehicleID
+    WHERE r.RentalID = p_RentalID;
+
+    -- Update owner wallet if user-listed vehicle
+    IF v_OwnerEarnings > 0 AND v_OwnerID IS NOT NULL THEN
+        UPDATE Users SET WalletBalance = WalletBalance + v_OwnerEarnings WHERE UserID = v_OwnerID;
+    END IF;
+
+    COMMIT;
+
+    SELECT 'SUCCESS' AS Status, 'Rental approved and payments processed' AS Message, FALSE AS Replayed;
+END$$
+
+-- Relative wallet change (top-up or payment), so a replay cannot apply it twice
+CREATE PROCEDURE sp_AdjustWallet(
+    IN p_UserID INT,
+    IN p_Amount DECIMAL(10,2),
+    IN p_IdemKey CHAR(36)
+)
+proc: BEGIN
+    DECLARE v_Balance DECIMAL(10,2) DEFAULT NULL;
+    DECLARE v_Duplicate BOOLEAN DEFAULT FALSE;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    START TRANSACTION;
+
+    IF p_IdemKey IS NOT NULL THEN
+        BEGIN
+            DECLARE CONTINUE HANDLER FOR 1062 SET v_Duplicate = TRUE;
+            INSERT INTO IdempotencyKeys (IdemKey, Operation, UserID) VALUES (p_IdemKey, 'ADJUST_WALLET', p_UserID);
+        END;
+        IF v_Duplicate THEN
+            ROLLBACK;
+            SELECT 'SUCCESS' AS Status, ResultAmount AS NewBalance, TRUE AS Replayed
+            FROM IdempotencyKeys WHERE IdemKey = p_IdemKey;
+            LEAVE proc;
+        END IF;
+    END IF;
+
+    SELECT WalletBalance INTO v_Balance FROM Users WHERE UserID = p_UserID AND IsActive = 1 FOR UPDATE;
+
+    IF v_Balance IS NULL THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'User not found';
+    END IF;
+    IF v_Balance + p_Amount < 0 THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Insufficient wallet balance';
+    END IF;
+
+    SET v_Balance = v_Balance + p_Amount;
+    UPDATE Users SET WalletBalance = v_Balance WHERE UserID = p_UserID;
+
+    IF p_IdemKey IS NOT NULL THEN
+        UPDATE IdempotencyKeys SET ResultAmount = v_Balance WHERE IdemKey = p_IdemKey;
+    END IF;
+
+    COMMIT;
+
+    SELECT 'SUCCESS' AS Status, v_Balance AS NewBalance, FALSE AS Replayed;
+END$$
+
+DELIMITER ;
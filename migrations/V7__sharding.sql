@@ -0,0 +1,28 @@
+-- Sharding support (see ShardedStore). Applied to every shard; the directory tables are
+-- only used on shard 0.
+
+-- Account rows a shard holds only so foreign keys resolve (renters from other shards,
+-- approving admins, owners of company vehicles). Guests are never listed or logged in.
+ALTER TABLE Users ADD COLUMN IsGuest BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Global lookup directory: where each user, vehicle and rental lives
+CREATE TABLE ShardDirectory (
+    EntityType CHAR(1) NOT NULL,
+    EntityID INT NOT NULL,
+    ShardID INT NOT NULL,
+    PRIMARY KEY (EntityType, EntityID),
+    INDEX idx_ShardDirectory_Shard (ShardID, EntityType)
+);
+
+-- Usernames are unique across all shards; a row is reserved before the user is inserted
+CREATE TABLE UserDirectory (
+    Username VARCHAR(50) PRIMARY KEY,
+    UserID INT NULL UNIQUE
+);
+
+-- Shards that have been claimed (sample rows turned into guests, id counters raised)
+CREATE TABLE ShardInfo (
+    ShardID INT PRIMARY KEY,
+    Url VARCHAR(255) NOT NULL,
+    ClaimedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
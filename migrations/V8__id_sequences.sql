@@ -0,0 +1,135 @@
+-- Ids allocated by the application (IdAllocator) in leased blocks instead of AUTO_INCREMENT.
+-- NextID is the first id not yet leased for each table.
+CREATE TABLE IdSequences (
+    Name VARCHAR(30) PRIMARY KEY,
+    NextID BIGINT NOT NULL
+);
+
+INSERT INTO IdSequences (Name, NextID)
+SELECT 'Users', COALESCE(MAX(UserID), 0) + 1 FROM Users
+UNION ALL SELECT 'Vehicles', COALESCE(MAX(VehicleID), 0) + 1 FROM Vehicles
+UNION ALL SELECT 'Rentals', COALESCE(MAX(RentalID), 0) + 1 FROM Rentals
+UNION ALL SELECT 'Transactions', COALESCE(MAX(TransactionID), 0) + 1 FROM Transactions
+UNION ALL SELECT 'VehicleMakes', COALESCE(MAX(MakeID), 0) + 1 FROM VehicleMakes
+UNION ALL SELECT 'VehicleColors', COALESCE(MAX(ColorID), 0) + 1 FROM VehicleColors;
+
+-- sp_CreateRental takes the rental and transaction ids from the caller
+DROP PROCEDURE IF EXISTS sp_CreateRental;
+
+DELIMITER $$
+
+CREATE PROCEDURE sp_CreateRental(
+    IN p_UserID INT,
+    IN p_VehicleID INT,
+    IN p_RentalDate DATE,
+    IN p_ReturnDate DATE,
+    IN p_IdemKey CHAR(36),
+    IN p_RentalID INT,
+    IN p_TransactionID INT
+)
+proc: BEGIN
+    DECLARE v_DailyRate DECIMAL(8,2);
+    DECLARE v_Days INT;
+    DECLARE v_TotalAmount DECIMAL(10,2);
+    DECLARE v_QuotedAmount DECIMAL(10,2) DEFAULT NULL;
+    DECLARE v_IsUserListed BOOLEAN;
+    DECLARE v_OwnerID INT;
+    DECLARE v_TransactionTypeID INT;
+    DECLARE v_AdminCommission DECIMAL(10,2);
+    DECLARE v_OwnerEarnings DECIMAL(10,2);
+    DECLARE v_Duplicate BOOLEAN DEFAULT FALSE;
+
+    DECLARE EXIT HANDLER FOR SQLEXCEPTION
+    BEGIN
+        ROLLBACK;
+        RESIGNAL;
+    END;
+
+    START TRANSACTION;
+
+    -- Claim the key; a concurrent call with the same key waits here until we commit
+    IF p_IdemKey IS NOT NULL THEN
+        BEGIN
+            DECLARE CONTINUE HANDLER FOR 1062 SET v_Duplicate = TRUE;
+            INSERT INTO IdempotencyKeys (IdemKey, Operation, UserID) VALUES (p_IdemKey, 'CREATE_RENTAL', p_UserID);
+        END;
+        IF v_Duplicate THEN
+            ROLLBACK;
+            SELECT ResultID AS RentalID, 'SUCCESS' AS Status, 'Rental already created' AS Message,
+                   ResultAmount AS TotalAmount, TRUE AS Replayed
+            FROM IdempotencyKeys WHERE IdemKey = p_IdemKey;
+            LEAVE proc;
+        END IF;
+    END IF;
+
+    -- Check vehicle availability (row locked so two bookings cannot both pass)
+    IF NOT EXISTS (SELECT 1 FROM Vehicles v
+                   JOIN VehicleStatuses vs ON v.StatusID = vs.StatusID
+                   WHERE v.VehicleID = p_VehicleID AND vs.IsAvailable = TRUE
+                   FOR UPDATE) THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Vehicle not available';
+    END IF;
+
+    -- Get vehicle details
+    SELECT DailyRate, IsUserListed, OwnerID INTO v_DailyRate, v_IsUserListed, v_OwnerID
+    FROM Vehicles WHERE VehicleID = p_VehicleID;
+
+    -- Calculate rental cost
+    SET v_Days = DATEDIFF(p_ReturnDate, p_RentalDate);
+    IF v_Days <= 0 THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Invalid rental period';
+    END IF;
+
+    -- Use the latest unexpired dynamic quote when one exists
+    SELECT TotalAmount INTO v_QuotedAmount FROM PriceQuotes
+    WHERE VehicleID = p_VehicleID AND RentalDate = p_RentalDate AND ReturnDate = p_ReturnDate
+      AND ExpiresAt > CURRENT_TIMESTAMP
+    ORDER BY QuoteID DESC LIMIT 1;
+
+    SET v_TotalAmount = COALESCE(v_QuotedAmount, v_DailyRate * v_Days);
+
+    -- Check user wallet balance
+    IF (SELECT WalletBalance FROM Users WHERE UserID = p_UserID) < v_TotalAmount THEN
+        SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Insufficient wallet balance';
+    END IF;
+
+    -- Create rental (ids come from IdAllocator; NULL still falls back to AUTO_INCREMENT)
+    INSERT INTO Rentals (RentalID, UserID, VehicleID, RentalDate, ReturnDate, TotalAmount, StatusID)
+    VALUES (p_RentalID, p_UserID, p_VehicleID, p_RentalDate, p_ReturnDate, v_TotalAmount, 1);
+
+    SET @NewRentalID = COALESCE(p_RentalID, LAST_INSERT_ID());
+
+    -- Update vehicle status
+    UPDATE Vehicles SET StatusID = 2 WHERE VehicleID = p_VehicleID;
+
+    -- Deduct from user wallet
+    UPDATE Users SET WalletBalance = WalletBalance - v_TotalAmount WHERE UserID = p_UserID;
+
+    -- Determine transaction type and commissions
+    IF v_IsUserListed = TRUE THEN
+        SET v_TransactionTypeID = 1; -- USER_RENTAL
+        SET v_AdminCommission = v_TotalAmount * 0.2;
+        SET v_OwnerEarnings = v_TotalAmount * 0.8;
+    ELSE
+        SET v_TransactionTypeID = 2; -- COMPANY_RENTAL
+        SET v_AdminCommission = v_TotalAmount;
+        SET v_OwnerEarnings = 0;
+    END IF;
+
+    -- Create transaction record
+    INSERT INTO Transactions (TransactionID, RentalID, UserID, TypeID, Amount, AdminCommission, OwnerEarnings, Status, Description)
+    VALUES (p_TransactionID, @NewRentalID, p_UserID, v_TransactionTypeID, v_TotalAmount, v_AdminCommission, v_OwnerEarnings, 'PENDING',
+            CONCAT('Rental for vehicle #', p_VehicleID));
+
+    -- Record the outcome under the key
+    IF p_IdemKey IS NOT NULL THEN
+        UPDATE IdempotencyKeys SET ResultID = @NewRentalID, ResultAmount = v_TotalAmount WHERE IdemKey = p_IdemKey;
+    END IF;
+
+    COMMIT;
+
+    SELECT @NewRentalID AS RentalID, 'SUCCESS' AS Status, 'Rental created successfully' AS Message,
+           v_TotalAmount AS TotalAmount, FALSE AS Replayed;
+END$$
+
+DELIMITER ;
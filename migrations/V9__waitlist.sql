@@ -0,0 +1,17 @@
+-- Per-vehicle waitlist (see Waitlist). Entries are served in EntryID order; an OFFERED entry
+-- holds the vehicle for its customer until OfferExpiresAt.
+CREATE TABLE WaitlistEntries (
+    EntryID INT PRIMARY KEY,
+    VehicleID INT NOT NULL,
+    UserID INT NOT NULL,
+    RentalDate DATE NOT NULL,
+    ReturnDate DATE NOT NULL,
+    Status ENUM('WAITING', 'OFFERED', 'ACCEPTED', 'EXPIRED', 'CANCELLED') NOT NULL DEFAULT 'WAITING',
+    OfferExpiresAt TIMESTAMP NULL,
+    CreatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (VehicleID) REFERENCES Vehicles(VehicleID),
+    FOREIGN KEY (UserID) REFERENCES Users(UserID),
+    INDEX idx_WaitlistEntries_Status (Status, EntryID)
+);
+
+INSERT INTO IdSequences (Name, NextID) VALUES ('WaitlistEntries', 1);